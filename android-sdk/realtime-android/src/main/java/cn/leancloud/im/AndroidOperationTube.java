@@ -35,6 +35,7 @@ import cn.leancloud.im.v2.callback.AVIMMessagesQueryCallback;
 import cn.leancloud.im.v2.callback.AVIMOnlineClientsCallback;
 import cn.leancloud.livequery.AVLiveQuery;
 import cn.leancloud.livequery.AVLiveQuerySubscribeCallback;
+import cn.leancloud.livequery.LiveQueryOperationDelegate;
 import cn.leancloud.push.PushService;
 import cn.leancloud.session.AVSession;
 import cn.leancloud.session.AVSessionManager;
@@ -218,7 +219,7 @@ public class AndroidOperationTube implements OperationTube {
                                               final AVIMCommonJsonCallback callback) {
     // internal query conversation.
     LOGGER.d("queryConversationsInternally...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     AVSession session = AVSessionManager.getInstance().getOrCreateSession(clientId);
     session.queryConversations(JSON.parseObject(queryString, Map.class), requestId, MD5.computeMD5(queryString));
@@ -357,7 +358,7 @@ public class AndroidOperationTube implements OperationTube {
       }
       return false;
     }
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(LiveQueryOperationDelegate.LIVEQUERY_DEFAULT_ID);
     LocalBroadcastManager.getInstance(AVOSCloud.getContext()).registerReceiver(receiver,
         new IntentFilter(AVLiveQuery.LIVEQUERY_PRIFIX + requestId));
     try {
@@ -384,7 +385,7 @@ public class AndroidOperationTube implements OperationTube {
       }
       return false;
     }
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
 
     if (receiver != null) {
       LocalBroadcastManager.getInstance(AVOSCloud.getContext()).registerReceiver(receiver,
@@ -421,7 +422,7 @@ public class AndroidOperationTube implements OperationTube {
       return false;
     }
 
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (null != receiver) {
       LocalBroadcastManager.getInstance(AVOSCloud.getContext()).registerReceiver(receiver,
           new IntentFilter(operation.getOperation() + requestId));
@@ -463,7 +464,7 @@ public class AndroidOperationTube implements OperationTube {
       }
       return false;
     }
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (null != receiver) {
       LocalBroadcastManager.getInstance(AVOSCloud.getContext()).registerReceiver(receiver,
           new IntentFilter(operation.getOperation() + requestId));
@@ -0,0 +1,57 @@
+package cn.leancloud;
+
+import cn.leancloud.callback.ProgressCallback;
+
+public class AVBatchOption {
+  public static final int DEFAULT_BATCH_SIZE = 50;
+  public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+  int batchSize = DEFAULT_BATCH_SIZE;
+  int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+  ProgressCallback progressCallback = null;
+
+  /**
+   * max object count within one batch request.
+   *
+   * @param batchSize object count, zero or negative value means put all objects into one request.
+   * @return this object.
+   */
+  public AVBatchOption setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * max batch requests(and cascading file uploads) in flight at the same time.
+   *
+   * @param maxConcurrency concurrency, value less than 1 is treated as 1.
+   * @return this object.
+   */
+  public AVBatchOption setMaxConcurrency(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+    return this;
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency < 1 ? 1 : maxConcurrency;
+  }
+
+  /**
+   * progress callback, invoked with percent of processed objects after every batch request.
+   *
+   * @param callback progress callback.
+   * @return this object.
+   */
+  public AVBatchOption setProgressCallback(ProgressCallback callback) {
+    this.progressCallback = callback;
+    return this;
+  }
+
+  public ProgressCallback getProgressCallback() {
+    return progressCallback;
+  }
+}
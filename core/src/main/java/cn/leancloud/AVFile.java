@@ -167,7 +167,7 @@ public final class AVFile extends AVObject {
 
   private Object internalGet(String key) {
     Object value = serverData.get(key);
-    ObjectFieldOperation op = operations.get(key);
+    ObjectFieldOperation op = readableOperations().get(key);
     if (null != op) {
       value = op.apply(value);
     }
@@ -276,6 +276,34 @@ public final class AVFile extends AVObject {
       return -1;
   }
 
+  /**
+   * Get file size, works for file larger than 2GB.
+   * @return file size.
+   */
+  @JSONField(serialize = false)
+  public long getSizeAsLong() {
+    Number size = (Number) getMetaData(FILE_LENGTH_KEY);
+    if (size != null)
+      return size.longValue();
+    else
+      return -1;
+  }
+
+  /**
+   * Get local file which holds data of current object.
+   * @return local file, or null if data is not available locally.
+   */
+  @JSONField(serialize = false)
+  public File getLocalFile() {
+    if (!StringUtil.isEmpty(localPath) && new File(localPath).isFile()) {
+      return new File(localPath);
+    }
+    if (!StringUtil.isEmpty(cachePath) && new File(cachePath).isFile()) {
+      return new File(cachePath);
+    }
+    return null;
+  }
+
   /**
    * Get file mime type.
    * @return mime type.
@@ -520,6 +548,11 @@ public final class AVFile extends AVObject {
 
                   AVException exception = uploader.execute();
 
+                  if (null == exception) {
+                    // local data can be evicted from file cache after uploaded.
+                    FileCache.getIntance().unpinLocalFile(localPath);
+                  }
+
                   JSONObject completeResult = new JSONObject();
                   completeResult.put("result", null == exception);
                   completeResult.put("token",fileUploadToken.getToken());
@@ -570,27 +603,41 @@ public final class AVFile extends AVObject {
    */
   @JSONField(serialize = false)
   public byte[] getData() {
-    String filePath = "";
-    if(!StringUtil.isEmpty(localPath)) {
-      filePath = localPath;
-    } else if (!StringUtil.isEmpty(cachePath)) {
-      filePath = cachePath;
-    } else if (!StringUtil.isEmpty(getUrl())) {
-      File cacheFile = FileCache.getIntance().getCacheFile(getUrl());
-      if (null == cacheFile || !cacheFile.exists()) {
-        FileDownloader downloader = new FileDownloader();
-        downloader.execute(getUrl(), cacheFile);
-      }
-      if (null != cacheFile) {
-        filePath = cacheFile.getAbsolutePath();
-      }
-    }
+    String filePath = getDataFilePath();
     if(!StringUtil.isEmpty(filePath)) {
       return PersistenceUtil.sharedInstance().readContentBytesFromFile(new File(filePath));
     }
     return new byte[0];
   }
 
+  /**
+   * local file may be evicted from file cache after uploaded, then data is read from cache file of url,
+   * which is downloaded if necessary.
+   * @return path of file which holds data, empty string if data is unavailable.
+   */
+  private String getDataFilePath() {
+    if (!StringUtil.isEmpty(localPath) && new File(localPath).isFile()) {
+      return localPath;
+    }
+    if (!StringUtil.isEmpty(cachePath) && new File(cachePath).isFile()) {
+      return cachePath;
+    }
+    if (!StringUtil.isEmpty(getUrl())) {
+      File cacheFile = FileCache.getIntance().getCacheFile(getUrl());
+      if (null == cacheFile) {
+        return "";
+      }
+      if (!cacheFile.exists()) {
+        FileDownloader downloader = new FileDownloader();
+        if (null == downloader.execute(getUrl(), cacheFile)) {
+          FileCache.getIntance().addCachedFile(cacheFile);
+        }
+      }
+      return cacheFile.exists() ? cacheFile.getAbsolutePath() : "";
+    }
+    return "";
+  }
+
   /**
    * Get data in async mode.
    * @return observable instance.
@@ -619,21 +666,7 @@ public final class AVFile extends AVObject {
    */
   @JSONField(serialize = false)
   public InputStream getDataStream() throws Exception {
-    String filePath = "";
-    if(!StringUtil.isEmpty(localPath)) {
-      filePath = localPath;
-    } else if (!StringUtil.isEmpty(cachePath)) {
-      filePath = cachePath;
-    } else if (!StringUtil.isEmpty(getUrl())) {
-      File cacheFile = FileCache.getIntance().getCacheFile(getUrl());
-      if (null == cacheFile || !cacheFile.exists()) {
-        FileDownloader downloader = new FileDownloader();
-        downloader.execute(getUrl(), cacheFile);
-      }
-      if (null != cacheFile) {
-        filePath = cacheFile.getAbsolutePath();
-      }
-    }
+    String filePath = getDataFilePath();
     if(!StringUtil.isEmpty(filePath)) {
       logger.d("dest file path=" + filePath);
       return FileCache.getIntance().getInputStreamFromFile(new File(filePath));
@@ -16,6 +16,14 @@ public class AVLogger {
     }
     private int intLevel;
   }
+
+  /**
+   * lazy log message, which is built only if the level is enabled.
+   */
+  public interface MessageSupplier {
+    String get();
+  }
+
   private volatile InternalLogger internalLogger = null;
   private String tag = null;
 
@@ -31,10 +39,22 @@ public class AVLogger {
     writeLog(Level.VERBOSE, msg, tr);
   }
 
+  public void v(MessageSupplier supplier) {
+    if (isEnabled(Level.VERBOSE)) {
+      writeLog(Level.VERBOSE, supplier.get());
+    }
+  }
+
   public void d(String msg) {
     writeLog(Level.DEBUG, msg);
   }
 
+  public void d(MessageSupplier supplier) {
+    if (isEnabled(Level.DEBUG)) {
+      writeLog(Level.DEBUG, supplier.get());
+    }
+  }
+
   public void d(String msg, Throwable tr) {
     writeLog(Level.DEBUG, msg, tr);
   }
@@ -43,6 +63,12 @@ public class AVLogger {
     writeLog(Level.INFO, msg);
   }
 
+  public void i(MessageSupplier supplier) {
+    if (isEnabled(Level.INFO)) {
+      writeLog(Level.INFO, supplier.get());
+    }
+  }
+
   public void i(String msg, Throwable tr) {
     writeLog(Level.INFO, msg, tr);
   }
@@ -82,6 +108,21 @@ public class AVLogger {
     return AVOSCloud.getLogLevel().intLevel() >= testLevel.intLevel();
   }
 
+  /**
+   * check level before building expensive message.
+   */
+  public boolean isVerboseEnabled() {
+    return isEnabled(Level.VERBOSE);
+  }
+
+  public boolean isDebugEnabled() {
+    return isEnabled(Level.DEBUG);
+  }
+
+  public boolean isInfoEnabled() {
+    return isEnabled(Level.INFO);
+  }
+
 
   protected void writeLog(Level level, String msg) {
     if (!isEnabled(level)) {
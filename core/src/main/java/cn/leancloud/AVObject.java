@@ -54,7 +54,8 @@ public class AVObject {
 
   protected String objectId = "";
   protected ConcurrentMap<String, Object> serverData = new ConcurrentHashMap<String, Object>();
-  protected ConcurrentMap<String, ObjectFieldOperation> operations = new ConcurrentHashMap<String, ObjectFieldOperation>();
+  // null for read-only objects until the first mutation, use readableOperations()/writableOperations() to access it.
+  protected volatile ConcurrentMap<String, ObjectFieldOperation> operations = new ConcurrentHashMap<String, ObjectFieldOperation>();
   protected AVACL acl = null;
   private String uuid = null;
 
@@ -93,7 +94,7 @@ public class AVObject {
     this.className = other.className;
     this.objectId = other.objectId;
     this.serverData.putAll(other.serverData);
-    this.operations.putAll(other.operations);
+    this.operations.putAll(other.readableOperations());
     this.acl = other.acl;
     this.endpointClassName = other.endpointClassName;
   }
@@ -245,7 +246,7 @@ public class AVObject {
    */
   public Object get(String key) {
     Object value = serverData.get(key);
-    ObjectFieldOperation op = operations.get(key);
+    ObjectFieldOperation op = readableOperations().get(key);
     if (null != op) {
       value = op.apply(value);
     }
@@ -667,7 +668,7 @@ public class AVObject {
     if (totallyOverwrite) {
       logger.w("Can't abort modify operations under TotalOverWrite mode.");
     }
-    this.operations.clear();
+    clearOperations();
   }
 
   protected void addNewOperation(ObjectFieldOperation op) {
@@ -687,16 +688,14 @@ public class AVObject {
         }
       }
     } else {
-      ObjectFieldOperation previous = null;
-      if (this.operations.containsKey(op.getField())) {
-        previous = this.operations.get(op.getField());
-      }
-      this.operations.put(op.getField(), op.merge(previous));
+      ConcurrentMap<String, ObjectFieldOperation> ops = writableOperations();
+      ObjectFieldOperation previous = ops.get(op.getField());
+      ops.put(op.getField(), op.merge(previous));
     }
   }
 
   private boolean needBatchMode() {
-    for (ObjectFieldOperation op : this.operations.values()) {
+    for (ObjectFieldOperation op : readableOperations().values()) {
       if (op instanceof CompoundOperation) {
         return true;
       }
@@ -728,7 +727,7 @@ public class AVObject {
     }
 
     Map<String, Object> params = new HashMap<String, Object>();
-    Set<Map.Entry<String, ObjectFieldOperation>> entries = operations.entrySet();
+    Set<Map.Entry<String, ObjectFieldOperation>> entries = readableOperations().entrySet();
     for (Map.Entry<String, ObjectFieldOperation> entry: entries) {
       //{"attr":{"__op":"Add", "objects":[obj1, obj2]}}
       Map<String, Object> oneOp = entry.getValue().encode();
@@ -758,7 +757,7 @@ public class AVObject {
       finalParams.add(topParams);
     }
 
-    for (ObjectFieldOperation ops : this.operations.values()) {
+    for (ObjectFieldOperation ops : readableOperations().values()) {
       if (ops instanceof CompoundOperation) {
         List<Map<String, Object>> restParams = ((CompoundOperation)ops).encodeRestOp(this);
         if (null != restParams && !restParams.isEmpty()) {
@@ -789,7 +788,7 @@ public class AVObject {
 
   protected Observable<List<AVObject>> generateCascadingSaveObjects() {
     List<AVObject> result = new ArrayList<>();
-    for (ObjectFieldOperation ofo: operations.values()) {
+    for (ObjectFieldOperation ofo: readableOperations().values()) {
       List<AVObject> operationValues = extractCascadingObjects(ofo.getValue());
       if (null != operationValues && !operationValues.isEmpty()) {
         result.addAll(operationValues);
@@ -815,7 +814,7 @@ public class AVObject {
 
   protected List<AVFile> getUnsavedFiles() {
     List<AVFile> result = new ArrayList<>();
-    for (ObjectFieldOperation ofo: operations.values()) {
+    for (ObjectFieldOperation ofo: readableOperations().values()) {
       List<AVFile> unsavedFiles = extractUnsavedFiles(ofo.getValue());
       if (null != unsavedFiles && !unsavedFiles.isEmpty()) {
         result.addAll(unsavedFiles);
@@ -825,7 +824,7 @@ public class AVObject {
   }
 
   protected void onSaveSuccess() {
-    this.operations.clear();
+    clearOperations();
   }
 
   protected void onSaveFailure() {
@@ -975,7 +974,7 @@ public class AVObject {
     }
     markMap.put(this, true);
     boolean rst = false;
-    for (ObjectFieldOperation op: operations.values()) {
+    for (ObjectFieldOperation op: readableOperations().values()) {
       rst = rst || op.checkCircleReference(markMap);
     }
     return rst;
@@ -997,6 +996,16 @@ public class AVObject {
     saveAllInBackground(objects).blockingSubscribe();
   }
 
+  /**
+   * Save All objects in blocking mode.
+   * @param objects object collection.
+   * @param option batch option.
+   * @throws AVException error happened.
+   */
+  public static void saveAll(Collection<? extends AVObject> objects, AVBatchOption option) throws AVException {
+    saveAllInBackground(objects, option).blockingSubscribe();
+  }
+
   private static Observable<List<AVFile>> extractSaveAheadFiles(Collection<? extends AVObject> objects) {
     List<AVFile> needSaveAheadFiles = new ArrayList<>();
     for (AVObject o: objects) {
@@ -1014,6 +1023,20 @@ public class AVObject {
    * @return observable instance.
    */
   public static Observable<JSONArray> saveAllInBackground(final Collection<? extends AVObject> objects) {
+    return saveAllInBackground(objects, new AVBatchOption());
+  }
+
+  /**
+   * Save all objects in async mode.
+   * objects are split into batch requests of option.batchSize and at most option.maxConcurrency requests
+   * are in flight at the same time, result array keeps the same order as objects.
+   *
+   * @param objects object collection.
+   * @param option batch option.
+   * @return observable instance.
+   */
+  public static Observable<JSONArray> saveAllInBackground(final Collection<? extends AVObject> objects,
+                                                          final AVBatchOption option) {
     if (null == objects || objects.isEmpty()) {
       JSONArray emptyResult = new JSONArray();
       return Observable.just(emptyResult);
@@ -1024,49 +1047,18 @@ public class AVObject {
         return Observable.error(new AVException(AVException.CIRCLE_REFERENCE, "Found a circular dependency when saving."));
       }
     }
+    final AVBatchOption batchOption = null == option ? new AVBatchOption() : option;
     Observable<List<AVFile>> aHeadStage = extractSaveAheadFiles(objects);
-    return aHeadStage.flatMap(new Function<List<AVFile>, ObservableSource<JSONArray>>() {
+    return aHeadStage.flatMap(new Function<List<AVFile>, ObservableSource<List<AVFile>>>() {
+      @Override
+      public ObservableSource<List<AVFile>> apply(List<AVFile> avFiles) throws Exception {
+        return BatchProcessor.saveFiles(avFiles, batchOption.getMaxConcurrency());
+      }
+    }).flatMap(new Function<List<AVFile>, ObservableSource<JSONArray>>() {
       @Override
       public ObservableSource<JSONArray> apply(List<AVFile> avFiles) throws Exception {
         logger.d("begin to save objects with batch mode...");
-        if (null != avFiles && !avFiles.isEmpty()) {
-          for (AVFile file : avFiles) {
-            file.save();
-          }
-        }
-        JSONArray requests = new JSONArray();
-        for (AVObject o : objects) {
-          JSONObject requestBody = o.generateChangedParam();
-          JSONObject objectRequest = new JSONObject();
-          objectRequest.put("method", o.getRequestMethod());
-          objectRequest.put("path", o.getRequestRawEndpoint());
-          objectRequest.put("body", requestBody);
-          requests.add(objectRequest);
-        }
-
-        JSONObject requestTotal = new JSONObject();
-        requestTotal.put("requests", requests);
-        return PaasClient.getStorageClient().batchSave(requestTotal).map(new Function<JSONArray, JSONArray>() {
-          public JSONArray apply(JSONArray batchResults) throws Exception {
-
-            if (null != batchResults && (objects.size() == batchResults.size())) {
-              logger.d("batchSave result: " + batchResults.toJSONString());
-              Iterator it = objects.iterator();
-
-              for (int i = 0; i < batchResults.size() && it.hasNext(); i++) {
-                JSONObject oneResult = batchResults.getJSONObject(i);
-                AVObject originObject = (AVObject) it.next();
-                if (oneResult.containsKey("success")) {
-                  AVUtils.mergeConcurrentMap(originObject.serverData, oneResult.getJSONObject("success"));
-                  originObject.onSaveSuccess();
-                } else if (oneResult.containsKey("error")) {
-                  originObject.onSaveFailure();
-                }
-              }
-            }
-            return batchResults;
-          }
-        });
+        return BatchProcessor.saveObjects(objects, batchOption);
       }
     });
   }
@@ -1076,7 +1068,7 @@ public class AVObject {
    * @throws AVException error happened.
    */
   public void saveEventually() throws AVException {
-    if (operations.isEmpty()) {
+    if (readableOperations().isEmpty()) {
       return;
     }
     Map<AVObject, Boolean> markMap = new HashMap<>();
@@ -1166,10 +1158,7 @@ public class AVObject {
    * @return observable instance.
    */
   public Observable<AVNull> deleteInBackground() {
-    Map<String, Object> ignoreParam = new HashMap<>();
-    if (ignoreHooks.size() > 0) {
-      ignoreParam.put(KEY_IGNORE_HOOKS, ignoreHooks);
-    }
+    Map<String, Object> ignoreParam = generateDeleteParam();
     if (totallyOverwrite) {
       return PaasClient.getStorageClient().deleteWholeObject(this.endpointClassName, getObjectId(), ignoreParam);
     }
@@ -1192,8 +1181,20 @@ public class AVObject {
     deleteAllInBackground(objects).blockingSubscribe();
   }
 
+  /**
+   * Delete all objects in blocking mode.
+   * @param objects object collection.
+   * @param option batch option.
+   * @return result of every object.
+   */
+  public static JSONArray deleteAll(Collection<? extends AVObject> objects, AVBatchOption option) {
+    return deleteAllInBackground(objects, option).blockingFirst();
+  }
+
   /**
    * Delete all objects in async mode.
+   * objects may belong to different classes, they are deleted with batch requests.
+   *
    * @param objects object collection.
    * @return observable instance.
    */
@@ -1201,23 +1202,56 @@ public class AVObject {
     if (null == objects || objects.isEmpty()) {
       return Observable.just(AVNull.getINSTANCE());
     }
-    String className = null;
-    Map<String, Object> ignoreParams = new HashMap<>();
-    StringBuilder sb = new StringBuilder();
+    return deleteAllInBackground(objects, new AVBatchOption()).map(new Function<JSONArray, AVNull>() {
+      @Override
+      public AVNull apply(JSONArray results) throws Exception {
+        for (int i = 0; i < results.size(); i++) {
+          JSONObject error = results.getJSONObject(i).getJSONObject("error");
+          if (null != error) {
+            throw new AVException(error.getIntValue("code"), error.getString("error"));
+          }
+        }
+        return AVNull.getINSTANCE();
+      }
+    });
+  }
+
+  /**
+   * Delete all objects in async mode.
+   * objects may belong to different classes, they are split into batch requests of option.batchSize and
+   * at most option.maxConcurrency requests are in flight at the same time.
+   *
+   * @param objects object collection.
+   * @param option batch option.
+   * @return observable instance, which emits one result({"success":{}} or {"error":{}}) for every object
+   *         in the same order as objects. failure of one object never terminates the whole observable.
+   */
+  public static Observable<JSONArray> deleteAllInBackground(Collection<? extends AVObject> objects,
+                                                            AVBatchOption option) {
+    if (null == objects || objects.isEmpty()) {
+      return Observable.just(new JSONArray());
+    }
     for (AVObject o : objects) {
       if (StringUtil.isEmpty(o.getObjectId()) || StringUtil.isEmpty(o.getClassName())) {
         return Observable.error(new IllegalArgumentException("Invalid AVObject, the class name or objectId is blank."));
       }
-      if (className == null) {
-        className = o.getClassName();
-        sb.append(o.getObjectId());
-      } else if (className.equals(o.getClassName())) {
-        sb.append(",").append(o.getObjectId());
-      } else {
-        return Observable.error(new IllegalArgumentException("The objects class name must be the same."));
-      }
     }
-    return PaasClient.getStorageClient().deleteObject(className, sb.toString(), ignoreParams);
+    return BatchProcessor.deleteObjects(objects, null == option ? new AVBatchOption() : option);
+  }
+
+  Map<String, Object> generateDeleteParam() {
+    Map<String, Object> param = new HashMap<>();
+    if (ignoreHooks.size() > 0) {
+      param.put(KEY_IGNORE_HOOKS, ignoreHooks);
+    }
+    return param;
+  }
+
+  String getRequestDeleteEndpoint() {
+    if (totallyOverwrite) {
+      return "/1.1/" + this.endpointClassName + "/" + getObjectId();
+    }
+    return "/1.1/classes/" + this.className + "/" + getObjectId();
   }
 
   /**
@@ -1351,18 +1385,69 @@ public class AVObject {
     return this;
   }
 
+  private static final Map<String, ObjectFieldOperation> NO_OPERATIONS = Collections.emptyMap();
+
+  /**
+   * @return operations for reading, never creates the map of read-only object.
+   */
+  Map<String, ObjectFieldOperation> readableOperations() {
+    ConcurrentMap<String, ObjectFieldOperation> ops = this.operations;
+    return null == ops ? NO_OPERATIONS : ops;
+  }
+
+  /**
+   * @return operations for writing, the map of read-only object is created at the first time.
+   */
+  ConcurrentMap<String, ObjectFieldOperation> writableOperations() {
+    ConcurrentMap<String, ObjectFieldOperation> ops = this.operations;
+    if (null == ops) {
+      synchronized (this) {
+        ops = this.operations;
+        if (null == ops) {
+          ops = new ConcurrentHashMap<String, ObjectFieldOperation>();
+          this.operations = ops;
+        }
+      }
+    }
+    return ops;
+  }
+
+  private void clearOperations() {
+    ConcurrentMap<String, ObjectFieldOperation> ops = this.operations;
+    if (null != ops) {
+      ops.clear();
+    }
+  }
+
+  /**
+   * switch to compact representation, used for read-only query results.
+   * server data is kept in a flat layout and operations map is not created until first mutation.
+   */
+  void compactForReadOnly() {
+    if (!(this.serverData instanceof CompactServerData)) {
+      this.serverData = new CompactServerData(this.className, this.serverData);
+    }
+    ConcurrentMap<String, ObjectFieldOperation> ops = this.operations;
+    if (null != ops && ops.isEmpty()) {
+      this.operations = null;
+    }
+  }
+
   protected void resetAll() {
     this.objectId = "";
     this.acl = null;
     this.serverData.clear();
-    this.operations.clear();
+    clearOperations();
   }
 
   protected void resetByRawData(AVObject avObject) {
     resetAll();
     if (null != avObject) {
       this.serverData.putAll(avObject.serverData);
-      this.operations.putAll(avObject.operations);
+      Map<String, ObjectFieldOperation> ops = avObject.readableOperations();
+      if (!ops.isEmpty()) {
+        writableOperations().putAll(ops);
+      }
     }
   }
 
@@ -1371,7 +1456,7 @@ public class AVObject {
       this.serverData.putAll(avObject.serverData);
     }
     if (!fetchServerData && AppConfiguration.isAutoMergeOperationDataWhenSave()) {
-      for (Map.Entry<String, ObjectFieldOperation> entry: operations.entrySet()) {
+      for (Map.Entry<String, ObjectFieldOperation> entry: readableOperations().entrySet()) {
         String attribute = entry.getKey();
         Object value = this.get(attribute);
         if (null == value) {
@@ -1390,7 +1475,7 @@ public class AVObject {
   public void resetServerData(Map<String, Object> data) {
     this.serverData.clear();
     AVUtils.mergeConcurrentMap(this.serverData, data);
-    this.operations.clear();
+    clearOperations();
   }
 
   /**
@@ -1587,7 +1672,7 @@ public class AVObject {
       newItem.className = object.className;
       newItem.objectId = object.objectId;
       newItem.serverData.putAll(object.serverData);
-      newItem.operations.putAll(object.operations);
+      newItem.operations.putAll(object.readableOperations());
       newItem.acl = object.acl;
       newItem.endpointClassName = object.endpointClassName;
       return newItem;
@@ -1607,12 +1692,12 @@ public class AVObject {
     return isFetchWhenSave() == avObject.isFetchWhenSave() &&
             Objects.equals(getClassName(), avObject.getClassName()) &&
             Objects.equals(getServerData(), avObject.getServerData()) &&
-            Objects.equals(operations, avObject.operations) &&
+            Objects.equals(readableOperations(), avObject.readableOperations()) &&
             Objects.equals(acl, avObject.acl);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(getClassName(), getServerData(), operations, acl, isFetchWhenSave());
+    return Objects.hash(getClassName(), getServerData(), readableOperations(), acl, isFetchWhenSave());
   }
 }
@@ -12,10 +12,15 @@ import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
+import io.reactivex.functions.BiFunction;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 
 public class AVQuery<T extends AVObject> implements Cloneable {
   private static final AVLogger LOGGER = LogUtil.getLogger(AVQuery.class);
@@ -30,6 +35,8 @@ public class AVQuery<T extends AVObject> implements Cloneable {
   private java.lang.Boolean isRunning;
   private CachePolicy cachePolicy = CachePolicy.IGNORE_CACHE;
   private long maxCacheAge = -1;
+  private boolean readOnly = false;
+  private static final int DEFAULT_STREAM_PAGE_SIZE = 100;
 
   QueryConditions conditions;
 
@@ -54,6 +61,7 @@ public class AVQuery<T extends AVObject> implements Cloneable {
     query.isRunning = false;
     query.cachePolicy = this.cachePolicy;
     query.maxCacheAge = this.maxCacheAge;
+    query.readOnly = this.readOnly;
     query.conditions = null != this.conditions? this.conditions.clone(): null;
     return query;
   }
@@ -200,6 +208,28 @@ public class AVQuery<T extends AVObject> implements Cloneable {
     return this;
   }
 
+  /**
+   * Return results with compact read-only representation.
+   * it is designed for loading huge amount of objects(eg: analytics job), server data of result objects is
+   * stored in a flat layout with primitive numbers/booleans and field names shared by all objects of the same
+   * class, and operations map is not created until first mutation. result objects can still be modified and
+   * saved, server data is inflated back to a regular map when it is written.
+   *
+   * @return current instance.
+   */
+  public AVQuery<T> readOnly() {
+    this.readOnly = true;
+    return this;
+  }
+
+  /**
+   * Whether return results with compact read-only representation or not.
+   * @return read-only flag.
+   */
+  public boolean isReadOnly() {
+    return this.readOnly;
+  }
+
   /**
    * Clears the cached result for all queries.
    */
@@ -938,6 +968,9 @@ public class AVQuery<T extends AVObject> implements Cloneable {
                 List<T> result = new ArrayList<T>(var1.size());
                 for (AVObject obj: var1) {
                   T tmp = Transformer.transform(obj, getClassName());
+                  if (readOnly) {
+                    tmp.compactForReadOnly();
+                  }
                   result.add(tmp);
                 }
                 return result;
@@ -945,6 +978,105 @@ public class AVQuery<T extends AVObject> implements Cloneable {
             });
   }
 
+  static class CursorState {
+    String lastObjectId = null;
+    boolean finished = false;
+  }
+
+  Map<String, String> assembleCursorParameters(String lastObjectId, int pageSize) {
+    QueryConditions pageConditions = conditions.clone();
+    List<QueryOperation> objectIdOps = pageConditions.getWhere().get(AVObject.KEY_OBJECT_ID);
+    if (null != objectIdOps) {
+      // avoid to change operation list shared with current query.
+      pageConditions.getWhere().put(AVObject.KEY_OBJECT_ID, new LinkedList<QueryOperation>(objectIdOps));
+    }
+    if (!StringUtil.isEmpty(lastObjectId)) {
+      pageConditions.whereGreaterThan(AVObject.KEY_OBJECT_ID, lastObjectId);
+    }
+    pageConditions.setOrder(AVObject.KEY_OBJECT_ID);
+    pageConditions.setLimit(pageSize);
+    pageConditions.setSkip(-1);
+    pageConditions.getParameters().remove("skip");
+    return pageConditions.assembleParameters();
+  }
+
+  List<AVObject> queryCursorPage(Map<String, String> query) {
+    return PaasClient.getStorageClient().queryObjectsWithoutCache(getClassName(), query).blockingFirst();
+  }
+
+  /**
+   * Stream all matched objects in async mode.
+   * @return flowable instance.
+   * @see #stream(int)
+   */
+  public Flowable<T> stream() {
+    return stream(DEFAULT_STREAM_PAGE_SIZE);
+  }
+
+  /**
+   * Stream all matched objects in async mode.
+   * objects are fetched page by page in ascending order of objectId(objectId cursor instead of skip),
+   * next page is prefetched while current page is consumed and no more page is requested until downstream
+   * asks for it, so memory usage keeps flat no matter how big the result set is.
+   *
+   * Caution: order/skip/limit of current query are ignored, and query cache is never used.
+   * objectId greater-than condition of current query bounds the first page, and it's replaced by the cursor
+   * afterwards(cursor is always greater than it), other objectId conditions are kept in every page.
+   *
+   * @param pageSize object count of one page.
+   * @return flowable instance.
+   */
+  public Flowable<T> stream(final int pageSize) {
+    final int limit = pageSize > 0 ? pageSize : DEFAULT_STREAM_PAGE_SIZE;
+    return Flowable.generate(new Callable<CursorState>() {
+      @Override
+      public CursorState call() throws Exception {
+        return new CursorState();
+      }
+    }, new BiFunction<CursorState, Emitter<List<T>>, CursorState>() {
+      @Override
+      public CursorState apply(CursorState state, Emitter<List<T>> emitter) throws Exception {
+        if (state.finished) {
+          emitter.onComplete();
+          return state;
+        }
+        Map<String, String> query = assembleCursorParameters(state.lastObjectId, limit);
+        LOGGER.d("Stream query: " + query);
+        List<AVObject> page = queryCursorPage(query);
+        if (null == page || page.isEmpty()) {
+          emitter.onComplete();
+          return state;
+        }
+        List<T> result = new ArrayList<T>(page.size());
+        for (AVObject obj: page) {
+          T tmp = Transformer.transform(obj, getClassName());
+          if (readOnly) {
+            tmp.compactForReadOnly();
+          }
+          result.add(tmp);
+        }
+        state.lastObjectId = page.get(page.size() - 1).getObjectId();
+        state.finished = page.size() < limit || StringUtil.isEmpty(state.lastObjectId);
+        emitter.onNext(result);
+        return state;
+      }
+    }).subscribeOn(Schedulers.io()).concatMapIterable(new Function<List<T>, Iterable<T>>() {
+      @Override
+      public Iterable<T> apply(List<T> list) throws Exception {
+        return list;
+      }
+    }, 2);
+  }
+
+  /**
+   * Iterate all matched objects in blocking mode.
+   * @return iterable instance.
+   * @see #stream(int)
+   */
+  public Iterable<T> iterate() {
+    return stream(DEFAULT_STREAM_PAGE_SIZE).blockingIterable(DEFAULT_STREAM_PAGE_SIZE);
+  }
+
   /**
    * Get Object with specified objectId in blocking mode.
    * @param objectId object id.
@@ -6,6 +6,7 @@ import cn.leancloud.callback.AVCallback;
 import cn.leancloud.callback.FollowersAndFolloweesCallback;
 import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.core.RequestUserContext;
 import cn.leancloud.ops.Utils;
 import cn.leancloud.sms.AVSMS;
 import cn.leancloud.sms.AVSMSOption;
@@ -748,10 +749,18 @@ public class AVUser extends AVObject {
     return currentUserArchivePath().exists();
   }
 
-  public static synchronized void changeCurrentUser(AVUser newUser, boolean save) {
+  public static void changeCurrentUser(AVUser newUser, boolean save) {
     if (null != newUser) {
       newUser.setPassword(null);
     }
+    if (RequestUserContext.isActive()) {
+      RequestUserContext.setUser(newUser);
+      return;
+    }
+    changeGlobalCurrentUser(newUser, save);
+  }
+
+  private static synchronized void changeGlobalCurrentUser(AVUser newUser, boolean save) {
     File currentUserArchivePath = currentUserArchivePath();
     if (null != newUser && save) {
       String jsonString = newUser.toJSONString();
@@ -772,6 +781,17 @@ public class AVUser extends AVObject {
   }
 
   public static <T extends AVUser> T getCurrentUser(Class<T> userClass) {
+    if (RequestUserContext.isActive()) {
+      AVUser contextUser = RequestUserContext.getUser();
+      if (null == contextUser || userClass.isAssignableFrom(contextUser.getClass())) {
+        // return the instance itself, so that changes on it are kept within request.
+        return userClass.cast(contextUser);
+      }
+      // keep transformed instance in context, so that following calls return the same one.
+      T user = Transformer.transform(contextUser, userClass);
+      RequestUserContext.setUser(user);
+      return user;
+    }
     AVUser user = PaasClient.getStorageClient().getCurrentUser();
     if (null != user && userClass.isAssignableFrom(user.getClass())) {
       return (T) user;
@@ -179,10 +179,10 @@ public class ArchivedRequests {
     content.put(ATTR_INTERNAL_ID, object.internalId());
     content.put(ATTR_OBJECT, object.toJSONString());
     if (AVOSCloud.isEnableCircularReferenceDetect()) {
-      content.put(ATTR_OPERATION, JSON.toJSONString(object.operations.values(), ObjectValueFilter.instance,
+      content.put(ATTR_OPERATION, JSON.toJSONString(object.readableOperations().values(), ObjectValueFilter.instance,
               /*SerializerFeature.WriteClassName, */SerializerFeature.QuoteFieldNames));
     } else {
-      content.put(ATTR_OPERATION, JSON.toJSONString(object.operations.values(), ObjectValueFilter.instance,
+      content.put(ATTR_OPERATION, JSON.toJSONString(object.readableOperations().values(), ObjectValueFilter.instance,
               /*SerializerFeature.WriteClassName, */SerializerFeature.QuoteFieldNames,
               SerializerFeature.DisableCircularReferenceDetect));
     }
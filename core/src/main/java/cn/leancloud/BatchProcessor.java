@@ -0,0 +1,200 @@
+package cn.leancloud;
+
+import cn.leancloud.core.PaasClient;
+import cn.leancloud.utils.AVUtils;
+import cn.leancloud.utils.ErrorUtils;
+import cn.leancloud.utils.LogUtil;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * split batch operations into chunks and dispatch them with bounded parallelism.
+ */
+class BatchProcessor {
+  private static final AVLogger logger = LogUtil.getLogger(BatchProcessor.class);
+
+  static <T> List<List<T>> partition(Collection<? extends T> items, int batchSize) {
+    List<List<T>> result = new ArrayList<>();
+    if (null == items || items.isEmpty()) {
+      return result;
+    }
+    int size = batchSize > 0 ? batchSize : items.size();
+    List<T> current = new ArrayList<>(Math.min(size, items.size()));
+    for (T item : items) {
+      current.add(item);
+      if (current.size() >= size) {
+        result.add(current);
+        current = new ArrayList<>(size);
+      }
+    }
+    if (!current.isEmpty()) {
+      result.add(current);
+    }
+    return result;
+  }
+
+  static void reportProgress(AVBatchOption option, int finished, int total) {
+    if (null == option.getProgressCallback() || total <= 0) {
+      return;
+    }
+    option.getProgressCallback().internalDone(finished * 100 / total, null);
+  }
+
+  static Observable<List<AVFile>> saveFiles(List<AVFile> files, int maxConcurrency) {
+    if (null == files || files.isEmpty()) {
+      return Observable.just((List<AVFile>) new ArrayList<AVFile>());
+    }
+    Set<AVFile> uniqueFiles = Collections.newSetFromMap(new IdentityHashMap<AVFile, Boolean>());
+    uniqueFiles.addAll(files);
+    return Observable.fromIterable(uniqueFiles).flatMap(new Function<AVFile, ObservableSource<AVFile>>() {
+      @Override
+      public ObservableSource<AVFile> apply(AVFile avFile) throws Exception {
+        return avFile.saveInBackground().subscribeOn(Schedulers.io());
+      }
+    }, maxConcurrency).toList().toObservable();
+  }
+
+  static JSONObject generateSaveRequest(List<AVObject> objects) {
+    JSONArray requests = new JSONArray();
+    for (AVObject o : objects) {
+      JSONObject requestBody = o.generateChangedParam();
+      JSONObject objectRequest = new JSONObject();
+      objectRequest.put("method", o.getRequestMethod());
+      objectRequest.put("path", o.getRequestRawEndpoint());
+      objectRequest.put("body", requestBody);
+      requests.add(objectRequest);
+    }
+    JSONObject requestTotal = new JSONObject();
+    requestTotal.put("requests", requests);
+    return requestTotal;
+  }
+
+  static void mergeSaveResults(List<AVObject> objects, JSONArray batchResults) {
+    if (null == batchResults || objects.size() != batchResults.size()) {
+      return;
+    }
+    for (int i = 0; i < batchResults.size(); i++) {
+      JSONObject oneResult = batchResults.getJSONObject(i);
+      AVObject originObject = objects.get(i);
+      if (oneResult.containsKey("success")) {
+        AVUtils.mergeConcurrentMap(originObject.serverData, oneResult.getJSONObject("success"));
+        originObject.onSaveSuccess();
+      } else if (oneResult.containsKey("error")) {
+        originObject.onSaveFailure();
+      }
+    }
+  }
+
+  static JSONObject generateDeleteRequest(List<AVObject> objects) {
+    JSONArray requests = new JSONArray();
+    for (AVObject o : objects) {
+      JSONObject objectRequest = new JSONObject();
+      objectRequest.put("method", "DELETE");
+      objectRequest.put("path", o.getRequestDeleteEndpoint());
+      Map<String, Object> body = o.generateDeleteParam();
+      if (!body.isEmpty()) {
+        objectRequest.put("body", body);
+      }
+      requests.add(objectRequest);
+    }
+    JSONObject requestTotal = new JSONObject();
+    requestTotal.put("requests", requests);
+    return requestTotal;
+  }
+
+  static JSONArray generateErrorResults(int count, Throwable throwable) {
+    AVException exception = throwable instanceof AVException ?
+            (AVException) throwable : ErrorUtils.propagateException(throwable);
+    JSONArray results = new JSONArray(count);
+    for (int i = 0; i < count; i++) {
+      JSONObject error = new JSONObject();
+      error.put("code", exception.getCode());
+      error.put("error", exception.getMessage());
+      JSONObject oneResult = new JSONObject();
+      oneResult.put("error", error);
+      results.add(oneResult);
+    }
+    return results;
+  }
+
+  static Observable<JSONArray> saveObjects(Collection<? extends AVObject> objects, final AVBatchOption option) {
+    return dispatch(objects, option, new Function<List<AVObject>, Observable<JSONArray>>() {
+      @Override
+      public Observable<JSONArray> apply(final List<AVObject> chunk) throws Exception {
+        return PaasClient.getStorageClient().batchSave(generateSaveRequest(chunk))
+                .map(new Function<JSONArray, JSONArray>() {
+                  @Override
+                  public JSONArray apply(JSONArray batchResults) throws Exception {
+                    mergeSaveResults(chunk, batchResults);
+                    return batchResults;
+                  }
+                });
+      }
+    });
+  }
+
+  /**
+   * delete objects(of any class) with batch requests.
+   * failure of one batch request is reported as error results of its objects, never terminates the whole stream.
+   */
+  static Observable<JSONArray> deleteObjects(Collection<? extends AVObject> objects, final AVBatchOption option) {
+    return dispatch(objects, option, new Function<List<AVObject>, Observable<JSONArray>>() {
+      @Override
+      public Observable<JSONArray> apply(final List<AVObject> chunk) throws Exception {
+        return PaasClient.getStorageClient().batchSave(generateDeleteRequest(chunk))
+                .onErrorReturn(new Function<Throwable, JSONArray>() {
+                  @Override
+                  public JSONArray apply(Throwable throwable) throws Exception {
+                    logger.w("failed to delete objects with batch request. cause: " + throwable.getMessage());
+                    return generateErrorResults(chunk.size(), throwable);
+                  }
+                });
+      }
+    });
+  }
+
+  private static Observable<JSONArray> dispatch(Collection<? extends AVObject> objects, final AVBatchOption option,
+                                                final Function<List<AVObject>, Observable<JSONArray>> chunkRequest) {
+    final List<List<AVObject>> chunks = partition(objects, option.getBatchSize());
+    final int total = objects.size();
+    final int maxConcurrency = option.getMaxConcurrency();
+    final AtomicInteger finished = new AtomicInteger(0);
+    logger.d("begin to process " + total + " objects with " + chunks.size() + " batch requests...");
+    return Observable.fromIterable(chunks).concatMapEager(new Function<List<AVObject>, ObservableSource<JSONArray>>() {
+      @Override
+      public ObservableSource<JSONArray> apply(final List<AVObject> chunk) throws Exception {
+        Observable<JSONArray> result = chunkRequest.apply(chunk);
+        if (maxConcurrency > 1) {
+          result = result.subscribeOn(Schedulers.io());
+        }
+        return result.doOnNext(new Consumer<JSONArray>() {
+          @Override
+          public void accept(JSONArray batchResults) throws Exception {
+            reportProgress(option, finished.addAndGet(chunk.size()), total);
+          }
+        });
+      }
+    }, maxConcurrency, 1).reduceWith(new Callable<JSONArray>() {
+      @Override
+      public JSONArray call() throws Exception {
+        return new JSONArray(total);
+      }
+    }, new BiFunction<JSONArray, JSONArray, JSONArray>() {
+      @Override
+      public JSONArray apply(JSONArray all, JSONArray part) throws Exception {
+        all.addAll(part);
+        return all;
+      }
+    }).toObservable();
+  }
+}
@@ -0,0 +1,308 @@
+package cn.leancloud;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * compact server data for read-only query results.
+ *
+ * field names are kept in a key dictionary shared by all objects of the same class, and field values
+ * are stored in flat arrays, int/long/double/boolean values are kept as primitives instead of boxed objects.
+ * the first mutation inflates data into a regular ConcurrentHashMap, so object is still fully functional.
+ */
+class CompactServerData extends AbstractMap<String, Object> implements ConcurrentMap<String, Object> {
+  private static final byte TYPE_ABSENT = 0;
+  private static final byte TYPE_OBJECT = 1;
+  private static final byte TYPE_INT = 2;
+  private static final byte TYPE_LONG = 3;
+  private static final byte TYPE_DOUBLE = 4;
+  private static final byte TYPE_TRUE = 5;
+  private static final byte TYPE_FALSE = 6;
+
+  static class KeyDictionary {
+    private final ConcurrentMap<String, Integer> indexes = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] keys = new String[0];
+
+    int indexOf(String key) {
+      Integer index = indexes.get(key);
+      return null == index ? -1 : index;
+    }
+
+    synchronized int register(String key) {
+      Integer index = indexes.get(key);
+      if (null != index) {
+        return index;
+      }
+      String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+      newKeys[keys.length] = key;
+      keys = newKeys;
+      indexes.put(key, keys.length - 1);
+      return keys.length - 1;
+    }
+
+    String keyAt(int index) {
+      return keys[index];
+    }
+
+    int size() {
+      return keys.length;
+    }
+  }
+
+  private static final ConcurrentMap<String, KeyDictionary> dictionaries = new ConcurrentHashMap<String, KeyDictionary>();
+
+  static KeyDictionary getDictionary(String className) {
+    String name = null == className ? "" : className;
+    KeyDictionary dictionary = dictionaries.get(name);
+    if (null == dictionary) {
+      dictionary = new KeyDictionary();
+      KeyDictionary existed = dictionaries.putIfAbsent(name, dictionary);
+      if (null != existed) {
+        dictionary = existed;
+      }
+    }
+    return dictionary;
+  }
+
+  private final KeyDictionary dictionary;
+  private final byte[] types;
+  private final Object[] objectValues;
+  private final long[] primitiveValues;
+  private final int size;
+  private volatile ConcurrentHashMap<String, Object> inflated = null;
+  private transient Set<Entry<String, Object>> entrySet = null;
+
+  CompactServerData(String className, Map<String, Object> data) {
+    this.dictionary = getDictionary(className);
+    int[] slots = new int[data.size()];
+    Object[] values = new Object[data.size()];
+    int count = 0;
+    int length = 0;
+    boolean hasObject = false;
+    boolean hasPrimitive = false;
+    for (Map.Entry<String, Object> entry : data.entrySet()) {
+      if (null == entry.getKey() || null == entry.getValue()) {
+        continue;
+      }
+      int slot = dictionary.register(entry.getKey());
+      slots[count] = slot;
+      values[count] = entry.getValue();
+      length = Math.max(length, slot + 1);
+      byte type = typeOf(entry.getValue());
+      hasObject |= TYPE_OBJECT == type;
+      hasPrimitive |= TYPE_INT == type || TYPE_LONG == type || TYPE_DOUBLE == type;
+      count++;
+    }
+    this.size = count;
+    this.types = new byte[length];
+    this.objectValues = hasObject ? new Object[length] : null;
+    this.primitiveValues = hasPrimitive ? new long[length] : null;
+    for (int i = 0; i < count; i++) {
+      int slot = slots[i];
+      Object value = values[i];
+      byte type = typeOf(value);
+      types[slot] = type;
+      switch (type) {
+        case TYPE_INT:
+        case TYPE_LONG:
+          primitiveValues[slot] = ((Number) value).longValue();
+          break;
+        case TYPE_DOUBLE:
+          primitiveValues[slot] = Double.doubleToRawLongBits((Double) value);
+          break;
+        case TYPE_OBJECT:
+          objectValues[slot] = value;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private static byte typeOf(Object value) {
+    if (value instanceof Integer) {
+      return TYPE_INT;
+    } else if (value instanceof Long) {
+      return TYPE_LONG;
+    } else if (value instanceof Double) {
+      return TYPE_DOUBLE;
+    } else if (value instanceof Boolean) {
+      return ((Boolean) value) ? TYPE_TRUE : TYPE_FALSE;
+    }
+    return TYPE_OBJECT;
+  }
+
+  private Object valueAt(int slot) {
+    switch (types[slot]) {
+      case TYPE_INT:
+        return Integer.valueOf((int) primitiveValues[slot]);
+      case TYPE_LONG:
+        return Long.valueOf(primitiveValues[slot]);
+      case TYPE_DOUBLE:
+        return Double.valueOf(Double.longBitsToDouble(primitiveValues[slot]));
+      case TYPE_TRUE:
+        return Boolean.TRUE;
+      case TYPE_FALSE:
+        return Boolean.FALSE;
+      case TYPE_OBJECT:
+        return objectValues[slot];
+      default:
+        return null;
+    }
+  }
+
+  private int slotOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    int slot = dictionary.indexOf((String) key);
+    if (slot < 0 || slot >= types.length || TYPE_ABSENT == types[slot]) {
+      return -1;
+    }
+    return slot;
+  }
+
+  private ConcurrentHashMap<String, Object> inflate() {
+    ConcurrentHashMap<String, Object> result = inflated;
+    if (null == result) {
+      synchronized (this) {
+        result = inflated;
+        if (null == result) {
+          result = new ConcurrentHashMap<String, Object>(Math.max(16, size * 2));
+          for (int i = 0; i < types.length; i++) {
+            if (TYPE_ABSENT != types[i]) {
+              result.put(dictionary.keyAt(i), valueAt(i));
+            }
+          }
+          inflated = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  boolean isInflated() {
+    return null != inflated;
+  }
+
+  @Override
+  public int size() {
+    ConcurrentHashMap<String, Object> map = inflated;
+    return null != map ? map.size() : size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    ConcurrentHashMap<String, Object> map = inflated;
+    if (null != map) {
+      return map.containsKey(key);
+    }
+    return slotOf(key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    ConcurrentHashMap<String, Object> map = inflated;
+    if (null != map) {
+      return map.get(key);
+    }
+    int slot = slotOf(key);
+    return slot < 0 ? null : valueAt(slot);
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    return inflate().put(key, value);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    return inflate().remove(key);
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ?> m) {
+    inflate().putAll(m);
+  }
+
+  @Override
+  public void clear() {
+    inflate().clear();
+  }
+
+  @Override
+  public Object putIfAbsent(String key, Object value) {
+    return inflate().putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    return inflate().remove(key, value);
+  }
+
+  @Override
+  public boolean replace(String key, Object oldValue, Object newValue) {
+    return inflate().replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public Object replace(String key, Object value) {
+    return inflate().replace(key, value);
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    ConcurrentHashMap<String, Object> map = inflated;
+    if (null != map) {
+      return map.entrySet();
+    }
+    if (null == entrySet) {
+      entrySet = new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          ConcurrentHashMap<String, Object> map = inflated;
+          if (null != map) {
+            return map.entrySet().iterator();
+          }
+          return new Iterator<Entry<String, Object>>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+              while (from < types.length && TYPE_ABSENT == types[from]) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return next < types.length;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int slot = next;
+              next = advance(next + 1);
+              return new SimpleImmutableEntry<String, Object>(dictionary.keyAt(slot), valueAt(slot));
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException("remove");
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return CompactServerData.this.size();
+        }
+      };
+    }
+    return entrySet;
+  }
+}
@@ -51,10 +51,13 @@ public class ObjectTypeAdapter implements ObjectSerializer, ObjectDeserializer{
     writer.writeString(avObject.getClassName());
     writer.write(',');
     writer.writeFieldName(KEY_SERVERDATA, false);
+    // compact server data is always written as ConcurrentHashMap, which is required by deserializer.
+    Map<String, Object> serverData = avObject.serverData instanceof ConcurrentHashMap ?
+            avObject.serverData : new ConcurrentHashMap<String, Object>(avObject.serverData);
     if (AVOSCloud.isEnableCircularReferenceDetect()) {
-      writer.write(JSON.toJSONString(avObject.serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName));
+      writer.write(JSON.toJSONString(serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName));
     } else {
-      writer.write(JSON.toJSONString(avObject.serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName,
+      writer.write(JSON.toJSONString(serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName,
               SerializerFeature.DisableCircularReferenceDetect));
     }
 
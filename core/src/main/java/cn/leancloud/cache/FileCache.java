@@ -5,13 +5,18 @@ import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.utils.StringUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
 
+/**
+ * cache of file content, whose size is bounded by maxCacheBytes with LRU eviction.
+ *
+ * data saved by AVFile(name, data) is pinned until it has been uploaded, so it's never evicted before that.
+ */
 public class FileCache extends LocalStorage{
   private static final int MAX_FILE_BUF_SIZE = 4 * 1024 * 1024;
   private static FileCache INSTANCE = null;
+  private static long maxCacheBytes = 0;
+
+  private final FileCacheIndex index;
 
   public static synchronized FileCache getIntance() {
     if (null == INSTANCE) {
@@ -20,20 +25,126 @@ public class FileCache extends LocalStorage{
     return INSTANCE;
   }
 
+  /**
+   * config byte budget of file cache, least recently used files are deleted when it's exceeded.
+   * @param maxBytes max bytes, zero or negative means unlimited(default).
+   */
+  public static synchronized void configMaxCacheBytes(long maxBytes) {
+    maxCacheBytes = maxBytes;
+    if (null != INSTANCE && null != INSTANCE.index) {
+      INSTANCE.index.setMaxBytes(maxBytes);
+    }
+  }
+
+  public static synchronized long getMaxCacheBytes() {
+    return maxCacheBytes;
+  }
+
   private FileCache() {
     super(AppConfiguration.getFileCacheDir());
+    String baseDir = getBaseDir();
+    this.index = null == baseDir ? null : new FileCacheIndex(new File(baseDir), maxCacheBytes);
+  }
+
+  /**
+   * get cache index, which provides metrics such as hit rate, bytes served and evictions.
+   * @return index instance, null if local cache is disabled.
+   */
+  public FileCacheIndex getIndex() {
+    return this.index;
+  }
+
+  @Override
+  public String saveData(String key, byte[] content) {
+    String path = super.saveData(key, content);
+    if (null != path && null != index) {
+      index.add(key, content.length);
+      if (index.getPinCount(key) <= 0) {
+        index.pin(key);
+      }
+    }
+    return path;
   }
 
   public String saveLocalFile(String name, File localFile) {
-    return super.saveFile(name, localFile);
+    String path = super.saveFile(name, localFile);
+    if (null != path && null != index) {
+      index.add(name, localFile.length());
+    }
+    return path;
   }
 
   public File getCacheFile(String url) {
     try {
       String urlMd5 = MD5.computeMD5(url.getBytes("UTF-8"));
-      return super.getCacheFile(urlMd5);
+      File cacheFile = super.getCacheFile(urlMd5);
+      if (null != cacheFile && null != index && !index.recordAccess(urlMd5) && cacheFile.exists()) {
+        index.add(urlMd5, cacheFile.length());
+      }
+      return cacheFile;
     } catch (Exception ex) {
       return null;
     }
   }
+
+  /**
+   * add file which has been written to cache directory directly, such as downloaded file.
+   * @param file cached file.
+   */
+  public void addCachedFile(File file) {
+    String key = getKeyOfCachedFile(file);
+    if (null != key && file.isFile()) {
+      index.add(key, file.length());
+    }
+  }
+
+  /**
+   * unpin file which is saved by {@link #saveData(String, byte[])}, so that it can be evicted.
+   * @param path file path, which is ignored if it's not in cache directory.
+   */
+  public void unpinLocalFile(String path) {
+    if (StringUtil.isEmpty(path)) {
+      return;
+    }
+    String key = getKeyOfCachedFile(new File(path));
+    if (null != key) {
+      index.unpin(key);
+    }
+  }
+
+  private String getKeyOfCachedFile(File file) {
+    if (null == index || null == file) {
+      return null;
+    }
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (null == parent || !parent.equals(new File(getBaseDir()).getAbsoluteFile())) {
+      return null;
+    }
+    return file.getName();
+  }
+
+  @Override
+  public void clearCachedFile(String key) {
+    if (null != index) {
+      index.remove(key);
+    }
+    super.clearCachedFile(key);
+  }
+
+  /**
+   * delete unpinned files which are not accessed within specified days, days of 0 means all unpinned files.
+   * @param days days.
+   */
+  @Override
+  public void clearCacheMoreThanDays(int days) {
+    if (null == index) {
+      super.clearCacheMoreThanDays(days);
+      return;
+    }
+    long curTime = System.currentTimeMillis();
+    if ( days > 0) {
+      curTime -= 86400000L * days; // 86400000 is one day.
+    }
+    index.removeAccessedBefore(curTime + 1);
+  }
 }
@@ -0,0 +1,361 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.io.File;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * index of files within a cache directory, which records size, last access time and pin count of every file.
+ * entries are kept in LRU order, and the least recently used unpinned file is deleted when total size exceeds budget.
+ *
+ * access time is tracked in index only (file mtime is never touched), and index is saved to a single
+ * snapshot file at most once per SAVE_INTERVAL_MILLIS. snapshot is reconciled with directory listing when loaded,
+ * so a stale or lost snapshot only costs a stat of files which are not indexed.
+ */
+public class FileCacheIndex {
+  private static final AVLogger LOGGER = LogUtil.getLogger(FileCacheIndex.class);
+
+  public static final String INDEX_FILE_NAME = ".cache_index";
+  static final long SAVE_INTERVAL_MILLIS = 5000;
+  private static final String[] IGNORED_SUFFIXES = {".part", ".meta", ".tmp"};
+
+  static class Entry {
+    long size;
+    long lastAccess;
+    int pinCount;
+
+    Entry(long size, long lastAccess, int pinCount) {
+      this.size = size;
+      this.lastAccess = lastAccess;
+      this.pinCount = pinCount;
+    }
+  }
+
+  private final File dir;
+  private final File indexFile;
+  // kept in access order explicitly, so that looking up pin count doesn't affect recency.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+  private long maxBytes;
+  private long currentBytes = 0;
+  private boolean dirty = false;
+  private long lastSavedAt = 0;
+
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong missCount = new AtomicLong(0);
+  private final AtomicLong bytesServed = new AtomicLong(0);
+  private final AtomicLong evictionCount = new AtomicLong(0);
+  private final AtomicLong evictedBytes = new AtomicLong(0);
+
+  /**
+   * @param dir cache directory.
+   * @param maxBytes byte budget, zero or negative means unlimited.
+   */
+  public FileCacheIndex(File dir, long maxBytes) {
+    this.dir = dir;
+    this.indexFile = new File(dir, INDEX_FILE_NAME);
+    this.maxBytes = maxBytes;
+    load();
+  }
+
+  static boolean isIndexable(String name) {
+    if (StringUtil.isEmpty(name) || name.equals(INDEX_FILE_NAME) || name.startsWith(INDEX_FILE_NAME)) {
+      return false;
+    }
+    for (String suffix : IGNORED_SUFFIXES) {
+      if (name.endsWith(suffix)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private synchronized void load() {
+    entries.clear();
+    currentBytes = 0;
+    Map<String, Entry> saved = new LinkedHashMap<String, Entry>();
+    String content = indexFile.exists() ? PersistenceUtil.sharedInstance().readContentFromFile(indexFile) : null;
+    if (!StringUtil.isEmpty(content)) {
+      for (String line : content.split("\n")) {
+        String[] fields = line.split("\t");
+        if (fields.length != 4) {
+          continue;
+        }
+        try {
+          saved.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+              Integer.parseInt(fields[3])));
+        } catch (NumberFormatException ex) {
+          LOGGER.w("skip corrupt index record: " + line);
+        }
+      }
+    }
+    String[] names = dir.list();
+    if (null == names) {
+      names = new String[0];
+    }
+    List<String> unindexed = new ArrayList<String>();
+    for (String name : names) {
+      if (!isIndexable(name)) {
+        continue;
+      }
+      if (!saved.containsKey(name)) {
+        unindexed.add(name);
+      }
+    }
+    Set<String> existing = new HashSet<String>(Arrays.asList(names));
+    // snapshot is saved in LRU order, so insertion keeps access order.
+    for (Map.Entry<String, Entry> entry : saved.entrySet()) {
+      if (existing.contains(entry.getKey())) {
+        entries.put(entry.getKey(), entry.getValue());
+        currentBytes += entry.getValue().size;
+      }
+    }
+    if (!unindexed.isEmpty()) {
+      List<Map.Entry<String, Entry>> found = new ArrayList<Map.Entry<String, Entry>>(unindexed.size());
+      for (String name : unindexed) {
+        File file = new File(dir, name);
+        if (file.isFile()) {
+          found.add(new AbstractMap.SimpleEntry<String, Entry>(name,
+              new Entry(file.length(), file.lastModified(), 0)));
+        }
+      }
+      Collections.sort(found, new Comparator<Map.Entry<String, Entry>>() {
+        @Override
+        public int compare(Map.Entry<String, Entry> o1, Map.Entry<String, Entry> o2) {
+          long diff = o1.getValue().lastAccess - o2.getValue().lastAccess;
+          return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+      });
+      // files which are never accessed after unclean shutdown are treated as least recently used.
+      LinkedHashMap<String, Entry> ordered = new LinkedHashMap<String, Entry>();
+      for (Map.Entry<String, Entry> entry : found) {
+        ordered.put(entry.getKey(), entry.getValue());
+        currentBytes += entry.getValue().size;
+      }
+      ordered.putAll(entries);
+      entries.clear();
+      entries.putAll(ordered);
+    }
+    dirty = !unindexed.isEmpty() || saved.size() != entries.size();
+    LOGGER.d("load file cache index. entries=" + entries.size() + ", bytes=" + currentBytes
+        + ", unindexed=" + unindexed.size());
+    trimToSize(null);
+    saveIfNeeded(true);
+  }
+
+  /**
+   * change byte budget, zero or negative means unlimited.
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    trimToSize(null);
+    saveIfNeeded(false);
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * record an access of cached file.
+   * @param key file name.
+   * @return true if file is cached.
+   */
+  public synchronized boolean recordAccess(String key) {
+    Entry entry = null == key ? null : entries.remove(key);
+    if (null == entry) {
+      missCount.incrementAndGet();
+      return false;
+    }
+    entries.put(key, entry);
+    entry.lastAccess = System.currentTimeMillis();
+    hitCount.incrementAndGet();
+    bytesServed.addAndGet(entry.size);
+    dirty = true;
+    saveIfNeeded(false);
+    return true;
+  }
+
+  /**
+   * add or update a cached file, which is regarded as the most recently used.
+   * @param key file name.
+   * @param size file size.
+   */
+  public synchronized void add(String key, long size) {
+    if (!isIndexable(key)) {
+      return;
+    }
+    Entry old = entries.remove(key);
+    int pinCount = 0;
+    if (null != old) {
+      currentBytes -= old.size;
+      pinCount = old.pinCount;
+    }
+    entries.put(key, new Entry(size, System.currentTimeMillis(), pinCount));
+    currentBytes += size;
+    dirty = true;
+    // file which is just added must be readable by caller, even though it's larger than budget.
+    trimToSize(key);
+    saveIfNeeded(false);
+  }
+
+  public synchronized void remove(String key) {
+    Entry old = null == key ? null : entries.remove(key);
+    if (null != old) {
+      currentBytes -= old.size;
+      dirty = true;
+      saveIfNeeded(false);
+    }
+  }
+
+  /**
+   * pinned file is never evicted until it's unpinned as many times as pinned.
+   * @return false if file is not cached.
+   */
+  public synchronized boolean pin(String key) {
+    Entry entry = null == key ? null : entries.get(key);
+    if (null == entry) {
+      return false;
+    }
+    entry.pinCount++;
+    dirty = true;
+    saveIfNeeded(false);
+    return true;
+  }
+
+  public synchronized void unpin(String key) {
+    Entry entry = null == key ? null : entries.get(key);
+    if (null == entry || entry.pinCount <= 0) {
+      return;
+    }
+    entry.pinCount--;
+    dirty = true;
+    trimToSize(null);
+    saveIfNeeded(false);
+  }
+
+  synchronized int getPinCount(String key) {
+    Entry entry = null == key ? null : entries.get(key);
+    return null == entry ? 0 : entry.pinCount;
+  }
+
+  /**
+   * delete unpinned files which are not accessed since specified timestamp.
+   * @param timestamp timestamp in milliseconds.
+   */
+  public synchronized void removeAccessedBefore(long timestamp) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Entry> entry = it.next();
+      if (entry.getValue().pinCount <= 0 && entry.getValue().lastAccess < timestamp) {
+        PersistenceUtil.sharedInstance().deleteFile(new File(dir, entry.getKey()));
+        currentBytes -= entry.getValue().size;
+        it.remove();
+        dirty = true;
+      }
+    }
+    saveIfNeeded(true);
+  }
+
+  public synchronized boolean contains(String key) {
+    return null != key && entries.containsKey(key);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long byteSize() {
+    return currentBytes;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return hit rate between 0 and 1, 0 if there is no access.
+   */
+  public double getHitRate() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public long getEvictedBytes() {
+    return evictedBytes.get();
+  }
+
+  /**
+   * save index snapshot immediately if there is any change.
+   */
+  public synchronized void flush() {
+    saveIfNeeded(true);
+  }
+
+  private void trimToSize(String retainedKey) {
+    if (maxBytes <= 0) {
+      return;
+    }
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext() && currentBytes > maxBytes) {
+      Map.Entry<String, Entry> eldest = it.next();
+      if (eldest.getValue().pinCount > 0 || eldest.getKey().equals(retainedKey)) {
+        continue;
+      }
+      PersistenceUtil.sharedInstance().deleteFile(new File(dir, eldest.getKey()));
+      currentBytes -= eldest.getValue().size;
+      it.remove();
+      evictionCount.incrementAndGet();
+      evictedBytes.addAndGet(eldest.getValue().size);
+      dirty = true;
+      LOGGER.d("evict cached file: " + eldest.getKey());
+    }
+  }
+
+  private void saveIfNeeded(boolean force) {
+    long now = System.currentTimeMillis();
+    if (!dirty || (!force && now - lastSavedAt < SAVE_INTERVAL_MILLIS)) {
+      return;
+    }
+    StringBuilder builder = new StringBuilder(entries.size() * 64);
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      Entry value = entry.getValue();
+      builder.append(entry.getKey()).append('\t').append(value.size).append('\t')
+          .append(value.lastAccess).append('\t').append(value.pinCount).append('\n');
+    }
+    File tmpFile = new File(dir, INDEX_FILE_NAME + ".tmp");
+    if (PersistenceUtil.sharedInstance().saveContentToFile(builder.toString(), tmpFile)
+        && (tmpFile.renameTo(indexFile) || (indexFile.delete() && tmpFile.renameTo(indexFile)))) {
+      dirty = false;
+      lastSavedAt = now;
+    } else {
+      LOGGER.w("failed to save file cache index.");
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * file backed SystemSetting for jvm deployments.
+ *
+ * every key zone is kept in a separated ConcurrentHashMap and persisted into its own append-only log file,
+ * so one mutation costs a single line write instead of rewriting the whole zone. the log is compacted into
+ * a snapshot once obsolete records exceed live entries, and replayed when the zone is accessed at first time.
+ *
+ * usage: AppConfiguration.configCacheSettings(..., new FileSystemSetting("./persistFiles/settings/"));
+ */
+public class FileSystemSetting implements SystemSetting {
+  private static final AVLogger LOGGER = LogUtil.getLogger(FileSystemSetting.class);
+
+  public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+  static final String LOG_FILE_SUFFIX = ".log";
+  private static final String COMPACT_FILE_SUFFIX = ".compact";
+
+  private static final String KEY_OP = "o";
+  private static final String KEY_KEY = "k";
+  private static final String KEY_TYPE = "t";
+  private static final String KEY_VALUE = "v";
+  private static final String OP_PUT = "p";
+  private static final String OP_REMOVE = "r";
+  private static final String TYPE_BOOLEAN = "b";
+  private static final String TYPE_INTEGER = "i";
+  private static final String TYPE_FLOAT = "f";
+  private static final String TYPE_LONG = "l";
+  private static final String TYPE_STRING = "s";
+
+  private final File directory;
+  private final int compactThreshold;
+  private final ConcurrentMap<String, Zone> zones = new ConcurrentHashMap<String, Zone>();
+
+  public FileSystemSetting(String directory) {
+    this(directory, DEFAULT_COMPACT_THRESHOLD);
+  }
+
+  /**
+   * constructor.
+   * @param directory directory for log files.
+   * @param compactThreshold minimum count of obsolete log records to trigger compaction.
+   */
+  public FileSystemSetting(String directory, int compactThreshold) {
+    this.directory = new File(directory);
+    if (!this.directory.exists()) {
+      this.directory.mkdirs();
+    }
+    this.compactThreshold = Math.max(1, compactThreshold);
+  }
+
+  class Zone {
+    private final ConcurrentHashMap<String, Object> data = new ConcurrentHashMap<String, Object>();
+    private final File logFile;
+    private OutputStream output = null;
+    private int recordCount = 0;
+
+    Zone(String name) {
+      this.logFile = new File(directory, zoneFileName(name));
+      replay();
+    }
+
+    private void replay() {
+      if (!logFile.exists()) {
+        return;
+      }
+      BufferedReader reader = null;
+      try {
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), "utf-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (StringUtil.isEmpty(line)) {
+            continue;
+          }
+          try {
+            apply(JSON.parseObject(line));
+            recordCount++;
+          } catch (Exception ex) {
+            // half-written record caused by crash, just skip it.
+            LOGGER.w("skip invalid setting record in " + logFile.getName());
+          }
+        }
+      } catch (IOException ex) {
+        LOGGER.w("failed to load setting file: " + logFile.getAbsolutePath() + ", cause: " + ex.getMessage());
+      } finally {
+        PersistenceUtil.closeQuietly(reader);
+      }
+    }
+
+    private void apply(JSONObject record) {
+      String key = record.getString(KEY_KEY);
+      if (OP_REMOVE.equals(record.getString(KEY_OP))) {
+        data.remove(key);
+        return;
+      }
+      Object value = decodeValue(record.getString(KEY_TYPE), record.getString(KEY_VALUE));
+      if (null != key && null != value) {
+        data.put(key, value);
+      }
+    }
+
+    Object get(String key) {
+      return data.get(key);
+    }
+
+    Map<String, Object> getAll() {
+      return new HashMap<String, Object>(data);
+    }
+
+    synchronized void put(String key, Object value) {
+      data.put(key, value);
+      append(encodeRecord(OP_PUT, key, value));
+    }
+
+    synchronized void remove(String key) {
+      if (null == data.remove(key)) {
+        return;
+      }
+      append(encodeRecord(OP_REMOVE, key, null));
+    }
+
+    synchronized void clear() {
+      data.clear();
+      close();
+      recordCount = 0;
+      if (logFile.exists() && !logFile.delete()) {
+        LOGGER.w("failed to delete setting file: " + logFile.getAbsolutePath());
+      }
+    }
+
+    synchronized void close() {
+      PersistenceUtil.closeQuietly(output);
+      output = null;
+    }
+
+    private void append(String record) {
+      try {
+        if (null == output) {
+          output = new FileOutputStream(logFile, true);
+        }
+        output.write(record.getBytes("utf-8"));
+        recordCount++;
+      } catch (IOException ex) {
+        LOGGER.w("failed to append setting record to " + logFile.getName() + ", cause: " + ex.getMessage());
+        close();
+        return;
+      }
+      if (recordCount - data.size() >= compactThreshold) {
+        compact();
+      }
+    }
+
+    private void compact() {
+      File compactFile = new File(directory, logFile.getName() + COMPACT_FILE_SUFFIX);
+      StringBuilder content = new StringBuilder();
+      for (Map.Entry<String, Object> entry : data.entrySet()) {
+        content.append(encodeRecord(OP_PUT, entry.getKey(), entry.getValue()));
+      }
+      OutputStream compactOutput = null;
+      try {
+        compactOutput = new FileOutputStream(compactFile);
+        compactOutput.write(content.toString().getBytes("utf-8"));
+        compactOutput.close();
+        compactOutput = null;
+        close();
+        if (!compactFile.renameTo(logFile)) {
+          // renameTo can't replace existed file on some platforms.
+          logFile.delete();
+          if (!compactFile.renameTo(logFile)) {
+            throw new IOException("failed to rename " + compactFile.getName());
+          }
+        }
+        recordCount = data.size();
+        LOGGER.d("compacted setting file " + logFile.getName() + ", live records: " + recordCount);
+      } catch (IOException ex) {
+        LOGGER.w("failed to compact setting file " + logFile.getName() + ", cause: " + ex.getMessage());
+        PersistenceUtil.closeQuietly(compactOutput);
+        compactFile.delete();
+      }
+    }
+
+    int getRecordCount() {
+      return recordCount;
+    }
+  }
+
+  static String zoneFileName(String keyZone) {
+    StringBuilder sb = new StringBuilder(keyZone.length() + LOG_FILE_SUFFIX.length());
+    for (int i = 0; i < keyZone.length(); i++) {
+      char c = keyZone.charAt(i);
+      if (Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '_') {
+        sb.append(c);
+      } else {
+        sb.append('%').append(Integer.toHexString(c));
+      }
+    }
+    return sb.append(LOG_FILE_SUFFIX).toString();
+  }
+
+  private static String encodeRecord(String op, String key, Object value) {
+    JSONObject record = new JSONObject(4);
+    record.put(KEY_OP, op);
+    record.put(KEY_KEY, key);
+    if (null != value) {
+      record.put(KEY_TYPE, typeOf(value));
+      record.put(KEY_VALUE, String.valueOf(value));
+    }
+    return record.toJSONString() + "\n";
+  }
+
+  private static String typeOf(Object value) {
+    if (value instanceof Boolean) {
+      return TYPE_BOOLEAN;
+    } else if (value instanceof Integer) {
+      return TYPE_INTEGER;
+    } else if (value instanceof Float) {
+      return TYPE_FLOAT;
+    } else if (value instanceof Long) {
+      return TYPE_LONG;
+    }
+    return TYPE_STRING;
+  }
+
+  private static Object decodeValue(String type, String value) {
+    if (null == value) {
+      return null;
+    }
+    if (TYPE_BOOLEAN.equals(type)) {
+      return Boolean.valueOf(value);
+    } else if (TYPE_INTEGER.equals(type)) {
+      return Integer.valueOf(value);
+    } else if (TYPE_FLOAT.equals(type)) {
+      return Float.valueOf(value);
+    } else if (TYPE_LONG.equals(type)) {
+      return Long.valueOf(value);
+    }
+    return value;
+  }
+
+  Zone getZone(String keyZone) {
+    String name = null == keyZone ? "" : keyZone;
+    Zone zone = zones.get(name);
+    if (null == zone) {
+      synchronized (zones) {
+        zone = zones.get(name);
+        if (null == zone) {
+          zone = new Zone(name);
+          zones.put(name, zone);
+        }
+      }
+    }
+    return zone;
+  }
+
+  public boolean getBoolean(String keyZone, String key, boolean defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  public int getInteger(String keyZone, String key, int defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Integer ? (Integer) value : defaultValue;
+  }
+
+  public float getFloat(String keyZone, String key, float defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Float ? (Float) value : defaultValue;
+  }
+
+  public long getLong(String keyZone, String key, long defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Long ? (Long) value : defaultValue;
+  }
+
+  public String getString(String keyZone, String key, String defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof String ? (String) value : defaultValue;
+  }
+
+  public Map<String, Object> getAll(String keyZone) {
+    return getZone(keyZone).getAll();
+  }
+
+  public void saveBoolean(String keyZone, String key, boolean value) {
+    getZone(keyZone).put(key, value);
+  }
+
+  public void saveInteger(String keyZone, String key, int value) {
+    getZone(keyZone).put(key, value);
+  }
+
+  public void saveFloat(String keyZone, String key, float value) {
+    getZone(keyZone).put(key, value);
+  }
+
+  public void saveLong(String keyZone, String key, long value) {
+    getZone(keyZone).put(key, value);
+  }
+
+  public void saveString(String keyZone, String key, String value) {
+    if (null == value) {
+      removeKey(keyZone, key);
+    } else {
+      getZone(keyZone).put(key, value);
+    }
+  }
+
+  public void removeKey(String keyZone, String key) {
+    getZone(keyZone).remove(key);
+  }
+
+  public void removeKeyZone(String keyZone) {
+    getZone(keyZone).clear();
+  }
+
+  /**
+   * release all opened log files, settings can still be used after that.
+   */
+  public void close() {
+    for (Zone zone : zones.values()) {
+      zone.close();
+    }
+  }
+}
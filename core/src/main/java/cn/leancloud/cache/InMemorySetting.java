@@ -2,70 +2,75 @@ package cn.leancloud.cache;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class InMemorySetting implements SystemSetting {
-  private Map<String, Object> dataMap = new HashMap<>();
+  private ConcurrentMap<String, ConcurrentMap<String, Object>> zoneMap =
+          new ConcurrentHashMap<String, ConcurrentMap<String, Object>>();
 
-  public boolean getBoolean(String keyZone, String key, boolean defaultValue) {
-    if (dataMap.containsKey(key)) {
-      return (boolean)dataMap.get(key);
-    } else {
-      return defaultValue;
+  private ConcurrentMap<String, Object> getZone(String keyZone) {
+    String name = null == keyZone ? "" : keyZone;
+    ConcurrentMap<String, Object> dataMap = zoneMap.get(name);
+    if (null == dataMap) {
+      dataMap = new ConcurrentHashMap<String, Object>();
+      ConcurrentMap<String, Object> existed = zoneMap.putIfAbsent(name, dataMap);
+      if (null != existed) {
+        dataMap = existed;
+      }
     }
+    return dataMap;
+  }
+
+  public boolean getBoolean(String keyZone, String key, boolean defaultValue) {
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
   }
   public int getInteger(String keyZone, String key, int defaultValue) {
-    if (dataMap.containsKey(key)) {
-      return (int)dataMap.get(key);
-    } else {
-      return defaultValue;
-    }
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Integer ? (Integer) value : defaultValue;
   }
   public float getFloat(String keyZone, String key, float defaultValue) {
-    if (dataMap.containsKey(key)) {
-      return (float)dataMap.get(key);
-    } else {
-      return defaultValue;
-    }
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Float ? (Float) value : defaultValue;
   }
   public long getLong(String keyZone, String key, long defaultValue) {
-    if (dataMap.containsKey(key)) {
-      return (long)dataMap.get(key);
-    } else {
-      return defaultValue;
-    }
+    Object value = getZone(keyZone).get(key);
+    return value instanceof Long ? (Long) value : defaultValue;
   }
   public String getString(String keyZone, String key, String defaultValue) {
-    if (dataMap.containsKey(key)) {
-      return (String)dataMap.get(key);
-    } else {
-      return defaultValue;
-    }
+    Object value = getZone(keyZone).get(key);
+    return value instanceof String ? (String) value : defaultValue;
   }
 
   public Map<String, Object> getAll(String keyZone) {
-    return this.dataMap;
+    return new HashMap<String, Object>(getZone(keyZone));
   }
 
   public void saveBoolean(String keyZone, String key, boolean value) {
-    this.dataMap.put(key, value);
+    getZone(keyZone).put(key, value);
   }
   public void saveInteger(String keyZone, String key, int value) {
-    this.dataMap.put(key, value);
+    getZone(keyZone).put(key, value);
   }
   public void saveFloat(String keyZone, String key, float value) {
-    this.dataMap.put(key, value);
+    getZone(keyZone).put(key, value);
   }
   public void saveLong(String keyZone, String key, long value) {
-    this.dataMap.put(key, value);
+    getZone(keyZone).put(key, value);
   }
   public void saveString(String keyZone, String key, String value) {
-    this.dataMap.put(key, value);
+    if (null == value) {
+      getZone(keyZone).remove(key);
+    } else {
+      getZone(keyZone).put(key, value);
+    }
   }
 
   public void removeKey(String keyZone, String key) {
-    this.dataMap.remove(key);
+    getZone(keyZone).remove(key);
   }
   public void removeKeyZone(String keyZone) {
-    //
+    zoneMap.remove(null == keyZone ? "" : keyZone);
   }
 }
@@ -27,6 +27,13 @@ public class LocalStorage {
     }
   }
 
+  /**
+   * @return base directory ending with '/', null if local cache is disabled.
+   */
+  String getBaseDir() {
+    return disableLocalCache ? null : baseDir;
+  }
+
   public String saveData(String key, byte[] content) {
     if (disableLocalCache) {
       return null;
@@ -2,6 +2,7 @@ package cn.leancloud.cache;
 
 import cn.leancloud.AVLogger;
 import cn.leancloud.AVObject;
+import cn.leancloud.Transformer;
 import cn.leancloud.codec.MD5;
 import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.query.AVQueryResult;
@@ -23,7 +24,10 @@ import java.util.concurrent.FutureTask;
 public class QueryResultCache extends LocalStorage {
   private static final AVLogger LOGGER = LogUtil.getLogger(QueryResultCache.class);
   private static QueryResultCache INSTANCE = null;
+  private static int memoryCacheMaxEntries = QueryResultMemoryCache.DEFAULT_MAX_ENTRIES;
+  private static long memoryCacheMaxBytes = QueryResultMemoryCache.DEFAULT_MAX_BYTES;
   private ExecutorService executor = Executors.newFixedThreadPool(2);
+  private QueryResultMemoryCache memoryCache = new QueryResultMemoryCache(memoryCacheMaxEntries, memoryCacheMaxBytes);
 
   public static synchronized QueryResultCache getInstance() {
     if (null == INSTANCE) {
@@ -32,12 +36,27 @@ public class QueryResultCache extends LocalStorage {
     return INSTANCE;
   }
 
+  public static synchronized void configMemoryCache(int maxEntries, long maxBytes) {
+    memoryCacheMaxEntries = maxEntries;
+    memoryCacheMaxBytes = maxBytes;
+    if (null != INSTANCE) {
+      INSTANCE.memoryCache.setCapacity(maxEntries, maxBytes);
+    }
+  }
+
   private QueryResultCache() {
     super(AppConfiguration.getQueryResultCacheDir());
   }
 
+  public QueryResultMemoryCache getMemoryCache() {
+    return this.memoryCache;
+  }
+
   public String cacheResult(String key, String content) {
-    LOGGER.d("save cache. key=" + key + ", value=" + content);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.d("save cache. key=" + key + ", value=" + content);
+    }
+    memoryCache.remove(key);
     try {
       return super.saveData(key, content.getBytes("UTF-8"));
     } catch (Exception ex) {
@@ -46,6 +65,60 @@ public class QueryResultCache extends LocalStorage {
     }
   }
 
+  /**
+   * save query result to both memory and local file.
+   * @param key cache key.
+   * @param result query result.
+   * @return local file path.
+   */
+  public String cacheResult(String key, AVQueryResult result) {
+    String content = result.toJSONString();
+    String path = cacheResult(key, content);
+    memoryCache.put(key, copyQueryResult(result), content.length(), System.currentTimeMillis());
+    return path;
+  }
+
+  @Override
+  public void clearCachedFile(String key) {
+    memoryCache.remove(key);
+    super.clearCachedFile(key);
+  }
+
+  @Override
+  public void clearAllCachedFiles() {
+    memoryCache.clear();
+    super.clearAllCachedFiles();
+  }
+
+  @Override
+  public void clearCacheMoreThanDays(int days) {
+    long curTime = System.currentTimeMillis();
+    if ( days > 0) {
+      curTime -= 86400000L * days;
+    }
+    memoryCache.removeCachedBefore(curTime);
+    super.clearCacheMoreThanDays(days);
+  }
+
+  private static AVQueryResult copyQueryResult(AVQueryResult origin) {
+    AVQueryResult result = new AVQueryResult();
+    result.setClassName(origin.getClassName());
+    result.setCount(origin.getCount());
+    result.setResults(copyResults(origin.getResults()));
+    return result;
+  }
+
+  private static List<AVObject> copyResults(List<AVObject> origin) {
+    if (null == origin) {
+      return new ArrayList<>();
+    }
+    List<AVObject> results = new ArrayList<>(origin.size());
+    for (AVObject obj : origin) {
+      results.add(null == obj ? null : Transformer.transform(obj, obj.getClassName()));
+    }
+    return results;
+  }
+
   public static String generateKeyForQueryCondition(String className, Map<String, String> query) {
     StringBuilder sb = new StringBuilder();
     sb.append(className);
@@ -74,6 +147,9 @@ public class QueryResultCache extends LocalStorage {
 
   public boolean hasCachedResult(String className, Map<String, String> query, long maxAgeInMilliseconds) {
     String cacheKey = generateKeyForQueryCondition(className, query);
+    if (memoryCache.contains(cacheKey, maxAgeInMilliseconds)) {
+      return true;
+    }
     File cacheFile = getCacheFile(cacheKey);
     if (null == cacheFile || !cacheFile.exists()) {
       LOGGER.d("cache file(key=" + cacheKey + ") not existed.");
@@ -128,7 +204,9 @@ public class QueryResultCache extends LocalStorage {
           }
         }
         String content = new String(data, 0, data.length, "UTF-8");
-        LOGGER.d("cache file(key=" + cacheKey + "), content: " + content);
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.d("cache file(key=" + cacheKey + "), content: " + content);
+        }
         return content;
       }
     };
@@ -147,9 +225,14 @@ public class QueryResultCache extends LocalStorage {
   public Observable<List<AVObject>> getCacheResult(final String className, final Map<String, String> query,
                                                    final long maxAgeInMilliseconds, final boolean isFinal) {
     LOGGER.d("try to get cache result for class:" + className);
+    final String cacheKey = generateKeyForQueryCondition(className, query);
+    AVQueryResult memoryResult = memoryCache.get(cacheKey, maxAgeInMilliseconds);
+    if (null != memoryResult) {
+      LOGGER.d("hit memory cache(key=" + cacheKey + ").");
+      return Observable.just(copyResults(memoryResult.getResults()));
+    }
     Callable<List<AVObject>> callable = new Callable<List<AVObject>>() {
       public List<AVObject> call() throws Exception {
-        String cacheKey = generateKeyForQueryCondition(className, query);
         File cacheFile = getCacheFile(cacheKey);
         if (null == cacheFile || !cacheFile.exists()) {
           LOGGER.d("cache file(key=" + cacheKey + ") not existed.");
@@ -177,9 +260,12 @@ public class QueryResultCache extends LocalStorage {
           }
         }
         String content = new String(data, 0, data.length, "UTF-8");
-        LOGGER.d("cache file(key=" + cacheKey + "), content: " + content);
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.d("cache file(key=" + cacheKey + "), content: " + content);
+        }
         AVQueryResult result = AVQueryResult.fromJSONString(content);
-        return result.getResults();
+        memoryCache.put(cacheKey, result, content.length(), cacheFile.lastModified());
+        return copyResults(result.getResults());
       }
     };
     FutureTask<List<AVObject>> futureTask = new FutureTask<List<AVObject>>(callable);
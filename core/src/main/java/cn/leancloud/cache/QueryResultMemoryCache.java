@@ -0,0 +1,178 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.query.AVQueryResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory tier above QueryResultCache files.
+ * keeps already-parsed query results, bounded by entry count and estimated byte size,
+ * and evicts the least recently used entry when any bound is exceeded.
+ */
+public class QueryResultMemoryCache {
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  static class Entry {
+    final AVQueryResult result;
+    final long weight;
+    final long cachedAt;
+
+    Entry(AVQueryResult result, long weight, long cachedAt) {
+      this.result = result;
+      this.weight = weight;
+      this.cachedAt = cachedAt;
+    }
+  }
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+  private long maxBytes = DEFAULT_MAX_BYTES;
+  private long currentBytes = 0;
+
+  private final AtomicLong hitCount = new AtomicLong(0);
+  private final AtomicLong missCount = new AtomicLong(0);
+  private final AtomicLong evictionCount = new AtomicLong(0);
+
+  public QueryResultMemoryCache() {
+  }
+
+  public QueryResultMemoryCache(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * change capacity, zero or negative maxEntries disables memory cache.
+   * @param maxEntries max entry count.
+   * @param maxBytes max estimated bytes.
+   */
+  public synchronized void setCapacity(int maxEntries, long maxBytes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    trimToSize();
+  }
+
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized boolean isEnabled() {
+    return maxEntries > 0 && maxBytes > 0;
+  }
+
+  /**
+   * put query result.
+   * @param key cache key.
+   * @param result parsed query result.
+   * @param weight estimated bytes of result.
+   * @param cachedAt timestamp when result was cached, used for max age checking.
+   */
+  public synchronized void put(String key, AVQueryResult result, long weight, long cachedAt) {
+    if (null == key || null == result || !isEnabled()) {
+      return;
+    }
+    Entry old = entries.remove(key);
+    if (null != old) {
+      currentBytes -= old.weight;
+    }
+    if (weight > maxBytes) {
+      return;
+    }
+    entries.put(key, new Entry(result, weight, cachedAt));
+    currentBytes += weight;
+    trimToSize();
+  }
+
+  /**
+   * get query result.
+   * @param key cache key.
+   * @param maxAgeInMilliseconds max age, zero or negative means never expired.
+   * @return cached result, null if not existed or expired.
+   */
+  public synchronized AVQueryResult get(String key, long maxAgeInMilliseconds) {
+    Entry entry = null == key ? null : entries.get(key);
+    if (null == entry) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    if (maxAgeInMilliseconds > 0 && (System.currentTimeMillis() - entry.cachedAt > maxAgeInMilliseconds)) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return entry.result;
+  }
+
+  public synchronized boolean contains(String key, long maxAgeInMilliseconds) {
+    Entry entry = null == key ? null : entries.get(key);
+    if (null == entry) {
+      return false;
+    }
+    return maxAgeInMilliseconds <= 0 || (System.currentTimeMillis() - entry.cachedAt <= maxAgeInMilliseconds);
+  }
+
+  public synchronized void remove(String key) {
+    Entry old = null == key ? null : entries.remove(key);
+    if (null != old) {
+      currentBytes -= old.weight;
+    }
+  }
+
+  /**
+   * remove all entries cached before specified timestamp.
+   * @param timestamp timestamp in milliseconds.
+   */
+  public synchronized void removeCachedBefore(long timestamp) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next().getValue();
+      if (entry.cachedAt < timestamp) {
+        currentBytes -= entry.weight;
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    currentBytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long byteSize() {
+    return currentBytes;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  private void trimToSize() {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext() && (entries.size() > maxEntries || currentBytes > maxBytes)) {
+      Entry eldest = it.next().getValue();
+      currentBytes -= eldest.weight;
+      it.remove();
+      evictionCount.incrementAndGet();
+    }
+  }
+}
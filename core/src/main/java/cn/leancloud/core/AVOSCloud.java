@@ -82,6 +82,7 @@ public class AVOSCloud {
     applicationId = appId;
     applicationKey = appKey;
     PaasClient.initializeGlobalClient();
+    PaasClient.warmUpConnections();
   }
 
   public static void initialize(String appId, String appKey, String serverUrl) {
@@ -4,6 +4,7 @@ import cn.leancloud.AVACL;
 import cn.leancloud.logging.InternalLoggerAdapter;
 import cn.leancloud.cache.InMemorySetting;
 import cn.leancloud.cache.LastModifyCache;
+import cn.leancloud.cache.QueryResultCache;
 import cn.leancloud.cache.SystemSetting;
 import cn.leancloud.logging.SimpleLoggerAdapter;
 import cn.leancloud.network.NetworkingDetector;
@@ -36,6 +37,7 @@ public class AppConfiguration {
   private static SystemSetting defaultSetting = new InMemorySetting();
 
   private static boolean enableLocalCache = true;
+  private static boolean enableRequestCoalescing = false;
 
   private static final String SDK_VERSION = "6.5.14";
   private static final String DEFAULT_USER_AGENT = "LeanCloud-Java-SDK/" + SDK_VERSION;
@@ -55,6 +57,15 @@ public class AppConfiguration {
     return LastModifyCache.getInstance().isLastModifyEnabled();
   }
 
+  /**
+   * config in-memory tier of query result cache.
+   * @param maxEntries max entry count, zero or negative value disables memory cache.
+   * @param maxBytes max estimated bytes of cached results.
+   */
+  public static void setQueryResultMemoryCacheCapacity(int maxEntries, long maxBytes) {
+    QueryResultCache.configMemoryCache(maxEntries, maxBytes);
+  }
+
   public static AVACL getDefaultACL() {
     return defaultACL;
   }
@@ -89,6 +100,18 @@ public class AppConfiguration {
     AppConfiguration.enableLocalCache = enableLocalCache;
   }
 
+  public static boolean isEnableRequestCoalescing() {
+    return enableRequestCoalescing;
+  }
+
+  /**
+   * set flag to share one in-flight request among concurrent identical reads(query/fetch) or not.
+   * @param enableRequestCoalescing flag to enable request coalescing or not, default is false
+   */
+  public static void setEnableRequestCoalescing(boolean enableRequestCoalescing) {
+    AppConfiguration.enableRequestCoalescing = enableRequestCoalescing;
+  }
+
   private static boolean autoMergeOperationDataWhenSave = true;
 
   public static boolean isAutoMergeOperationDataWhenSave() {
@@ -5,17 +5,46 @@ import cn.leancloud.utils.AVUtils;
 import cn.leancloud.utils.StringUtil;
 
 public class GeneralRequestSignature implements RequestSignature {
-  private static boolean useMasterKey = false;
-  private static String masterKey = null;
+  private static volatile boolean useMasterKey = false;
+  private static volatile String masterKey = null;
+
+  /**
+   * signature which is reused within the same second for the same key.
+   */
+  private static class CachedSign {
+    private final long second;
+    private final boolean master;
+    private final String key;
+    private final String sign;
+
+    CachedSign(long second, boolean master, String key, String sign) {
+      this.second = second;
+      this.master = master;
+      this.key = key;
+      this.sign = sign;
+    }
+  }
+
+  private static volatile CachedSign cachedSign = null;
 
   public String generateSign() {
-    return requestSign(AVUtils.getCurrentTimestamp(), isUseMasterKey());
+    long ts = AVUtils.getCurrentTimestamp();
+    boolean master = isUseMasterKey();
+    String key = master ? masterKey : AVOSCloud.getApplicationKey();
+    long second = ts / 1000;
+    CachedSign cached = cachedSign;
+    if (null != cached && cached.second == second && cached.master == master
+        && StringUtil.equals(cached.key, key)) {
+      return cached.sign;
+    }
+    String sign = requestSign(key, ts, master ? "master" : null);
+    cachedSign = new CachedSign(second, master, key, sign);
+    return sign;
   }
 
   public static String requestSign(String key, long ts, String suffix) {
-    StringBuilder builder = new StringBuilder();
-    StringBuilder result = new StringBuilder();
-    result.append(MD5.computeMD5(builder.append(ts).append(key).toString()).toLowerCase());
+    StringBuilder result = new StringBuilder(64);
+    result.append(MD5.computeMD5(String.valueOf(ts) + key));
     result.append(',').append(ts);
     if (null != suffix) {
       result.append(',').append(suffix);
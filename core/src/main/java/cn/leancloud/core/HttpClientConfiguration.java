@@ -0,0 +1,207 @@
+package cn.leancloud.core;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * configuration of http client which is shared by all LeanCloud services.
+ * it's immutable, use {@link Builder} to create one and set it by {@link PaasClient#setHttpClientConfiguration}
+ * before AVOSCloud.initialize.
+ */
+public class HttpClientConfiguration {
+  public static final int DEFAULT_MAX_REQUESTS = 64;
+  public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 32;
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 16;
+  public static final long DEFAULT_KEEP_ALIVE_MILLIS = 5 * 60 * 1000;
+
+  /**
+   * connect/read/write timeouts of a service, in milliseconds.
+   */
+  public static class Timeouts {
+    public static final Timeouts DEFAULT = new Timeouts(15 * 1000, 10 * 1000, 10 * 1000);
+
+    private final long connectMillis;
+    private final long readMillis;
+    private final long writeMillis;
+
+    public Timeouts(long connectMillis, long readMillis, long writeMillis) {
+      this.connectMillis = Math.max(0, connectMillis);
+      this.readMillis = Math.max(0, readMillis);
+      this.writeMillis = Math.max(0, writeMillis);
+    }
+
+    public long getConnectMillis() {
+      return connectMillis;
+    }
+
+    public long getReadMillis() {
+      return readMillis;
+    }
+
+    public long getWriteMillis() {
+      return writeMillis;
+    }
+  }
+
+  public static class Builder {
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private boolean preferHttp2 = true;
+    private boolean warmUpEnabled = true;
+    private Timeouts defaultTimeouts = Timeouts.DEFAULT;
+    private final Map<AVOSService, Timeouts> serviceTimeouts = new EnumMap<AVOSService, Timeouts>(AVOSService.class);
+
+    public Builder() {
+      // cloud function may run for a long time.
+      serviceTimeouts.put(AVOSService.ENGINE, new Timeouts(15 * 1000, 30 * 1000, 10 * 1000));
+    }
+
+    /**
+     * max concurrent asynchronous requests.
+     */
+    public Builder maxRequests(int maxRequests) {
+      this.maxRequests = Math.max(1, maxRequests);
+      return this;
+    }
+
+    /**
+     * max concurrent asynchronous requests to a single host.
+     */
+    public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+      this.maxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+      return this;
+    }
+
+    /**
+     * size of connection pool and keep-alive duration of idle connection.
+     */
+    public Builder connectionPool(int maxIdleConnections, long keepAliveMillis) {
+      this.maxIdleConnections = Math.max(0, maxIdleConnections);
+      this.keepAliveMillis = Math.max(1, keepAliveMillis);
+      return this;
+    }
+
+    /**
+     * use http/2 if server supports it, otherwise always use http/1.1.
+     */
+    public Builder preferHttp2(boolean preferHttp2) {
+      this.preferHttp2 = preferHttp2;
+      return this;
+    }
+
+    /**
+     * establish connections to api/push/engine hosts at initialization.
+     */
+    public Builder warmUp(boolean enabled) {
+      this.warmUpEnabled = enabled;
+      return this;
+    }
+
+    /**
+     * timeouts of services which are not configured explicitly.
+     */
+    public Builder timeouts(Timeouts timeouts) {
+      if (null != timeouts) {
+        this.defaultTimeouts = timeouts;
+      }
+      return this;
+    }
+
+    /**
+     * timeouts of a service. ENGINE timeouts are applied to cloud function calls.
+     */
+    public Builder timeouts(AVOSService service, Timeouts timeouts) {
+      if (null == timeouts) {
+        serviceTimeouts.remove(service);
+      } else {
+        serviceTimeouts.put(service, timeouts);
+      }
+      return this;
+    }
+
+    public HttpClientConfiguration build() {
+      return new HttpClientConfiguration(this);
+    }
+  }
+
+  private final int maxRequests;
+  private final int maxRequestsPerHost;
+  private final int maxIdleConnections;
+  private final long keepAliveMillis;
+  private final boolean preferHttp2;
+  private final boolean warmUpEnabled;
+  private final Timeouts defaultTimeouts;
+  private final Map<AVOSService, Timeouts> serviceTimeouts;
+
+  private HttpClientConfiguration(Builder builder) {
+    this.maxRequests = builder.maxRequests;
+    this.maxRequestsPerHost = Math.min(builder.maxRequests, builder.maxRequestsPerHost);
+    this.maxIdleConnections = builder.maxIdleConnections;
+    this.keepAliveMillis = builder.keepAliveMillis;
+    this.preferHttp2 = builder.preferHttp2;
+    this.warmUpEnabled = builder.warmUpEnabled;
+    this.defaultTimeouts = builder.defaultTimeouts;
+    this.serviceTimeouts = Collections.unmodifiableMap(new EnumMap<AVOSService, Timeouts>(builder.serviceTimeouts));
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  public long getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  public boolean isPreferHttp2() {
+    return preferHttp2;
+  }
+
+  public boolean isWarmUpEnabled() {
+    return warmUpEnabled;
+  }
+
+  public Timeouts getTimeouts(AVOSService service) {
+    Timeouts timeouts = null == service ? null : serviceTimeouts.get(service);
+    return null == timeouts ? defaultTimeouts : timeouts;
+  }
+
+  /**
+   * create builder of okhttp client with dispatcher, connection pool, protocols and default timeouts.
+   */
+  OkHttpClient.Builder newOkHttpClientBuilder() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    Timeouts timeouts = getTimeouts(AVOSService.API);
+    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+        .dispatcher(dispatcher)
+        .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+        .connectTimeout(timeouts.getConnectMillis(), TimeUnit.MILLISECONDS)
+        .readTimeout(timeouts.getReadMillis(), TimeUnit.MILLISECONDS)
+        .writeTimeout(timeouts.getWriteMillis(), TimeUnit.MILLISECONDS);
+    if (preferHttp2) {
+      builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+    } else {
+      builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+    }
+    return builder;
+  }
+}
@@ -4,18 +4,17 @@ import cn.leancloud.AVLogger;
 import cn.leancloud.utils.LogUtil;
 import okhttp3.*;
 import okio.Buffer;
-import okio.BufferedSink;
-import okio.Okio;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 
 public class LoggingInterceptor implements Interceptor {
   private static final String CURL_COMMAND = "curl -X %s %n";
   private static final String CURL_HEADER_FORMAT = " -H %s: %s %n";
   private static AVLogger LOGGER = LogUtil.getLogger(LoggingInterceptor.class);
 
+  // only prefix of body is logged, so that large upload/download is not buffered.
+  static final long MAX_LOGGED_BODY_BYTES = 4 * 1024;
+
   private String generateCURLCommandString(Request request) {
     String url = request.url().toString();
     String method = request.method();
@@ -42,44 +41,49 @@ public class LoggingInterceptor implements Interceptor {
       sb.append(String.format(CURL_HEADER_FORMAT, name, headers.get(name)));
     }
 
-    try {
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
-      BufferedSink sink = Okio.buffer(Okio.sink(os));
-      RequestBody body = request.body();
-      if (null != body) {
-        body.writeTo(sink);
-        sink.close();
-        String bodyString = os.toString();
-        sb.append(String.format("-d '%s' %n", bodyString));
-      }
-    } catch (Exception ex) {
-      ex.printStackTrace();
+    RequestBody body = request.body();
+    if (null != body) {
+      sb.append(String.format("-d '%s' %n", peekRequestBody(body)));
     }
     sb.append(url);
     return sb.toString();
   }
 
+  static String peekRequestBody(RequestBody body) {
+    try {
+      long contentLength = body.contentLength();
+      if (contentLength < 0 || contentLength > MAX_LOGGED_BODY_BYTES || body.isOneShot() || body.isDuplex()) {
+        return "{" + (contentLength < 0 ? "unknown length" : contentLength + " bytes") + " body omitted}";
+      }
+      Buffer buffer = new Buffer();
+      body.writeTo(buffer);
+      return buffer.readUtf8();
+    } catch (IOException ex) {
+      return "{failed to read body: " + ex.getMessage() + "}";
+    }
+  }
+
   public Response intercept(Interceptor.Chain chain) throws IOException {
     Request request = chain.request();
 
-    Response response = chain.proceed(request);
-
-    if (!AVOSCloud.isDebugEnable()) {
-      return response;
+    if (!LOGGER.isDebugEnabled()) {
+      return chain.proceed(request);
     }
 
     LOGGER.d(String.format("Request: %s", generateCURLCommandString(request)));
 
-    int responseCode = response.code();
-    Headers responseHeaders = response.headers();
-    String responseBody = response.body().string();
+    Response response = chain.proceed(request);
+
+    // peek doesn't consume the body, response is still streamed to caller.
+    ResponseBody peekedBody = response.peekBody(MAX_LOGGED_BODY_BYTES);
+    String responseBody = peekedBody.string();
+    long contentLength = response.body().contentLength();
+    if (contentLength > MAX_LOGGED_BODY_BYTES) {
+      responseBody += "...(" + contentLength + " bytes)";
+    }
 
-    LOGGER.d(String.format("Response: %d %n%s %n%s ", response.code(), responseHeaders, responseBody));
+    LOGGER.d(String.format("Response: %d %n%s %n%s ", response.code(), response.headers(), responseBody));
 
-    return response.newBuilder()
-            .code(responseCode)
-            .headers(responseHeaders)
-            .body(ResponseBody.create(response.body().contentType(), responseBody))
-            .build();
+    return response;
   }
 }
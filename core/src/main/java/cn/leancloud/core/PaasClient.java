@@ -1,15 +1,29 @@
 package cn.leancloud.core;
 
+import cn.leancloud.AVLogger;
 import cn.leancloud.network.DNSDetoxicant;
+import cn.leancloud.network.RequestLimitInterceptor;
+import cn.leancloud.network.RetryInterceptor;
 import cn.leancloud.service.APIService;
 import cn.leancloud.service.PushService;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
 import io.reactivex.functions.Consumer;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.fastjson.*;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import cn.leancloud.core.AppConfiguration.SchedulerCreator;
 
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,18 +33,47 @@ import java.util.concurrent.TimeUnit;
  * 3. default ACL
  */
 public class PaasClient {
+  private static final AVLogger LOGGER = LogUtil.getLogger(PaasClient.class);
+  private static final AVOSService[] WARM_UP_SERVICES = {AVOSService.API, AVOSService.PUSH, AVOSService.ENGINE};
+
   private static APIService apiService = null;
   private static StorageClient storageClient = null;
   private static OkHttpClient globalHttpClient = null;
   private static PushService pushService = null;
   private static PushClient pushClient = null;
+  private static HttpClientConfiguration httpClientConfiguration = new HttpClientConfiguration.Builder().build();
+  private static final Map<AVOSService, OkHttpClient> serviceHttpClients =
+      new EnumMap<AVOSService, OkHttpClient>(AVOSService.class);
+  private static final Set<String> warmedUpHosts = new HashSet<String>();
+
+  /**
+   * set configuration of http client, it should be called before AVOSCloud.initialize.
+   * clients which are created already will be discarded.
+   * @param configuration http client configuration.
+   */
+  public static synchronized void setHttpClientConfiguration(HttpClientConfiguration configuration) {
+    if (null == configuration) {
+      return;
+    }
+    httpClientConfiguration = configuration;
+    globalHttpClient = null;
+    serviceHttpClients.clear();
+    apiService = null;
+    storageClient = null;
+    pushService = null;
+    pushClient = null;
+  }
+
+  public static synchronized HttpClientConfiguration getHttpClientConfiguration() {
+    return httpClientConfiguration;
+  }
 
-  public static OkHttpClient getGlobalOkHttpClient() {
+  public static synchronized OkHttpClient getGlobalOkHttpClient() {
     if (null == globalHttpClient) {
-      globalHttpClient = new OkHttpClient.Builder()
-              .connectTimeout(15, TimeUnit.SECONDS)
-              .readTimeout(10, TimeUnit.SECONDS)
-              .writeTimeout(10, TimeUnit.SECONDS)
+      globalHttpClient = httpClientConfiguration.newOkHttpClientBuilder()
+              .addInterceptor(new RetryInterceptor())
+              .addInterceptor(RequestLimitInterceptor.getInstance())
+              .addInterceptor(new ServiceTimeoutInterceptor())
               .addInterceptor(new RequestPaddingInterceptor())
               .addInterceptor(new LoggingInterceptor())
               .dns(new DNSDetoxicant())
@@ -39,6 +82,88 @@ public class PaasClient {
     return globalHttpClient;
   }
 
+  /**
+   * get http client with timeouts of the service, which shares connection pool and dispatcher with global client.
+   * @param service service type.
+   * @return http client.
+   */
+  public static synchronized OkHttpClient getOkHttpClient(AVOSService service) {
+    OkHttpClient globalClient = getGlobalOkHttpClient();
+    if (null == service || AVOSService.API == service) {
+      return globalClient;
+    }
+    OkHttpClient client = serviceHttpClients.get(service);
+    if (null == client) {
+      HttpClientConfiguration.Timeouts timeouts = httpClientConfiguration.getTimeouts(service);
+      client = globalClient.newBuilder()
+              .connectTimeout(timeouts.getConnectMillis(), TimeUnit.MILLISECONDS)
+              .readTimeout(timeouts.getReadMillis(), TimeUnit.MILLISECONDS)
+              .writeTimeout(timeouts.getWriteMillis(), TimeUnit.MILLISECONDS)
+              .build();
+      serviceHttpClients.put(service, client);
+    }
+    return client;
+  }
+
+  /**
+   * establish connections(including tls handshake) to api/push/engine hosts in background,
+   * so that the first requests don't pay for it.
+   */
+  static void warmUpConnections() {
+    if (!getHttpClientConfiguration().isWarmUpEnabled()) {
+      return;
+    }
+    AppRouter appRouter = AppRouter.getInstance();
+    for (AVOSService service : WARM_UP_SERVICES) {
+      appRouter.getEndpoint(AVOSCloud.getApplicationId(), service).subscribe(new Consumer<String>() {
+        @Override
+        public void accept(String host) throws Exception {
+          warmUpHost(host);
+        }
+      }, new Consumer<Throwable>() {
+        @Override
+        public void accept(Throwable throwable) throws Exception {
+          LOGGER.d("failed to get endpoint for warm-up. cause: " + throwable.getMessage());
+        }
+      });
+    }
+  }
+
+  private static void warmUpHost(final String host) {
+    if (StringUtil.isEmpty(host)) {
+      return;
+    }
+    synchronized (warmedUpHosts) {
+      if (!warmedUpHosts.add(host)) {
+        return;
+      }
+    }
+    Request request;
+    try {
+      request = new Request.Builder().url(host).head().build();
+    } catch (IllegalArgumentException ex) {
+      LOGGER.d("invalid host for warm-up: " + host);
+      return;
+    }
+    // connection is pooled by address, so skip leancloud headers and limits.
+    OkHttpClient.Builder builder = getGlobalOkHttpClient().newBuilder();
+    builder.interceptors().clear();
+    builder.build().newCall(request).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        LOGGER.d("failed to warm up connection to " + host + ". cause: " + e.getMessage());
+        synchronized (warmedUpHosts) {
+          warmedUpHosts.remove(host);
+        }
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        response.close();
+      }
+    });
+  }
+
   static void initializeGlobalClient() {
     if (null == apiService) {
       AppRouter appRouter = AppRouter.getInstance();
@@ -79,7 +204,7 @@ public class PaasClient {
 
   public static PushClient getPushClient() {
     if (null == pushService) {
-      OkHttpClient okHttpClient = getGlobalOkHttpClient();
+      OkHttpClient okHttpClient = getOkHttpClient(AVOSService.PUSH);
       AppRouter appRouter = AppRouter.getInstance();
       String apiHost = appRouter.getEndpoint(AVOSCloud.getApplicationId(), AVOSService.PUSH).blockingFirst();// donot block current thread.
       Retrofit retrofit = new Retrofit.Builder()
@@ -0,0 +1,65 @@
+package cn.leancloud.core;
+
+import io.reactivex.Notification;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.functions.Consumer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * single-flight group for read requests.
+ * concurrent subscribers with the same key share one in-flight upstream observable,
+ * the key is released as soon as upstream emits anything, so finished results are never reused.
+ */
+class RequestCoalescer {
+  private final ConcurrentMap<String, Observable<?>> inFlightRequests = new ConcurrentHashMap<String, Observable<?>>();
+  private final AtomicLong sharedCount = new AtomicLong(0);
+
+  <T> Observable<T> coalesce(final String key, final Observable<T> source) {
+    if (null == key || null == source) {
+      return source;
+    }
+    return Observable.defer(new Callable<ObservableSource<T>>() {
+      @Override
+      public ObservableSource<T> call() throws Exception {
+        Observable<T> existed = cast(inFlightRequests.get(key));
+        if (null != existed) {
+          sharedCount.incrementAndGet();
+          return existed;
+        }
+        final Observable<?>[] holder = new Observable<?>[1];
+        Observable<T> shared = source.doOnEach(new Consumer<Notification<T>>() {
+          @Override
+          public void accept(Notification<T> notification) throws Exception {
+            inFlightRequests.remove(key, holder[0]);
+          }
+        }).cache();
+        holder[0] = shared;
+        existed = cast(inFlightRequests.putIfAbsent(key, shared));
+        if (null != existed) {
+          sharedCount.incrementAndGet();
+          return existed;
+        }
+        return shared;
+      }
+    });
+  }
+
+  // key is prefixed by request type(such as "fetch:", "query:"), so all observables of one key emit the same type.
+  @SuppressWarnings("unchecked")
+  private static <T> Observable<T> cast(Observable<?> observable) {
+    return (Observable<T>) observable;
+  }
+
+  int inFlightSize() {
+    return inFlightRequests.size();
+  }
+
+  long getSharedCount() {
+    return sharedCount.get();
+  }
+}
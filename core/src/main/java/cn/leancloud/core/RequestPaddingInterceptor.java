@@ -3,6 +3,7 @@ package cn.leancloud.core;
 import cn.leancloud.AVCloud;
 import cn.leancloud.AVUser;
 import cn.leancloud.utils.StringUtil;
+import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -21,29 +22,92 @@ public class RequestPaddingInterceptor implements Interceptor {
   private static final String HEADER_KEY_USER_AGENT = "User-Agent";
   private static final String DEFAULT_CONTENT_TYPE = "application/json";
 
-  private static RequestSignature requestSignature = new GeneralRequestSignature();
+  private static volatile RequestSignature requestSignature = new GeneralRequestSignature();
+
+  /**
+   * headers which rarely change, they are built once and rebuilt only if any of values changes.
+   */
+  static class HeaderTemplate {
+    private final boolean productionMode;
+    private final String applicationId;
+    private final String userAgent;
+    private final Headers headers;
+
+    HeaderTemplate(boolean productionMode, String applicationId, String userAgent) {
+      this.productionMode = productionMode;
+      this.applicationId = applicationId;
+      this.userAgent = userAgent;
+      this.headers = new Headers.Builder()
+              .add(HEADER_KEY_LC_PROD_MODE, productionMode ? "1" : "0")
+              .add(HEADER_KEY_LC_APPID, null == applicationId ? "" : applicationId)
+              .add(HEADER_KEY_ACCEPT, DEFAULT_CONTENT_TYPE)
+              .add(HEADER_KEY_CONTENT_TYPE, DEFAULT_CONTENT_TYPE)
+              .add(HEADER_KEY_USER_AGENT, userAgent)
+              .build();
+    }
+
+    boolean matches(boolean productionMode, String applicationId, String userAgent) {
+      return this.productionMode == productionMode && StringUtil.equals(this.applicationId, applicationId)
+              && StringUtil.equals(this.userAgent, userAgent);
+    }
+
+    Headers getHeaders() {
+      return headers;
+    }
+  }
+
+  private static volatile HeaderTemplate headerTemplate = null;
 
   public static void changeRequestSignature(RequestSignature signature) {
     requestSignature = signature;
   }
 
+  static Headers getStaticHeaders() {
+    boolean productionMode = AVCloud.isProductionMode();
+    String applicationId = AVOSCloud.getApplicationId();
+    String userAgent = AppConfiguration.getUserAgent();
+    HeaderTemplate template = headerTemplate;
+    if (null == template || !template.matches(productionMode, applicationId, userAgent)) {
+      template = new HeaderTemplate(productionMode, applicationId, userAgent);
+      headerTemplate = template;
+    }
+    return template.getHeaders();
+  }
+
+  /**
+   * user of request context goes first, so that server threads never share session.
+   * otherwise global current user is cached by storage client, and disk archive is touched only if it's not loaded.
+   */
+  static String getSessionToken() {
+    AVUser currentUser;
+    if (RequestUserContext.isActive()) {
+      currentUser = RequestUserContext.getUser();
+    } else {
+      currentUser = PaasClient.getStorageClient().getCurrentUser();
+      if (null == currentUser) {
+        currentUser = AVUser.getCurrentUser();
+      }
+    }
+    String sessionToken = null == currentUser ? null : currentUser.getSessionToken();
+    return null == sessionToken ? "" : sessionToken;
+  }
+
   public Response intercept(Interceptor.Chain chain) throws IOException {
     Request originalRequest = chain.request();
-    String sessionToken = null == AVUser.getCurrentUser()? "" : AVUser.getCurrentUser().getSessionToken();
-
-    okhttp3.Request.Builder builder = originalRequest.newBuilder()
-            .header(HEADER_KEY_LC_PROD_MODE, AVCloud.isProductionMode()?"1":"0")
-            .header(HEADER_KEY_LC_APPID, AVOSCloud.getApplicationId())
-            .header(HEADER_KEY_LC_SIGN, requestSignature.generateSign())
-            .header(HEADER_KEY_ACCEPT, DEFAULT_CONTENT_TYPE)
-            .header(HEADER_KEY_CONTENT_TYPE, DEFAULT_CONTENT_TYPE)
-            .header(HEADER_KEY_USER_AGENT, AppConfiguration.getUserAgent())
-            .header(HEADER_KEY_LC_SESSIONTOKEN, null == sessionToken ? "":sessionToken);
-    if (!StringUtil.isEmpty(AVOSCloud.getHookKey())) {
-      builder = builder.header(HEADER_KEY_LC_HOOKKEY, AVOSCloud.getHookKey());
+
+    Headers staticHeaders = getStaticHeaders();
+    Headers.Builder headersBuilder = originalRequest.headers().newBuilder();
+    for (int i = 0; i < staticHeaders.size(); i++) {
+      headersBuilder.set(staticHeaders.name(i), staticHeaders.value(i));
+    }
+    headersBuilder.set(HEADER_KEY_LC_SIGN, requestSignature.generateSign());
+    headersBuilder.set(HEADER_KEY_LC_SESSIONTOKEN, getSessionToken());
+    String hookKey = AVOSCloud.getHookKey();
+    if (!StringUtil.isEmpty(hookKey)) {
+      headersBuilder.set(HEADER_KEY_LC_HOOKKEY, hookKey);
     }
 
-    Request newRequest = builder.build();
+    Request newRequest = originalRequest.newBuilder().headers(headersBuilder.build()).build();
     return chain.proceed(newRequest);
   }
 }
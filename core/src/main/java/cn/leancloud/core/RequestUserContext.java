@@ -0,0 +1,65 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVUser;
+
+/**
+ * user of the request which is being served by current thread.
+ *
+ * server(such as LeanEngine) serves many users concurrently, so it must not use the global current user which is
+ * shared by all threads and persisted to disk. within an active context:
+ * - AVUser.getCurrentUser returns the user of context(maybe null), rather than global current user;
+ * - AVUser.changeCurrentUser only changes the user of context, nothing is persisted;
+ * - session token of outgoing request is read from context.
+ *
+ * context is bound to thread, so requests which are sent from other threads(e.g., asynchronous mode) don't see it.
+ * every begin must be paired with an end in finally block, otherwise user leaks to the next task of pooled thread.
+ */
+public class RequestUserContext {
+  private static class Holder {
+    private AVUser user = null;
+  }
+
+  private static final ThreadLocal<Holder> currentContext = new ThreadLocal<Holder>();
+
+  private RequestUserContext() {
+  }
+
+  /**
+   * start a new context in current thread without user, existing context is discarded.
+   */
+  public static void begin() {
+    currentContext.set(new Holder());
+  }
+
+  /**
+   * end context in current thread, global current user is visible again.
+   */
+  public static void end() {
+    currentContext.remove();
+  }
+
+  public static boolean isActive() {
+    return null != currentContext.get();
+  }
+
+  /**
+   * set user of current context.
+   * @param user request user, null means anonymous.
+   * @throws IllegalStateException if context is not active, call begin first.
+   */
+  public static void setUser(AVUser user) {
+    Holder holder = currentContext.get();
+    if (null == holder) {
+      throw new IllegalStateException("request user context is not active, call begin() first.");
+    }
+    holder.user = user;
+  }
+
+  /**
+   * @return user of current context, null if context is not active or it's anonymous.
+   */
+  public static AVUser getUser() {
+    Holder holder = currentContext.get();
+    return null == holder ? null : holder.user;
+  }
+}
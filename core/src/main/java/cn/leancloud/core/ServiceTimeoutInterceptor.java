@@ -0,0 +1,26 @@
+package cn.leancloud.core;
+
+import cn.leancloud.network.RequestLimitInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * apply ENGINE timeouts to cloud function calls, which share api client with storage requests.
+ */
+class ServiceTimeoutInterceptor implements Interceptor {
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    if (RequestLimitInterceptor.getEndpointGroup(chain.request().url().pathSegments())
+        != RequestLimitInterceptor.EndpointGroup.FUNCTIONS) {
+      return chain.proceed(chain.request());
+    }
+    HttpClientConfiguration.Timeouts timeouts = PaasClient.getHttpClientConfiguration().getTimeouts(AVOSService.ENGINE);
+    return chain.withConnectTimeout((int) timeouts.getConnectMillis(), TimeUnit.MILLISECONDS)
+        .withReadTimeout((int) timeouts.getReadMillis(), TimeUnit.MILLISECONDS)
+        .withWriteTimeout((int) timeouts.getWriteMillis(), TimeUnit.MILLISECONDS)
+        .proceed(chain.request());
+  }
+}
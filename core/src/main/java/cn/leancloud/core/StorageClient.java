@@ -36,7 +36,8 @@ public class StorageClient {
   private boolean asynchronized = false;
   private AppConfiguration.SchedulerCreator defaultCreator = null;
   private QueryResultCache queryResultCache = QueryResultCache.getInstance();
-  private AVUser currentUser = null;
+  private RequestCoalescer requestCoalescer = new RequestCoalescer();
+  private volatile AVUser currentUser = null;
 
   public StorageClient(APIService apiService, boolean asyncRequest, AppConfiguration.SchedulerCreator observerSchedulerCreator) {
     this.apiService = apiService;
@@ -100,6 +101,10 @@ public class StorageClient {
     if (null == object) {
       return object;
     }
+    if (AppConfiguration.isEnableRequestCoalescing()) {
+      String requestKey = "fetch:" + className + "/" + objectId + "?" + (null == includeKeys ? "" : includeKeys);
+      object = coalesce(requestKey, object);
+    }
     return object.map(new Function<AVObject, AVObject>() {
               public AVObject apply(AVObject avObject) throws Exception {
                 return Transformer.transform(avObject, className);
@@ -119,11 +124,39 @@ public class StorageClient {
     }
   }
 
+  private <T> Observable<T> coalesce(String requestKey, Observable<T> source) {
+    // requests of different users must not be merged.
+    return requestCoalescer.coalesce(requestKey + "#" + RequestPaddingInterceptor.getSessionToken(), source);
+  }
+
+  private Observable<List<AVObject>> queryRemoteServerAndCache(final String className, final Map<String, String> query,
+                                                              final String cacheKey) {
+    Observable<AVQueryResult> queryResult = queryRemoteServer(className, query);
+    if (null == queryResult) {
+      return null;
+    }
+    Observable<List<AVObject>> result = queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
+      public List<AVObject> apply(AVQueryResult o) throws Exception {
+        o.setClassName(className);
+        for (AVObject obj: o.getResults()) {
+          obj.setClassName(className);
+        }
+        QueryResultCache.getInstance().cacheResult(cacheKey, o);
+        LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
+                + ((null != o.getResults())? o.getResults().size(): 0));
+        return o.getResults();
+      }
+    });
+    if (AppConfiguration.isEnableRequestCoalescing()) {
+      result = coalesce("query:" + cacheKey, result);
+    }
+    return result;
+  }
+
   public Observable<List<AVObject>> queryObjects(final String className, final Map<String, String> query,
                                                  AVQuery.CachePolicy cachePolicy, final long maxAgeInMilliseconds) {
     final String cacheKey = QueryResultCache.generateKeyForQueryCondition(className, query);
     Observable<List<AVObject>> result = null;
-    Observable<AVQueryResult> queryResult = null;
     switch (cachePolicy) {
       case CACHE_ONLY:
         result = wrapObservable(
@@ -136,38 +169,14 @@ public class StorageClient {
                   @Override
                   public ObservableSource<? extends List<AVObject>> apply(Throwable throwable) throws Exception {
                     LOGGER.d("failed to query local cache, cause: " + throwable.getMessage() + ", try to query networking");
-
-                    return queryRemoteServer(className, query)
-                            .map(new Function<AVQueryResult, List<AVObject>>() {
-                              public List<AVObject> apply(AVQueryResult o) throws Exception {
-                                o.setClassName(className);
-                                for (AVObject obj: o.getResults()) {
-                                  obj.setClassName(className);
-                                }
-                                QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-                                LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                                        + ((null != o.getResults())? o.getResults().size(): 0));
-                                return o.getResults();
-                              }
-                            });
+                    return queryRemoteServerAndCache(className, query, cacheKey);
                   }
                 });
         break;
       case NETWORK_ELSE_CACHE:
-        queryResult =  queryRemoteServer(className, query);
-        if (null != queryResult) {
-          result = queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
-            public List<AVObject> apply(AVQueryResult o) throws Exception {
-              o.setClassName(className);
-              for (AVObject obj : o.getResults()) {
-                obj.setClassName(className);
-              }
-              QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-              LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                      + ((null != o.getResults()) ? o.getResults().size() : 0));
-              return o.getResults();
-            }
-          }).onErrorResumeNext(new Function<Throwable, ObservableSource<? extends List<AVObject>>>() {
+        result = queryRemoteServerAndCache(className, query, cacheKey);
+        if (null != result) {
+          result = result.onErrorResumeNext(new Function<Throwable, ObservableSource<? extends List<AVObject>>>() {
             @Override
             public ObservableSource<? extends List<AVObject>> apply(Throwable throwable) throws Exception {
               LOGGER.d("failed to query networking, cause: " + throwable.getMessage()
@@ -179,26 +188,34 @@ public class StorageClient {
         break;
       case IGNORE_CACHE:
       default:
-        queryResult = queryRemoteServer(className, query);
-        if (null != queryResult) {
-          result = queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
-            public List<AVObject> apply(AVQueryResult o) throws Exception {
-              o.setClassName(className);
-              for (AVObject obj: o.getResults()) {
-                obj.setClassName(className);
-              }
-              QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-              LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                      + ((null != o.getResults())? o.getResults().size(): 0));
-              return o.getResults();
-            }
-          });
-        }
+        result = queryRemoteServerAndCache(className, query, cacheKey);
         break;
     }
     return result;
   }
 
+  /**
+   * query objects from server directly, result will not be written into query result cache.
+   * @param className class name.
+   * @param query query parameters.
+   * @return observable instance.
+   */
+  public Observable<List<AVObject>> queryObjectsWithoutCache(final String className, final Map<String, String> query) {
+    Observable<AVQueryResult> queryResult = queryRemoteServer(className, query);
+    if (null == queryResult) {
+      return null;
+    }
+    return queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
+      public List<AVObject> apply(AVQueryResult o) throws Exception {
+        List<AVObject> results = null == o.getResults() ? new ArrayList<AVObject>() : o.getResults();
+        for (AVObject obj: results) {
+          obj.setClassName(className);
+        }
+        return results;
+      }
+    });
+  }
+
   public Observable<AVQueryResult> cloudQuery(Map<String, String> query) {
     return wrapObservable(apiService.cloudQuery(query));
   }
@@ -227,8 +244,13 @@ public class StorageClient {
       return null;
     }
     return object.map(new Function<AVObject, AVObject>() {
-      public AVObject apply(AVObject avObject) {
-        LOGGER.d(avObject.toString());
+      public AVObject apply(final AVObject avObject) {
+        LOGGER.d(new AVLogger.MessageSupplier() {
+          @Override
+          public String get() {
+            return avObject.toString();
+          }
+        });
         return Transformer.transform(avObject, className);
       }
     });
@@ -241,8 +263,13 @@ public class StorageClient {
       return null;
     }
     return object.map(new Function<AVObject, AVObject>() {
-      public AVObject apply(AVObject avObject) {
-        LOGGER.d("saveObject finished. intermediaObj=" + avObject.toString() + ", convert to " + className);
+      public AVObject apply(final AVObject avObject) {
+        LOGGER.d(new AVLogger.MessageSupplier() {
+          @Override
+          public String get() {
+            return "saveObject finished. intermediaObj=" + avObject.toString() + ", convert to " + className;
+          }
+        });
         return Transformer.transform(avObject, className);
       }
     });
@@ -555,7 +582,6 @@ public class StorageClient {
         try {
           Object resultValue = resultMap.get("result");
           if (enableCache && !StringUtil.isEmpty(cacheKey)) {
-            LOGGER.d("cache rpc result:" + JSON.toJSONString(resultValue));
             QueryResultCache.getInstance().cacheResult(cacheKey, JSON.toJSONString(resultValue));
           }
           if (resultValue instanceof Collection) {
@@ -587,7 +613,6 @@ public class StorageClient {
         try {
           Object resultValue = resultMap.get("result");
           if (enableCache && !StringUtil.isEmpty(cacheKey)) {
-            LOGGER.d("cache cloud function result:" + JSON.toJSONString(resultValue));
             QueryResultCache.getInstance().cacheResult(cacheKey, JSON.toJSONString(resultValue));
           }
           if (resultValue instanceof Collection) {
@@ -0,0 +1,114 @@
+package cn.leancloud.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * concurrency limiter whose limit is adjusted by AIMD:
+ * - limit is increased by 1/limit for every successful request when it's saturated(additive increase);
+ * - limit is decreased by DROP_FACTOR once request is rejected by server(429/503),
+ *   and by LATENCY_FACTOR when latency grows beyond LATENCY_TOLERANCE times of min latency(multiplicative decrease).
+ *
+ * min latency is measured within a window of samples, so that it adapts to route changes.
+ */
+public class AdaptiveConcurrencyLimiter {
+  public static final int DEFAULT_INITIAL_LIMIT = 32;
+  public static final int DEFAULT_MIN_LIMIT = 2;
+  public static final int DEFAULT_MAX_LIMIT = 256;
+
+  static final double DROP_FACTOR = 0.5;
+  static final double LATENCY_FACTOR = 0.9;
+  static final double LATENCY_TOLERANCE = 2.0;
+  static final int MIN_RTT_WINDOW = 500;
+
+  /**
+   * outcome of limited request.
+   */
+  public enum Outcome {
+    SUCCESS,
+    // request is rejected by server because of overload.
+    DROPPED,
+    // request failed for other reasons, which tells nothing about capacity.
+    IGNORED
+  }
+
+  private final int minLimit;
+  private final int maxLimit;
+  private double limit;
+  private int inflight = 0;
+  private long minRttNanos = Long.MAX_VALUE;
+  private long windowMinRttNanos = Long.MAX_VALUE;
+  private int windowSamples = 0;
+
+  public AdaptiveConcurrencyLimiter() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+  }
+
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+  }
+
+  /**
+   * acquire a slot, wait if concurrency reaches limit.
+   * @param maxWaitMillis max time to wait.
+   * @return false if slot can't be acquired within maxWaitMillis.
+   * @throws InterruptedException if interrupted during waiting.
+   */
+  public synchronized boolean tryAcquire(long maxWaitMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    while (inflight >= (int) limit) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    inflight++;
+    return true;
+  }
+
+  /**
+   * release slot and update limit with the result of request.
+   * @param rttNanos latency of request.
+   * @param outcome outcome of request.
+   */
+  public synchronized void release(long rttNanos, Outcome outcome) {
+    boolean saturated = inflight >= (int) limit / 2;
+    inflight--;
+    switch (outcome) {
+      case DROPPED:
+        limit = Math.max(minLimit, limit * DROP_FACTOR);
+        break;
+      case SUCCESS:
+        sampleRtt(rttNanos);
+        if (saturated && rttNanos > minRttNanos * LATENCY_TOLERANCE) {
+          limit = Math.max(minLimit, limit * LATENCY_FACTOR);
+        } else if (saturated) {
+          limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        break;
+      default:
+        break;
+    }
+    notifyAll();
+  }
+
+  private void sampleRtt(long rttNanos) {
+    windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+    minRttNanos = Math.min(minRttNanos, rttNanos);
+    if (++windowSamples >= MIN_RTT_WINDOW) {
+      minRttNanos = windowMinRttNanos;
+      windowMinRttNanos = Long.MAX_VALUE;
+      windowSamples = 0;
+    }
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInflight() {
+    return inflight;
+  }
+}
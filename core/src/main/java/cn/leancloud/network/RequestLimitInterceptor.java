@@ -0,0 +1,183 @@
+package cn.leancloud.network;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * pace requests to LeanCloud, so that SDK saturates app quota without going over it.
+ *
+ * - rate of every endpoint group is limited by an adaptive token bucket, which is disabled until it's configured.
+ * - concurrency of every endpoint group is limited by an AIMD limiter which is driven by latency and 429/503
+ *   responses, it's disabled until it's configured too, because latency baseline differs among endpoint groups.
+ * - request waits at most maxWaitMillis for permits, otherwise it fails with a ThrottledException.
+ */
+public class RequestLimitInterceptor implements Interceptor {
+  private static final AVLogger LOGGER = LogUtil.getLogger(RequestLimitInterceptor.class);
+
+  public static final long DEFAULT_MAX_WAIT_MILLIS = 10 * 1000;
+
+  /**
+   * endpoint groups which have separate quota.
+   */
+  public enum EndpointGroup {
+    CLASSES,
+    BATCH,
+    FUNCTIONS,
+    USERS,
+    OTHERS
+  }
+
+  /**
+   * request is not sent because permit can't be acquired in time.
+   */
+  public static class ThrottledException extends IOException {
+    public ThrottledException(String message) {
+      super(message);
+    }
+  }
+
+  private static volatile RequestLimitInterceptor instance = null;
+
+  public static RequestLimitInterceptor getInstance() {
+    if (null == instance) {
+      synchronized (RequestLimitInterceptor.class) {
+        if (null == instance) {
+          instance = new RequestLimitInterceptor();
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final ConcurrentHashMap<EndpointGroup, TokenBucketRateLimiter> rateLimiters =
+      new ConcurrentHashMap<EndpointGroup, TokenBucketRateLimiter>();
+  private final ConcurrentHashMap<EndpointGroup, AdaptiveConcurrencyLimiter> concurrencyLimiters =
+      new ConcurrentHashMap<EndpointGroup, AdaptiveConcurrencyLimiter>();
+  private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+  RequestLimitInterceptor() {
+  }
+
+  /**
+   * set rate limit of endpoint group.
+   * @param group endpoint group.
+   * @param permitsPerSecond max requests per second, zero or negative means unlimited.
+   */
+  public void setRateLimit(EndpointGroup group, double permitsPerSecond) {
+    if (permitsPerSecond > 0) {
+      rateLimiters.put(group, new TokenBucketRateLimiter(permitsPerSecond));
+    } else {
+      rateLimiters.remove(group);
+    }
+  }
+
+  public TokenBucketRateLimiter getRateLimiter(EndpointGroup group) {
+    return rateLimiters.get(group);
+  }
+
+  /**
+   * set concurrency limiter of endpoint group.
+   * @param group endpoint group.
+   * @param limiter concurrency limiter, null means unlimited.
+   */
+  public void setConcurrencyLimiter(EndpointGroup group, AdaptiveConcurrencyLimiter limiter) {
+    if (null != limiter) {
+      concurrencyLimiters.put(group, limiter);
+    } else {
+      concurrencyLimiters.remove(group);
+    }
+  }
+
+  public AdaptiveConcurrencyLimiter getConcurrencyLimiter(EndpointGroup group) {
+    return concurrencyLimiters.get(group);
+  }
+
+  /**
+   * set max time which request waits for rate and concurrency permits.
+   */
+  public void setMaxWaitMillis(long maxWaitMillis) {
+    this.maxWaitMillis = Math.max(0, maxWaitMillis);
+  }
+
+  public long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
+  /**
+   * classify request by path, such as /1.1/classes/Post or /1.1/functions/hello.
+   */
+  public static EndpointGroup getEndpointGroup(List<String> pathSegments) {
+    int index = 0;
+    if (pathSegments.size() > 1 && pathSegments.get(0).matches("\\d+(\\.\\d+)?")) {
+      // skip api version.
+      index = 1;
+    }
+    String resource = index < pathSegments.size() ? pathSegments.get(index) : "";
+    if ("classes".equals(resource)) {
+      return EndpointGroup.CLASSES;
+    } else if ("batch".equals(resource)) {
+      return EndpointGroup.BATCH;
+    } else if ("functions".equals(resource) || "call".equals(resource)) {
+      return EndpointGroup.FUNCTIONS;
+    } else if ("users".equals(resource) || "login".equals(resource)) {
+      return EndpointGroup.USERS;
+    }
+    return EndpointGroup.OTHERS;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (rateLimiters.isEmpty() && concurrencyLimiters.isEmpty()) {
+      return chain.proceed(request);
+    }
+    long waitMillis = maxWaitMillis;
+    EndpointGroup group = getEndpointGroup(request.url().pathSegments());
+    TokenBucketRateLimiter rateLimiter = rateLimiters.get(group);
+    AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(group);
+    try {
+      long start = System.currentTimeMillis();
+      if (null != rateLimiter && !rateLimiter.tryAcquire(waitMillis)) {
+        throw new ThrottledException("request is throttled by client rate limit.");
+      }
+      waitMillis -= System.currentTimeMillis() - start;
+      if (null != limiter && !limiter.tryAcquire(Math.max(0, waitMillis))) {
+        LOGGER.w("request is throttled by client concurrency limit(" + group + ": " + limiter.getLimit() + ").");
+        throw new ThrottledException("request is throttled by client concurrency limit.");
+      }
+    } catch (InterruptedException ex) {
+      throw new InterruptedIOException("interrupted while waiting for request permit.");
+    }
+
+    long startNanos = System.nanoTime();
+    AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+    try {
+      Response response = chain.proceed(request);
+      int code = response.code();
+      if (code == 429 || code == 503) {
+        outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+        if (null != rateLimiter && code == 429) {
+          rateLimiter.onRejected();
+        }
+      } else if (code < 500) {
+        outcome = AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+        if (null != rateLimiter) {
+          rateLimiter.onSuccess();
+        }
+      }
+      return response;
+    } finally {
+      if (null != limiter) {
+        limiter.release(System.nanoTime() - startNanos, outcome);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package cn.leancloud.network;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * retry request according to {@link RetryPolicy}.
+ * it should be the first application interceptor, so that every attempt is signed again.
+ */
+public class RetryInterceptor implements Interceptor {
+  private static final AVLogger LOGGER = LogUtil.getLogger(RetryInterceptor.class);
+  private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+  private final RetryPolicy policy;
+
+  /**
+   * use default policy, which is evaluated for every request.
+   */
+  public RetryInterceptor() {
+    this(null);
+  }
+
+  public RetryInterceptor(RetryPolicy policy) {
+    this.policy = policy;
+  }
+
+  static boolean isIdempotent(Request request) {
+    return RetryPolicy.isIdempotentMethod(request.method()) || null != request.tag(RetryPolicy.Idempotent.class);
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    RetryPolicy currentPolicy = null == policy ? RetryPolicy.getDefault() : policy;
+    RetryPolicy.Retrier retrier = currentPolicy.newRetrier(isIdempotent(request));
+    while (true) {
+      Response response;
+      try {
+        response = chain.proceed(request);
+      } catch (IOException ex) {
+        long delay = retrier.onFailure(ex);
+        if (delay < 0 || chain.call().isCanceled()) {
+          throw ex;
+        }
+        LOGGER.d("retry " + request.method() + " " + request.url().encodedPath() + " after " + delay
+            + "ms, cause: " + ex.getMessage());
+        awaitOrThrow(chain, retrier, delay);
+        continue;
+      }
+      if (response.isSuccessful()) {
+        retrier.onSuccess();
+        return response;
+      }
+      long delay = retrier.onResponse(response.code(), response.header(HEADER_RETRY_AFTER));
+      if (delay < 0 || chain.call().isCanceled()) {
+        return response;
+      }
+      LOGGER.d("retry " + request.method() + " " + request.url().encodedPath() + " after " + delay
+          + "ms, status: " + response.code());
+      response.close();
+      awaitOrThrow(chain, retrier, delay);
+    }
+  }
+
+  private static void awaitOrThrow(Chain chain, RetryPolicy.Retrier retrier, long delay) throws IOException {
+    if (!retrier.await(delay)) {
+      throw new InterruptedIOException("interrupted during retry backoff.");
+    }
+    if (chain.call().isCanceled()) {
+      throw new IOException("Canceled");
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package cn.leancloud.network;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * retry policy shared by all http requests of SDK.
+ *
+ * - delay between attempts is exponential backoff with decorrelated jitter, or Retry-After from server if it's longer.
+ * - safe request(GET/HEAD/OPTIONS, or tagged with {@link Idempotent}) is retried on io failure and
+ *   408/429/500/502/503/504; other request is retried only if it's not sent(connect failure) or rejected
+ *   explicitly(429/503), because PUT/DELETE of LeanCloud may carry non-idempotent operations such as Increment.
+ * - every retry takes a token from a global budget which is refilled by successful requests,
+ *   so retries can't amplify an outage.
+ */
+public class RetryPolicy {
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+  public static final long DEFAULT_BASE_DELAY_MILLIS = 200;
+  public static final long DEFAULT_MAX_DELAY_MILLIS = 10 * 1000;
+  public static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 60 * 1000;
+
+  private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+  private static volatile RetryPolicy defaultPolicy = new RetryPolicy(DEFAULT_MAX_ATTEMPTS,
+      DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new RetryBudget());
+
+  public static RetryPolicy getDefault() {
+    return defaultPolicy;
+  }
+
+  /**
+   * replace default policy, which is used by storage requests and file uploading.
+   * @param policy retry policy.
+   */
+  public static void setDefault(RetryPolicy policy) {
+    if (null != policy) {
+      defaultPolicy = policy;
+    }
+  }
+
+  /**
+   * token bucket which limits ratio of retries to successful requests.
+   */
+  public static class RetryBudget {
+    public static final double DEFAULT_MAX_TOKENS = 10;
+    public static final double DEFAULT_TOKEN_RATIO = 0.1;
+
+    private final double maxTokens;
+    private final double tokenRatio;
+    private double tokens;
+
+    public RetryBudget() {
+      this(DEFAULT_MAX_TOKENS, DEFAULT_TOKEN_RATIO);
+    }
+
+    /**
+     * @param maxTokens max retries allowed in a burst.
+     * @param tokenRatio tokens refilled by every successful request, 0.1 means one retry per ten successes.
+     */
+    public RetryBudget(double maxTokens, double tokenRatio) {
+      this.maxTokens = maxTokens;
+      this.tokenRatio = tokenRatio;
+      this.tokens = maxTokens;
+    }
+
+    public synchronized boolean tryAcquire() {
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+
+    public synchronized void onSuccess() {
+      tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+
+    public synchronized double getTokens() {
+      return tokens;
+    }
+  }
+
+  /**
+   * tag of request which can be retried safely even though its method is not idempotent,
+   * such as upload of content with checksum.
+   */
+  public static final class Idempotent {
+    public static final Idempotent INSTANCE = new Idempotent();
+
+    private Idempotent() {
+    }
+  }
+
+  private final int maxAttempts;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private long maxRetryAfterMillis = DEFAULT_MAX_RETRY_AFTER_MILLIS;
+  private final RetryBudget budget;
+  private final Random random = new Random();
+
+  /**
+   * @param maxAttempts max attempts including the first one, 1 means never retry.
+   * @param baseDelayMillis min delay between attempts.
+   * @param maxDelayMillis max delay between attempts.
+   * @param budget retry budget, null means unlimited.
+   */
+  public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, RetryBudget budget) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.baseDelayMillis = Math.max(1, baseDelayMillis);
+    this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    this.budget = budget;
+  }
+
+  /**
+   * set max Retry-After which is honored, request is not retried if server asks for a longer wait.
+   */
+  public void setMaxRetryAfterMillis(long maxRetryAfterMillis) {
+    this.maxRetryAfterMillis = maxRetryAfterMillis;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public RetryBudget getBudget() {
+    return budget;
+  }
+
+  public Retrier newRetrier(boolean idempotent) {
+    return new Retrier(idempotent, maxAttempts);
+  }
+
+  /**
+   * @param maxAttempts max attempts of this call, which overrides the policy.
+   */
+  public Retrier newRetrier(boolean idempotent, int maxAttempts) {
+    return new Retrier(idempotent, Math.max(1, maxAttempts));
+  }
+
+  /**
+   * decorrelated jitter: random value between base delay and three times of previous delay.
+   */
+  long nextBackoff(long previousDelay) {
+    long upper = Math.max(baseDelayMillis, Math.min(maxDelayMillis, previousDelay * 3));
+    long delay = baseDelayMillis + (long) (random.nextDouble() * (upper - baseDelayMillis));
+    return Math.min(maxDelayMillis, delay);
+  }
+
+  /**
+   * only safe methods are idempotent, PUT and DELETE are not, since update may carry Increment/Add operations
+   * and some endpoints(such as refreshing session token) rotate state on server.
+   */
+  public static boolean isIdempotentMethod(String method) {
+    return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+  }
+
+  public static boolean isRetryableStatus(int code, boolean idempotent) {
+    switch (code) {
+      case 429:
+      case 503:
+        return true;
+      case 408:
+      case 500:
+      case 502:
+      case 504:
+        return idempotent;
+      default:
+        return false;
+    }
+  }
+
+  public static boolean isRetryableFailure(Throwable failure, boolean idempotent) {
+    if (failure instanceof RequestLimitInterceptor.ThrottledException) {
+      // retry makes no sense when client itself is overloaded.
+      return false;
+    }
+    if (failure instanceof ConnectException || failure instanceof UnknownHostException
+        || failure instanceof NoRouteToHostException) {
+      // request has not been sent.
+      return true;
+    }
+    return idempotent;
+  }
+
+  /**
+   * parse Retry-After header, which is either delay seconds or http date.
+   * @return delay in milliseconds, -1 if header is absent or invalid.
+   */
+  public static long parseRetryAfter(String value, long now) {
+    if (null == value || value.trim().length() == 0) {
+      return -1;
+    }
+    value = value.trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException ex) {
+      ;
+    }
+    try {
+      SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      Date date = format.parse(value);
+      return Math.max(0, date.getTime() - now);
+    } catch (Exception ex) {
+      return -1;
+    }
+  }
+
+  /**
+   * retry state of a single call, which is not thread safe.
+   */
+  public class Retrier {
+    private final boolean idempotent;
+    private final int maxAttempts;
+    private int attempts = 1;
+    private long previousDelay = 0;
+
+    Retrier(boolean idempotent, int maxAttempts) {
+      this.idempotent = idempotent;
+      this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @return delay before next attempt after a failed response, -1 means not to retry.
+     */
+    public long onResponse(int code, String retryAfter) {
+      if (!isRetryableStatus(code, idempotent)) {
+        return -1;
+      }
+      long serverDelay = parseRetryAfter(retryAfter, System.currentTimeMillis());
+      if (serverDelay > maxRetryAfterMillis) {
+        return -1;
+      }
+      return nextDelay(serverDelay);
+    }
+
+    /**
+     * @return delay before next attempt after an exception, -1 means not to retry.
+     */
+    public long onFailure(Throwable failure) {
+      if (!isRetryableFailure(failure, idempotent)) {
+        return -1;
+      }
+      return nextDelay(-1);
+    }
+
+    public void onSuccess() {
+      if (null != budget) {
+        budget.onSuccess();
+      }
+    }
+
+    private long nextDelay(long serverDelay) {
+      if (attempts >= maxAttempts) {
+        return -1;
+      }
+      if (null != budget && !budget.tryAcquire()) {
+        return -1;
+      }
+      attempts++;
+      previousDelay = nextBackoff(previousDelay);
+      return Math.max(previousDelay, serverDelay);
+    }
+
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /**
+     * sleep before next attempt.
+     * @return false if current thread is interrupted.
+     */
+    public boolean await(long delay) {
+      try {
+        Thread.sleep(delay);
+        return true;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package cn.leancloud.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * token bucket rate limiter, which allows a burst of one second.
+ *
+ * the rate is adaptive: it's decreased multiplicatively once server rejects a request because of rate limit(429),
+ * and recovers to the configured rate gradually with successful requests.
+ */
+public class TokenBucketRateLimiter {
+  static final double DECREASE_FACTOR = 0.8;
+  static final double MIN_RATE_FACTOR = 0.1;
+  static final double RECOVER_FACTOR = 0.01;
+
+  private final double configuredRate;
+  private double rate;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * @param permitsPerSecond max rate.
+   */
+  public TokenBucketRateLimiter(double permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("permitsPerSecond must be positive.");
+    }
+    this.configuredRate = permitsPerSecond;
+    this.rate = permitsPerSecond;
+    this.tokens = permitsPerSecond;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  private void refill(long now) {
+    double elapsedSeconds = (now - lastRefillNanos) / 1e9;
+    tokens = Math.min(Math.max(1, rate), tokens + elapsedSeconds * rate);
+    lastRefillNanos = now;
+  }
+
+  /**
+   * reserve a permit.
+   * @param maxWaitMillis max time to wait for permit.
+   * @return nanoseconds to wait before permit is available, -1 if it needs to wait longer than maxWaitMillis.
+   */
+  synchronized long reserve(long maxWaitMillis) {
+    long now = System.nanoTime();
+    refill(now);
+    long waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * 1e9);
+    if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+      return -1;
+    }
+    // tokens may be negative, which means permits reserved by waiting callers.
+    tokens -= 1;
+    return waitNanos;
+  }
+
+  /**
+   * acquire a permit, wait if necessary.
+   * @param maxWaitMillis max time to wait for permit.
+   * @return false if permit can't be acquired within maxWaitMillis.
+   * @throws InterruptedException if interrupted during waiting.
+   */
+  public boolean tryAcquire(long maxWaitMillis) throws InterruptedException {
+    long waitNanos = reserve(maxWaitMillis);
+    if (waitNanos < 0) {
+      return false;
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+    return true;
+  }
+
+  public synchronized void onRejected() {
+    rate = Math.max(configuredRate * MIN_RATE_FACTOR, rate * DECREASE_FACTOR);
+  }
+
+  public synchronized void onSuccess() {
+    if (rate < configuredRate) {
+      rate = Math.min(configuredRate, rate + configuredRate * RECOVER_FACTOR);
+    }
+  }
+
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  public double getConfiguredRate() {
+    return configuredRate;
+  }
+}
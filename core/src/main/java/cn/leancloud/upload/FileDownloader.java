@@ -6,89 +6,440 @@ import cn.leancloud.cache.PersistenceUtil;
 import cn.leancloud.core.PaasClient;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
-import okhttp3.Headers;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
+/**
+ * download engine for file content.
+ *
+ * - all downloads share connection pool and dispatcher of the global http client.
+ * - data is written to a partial file first, and an interrupted download is resumed via http Range.
+ * - large file is split into range segments and downloaded in parallel.
+ * - concurrent downloads of the same target are coalesced into one transfer.
+ * - completed file is renamed to target path, so readers never see a partial file.
+ */
 public class FileDownloader {
   private static final AVLogger gLogger = LogUtil.getLogger(FileDownloader.class);
 
-  private static final int READ_BUF_SIZE = 1024*8;
+  static final String PART_SUFFIX = ".part";
+  static final String META_SUFFIX = ".part.meta";
+
+  private static final String HEADER_RANGE = "Range";
+  private static final String HEADER_IF_RANGE = "If-Range";
+  private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+  private static final String HEADER_ETAG = "ETag";
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  private static final int READ_BUF_SIZE = 64 * 1024;
+  private static final int MAX_ATTEMPTS = 2;
+
+  private static long segmentSize = 4 * 1024 * 1024;
+  private static int segmentConcurrency = 3;
+  private static OkHttpClient httpClient = null;
+  private static final ConcurrentHashMap<String, InflightDownload> inflightDownloads =
+      new ConcurrentHashMap<String, InflightDownload>();
+
+  /**
+   * set segment size of parallel download, file larger than two segments is downloaded in parallel.
+   * @param size segment size in bytes.
+   */
+  public static void setSegmentSize(long size) {
+    if (size > 0) {
+      segmentSize = size;
+    }
+  }
+
+  public static long getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * set max count of segments which are downloaded concurrently, 1 means parallel download is disabled.
+   * @param concurrency concurrency.
+   */
+  public static void setSegmentConcurrency(int concurrency) {
+    segmentConcurrency = Math.max(1, concurrency);
+  }
+
+  public static int getSegmentConcurrency() {
+    return segmentConcurrency;
+  }
+
+  static synchronized OkHttpClient getHttpClient() {
+    if (null == httpClient) {
+      // share connection pool and dispatcher with global client, but file host doesn't need any leancloud headers.
+      OkHttpClient.Builder builder = PaasClient.getGlobalOkHttpClient().newBuilder();
+      builder.interceptors().clear();
+      httpClient = builder.readTimeout(30, TimeUnit.SECONDS).build();
+    }
+    return httpClient;
+  }
+
+  private static class InflightDownload {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile AVException result = null;
+  }
 
   public AVException execute(final String url, File localFile) {
     if (StringUtil.isEmpty(url)) {
       return new AVException(new IllegalArgumentException("url is null"));
     }
+    if (null == localFile) {
+      return new AVException(new IllegalArgumentException("local file is null"));
+    }
     if (localFile.exists()) {
-      return new AVException(new FileNotFoundException("local file is not existed."));
+      // downloaded already.
+      return null;
     }
-    return downloadFileFromNetwork(url, localFile);
+    String key = localFile.getAbsolutePath();
+    InflightDownload download = new InflightDownload();
+    InflightDownload existed = inflightDownloads.putIfAbsent(key, download);
+    if (null != existed) {
+      gLogger.d("join inflight download for " + url);
+      try {
+        existed.latch.await();
+      } catch (InterruptedException ex) {
+        return new AVException(ex);
+      }
+      return existed.result;
+    }
+    try {
+      if (localFile.exists()) {
+        download.result = null;
+      } else {
+        download.result = downloadFileFromNetwork(url, localFile);
+      }
+    } catch (RuntimeException ex) {
+      download.result = new AVException(ex);
+    } finally {
+      inflightDownloads.remove(key, download);
+      download.latch.countDown();
+    }
+    return download.result;
   }
 
-  private OkHttpClient getHttpClient() {
-    return new OkHttpClient.Builder()
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .writeTimeout(10, TimeUnit.SECONDS)
-            .build();
+  private AVException downloadFileFromNetwork(final String url, File cacheFile) {
+    File partFile = new File(cacheFile.getPath() + PART_SUFFIX);
+    File metaFile = new File(cacheFile.getPath() + META_SUFFIX);
+    AVException errors = null;
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      try {
+        DownloadMeta meta = DownloadMeta.load(metaFile);
+        if (null == meta || !partFile.exists()) {
+          meta = null;
+          PersistenceUtil.sharedInstance().forceDeleteFile(partFile);
+        }
+        if (null != meta && meta.isSegmented()) {
+          errors = downloadSegments(url, partFile, metaFile, meta);
+        } else {
+          errors = downloadStream(url, partFile, metaFile, meta);
+        }
+        if (null == errors) {
+          return commit(partFile, metaFile, cacheFile);
+        }
+        return errors;
+      } catch (RestartRequiredException ex) {
+        gLogger.d("restart download for " + url + ", cause: " + ex.getMessage());
+        discard(partFile, metaFile);
+        errors = new AVException(ex);
+      } catch (IOException ex) {
+        gLogger.w(ex);
+        // partial file is kept for resuming.
+        return new AVException(ex);
+      }
+    }
+    return errors;
   }
 
-  private AVException downloadFileFromNetwork(final String url, File cacheFile) {
+  /**
+   * partial file can't be resumed, because remote file has been changed or range is not satisfiable.
+   */
+  private static class RestartRequiredException extends IOException {
+    RestartRequiredException(String message) {
+      super(message);
+    }
+  }
 
-    AVException errors = null;
+  private AVException downloadStream(String url, File partFile, File metaFile, DownloadMeta meta) throws IOException {
+    long resumeOffset = null == meta ? 0 : partFile.length();
     Request.Builder requestBuilder = new Request.Builder();
     requestBuilder.url(url);
-
-    OkHttpClient client = getHttpClient();
+    if (resumeOffset > 0) {
+      requestBuilder.header(HEADER_RANGE, "bytes=" + resumeOffset + "-");
+      requestBuilder.header(HEADER_IF_RANGE, meta.validator);
+    }
+    Response response = getHttpClient().newCall(requestBuilder.build()).execute();
     try {
-      Response response = client.newCall(requestBuilder.build()).execute();
       int statusCode = response.code();
-      InputStream data = response.body().byteStream();
-      if (statusCode / 100 == 2 && null != data) {
-        // read data from InputStream and save to cache File
-        byte[] content = new byte[READ_BUF_SIZE];
-
-        FileOutputStream out = null;
-        Lock writeLock = PersistenceUtil.sharedInstance().getLock(cacheFile.getAbsolutePath()).writeLock();
-        if (writeLock.tryLock()) {
-          try {
-            out = new FileOutputStream(cacheFile, false);
-            int currentReadSize = data.read(content);
-            while (currentReadSize > 0) {
-              out.write(content, 0, currentReadSize);
-              currentReadSize = data.read(content);
-            }
-          } catch (Exception e) {
-            gLogger.w(e);
-            errors = new AVException(e);
-          } finally {
-            try {
-              data.close();
-            } catch (IOException e) {
-            }
-            if (out != null) {
+      if (statusCode == 416 && resumeOffset > 0) {
+        throw new RestartRequiredException("range not satisfiable");
+      }
+      ResponseBody body = response.body();
+      if (statusCode / 100 != 2 || null == body) {
+        AVException errors = new AVException(statusCode, "status code is invalid");
+        gLogger.w(errors);
+        return errors;
+      }
+      boolean append = resumeOffset > 0 && statusCode == 206;
+      long totalLength = body.contentLength() < 0 ? -1 : (append ? resumeOffset : 0) + body.contentLength();
+      String validator = getValidator(response);
+      if (!append && null != validator && segmentConcurrency > 1 && totalLength > 2 * segmentSize
+          && "bytes".equalsIgnoreCase(response.header(HEADER_ACCEPT_RANGES))) {
+        response.close();
+        DownloadMeta segmentMeta = new DownloadMeta(validator, totalLength, segmentSize);
+        PersistenceUtil.sharedInstance().forceDeleteFile(partFile);
+        segmentMeta.save(metaFile);
+        return downloadSegments(url, partFile, metaFile, segmentMeta);
+      }
+      if (!append) {
+        if (null != validator) {
+          new DownloadMeta(validator, totalLength, 0).save(metaFile);
+        } else {
+          // can't be resumed without validator.
+          PersistenceUtil.sharedInstance().forceDeleteFile(metaFile);
+        }
+      }
+      BufferedSink sink = Okio.buffer(append ? Okio.appendingSink(partFile) : Okio.sink(partFile));
+      try {
+        sink.writeAll(body.source());
+      } finally {
+        sink.close();
+      }
+      if (totalLength >= 0 && partFile.length() != totalLength) {
+        throw new IOException("incomplete content, expected " + totalLength + " bytes but got " + partFile.length());
+      }
+      return null;
+    } finally {
+      response.close();
+    }
+  }
+
+  private AVException downloadSegments(final String url, File partFile, final File metaFile, final DownloadMeta meta)
+      throws IOException {
+    final int segmentCount = meta.getSegmentCount();
+    final List<Integer> pendingSegments = new ArrayList<Integer>();
+    for (int i = 0; i < segmentCount; i++) {
+      if (!meta.isSegmentDone(i)) {
+        pendingSegments.add(i);
+      }
+    }
+    gLogger.d("begin to download " + url + " in segments. total=" + segmentCount + ", pending=" + pendingSegments.size());
+    final AtomicInteger nextSegment = new AtomicInteger(0);
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>(null);
+    int concurrency = Math.max(1, Math.min(segmentConcurrency, pendingSegments.size()));
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(partFile, "rw");
+    final FileChannel channel = randomAccessFile.getChannel();
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      randomAccessFile.setLength(meta.totalLength);
+      List<Future<?>> futures = new ArrayList<Future<?>>(concurrency);
+      for (int i = 0; i < concurrency; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            byte[] buf = new byte[READ_BUF_SIZE];
+            int index;
+            while (null == failure.get() && (index = nextSegment.getAndIncrement()) < pendingSegments.size()) {
+              int segment = pendingSegments.get(index);
               try {
-                out.close();
-              } catch (IOException e) {
+                AVException error = downloadSegment(url, channel, meta, segment, buf);
+                if (null != error) {
+                  failure.compareAndSet(null, error);
+                  return;
+                }
+              } catch (IOException ex) {
+                failure.compareAndSet(null, ex);
+                return;
               }
+              meta.markSegmentDone(segment, metaFile);
             }
-            writeLock.unlock();
           }
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (Exception ex) {
+          failure.compareAndSet(null, ex);
+        }
+      }
+      channel.force(false);
+    } finally {
+      executor.shutdownNow();
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        ;
+      }
+    }
+    Exception ex = failure.get();
+    if (ex instanceof IOException) {
+      throw (IOException) ex;
+    }
+    return null == ex ? null : (ex instanceof AVException ? (AVException) ex : new AVException(ex));
+  }
+
+  private AVException downloadSegment(String url, FileChannel channel, DownloadMeta meta, int segment, byte[] buf)
+      throws IOException {
+    long start = segment * meta.segmentSize;
+    long end = Math.min(meta.totalLength, start + meta.segmentSize) - 1;
+    Request request = new Request.Builder().url(url)
+        .header(HEADER_RANGE, "bytes=" + start + "-" + end)
+        .header(HEADER_IF_RANGE, meta.validator)
+        .build();
+    Response response = getHttpClient().newCall(request).execute();
+    try {
+      if (response.code() == 200 || response.code() == 416) {
+        // remote file has been changed.
+        throw new RestartRequiredException("range is not honored");
+      }
+      ResponseBody body = response.body();
+      if (response.code() != 206 || null == body) {
+        return new AVException(response.code(), "status code is invalid");
+      }
+      InputStream is = body.byteStream();
+      long position = start;
+      int readCnt;
+      while (position <= end && (readCnt = is.read(buf, 0, (int) Math.min(buf.length, end + 1 - position))) > 0) {
+        ByteBuffer buffer = ByteBuffer.wrap(buf, 0, readCnt);
+        while (buffer.hasRemaining()) {
+          position += channel.write(buffer, position);
+        }
+      }
+      if (position != end + 1) {
+        throw new IOException("incomplete segment(" + segment + ").");
+      }
+      return null;
+    } finally {
+      response.close();
+    }
+  }
+
+  private AVException commit(File partFile, File metaFile, File cacheFile) {
+    Lock writeLock = PersistenceUtil.sharedInstance().getLock(cacheFile.getAbsolutePath()).writeLock();
+    writeLock.lock();
+    try {
+      if (!partFile.renameTo(cacheFile)) {
+        if (cacheFile.exists()) {
+          // completed by another process.
+          PersistenceUtil.sharedInstance().forceDeleteFile(partFile);
         } else {
-          gLogger.w("failed to lock writeLocker, skip to save network streaming to local cache.");
+          return new AVException(new IOException("failed to rename " + partFile.getName()));
         }
-      } else {
-        errors = new AVException(statusCode, "status code is invalid");
-        gLogger.w(errors);
       }
-    } catch (IOException ex) {
-      errors = new AVException(ex);
+    } finally {
+      writeLock.unlock();
+    }
+    PersistenceUtil.sharedInstance().forceDeleteFile(metaFile);
+    return null;
+  }
+
+  private static void discard(File partFile, File metaFile) {
+    PersistenceUtil.sharedInstance().forceDeleteFile(partFile);
+    PersistenceUtil.sharedInstance().forceDeleteFile(metaFile);
+  }
+
+  private static String getValidator(Response response) {
+    String etag = response.header(HEADER_ETAG);
+    if (!StringUtil.isEmpty(etag) && !etag.startsWith("W/")) {
+      // weak etag can't be used for range request.
+      return etag;
+    }
+    String lastModified = response.header(HEADER_LAST_MODIFIED);
+    return StringUtil.isEmpty(lastModified) ? null : lastModified;
+  }
+
+  /**
+   * state of partial file, which is saved beside it for resuming.
+   * segmentSize is 0 for single stream download.
+   */
+  static class DownloadMeta {
+    private static final String KEY_VALIDATOR = "validator";
+    private static final String KEY_TOTAL_LENGTH = "totalLength";
+    private static final String KEY_SEGMENT_SIZE = "segmentSize";
+    private static final String KEY_DONE_SEGMENTS = "doneSegments";
+
+    final String validator;
+    final long totalLength;
+    final long segmentSize;
+    private final Set<Integer> doneSegments = new HashSet<Integer>();
+
+    DownloadMeta(String validator, long totalLength, long segmentSize) {
+      this.validator = validator;
+      this.totalLength = totalLength;
+      this.segmentSize = segmentSize;
+    }
+
+    boolean isSegmented() {
+      return segmentSize > 0 && totalLength > 0;
+    }
+
+    int getSegmentCount() {
+      return (int) (totalLength / segmentSize + (totalLength % segmentSize > 0 ? 1 : 0));
+    }
+
+    synchronized boolean isSegmentDone(int segment) {
+      return doneSegments.contains(segment);
+    }
+
+    synchronized void markSegmentDone(int segment, File metaFile) {
+      doneSegments.add(segment);
+      save(metaFile);
+    }
+
+    synchronized void save(File metaFile) {
+      JSONObject content = new JSONObject();
+      content.put(KEY_VALIDATOR, validator);
+      content.put(KEY_TOTAL_LENGTH, totalLength);
+      content.put(KEY_SEGMENT_SIZE, segmentSize);
+      content.put(KEY_DONE_SEGMENTS, doneSegments);
+      PersistenceUtil.sharedInstance().saveContentToFile(content.toJSONString(), metaFile);
+    }
+
+    static DownloadMeta load(File metaFile) {
+      if (!metaFile.exists()) {
+        return null;
+      }
+      try {
+        JSONObject content = JSON.parseObject(PersistenceUtil.sharedInstance().readContentFromFile(metaFile));
+        if (null == content || StringUtil.isEmpty(content.getString(KEY_VALIDATOR))) {
+          return null;
+        }
+        DownloadMeta meta = new DownloadMeta(content.getString(KEY_VALIDATOR),
+            content.getLongValue(KEY_TOTAL_LENGTH), content.getLongValue(KEY_SEGMENT_SIZE));
+        List<Integer> segments = content.getJSONArray(KEY_DONE_SEGMENTS) == null ? null
+            : content.getJSONArray(KEY_DONE_SEGMENTS).toJavaList(Integer.class);
+        if (null != segments) {
+          meta.doneSegments.addAll(segments);
+        }
+        return meta;
+      } catch (Exception ex) {
+        gLogger.w("failed to load download meta, cause: " + ex.getMessage());
+        return null;
+      }
     }
-    return errors;
   }
 }
@@ -0,0 +1,79 @@
+package cn.leancloud.upload;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * request body which streams a range of local file, so that heap usage is irrelevant to file size.
+ * file is opened every time body is written, so it can be retried safely.
+ */
+class FileRangeRequestBody extends RequestBody {
+  static final int SEGMENT_SIZE = 64 * 1024;
+
+  interface ProgressListener {
+    void onProgress(long bytesWritten, long contentLength);
+  }
+
+  private final MediaType contentType;
+  private final File file;
+  private final long offset;
+  private final long length;
+  private final ProgressListener listener;
+
+  FileRangeRequestBody(MediaType contentType, File file, long offset, long length, ProgressListener listener) {
+    this.contentType = contentType;
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+    this.listener = listener;
+  }
+
+  FileRangeRequestBody(MediaType contentType, File file, ProgressListener listener) {
+    this(contentType, file, 0, file.length(), listener);
+  }
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public long contentLength() {
+    return length;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    FileInputStream is = new FileInputStream(file);
+    Source source = null;
+    try {
+      is.getChannel().position(offset);
+      source = Okio.source(is);
+      long written = 0;
+      while (written < length) {
+        long read = source.read(sink.getBuffer(), Math.min(SEGMENT_SIZE, length - written));
+        if (read < 0) {
+          throw new IOException("unexpected end of file: " + file.getName());
+        }
+        written += read;
+        sink.emit();
+        if (null != listener) {
+          listener.onProgress(written, length);
+        }
+      }
+    } finally {
+      if (null != source) {
+        source.close();
+      } else {
+        is.close();
+      }
+    }
+  }
+}
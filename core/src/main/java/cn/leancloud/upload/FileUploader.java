@@ -101,6 +101,20 @@ public class FileUploader extends HttpClientUploader {
     }
   }
 
+  /**
+   * set count of blocks uploaded concurrently for qiniu slicing upload(default is 3).
+   * it only works for file whose data is available locally.
+   *
+   * @param concurrency block concurrency.
+   */
+  public static void setQiniuBlockConcurrency(int concurrency) {
+    qiniuBlockConcurrency = Math.max(1, concurrency);
+  }
+
+  public static int getQiniuBlockConcurrency() {
+    return qiniuBlockConcurrency;
+  }
+
   public static void setUploadHeader(String key, String value) {
     UPLOAD_HEADERS.put(key, value);
   }
@@ -109,4 +123,5 @@ public class FileUploader extends HttpClientUploader {
     void onProgress(int progress);
   }
   static HashMap<String, String> UPLOAD_HEADERS = new HashMap<String, String>();
+  private static volatile int qiniuBlockConcurrency = 3;
 }
@@ -5,6 +5,7 @@ import cn.leancloud.AVLogger;
 import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.AVFile;
 import cn.leancloud.network.DNSDetoxicant;
+import cn.leancloud.network.RetryPolicy;
 import cn.leancloud.utils.LogUtil;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -53,21 +54,35 @@ public abstract class HttpClientUploader implements Uploader {
     cancelled = false;
   }
 
+  /**
+   * execute upload request with default retry policy, content uploading is regarded as idempotent.
+   * @param request request.
+   * @param retry max attempts.
+   * @return successful response.
+   * @throws AVException if request failed finally or upload is cancelled.
+   */
   protected Response executeWithRetry(Request request, int retry) throws AVException {
-    if (retry > 0 && !isCancelled()) {
+    RetryPolicy.Retrier retrier = RetryPolicy.getDefault().newRetrier(true, retry);
+    while (!isCancelled()) {
+      long delay;
       try {
         Response response = getOKHttpClient().newCall(request).execute();
         if (response.code() / 100 == 2) {
+          retrier.onSuccess();
           return response;
-        } else {
-          return executeWithRetry(request, retry - 1);
         }
+        delay = retrier.onResponse(response.code(), response.header("Retry-After"));
+        logger.d("upload request failed. status=" + response.code() + ", retry after " + delay + "ms");
+        response.close();
       } catch (IOException e) {
-        return executeWithRetry(request, retry - 1);
+        delay = retrier.onFailure(e);
+        logger.d("upload request failed. cause=" + e.getMessage() + ", retry after " + delay + "ms");
+      }
+      if (delay < 0 || !retrier.await(delay)) {
+        break;
       }
-    } else {
-      throw new AVException(AVException.OTHER_CAUSE, "Upload File failure");
     }
+    throw new AVException(AVException.OTHER_CAUSE, "Upload File failure");
   }
 
   public void publishProgress(int progress) {
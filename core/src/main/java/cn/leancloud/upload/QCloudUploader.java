@@ -9,6 +9,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import okhttp3.*;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -48,13 +49,16 @@ public class QCloudUploader extends HttpClientUploader {
 
   public AVException execute() {
     try {
-      byte[] bytes = avFile.getData();
+      // slices are streamed from local file if possible, so that whole file is never loaded into memory.
+      File localFile = avFile.getLocalFile();
+      byte[] bytes = null == localFile ? avFile.getData() : null;
+      long fileSize = null == localFile ? bytes.length : localFile.length();
       int sliceCount =
-              (bytes.length / DEFAULT_SLICE_LEN) + (bytes.length % DEFAULT_SLICE_LEN == 0 ? 0 : 1);
+              (int) ((fileSize / DEFAULT_SLICE_LEN) + (fileSize % DEFAULT_SLICE_LEN == 0 ? 0 : 1));
 
       // 如果文件太小就没必要分片了
       if (sliceCount > 1) {
-        JSONObject result = uploadControlSlice(token, uploadUrl, bytes);
+        JSONObject result = uploadControlSlice(token, uploadUrl, localFile, bytes, fileSize);
         if (null == result) {
           return new AVException(new RuntimeException("Exception during file upload"));
         }
@@ -73,14 +77,18 @@ public class QCloudUploader extends HttpClientUploader {
         String sliceUploadResult = "";
         int sliceOffset = 0;
         for (; sliceOffset < sliceCount && null != sliceUploadResult; sliceOffset++) {
-          sliceUploadResult = new SliceUploadTask(this, fileKey, token, uploadUrl,
-                  bytes, sliceOffset, sessionId, progressCalculator, null).upload();
+          SliceUploadTask task = null == localFile ?
+                  new SliceUploadTask(this, fileKey, token, uploadUrl,
+                          bytes, sliceOffset, sessionId, progressCalculator, null)
+                  : new SliceUploadTask(this, fileKey, token, uploadUrl,
+                          localFile, sliceOffset, sessionId, progressCalculator, null);
+          sliceUploadResult = task.upload();
         }
         if (sliceOffset < sliceCount) {
           return new AVException(AVException.OTHER_CAUSE, "failed to upload slice.");
         }
       } else {
-        uploadFile(bytes);
+        uploadFile(localFile, bytes, fileSize);
       }
     } catch (Exception e) {
       return new AVException(e);
@@ -89,14 +97,12 @@ public class QCloudUploader extends HttpClientUploader {
     return null;
   }
 
-  private void uploadFile(byte[] bytes) throws AVException {
+  private void uploadFile(File localFile, byte[] bytes, long fileSize) throws AVException {
 
     try {
-      fileSha = SHA1.compute(bytes);
+      fileSha = null == localFile ? SHA1.compute(bytes) : SHA1.compute(localFile);
       MultipartBody.Builder builder = new MultipartBody.Builder();
-      RequestBody fileBody =
-              RequestBody.create(MediaType.parse(APPLICATION_OCTET_STREAM), bytes, 0,
-                      getCurrentSliceLength(0, bytes.length));
+      RequestBody fileBody = createSliceBody(localFile, bytes, 0, fileSize);
       builder.addFormDataPart(FILE_CONTENT, fileKey, fileBody);
       builder.addFormDataPart(PARAM_OP, OP_UPLOAD);
       builder.addFormDataPart(PARAM_SHA, fileSha);
@@ -142,19 +148,29 @@ public class QCloudUploader extends HttpClientUploader {
     return null;
   }
 
-  private static int getCurrentSliceLength(int sliceCount, int totalSize) {
-    int leftSize = totalSize - sliceCount * DEFAULT_SLICE_LEN;
-    return leftSize >= DEFAULT_SLICE_LEN ? DEFAULT_SLICE_LEN : leftSize;
+  private static int getCurrentSliceLength(int sliceCount, long totalSize) {
+    long leftSize = totalSize - (long) sliceCount * DEFAULT_SLICE_LEN;
+    return leftSize >= DEFAULT_SLICE_LEN ? DEFAULT_SLICE_LEN : (int) leftSize;
   }
 
-  private JSONObject uploadControlSlice(String token, String url, byte[] wholeFile)
+  private static RequestBody createSliceBody(File localFile, byte[] bytes, int sliceOffset, long totalSize) {
+    MediaType mediaType = MediaType.parse(APPLICATION_OCTET_STREAM);
+    long offset = (long) sliceOffset * DEFAULT_SLICE_LEN;
+    int length = getCurrentSliceLength(sliceOffset, totalSize);
+    if (null != localFile) {
+      return new FileRangeRequestBody(mediaType, localFile, offset, length, null);
+    }
+    return RequestBody.create(mediaType, bytes, (int) offset, length);
+  }
+
+  private JSONObject uploadControlSlice(String token, String url, File localFile, byte[] wholeFile, long fileSize)
           throws AVException {
     MultipartBody.Builder builder = new MultipartBody.Builder();
     try {
-      String fileSha = SHA1.compute(wholeFile);
+      String fileSha = null == localFile ? SHA1.compute(wholeFile) : SHA1.compute(localFile);
       builder.addFormDataPart(PARAM_SHA, fileSha);
       builder.addFormDataPart(PARAM_OP, OP_UPLOAD_SLICE);
-      builder.addFormDataPart(PARAM_FILE_SIZE, String.valueOf(wholeFile.length));
+      builder.addFormDataPart(PARAM_FILE_SIZE, String.valueOf(fileSize));
       builder.addFormDataPart(PARAM_SLICE_SIZE, String.valueOf(DEFAULT_SLICE_LEN));
 
       MediaType type = MediaType.parse(MULTIPART_FORM_DATA);
@@ -182,6 +198,7 @@ public class QCloudUploader extends HttpClientUploader {
 
   public static class SliceUploadTask implements Runnable {
     byte[] data;
+    File file;
     int sliceOffset;
     FileUploader.ProgressCalculator progress;
     String session;
@@ -204,6 +221,12 @@ public class QCloudUploader extends HttpClientUploader {
       this.parent = parent;
     }
 
+    public SliceUploadTask(QCloudUploader parent, String key, String token, String url, File file, int sliceOffset,
+                           String session, FileUploader.ProgressCalculator progressCalculator, CountDownLatch latch) {
+      this(parent, key, token, url, (byte[]) null, sliceOffset, session, progressCalculator, latch);
+      this.file = file;
+    }
+
     public void run() {
       this.upload();
     }
@@ -211,14 +234,12 @@ public class QCloudUploader extends HttpClientUploader {
     public String upload() {
       try {
         MultipartBody.Builder builder = new MultipartBody.Builder();
-        RequestBody fileBody =
-                RequestBody.create(MediaType.parse(APPLICATION_OCTET_STREAM), data, sliceOffset
-                                * DEFAULT_SLICE_LEN,
-                        getCurrentSliceLength(sliceOffset, data.length));
+        RequestBody fileBody = createSliceBody(file, data, sliceOffset,
+                null != file ? file.length() : data.length);
         builder.addFormDataPart(FILE_CONTENT, key, fileBody);
         builder.addFormDataPart(PARAM_OP, OP_UPLOAD_SLICE);
         builder.addFormDataPart(PARAM_OFFSET,
-                String.valueOf(sliceOffset * DEFAULT_SLICE_LEN));
+                String.valueOf((long) sliceOffset * DEFAULT_SLICE_LEN));
         builder.addFormDataPart(PARAM_SESSION, session);
 
         MediaType type = MediaType.parse(MULTIPART_FORM_DATA);
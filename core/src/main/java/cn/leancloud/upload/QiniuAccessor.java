@@ -4,6 +4,7 @@ package cn.leancloud.upload;
 import cn.leancloud.AVException;
 import cn.leancloud.AVLogger;
 import cn.leancloud.codec.Base64;
+import cn.leancloud.network.RetryPolicy;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import com.alibaba.fastjson.JSON;
@@ -180,6 +181,50 @@ class QiniuAccessor {
     throw new Exception(phrase);
   }
 
+  interface ResponseHandler<T> {
+    T handle(Response response) throws Exception;
+  }
+
+  /**
+   * execute request with default retry policy.
+   * all requests to qiniu are idempotent, because block and chunk carry crc32 and file is identified by key.
+   */
+  private <T> T executeWithRetry(Request request, int retry, ResponseHandler<T> handler) {
+    RetryPolicy.Retrier retrier = RetryPolicy.getDefault().newRetrier(true, retry + 1);
+    while (true) {
+      long delay;
+      Exception failure;
+      try {
+        Response response = this.client.newCall(request).execute();
+        if (response.code() / 100 == 2) {
+          T result = handler.handle(response);
+          retrier.onSuccess();
+          return result;
+        }
+        delay = retrier.onResponse(response.code(), response.header("Retry-After"));
+        if (delay < 0) {
+          // not retryable, parse error message from response.
+          try {
+            handler.handle(response);
+          } catch (Exception e) {
+            LOGGER.w(e);
+          }
+          return null;
+        }
+        failure = new Exception("status code: " + response.code());
+        response.close();
+      } catch (Exception e) {
+        delay = retrier.onFailure(e);
+        failure = e;
+      }
+      if (delay < 0 || !retrier.await(delay)) {
+        LOGGER.w(failure);
+        return null;
+      }
+      LOGGER.d("retry qiniu request after " + delay + "ms, cause: " + failure.getMessage());
+    }
+  }
+
   /**
    * REST API:
    * - POST /mkblk/<blockSize> HTTP/1.1
@@ -205,29 +250,23 @@ class QiniuAccessor {
    */
   public QiniuBlockResponseData createBlockInQiniu(int blockSize, int firstChunkSize,
                                                    final byte[] firstChunkData, int retry) {
-    try {
-
-      String endPoint = String.format(QINIU_CREATE_BLOCK_EP, this.uploadUrl, blockSize);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(firstChunkSize));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("createBlockInQiniu with uploadUrl: " + endPoint);
-      RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE), firstChunkData, 0, firstChunkSize);
-      builder = builder.post(requestBody);
-
-      Response response = this.client.newCall(builder.build()).execute();
-      return parseQiniuResponse(response, QiniuBlockResponseData.class);
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return createBlockInQiniu(blockSize, firstChunkSize, firstChunkData, retry);
-      } else {
-        LOGGER.w(e);
+    String endPoint = String.format(QINIU_CREATE_BLOCK_EP, this.uploadUrl, blockSize);
+    Request.Builder builder = new Request.Builder();
+    builder.url(endPoint);
+    builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
+    builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(firstChunkSize));
+    builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+    LOGGER.d("createBlockInQiniu with uploadUrl: " + endPoint);
+    RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE), firstChunkData, 0, firstChunkSize);
+    builder = builder.post(requestBody);
+
+    return executeWithRetry(builder.build(), retry, new ResponseHandler<QiniuBlockResponseData>() {
+      @Override
+      public QiniuBlockResponseData handle(Response response) throws Exception {
+        return parseQiniuResponse(response, QiniuBlockResponseData.class);
       }
-    }
-    return null;
+    });
   }
 
   /**
@@ -264,32 +303,27 @@ class QiniuAccessor {
   public QiniuBlockResponseData putFileBlocksToQiniu(QiniuBlockResponseData lastChunk,
                                                      final int blockOffset,
                                                      final byte[] currentChunkData,
-                                                     int currentChunkSize, int retry) {
-    try {
-      String endPoint = String.format(QINIU_BRICK_UPLOAD_EP, this.uploadUrl, lastChunk.ctx, lastChunk.offset);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(currentChunkSize));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("putFileBlocksToQiniu with uploadUrl: " + endPoint);
-
-      RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE),
-              currentChunkData, 0, currentChunkSize);
-      builder = builder.post(requestBody);
-      Response response = this.client.newCall(builder.build()).execute();
-      QiniuBlockResponseData respData = parseQiniuResponse(response, QiniuBlockResponseData.class);
-      validateCrc32Value(respData, currentChunkData, 0, currentChunkSize);
-      return respData;
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return putFileBlocksToQiniu(lastChunk, blockOffset, currentChunkData, currentChunkSize, retry);
-      } else {
-        LOGGER.w(e);
+                                                     final int currentChunkSize, int retry) {
+    String endPoint = String.format(QINIU_BRICK_UPLOAD_EP, this.uploadUrl, lastChunk.ctx, lastChunk.offset);
+    Request.Builder builder = new Request.Builder();
+    builder.url(endPoint);
+    builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
+    builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(currentChunkSize));
+    builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+    LOGGER.d("putFileBlocksToQiniu with uploadUrl: " + endPoint);
+
+    RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE),
+            currentChunkData, 0, currentChunkSize);
+    builder = builder.post(requestBody);
+    return executeWithRetry(builder.build(), retry, new ResponseHandler<QiniuBlockResponseData>() {
+      @Override
+      public QiniuBlockResponseData handle(Response response) throws Exception {
+        QiniuBlockResponseData respData = parseQiniuResponse(response, QiniuBlockResponseData.class);
+        validateCrc32Value(respData, currentChunkData, 0, currentChunkSize);
+        return respData;
       }
-    }
-    return null;
+    });
   }
 
   private void validateCrc32Value(QiniuBlockResponseData respData, byte[] data, int offset, int nextChunkSize)
@@ -329,30 +363,25 @@ class QiniuAccessor {
    * @return
    * @throws Exception
    */
-  public QiniuMKFileResponseData makeFile(int fileTotalSize, List<String> uploadFileCtxs, int retry)
+  public QiniuMKFileResponseData makeFile(long fileTotalSize, List<String> uploadFileCtxs, int retry)
           throws Exception {
-    try {
-      String endPoint = String.format(QINIU_MKFILE_EP, this.uploadUrl, fileTotalSize,
-              Base64.encodeToString(this.fileKey.getBytes(), Base64.URL_SAFE | Base64.NO_WRAP));
-      final String joinedFileCtx = StringUtil.join(",", uploadFileCtxs);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, TEXT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(joinedFileCtx.length()));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("makeFile to qiniu with uploadUrl: " + endPoint);
-      builder = builder.post(RequestBody.create(MediaType.parse(TEXT_CONTENT_TYPE), joinedFileCtx));
-      Response response = this.client.newCall(builder.build()).execute();
-      return parseQiniuResponse(response, QiniuMKFileResponseData.class);
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return makeFile(fileTotalSize, uploadFileCtxs, retry);
-      } else {
-        LOGGER.w(e);
+    String endPoint = String.format(QINIU_MKFILE_EP, this.uploadUrl, fileTotalSize,
+            Base64.encodeToString(this.fileKey.getBytes(), Base64.URL_SAFE | Base64.NO_WRAP));
+    final String joinedFileCtx = StringUtil.join(",", uploadFileCtxs);
+    Request.Builder builder = new Request.Builder();
+    builder.url(endPoint);
+    builder.addHeader(HEAD_CONTENT_TYPE, TEXT_CONTENT_TYPE);
+    builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(joinedFileCtx.length()));
+    builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+    LOGGER.d("makeFile to qiniu with uploadUrl: " + endPoint);
+    builder = builder.post(RequestBody.create(MediaType.parse(TEXT_CONTENT_TYPE), joinedFileCtx));
+    return executeWithRetry(builder.build(), retry, new ResponseHandler<QiniuMKFileResponseData>() {
+      @Override
+      public QiniuMKFileResponseData handle(Response response) throws Exception {
+        return parseQiniuResponse(response, QiniuMKFileResponseData.class);
       }
-    }
-    return null;
+    });
   }
 }
 
@@ -6,45 +6,76 @@ import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.AVFile;
 import cn.leancloud.utils.LogUtil;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Use one thread to upload file to qiniu, slicing with 4MB chunk.
+ * Upload file to qiniu, slicing with 4MB block.
+ *
+ * if file data is available locally, blocks are read by positional read and uploaded concurrently,
+ * ctx of finished block is saved in checkpoint so that an interrupted upload can be resumed.
+ * otherwise data stream is uploaded block by block in one thread.
  *
  * Created by fengjunwen on 2017/8/14.
  */
 
 class QiniuSlicingUploader extends HttpClientUploader {
   private static AVLogger LOGGER = LogUtil.getLogger(QiniuSlicingUploader.class);
+  private static final String FILE_SUM_KEY = "_checksum";
 
   private final String token;
   private FileUploader.ProgressCalculator progressCalculator;
   private int uploadChunkSize = QiniuAccessor.WIFI_CHUNK_SIZE;
   private String fileKey = null;
+  private String uploadUrl = null;
   private QiniuAccessor qiniuAccessor;
 
   QiniuSlicingUploader(AVFile avFile, String token, String uploadUrl, ProgressCallback progressCallback) {
     super(avFile, progressCallback);
     this.token = token;
     this.fileKey = avFile.getKey();
+    this.uploadUrl = uploadUrl;
     this.qiniuAccessor = new QiniuAccessor(getOKHttpClient(), this.token, this.fileKey, uploadUrl);
     LOGGER.d("Constructor with token=" + token + ", key=" + fileKey + ", accessor=" + qiniuAccessor);
   }
 
+  static int getBlockCount(long fileSize) {
+    return (int) (fileSize / QiniuAccessor.BLOCK_SIZE) + (fileSize % QiniuAccessor.BLOCK_SIZE > 0 ? 1 : 0);
+  }
+
+  static int getBlockSize(long fileSize, int blockIndex) {
+    long blockOffset = (long) blockIndex * QiniuAccessor.BLOCK_SIZE;
+    return (int) Math.min(QiniuAccessor.BLOCK_SIZE, fileSize - blockOffset);
+  }
+
+  interface ChunkReader {
+    /**
+     * read chunk data of current block into buf.
+     */
+    void read(byte[] buf, int chunkOffset, int chunkSize) throws IOException;
+  }
+
   public AVException execute() {
     boolean isWifi = true;
     if (!isWifi) {
       // 从七牛的接口来看block size为4M不可变，但是chunkSize是可以调整的
       uploadChunkSize = QiniuAccessor.NONWIFI_CHUNK_SIZE;
     }
-    InputStream is = null;
-    byte buf[] = new byte[uploadChunkSize];
-    int fileSize = this.avFile.getSize();
-    int blockCount = (fileSize / QiniuAccessor.BLOCK_SIZE) + (fileSize % QiniuAccessor.BLOCK_SIZE > 0 ? 1 : 0);
-    List<String> uploadFileCtxs = new ArrayList<String>(blockCount);
+    File localFile = this.avFile.getLocalFile();
+    long fileSize = null != localFile ? localFile.length() : this.avFile.getSizeAsLong();
+    int blockCount = getBlockCount(fileSize);
 
     progressCalculator = new FileUploader.ProgressCalculator(blockCount, new FileUploader.FileUploadProgressCallback() {
       public void onProgress(int progress) {
@@ -53,70 +84,193 @@ class QiniuSlicingUploader extends HttpClientUploader {
     });
 
     try {
-      is = this.avFile.getDataStream();
-      LOGGER.d("begin to upload qiniu. chunkSize=" + uploadChunkSize + ", blockCount=" + blockCount + ", is=" + is);
-      // loop for read, upload block to qiniu.
-      for (int i = 0; i< blockCount; i++) {
-        int currentBlockSize = QiniuAccessor.BLOCK_SIZE;
-        int currentBlockOffset = i * QiniuAccessor.BLOCK_SIZE;
-        if (i == blockCount - 1) {
-          // last block.
-          currentBlockSize = fileSize - currentBlockOffset;
-        }
-        int chunkCount = currentBlockSize / uploadChunkSize + (currentBlockSize % uploadChunkSize > 0? 1 : 0);
-        QiniuAccessor.QiniuBlockResponseData lastResponse = null;
-        for (int j = 0; j < chunkCount; j++) {
-          int currentChunkOffset = j * uploadChunkSize;
-          int currentChunkSize = (j == chunkCount -1)? (currentBlockSize - currentChunkOffset): uploadChunkSize;
-
-          // read BLOCK_SIZE content to buf until reach out block size or end-of-file.
-          int totalReadCnt = 0;
-          int curReadCnt = is.read(buf, totalReadCnt, currentChunkSize - totalReadCnt);
-          totalReadCnt += curReadCnt;
-          while (curReadCnt > 0 && totalReadCnt < currentChunkSize) {
-            curReadCnt = is.read(buf, totalReadCnt, currentChunkSize - totalReadCnt);
-            totalReadCnt += curReadCnt;
-          }
-
-          if (j == 0) {
-            // 1.创建一个block,并且会上传第一个block的第一个chunk的数据
-            lastResponse = this.qiniuAccessor.createBlockInQiniu(currentBlockSize, currentChunkSize, buf, DEFAULT_RETRY_TIMES);
-            LOGGER.d("createBlockInQiniu(curBlockSize=" + currentBlockSize + ", curChunkSize=" + currentChunkSize + ") result=" + lastResponse);
-          } else {
-            // 2.分片上传
-            QiniuAccessor.QiniuBlockResponseData tmpResponse = lastResponse;
-            lastResponse = this.qiniuAccessor.putFileBlocksToQiniu(lastResponse, currentBlockOffset, buf, currentChunkSize, DEFAULT_RETRY_TIMES);
-            LOGGER.d("putFileBlocksToQiniu(lastRes=" + tmpResponse + ", curBlockOffset=" + currentBlockOffset + ", curChunkSize=" + currentChunkSize
-              + ") result=" + lastResponse);
-          }
-        }
-
-        if (null != lastResponse){
-          uploadFileCtxs.add(lastResponse.getCtx());
-          progressCalculator.publishProgress(i, 100);
-          LOGGER.d("finished to upload block(" + i + "), ctx=" + lastResponse.getCtx());
-        } else {
-          // error.
-          return new AVException(AVException.FILE_UPLOAD_FAILURE, "failed to upload file to qiniu.");
+      List<String> uploadFileCtxs;
+      QiniuUploadCheckpoint checkpoint = null;
+      if (null != localFile) {
+        Object checksum = this.avFile.getMetaData(FILE_SUM_KEY);
+        checkpoint = QiniuUploadCheckpoint.open(null == checksum ? null : checksum.toString(), fileSize,
+                this.uploadUrl, blockCount);
+        uploadFileCtxs = uploadBlocksConcurrently(localFile, fileSize, blockCount, checkpoint);
+      } else {
+        uploadFileCtxs = uploadBlocksSequentially(fileSize, blockCount);
+      }
+      if (null == uploadFileCtxs) {
+        if (isCancelled()) {
+          return new AVException(AVException.UNKNOWN, "upload request has been aborted.");
         }
+        return new AVException(AVException.FILE_UPLOAD_FAILURE, "failed to upload file to qiniu.");
       }
       QiniuAccessor.QiniuMKFileResponseData finalResponse = this.qiniuAccessor.makeFile(fileSize, uploadFileCtxs, DEFAULT_RETRY_TIMES);
       LOGGER.d("makeFile(fileSize=" + fileSize + ") result=" + finalResponse);
+      if (null != checkpoint) {
+        // block ctx can't be used any more whether succeed or not.
+        checkpoint.clear();
+      }
       if (finalResponse == null || !finalResponse.key.equals(fileKey)) {
         return new AVException(AVException.OTHER_CAUSE, "upload file failure");
       }
     } catch (Exception ex) {
       return new AVException(ex);
+    }
+
+    return null;
+  }
+
+  private List<String> uploadBlocksSequentially(long fileSize, int blockCount) throws Exception {
+    final InputStream is = this.avFile.getDataStream();
+    if (null == is) {
+      return null;
+    }
+    List<String> uploadFileCtxs = new ArrayList<String>(blockCount);
+    byte buf[] = new byte[uploadChunkSize];
+    try {
+      LOGGER.d("begin to upload qiniu. chunkSize=" + uploadChunkSize + ", blockCount=" + blockCount + ", is=" + is);
+      // loop for read, upload block to qiniu.
+      for (int i = 0; i < blockCount; i++) {
+        if (isCancelled()) {
+          return null;
+        }
+        String ctx = uploadBlock(i, getBlockSize(fileSize, i), buf, new ChunkReader() {
+          @Override
+          public void read(byte[] buf, int chunkOffset, int chunkSize) throws IOException {
+            // read content to buf until reach out chunk size or end-of-file.
+            int totalReadCnt = 0;
+            while (totalReadCnt < chunkSize) {
+              int curReadCnt = is.read(buf, totalReadCnt, chunkSize - totalReadCnt);
+              if (curReadCnt < 0) {
+                break;
+              }
+              totalReadCnt += curReadCnt;
+            }
+          }
+        });
+        if (null == ctx) {
+          return null;
+        }
+        uploadFileCtxs.add(ctx);
+      }
     } finally {
       try {
-        if (null != is) {
-          is.close();
-        }
+        is.close();
       } catch (Exception e) {
         ;
       }
     }
+    return uploadFileCtxs;
+  }
 
-    return null;
+  private List<String> uploadBlocksConcurrently(File localFile, final long fileSize, final int blockCount,
+                                                final QiniuUploadCheckpoint checkpoint) throws Exception {
+    final String[] blockCtxs = new String[blockCount];
+    final AtomicInteger nextBlock = new AtomicInteger(0);
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>(null);
+    int concurrency = Math.max(1, Math.min(FileUploader.getQiniuBlockConcurrency(), blockCount));
+    if (null != checkpoint && checkpoint.finishedCount() > 0) {
+      LOGGER.d("resume upload from checkpoint, finished blocks=" + checkpoint.finishedCount());
+    }
+    LOGGER.d("begin to upload qiniu concurrently. chunkSize=" + uploadChunkSize + ", blockCount=" + blockCount
+        + ", concurrency=" + concurrency);
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(localFile, "r");
+    final FileChannel channel = randomAccessFile.getChannel();
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>(concurrency);
+      for (int i = 0; i < concurrency; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            byte[] buf = new byte[uploadChunkSize];
+            int blockIndex;
+            while (null == failure.get() && !isCancelled() && (blockIndex = nextBlock.getAndIncrement()) < blockCount) {
+              String ctx = null == checkpoint ? null : checkpoint.getBlockCtx(blockIndex);
+              if (null != ctx) {
+                blockCtxs[blockIndex] = ctx;
+                progressCalculator.publishProgress(blockIndex, 100);
+                continue;
+              }
+              final long blockOffset = (long) blockIndex * QiniuAccessor.BLOCK_SIZE;
+              try {
+                ctx = uploadBlock(blockIndex, getBlockSize(fileSize, blockIndex), buf, new ChunkReader() {
+                  @Override
+                  public void read(byte[] buf, int chunkOffset, int chunkSize) throws IOException {
+                    ByteBuffer buffer = ByteBuffer.wrap(buf, 0, chunkSize);
+                    long position = blockOffset + chunkOffset;
+                    while (buffer.hasRemaining()) {
+                      int readCnt = channel.read(buffer, position);
+                      if (readCnt < 0) {
+                        throw new IOException("unexpected end of file.");
+                      }
+                      position += readCnt;
+                    }
+                  }
+                });
+              } catch (Exception ex) {
+                failure.compareAndSet(null, ex);
+                return;
+              }
+              if (null == ctx) {
+                failure.compareAndSet(null,
+                    new AVException(AVException.FILE_UPLOAD_FAILURE, "failed to upload block(" + blockIndex + ")."));
+                return;
+              }
+              blockCtxs[blockIndex] = ctx;
+              if (null != checkpoint) {
+                checkpoint.saveBlockCtx(blockIndex, ctx);
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+      try {
+        randomAccessFile.close();
+      } catch (Exception e) {
+        ;
+      }
+    }
+    if (null != failure.get()) {
+      throw failure.get();
+    }
+    if (isCancelled()) {
+      return null;
+    }
+    List<String> result = new ArrayList<String>(blockCount);
+    for (String ctx : blockCtxs) {
+      result.add(ctx);
+    }
+    return result;
+  }
+
+  private String uploadBlock(int blockIndex, int currentBlockSize, byte[] buf, ChunkReader reader) throws IOException {
+    int chunkCount = currentBlockSize / uploadChunkSize + (currentBlockSize % uploadChunkSize > 0? 1 : 0);
+    QiniuAccessor.QiniuBlockResponseData lastResponse = null;
+    for (int j = 0; j < chunkCount; j++) {
+      int currentChunkOffset = j * uploadChunkSize;
+      int currentChunkSize = (j == chunkCount -1)? (currentBlockSize - currentChunkOffset): uploadChunkSize;
+      reader.read(buf, currentChunkOffset, currentChunkSize);
+
+      if (j == 0) {
+        // 1.创建一个block,并且会上传第一个block的第一个chunk的数据
+        lastResponse = this.qiniuAccessor.createBlockInQiniu(currentBlockSize, currentChunkSize, buf, DEFAULT_RETRY_TIMES);
+        LOGGER.d("createBlockInQiniu(curBlockSize=" + currentBlockSize + ", curChunkSize=" + currentChunkSize + ") result=" + lastResponse);
+      } else {
+        // 2.分片上传
+        QiniuAccessor.QiniuBlockResponseData tmpResponse = lastResponse;
+        lastResponse = this.qiniuAccessor.putFileBlocksToQiniu(lastResponse, currentChunkOffset, buf, currentChunkSize, DEFAULT_RETRY_TIMES);
+        LOGGER.d("putFileBlocksToQiniu(lastRes=" + tmpResponse + ", curChunkOffset=" + currentChunkOffset + ", curChunkSize=" + currentChunkSize
+          + ") result=" + lastResponse);
+      }
+      if (null == lastResponse) {
+        return null;
+      }
+    }
+    progressCalculator.publishProgress(blockIndex, 100);
+    LOGGER.d("finished to upload block(" + blockIndex + "), ctx=" + lastResponse.getCtx());
+    return lastResponse.getCtx();
   }
 }
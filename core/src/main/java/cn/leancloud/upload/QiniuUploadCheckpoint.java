@@ -0,0 +1,112 @@
+package cn.leancloud.upload;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.cache.PersistenceUtil;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * local checkpoint of qiniu slicing upload, which records ctx of finished blocks so that
+ * an interrupted upload of the same file can skip them.
+ *
+ * checkpoint is identified by file checksum, size and upload host, and expires after MAX_AGE_MILLIS
+ * because qiniu drops unmerged blocks after a while.
+ */
+class QiniuUploadCheckpoint {
+  private static AVLogger LOGGER = LogUtil.getLogger(QiniuUploadCheckpoint.class);
+
+  static final long MAX_AGE_MILLIS = 24L * 3600 * 1000;
+  private static final String CHECKPOINT_DIR = "qiniu_upload/";
+  private static final String KEY_CREATED_AT = "createdAt";
+  private static final String KEY_BLOCK_COUNT = "blockCount";
+  private static final String KEY_CTXS = "ctxs";
+
+  private final File file;
+  private final int blockCount;
+  private final Map<Integer, String> blockCtxs = new HashMap<Integer, String>();
+  private long createdAt = System.currentTimeMillis();
+
+  QiniuUploadCheckpoint(File file, int blockCount) {
+    this.file = file;
+    this.blockCount = blockCount;
+  }
+
+  /**
+   * open checkpoint for specified file.
+   * @return checkpoint instance, or null if local cache is disabled or file has no checksum.
+   */
+  static QiniuUploadCheckpoint open(String checksum, long fileSize, String uploadUrl, int blockCount) {
+    String dir = AppConfiguration.getImportantFileDir();
+    if (StringUtil.isEmpty(dir) || StringUtil.isEmpty(checksum)) {
+      return null;
+    }
+    File checkpointDir = new File(dir + CHECKPOINT_DIR);
+    if (!checkpointDir.exists()) {
+      checkpointDir.mkdirs();
+    }
+    String name = MD5.computeMD5(checksum + "/" + fileSize + "/" + uploadUrl);
+    QiniuUploadCheckpoint checkpoint = new QiniuUploadCheckpoint(new File(checkpointDir, name), blockCount);
+    checkpoint.load();
+    return checkpoint;
+  }
+
+  void load() {
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      JSONObject content = JSON.parseObject(PersistenceUtil.sharedInstance().readContentFromFile(file));
+      if (null == content) {
+        return;
+      }
+      long savedAt = content.getLongValue(KEY_CREATED_AT);
+      if (content.getIntValue(KEY_BLOCK_COUNT) != blockCount
+          || System.currentTimeMillis() - savedAt > MAX_AGE_MILLIS) {
+        LOGGER.d("drop expired upload checkpoint: " + file.getName());
+        clear();
+        return;
+      }
+      JSONObject ctxs = content.getJSONObject(KEY_CTXS);
+      synchronized (this) {
+        createdAt = savedAt;
+        for (String index : ctxs.keySet()) {
+          blockCtxs.put(Integer.valueOf(index), ctxs.getString(index));
+        }
+      }
+    } catch (Exception ex) {
+      LOGGER.w("failed to load upload checkpoint, cause: " + ex.getMessage());
+      clear();
+    }
+  }
+
+  synchronized String getBlockCtx(int blockIndex) {
+    return blockCtxs.get(blockIndex);
+  }
+
+  synchronized int finishedCount() {
+    return blockCtxs.size();
+  }
+
+  synchronized void saveBlockCtx(int blockIndex, String ctx) {
+    blockCtxs.put(blockIndex, ctx);
+    JSONObject content = new JSONObject();
+    content.put(KEY_CREATED_AT, createdAt);
+    content.put(KEY_BLOCK_COUNT, blockCount);
+    content.put(KEY_CTXS, blockCtxs);
+    PersistenceUtil.sharedInstance().saveContentToFile(content.toJSONString(), file);
+  }
+
+  synchronized void clear() {
+    blockCtxs.clear();
+    createdAt = System.currentTimeMillis();
+    PersistenceUtil.sharedInstance().forceDeleteFile(file);
+  }
+}
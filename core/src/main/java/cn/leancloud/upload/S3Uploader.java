@@ -3,12 +3,12 @@ package cn.leancloud.upload;
 import cn.leancloud.AVException;
 import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.AVFile;
+import cn.leancloud.network.RetryPolicy;
 import cn.leancloud.utils.FileUtil;
-import cn.leancloud.utils.StringUtil;
 import okhttp3.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -18,7 +18,6 @@ class S3Uploader extends HttpClientUploader {
 
   private volatile Call call;
   private String uploadUrl;
-  private int retryTimes = DEFAULT_RETRY_TIMES;
 
   /**
    * 默认的最小写操作时间，单位为秒
@@ -47,72 +46,87 @@ class S3Uploader extends HttpClientUploader {
 
   public AVException execute() {
     try {
-      byte[] bytes = avFile.getData();
+      String mimeType = FileUtil.getFileMimeType(avFile);
+      MediaType mediaType = MediaType.parse(mimeType);
+      File localFile = avFile.getLocalFile();
+      if (null != localFile) {
+        // stream from disk so that heap usage is irrelevant to file size.
+        final long fileSize = localFile.length();
+        if (fileSize <= 0) {
+          return null;
+        }
+        RequestBody requestBody = new FileRangeRequestBody(mediaType, localFile,
+            new FileRangeRequestBody.ProgressListener() {
+              private int lastProgress = -1;
+              @Override
+              public void onProgress(long bytesWritten, long contentLength) {
+                int progress = (int) (bytesWritten * 100 / contentLength);
+                if (progress != lastProgress) {
+                  lastProgress = progress;
+                  publishProgress(progress);
+                }
+              }
+            });
+        return executeWithRetry(requestBody, mimeType, fileSize);
+      }
 
-      return executeWithRetry(bytes);
+      byte[] bytes = avFile.getData();
+      if (null == bytes || bytes.length <= 0) {
+        return null;
+      }
+      return executeWithRetry(RequestBody.create(mediaType, bytes), mimeType, bytes.length);
     } catch (Exception e) {
       return new AVException(e.getCause());
     }
   }
 
-  private AVException executeWithRetry(byte[] data){
-    if (null != data && data.length > 0) {
-      OkHttpClient.Builder okhttpBuilder = getOKHttpClient().newBuilder();
-
-      int timeout = (writeTimeout > 0 ? writeTimeout : getWriteTimeoutByLength(data.length));
-      okhttpBuilder.writeTimeout(timeout, TimeUnit.SECONDS);
-
-      final OkHttpClient httpClient = okhttpBuilder.build();
-
-      Response response = null;
-      String serverResponse = null;
-      try{
-        // decide file mimetype.
-        String mimeType = FileUtil.getFileMimeType(avFile);
+  private AVException executeWithRetry(RequestBody requestBody, String mimeType, long contentLength) {
+    OkHttpClient.Builder okhttpBuilder = getOKHttpClient().newBuilder();
 
-        // upload to s3
-        Request.Builder builder = new Request.Builder();
-        builder.url(uploadUrl);
-        // ================================================================================
-        // setup multi part
-        // ================================================================================
+    int timeout = (writeTimeout > 0 ? writeTimeout : getWriteTimeoutByLength(contentLength));
+    okhttpBuilder.writeTimeout(timeout, TimeUnit.SECONDS);
 
-        // support file for future
+    final OkHttpClient httpClient = okhttpBuilder.build();
 
-        RequestBody requestBody = RequestBody.create(MediaType.parse(mimeType), data);
+    // upload to s3
+    Request.Builder builder = new Request.Builder();
+    builder.url(uploadUrl);
 
-        builder.put(requestBody);
-        builder.addHeader("Content-Type", mimeType);
-        if (!FileUploader.UPLOAD_HEADERS.containsKey(DEFAULT_HEADER_CACHE_CONTROL)) {
-          builder.addHeader(DEFAULT_HEADER_CACHE_CONTROL, DEFAULT_HEADER_CACHE_CONTROL_VALUE);
-        }
-        for (Map.Entry<String, String> entry : FileUploader.UPLOAD_HEADERS.entrySet()) {
-          builder.addHeader(entry.getKey(), entry.getValue());
-        }
+    // presigned url only accepts single PUT, so body is streamed instead of multipart upload.
+    builder.put(requestBody);
+    builder.addHeader("Content-Type", mimeType);
+    if (!FileUploader.UPLOAD_HEADERS.containsKey(DEFAULT_HEADER_CACHE_CONTROL)) {
+      builder.addHeader(DEFAULT_HEADER_CACHE_CONTROL, DEFAULT_HEADER_CACHE_CONTROL_VALUE);
+    }
+    for (Map.Entry<String, String> entry : FileUploader.UPLOAD_HEADERS.entrySet()) {
+      builder.addHeader(entry.getKey(), entry.getValue());
+    }
+    Request request = builder.build();
 
+    RetryPolicy.Retrier retrier = RetryPolicy.getDefault().newRetrier(true, DEFAULT_RETRY_TIMES);
+    while (true) {
+      long delay;
+      AVException error;
+      try {
         // Send it
-        call = httpClient.newCall(builder.build());
-
-        response = call.execute();
+        call = httpClient.newCall(request);
+        Response response = call.execute();
+        response.close();
         // The 204 status code implies no response is needed
-        if (2 != (response.code() / 100)) {
-          if(retryTimes>0){
-            retryTimes -- ;
-            executeWithRetry(data);
-          }else {
-            return new AVException(AVException.OTHER_CAUSE, "upload file failure:" + response.code());
-          }
-        }
-      }catch (IOException exception){
-        if(retryTimes >0){
-          retryTimes -- ;
-          return executeWithRetry(data);
-        }else {
-          return new AVException(exception.getCause());
+        if (2 == (response.code() / 100)) {
+          retrier.onSuccess();
+          return null;
         }
+        delay = retrier.onResponse(response.code(), response.header("Retry-After"));
+        error = new AVException(AVException.OTHER_CAUSE, "upload file failure:" + response.code());
+      } catch (IOException exception) {
+        delay = retrier.onFailure(exception);
+        error = new AVException(exception.getCause());
+      }
+      if (delay < 0 || isCancelled() || !retrier.await(delay)) {
+        return error;
       }
     }
-    return null;
   }
 
   /**
@@ -121,14 +135,14 @@ class S3Uploader extends HttpClientUploader {
    * @param dataLength
    * @return
    */
-  private int getWriteTimeoutByLength(int dataLength) {
-    int writeSecond = dataLength / DEFAULT_MIN_UPLOAD_RATE;
+  private int getWriteTimeoutByLength(long dataLength) {
+    long writeSecond = dataLength / DEFAULT_MIN_UPLOAD_RATE;
     if (writeSecond < DEFAULT_MIN_WRITE_TIMEOUT) {
       writeSecond = DEFAULT_MIN_WRITE_TIMEOUT;
     } else if (writeSecond > DEFAULT_MAX_WRITE_TIMEOUT) {
       writeSecond = DEFAULT_MAX_WRITE_TIMEOUT;
     }
-    return writeSecond;
+    return (int) writeSecond;
   }
 
   /**
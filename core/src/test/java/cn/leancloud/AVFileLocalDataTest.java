@@ -0,0 +1,75 @@
+package cn.leancloud;
+
+import cn.leancloud.cache.FileCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AVFileLocalDataTest extends TestCase {
+  private static final byte[] CONTENT = "hello evicted world".getBytes();
+
+  private HttpServer server;
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+
+  public AVFileLocalDataTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(AVFileLocalDataTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/file", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        exchange.sendResponseHeaders(200, CONTENT.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(CONTENT);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  public void testGetDataAfterLocalFileEvicted() throws Exception {
+    AVFile file = new AVFile("evicted.txt", CONTENT);
+    File localFile = file.getLocalFile();
+    assertNotNull(localFile);
+    file.serverData.put("url", "http://127.0.0.1:" + server.getAddress().getPort() + "/file?t="
+        + System.nanoTime());
+    assertEquals(new String(CONTENT), new String(file.getData()));
+    assertEquals(0, requestCount.get());
+
+    // data becomes evictable once it's uploaded.
+    FileCache.getIntance().unpinLocalFile(localFile.getAbsolutePath());
+    FileCache.getIntance().clearCachedFile(localFile.getName());
+    assertFalse(localFile.exists());
+
+    assertEquals(new String(CONTENT), new String(file.getData()));
+    assertEquals(1, requestCount.get());
+    // downloaded data is cached, so stream is served locally.
+    InputStream stream = file.getDataStream();
+    assertNotNull(stream);
+    stream.close();
+    assertEquals(1, requestCount.get());
+  }
+}
@@ -0,0 +1,96 @@
+package cn.leancloud;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class AVQueryStreamTest extends TestCase {
+  public AVQueryStreamTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(AVQueryStreamTest.class);
+  }
+
+  public void testFirstPageParameters() {
+    AVQuery<AVObject> query = new AVQuery<>("Student");
+    query.whereEqualTo("grade", 3);
+    query.orderByDescending("age");
+    query.skip(200);
+    query.limit(10);
+    Map<String, String> params = query.assembleCursorParameters(null, 50);
+    assertEquals("objectId", params.get("order"));
+    assertEquals("50", params.get("limit"));
+    assertFalse(params.containsKey("skip"));
+    JSONObject where = JSON.parseObject(params.get("where"));
+    assertEquals(3, where.getIntValue("grade"));
+    assertFalse(where.containsKey("objectId"));
+  }
+
+  public void testNextPageParameters() {
+    AVQuery<AVObject> query = new AVQuery<>("Student");
+    query.whereContainedIn("objectId", Arrays.asList("a", "b", "c"));
+    Map<String, String> params = query.assembleCursorParameters("5abd026d9f54540038791715", 100);
+    JSONObject objectIdCondition = JSON.parseObject(params.get("where")).getJSONObject("objectId");
+    assertEquals("5abd026d9f54540038791715", objectIdCondition.getString("$gt"));
+    assertNotNull(objectIdCondition.get("$in"));
+
+    // original query is untouched.
+    Map<String, String> origin = query.assembleParameters();
+    JSONObject originCondition = JSON.parseObject(origin.get("where")).getJSONObject("objectId");
+    assertFalse(originCondition.containsKey("$gt"));
+  }
+
+  public void testGreaterThanConditionIsReplacedByCursor() {
+    AVQuery<AVObject> query = new AVQuery<>("Student");
+    query.whereGreaterThan("objectId", "000");
+    JSONObject first = JSON.parseObject(query.assembleCursorParameters(null, 10).get("where"))
+        .getJSONObject("objectId");
+    assertEquals("000", first.getString("$gt"));
+    JSONObject next = JSON.parseObject(query.assembleCursorParameters("005", 10).get("where"))
+        .getJSONObject("objectId");
+    assertEquals("005", next.getString("$gt"));
+  }
+
+  private static JSONObject objectIdCondition(Map<String, String> params) {
+    JSONObject where = JSON.parseObject(params.get("where"));
+    return null == where ? null : where.getJSONObject("objectId");
+  }
+
+  public void testStreamPagesThroughAllBatches() {
+    final List<Map<String, String>> requests = new ArrayList<Map<String, String>>();
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student") {
+      @Override
+      List<AVObject> queryCursorPage(Map<String, String> params) {
+        requests.add(params);
+        JSONObject condition = objectIdCondition(params);
+        int start = null == condition ? 0 : Integer.parseInt(condition.getString("$gt")) + 1;
+        List<AVObject> page = new ArrayList<AVObject>();
+        // 5 objects in total, whose objectId are 000 ~ 004.
+        for (int i = start; i < 5 && page.size() < Integer.parseInt(params.get("limit")); i++) {
+          AVObject object = new AVObject("Student");
+          object.setObjectId(String.format("%03d", i));
+          page.add(object);
+        }
+        return page;
+      }
+    };
+    List<String> objectIds = new ArrayList<String>();
+    for (AVObject object : query.stream(2).blockingIterable()) {
+      objectIds.add(object.getObjectId());
+    }
+    assertEquals(Arrays.asList("000", "001", "002", "003", "004"), objectIds);
+    assertEquals(3, requests.size());
+    assertNull(objectIdCondition(requests.get(0)));
+    assertEquals("001", objectIdCondition(requests.get(1)).getString("$gt"));
+    assertEquals("003", objectIdCondition(requests.get(2)).getString("$gt"));
+  }
+}
@@ -0,0 +1,90 @@
+package cn.leancloud;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchProcessorTest extends TestCase {
+  public BatchProcessorTest(String name) {
+    super(name);
+  }
+
+  public static Test suite() {
+    return new TestSuite(BatchProcessorTest.class);
+  }
+
+  public void testPartition() {
+    List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+    List<List<Integer>> chunks = BatchProcessor.partition(items, 3);
+    assertEquals(3, chunks.size());
+    assertEquals(Arrays.asList(1, 2, 3), chunks.get(0));
+    assertEquals(Arrays.asList(7), chunks.get(2));
+
+    chunks = BatchProcessor.partition(items, 0);
+    assertEquals(1, chunks.size());
+    assertEquals(7, chunks.get(0).size());
+
+    assertEquals(0, BatchProcessor.partition(new ArrayList<Integer>(), 3).size());
+  }
+
+  public void testGenerateSaveRequest() {
+    AVObject created = new AVObject("Student");
+    created.put("name", "Tom");
+    AVObject updated = AVObject.createWithoutData("Student", "5abd026d9f54540038791715");
+    updated.put("age", 18);
+    JSONObject request = BatchProcessor.generateSaveRequest(Arrays.asList(created, updated));
+    JSONArray requests = request.getJSONArray("requests");
+    assertEquals(2, requests.size());
+    assertEquals("POST", requests.getJSONObject(0).getString("method"));
+    assertEquals("/1.1/classes/Student", requests.getJSONObject(0).getString("path"));
+    assertEquals("PUT", requests.getJSONObject(1).getString("method"));
+    assertEquals("/1.1/classes/Student/5abd026d9f54540038791715", requests.getJSONObject(1).getString("path"));
+  }
+
+  public void testMergeSaveResults() {
+    AVObject first = new AVObject("Student");
+    first.put("name", "Tom");
+    AVObject second = new AVObject("Student");
+    second.put("name", "Jerry");
+    JSONArray results = JSONArray.parseArray("[{\"success\":{\"objectId\":\"5abd026d9f54540038791715\"," +
+        "\"createdAt\":\"2018-03-30T06:21:08.052Z\"}},{\"error\":{\"code\":1,\"error\":\"internal error\"}}]");
+    BatchProcessor.mergeSaveResults(Arrays.asList(first, second), results);
+    assertEquals("5abd026d9f54540038791715", first.getObjectId());
+    assertTrue(first.operations.isEmpty());
+    assertFalse(second.operations.isEmpty());
+  }
+
+  public void testGenerateDeleteRequest() {
+    AVObject student = AVObject.createWithoutData("Student", "5abd026d9f54540038791715");
+    AVObject teacher = AVObject.createWithoutData("Teacher", "5abd026d9f54540038791716");
+    teacher.ignoreHook(AVObject.Hook.beforeDelete);
+    JSONObject request = BatchProcessor.generateDeleteRequest(Arrays.asList(student, teacher));
+    JSONArray requests = request.getJSONArray("requests");
+    assertEquals(2, requests.size());
+    assertEquals("DELETE", requests.getJSONObject(0).getString("method"));
+    assertEquals("/1.1/classes/Student/5abd026d9f54540038791715", requests.getJSONObject(0).getString("path"));
+    assertNull(requests.getJSONObject(0).get("body"));
+    assertEquals("/1.1/classes/Teacher/5abd026d9f54540038791716", requests.getJSONObject(1).getString("path"));
+    assertNotNull(requests.getJSONObject(1).getJSONObject("body").get(AVObject.KEY_IGNORE_HOOKS));
+  }
+
+  public void testGenerateErrorResults() {
+    JSONArray results = BatchProcessor.generateErrorResults(3, new AVException(AVException.TIMEOUT, "timeout"));
+    assertEquals(3, results.size());
+    assertEquals(AVException.TIMEOUT, results.getJSONObject(2).getJSONObject("error").getIntValue("code"));
+    assertEquals("timeout", results.getJSONObject(2).getJSONObject("error").getString("error"));
+  }
+
+  public void testBatchOption() {
+    AVBatchOption option = new AVBatchOption();
+    assertEquals(AVBatchOption.DEFAULT_BATCH_SIZE, option.getBatchSize());
+    option.setMaxConcurrency(0);
+    assertEquals(1, option.getMaxConcurrency());
+  }
+}
@@ -0,0 +1,158 @@
+package cn.leancloud;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * memory benchmark of read-only(compact) AVObject against the standard representation.
+ *
+ * it's excluded from default test run by name, run it with:
+ *   mvn -pl core test -Dtest=CompactServerDataBenchmark
+ * retained size is computed by walking object graph(64-bit JVM with compressed oops layout), so the result is
+ * deterministic and irrelevant to gc. report is written to target/benchmarks/CompactServerDataBenchmark.txt.
+ */
+public class CompactServerDataBenchmark extends TestCase {
+  private static final int OBJECT_COUNT = 10000;
+  private static final int HEADER_SIZE = 12;
+  private static final int ARRAY_HEADER_SIZE = 16;
+  private static final int REFERENCE_SIZE = 4;
+
+  public CompactServerDataBenchmark(String name) {
+    super(name);
+  }
+
+  private static long align(long size) {
+    return (size + 7) / 8 * 8;
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static final Map<Class<?>, List<Field>> fieldCache = new HashMap<Class<?>, List<Field>>();
+
+  private static List<Field> instanceFields(Class<?> clazz) {
+    List<Field> fields = fieldCache.get(clazz);
+    if (null != fields) {
+      return fields;
+    }
+    fields = new ArrayList<Field>();
+    for (Class<?> c = clazz; null != c; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          fields.add(field);
+        }
+      }
+    }
+    fieldCache.put(clazz, fields);
+    return fields;
+  }
+
+  /**
+   * @return bytes retained by root, shared objects(such as key dictionary) are counted once.
+   */
+  static long retainedSize(Object root) {
+    Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    Deque<Object> pending = new ArrayDeque<Object>();
+    pending.push(root);
+    long total = 0;
+    while (!pending.isEmpty()) {
+      Object current = pending.pop();
+      if (current instanceof Class || !visited.add(current)) {
+        continue;
+      }
+      Class<?> clazz = current.getClass();
+      if (clazz.isArray()) {
+        Class<?> component = clazz.getComponentType();
+        int length = Array.getLength(current);
+        if (component.isPrimitive()) {
+          total += align(ARRAY_HEADER_SIZE + (long) length * primitiveSize(component));
+        } else {
+          total += align(ARRAY_HEADER_SIZE + (long) length * REFERENCE_SIZE);
+          for (int i = 0; i < length; i++) {
+            Object element = Array.get(current, i);
+            if (null != element) {
+              pending.push(element);
+            }
+          }
+        }
+        continue;
+      }
+      long size = HEADER_SIZE;
+      for (Field field : instanceFields(clazz)) {
+        if (field.getType().isPrimitive()) {
+          size += primitiveSize(field.getType());
+          continue;
+        }
+        size += REFERENCE_SIZE;
+        try {
+          field.setAccessible(true);
+          Object value = field.get(current);
+          if (null != value) {
+            pending.push(value);
+          }
+        } catch (Exception ex) {
+          // inaccessible field(JDK 9+ modules), only its reference is counted.
+        }
+      }
+      total += align(size);
+    }
+    return total;
+  }
+
+  private static List<AVObject> makeObjects(boolean compact) {
+    List<AVObject> objects = new ArrayList<AVObject>(OBJECT_COUNT);
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      Map<String, Object> data = new HashMap<String, Object>();
+      data.put("objectId", "5abd026d9f545400387" + (100000 + i));
+      data.put("age", i);
+      data.put("score", 1.5d * i);
+      data.put("views", 10000000000L + i);
+      data.put("enabled", i % 2 == 0);
+      data.put("rank", i % 1000);
+      AVObject object = new AVObject("Benchmark");
+      object.resetServerData(data);
+      if (compact) {
+        object.compactForReadOnly();
+      }
+      objects.add(object);
+    }
+    return objects;
+  }
+
+  private static void report(String content) throws IOException {
+    File dir = new File("target/benchmarks");
+    dir.mkdirs();
+    FileWriter writer = new FileWriter(new File(dir, "CompactServerDataBenchmark.txt"));
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+
+  public void testRetainedSize() throws Exception {
+    long standard = retainedSize(makeObjects(false));
+    long compact = retainedSize(makeObjects(true));
+    String result = "objects: " + OBJECT_COUNT + "\n"
+        + "standard: " + standard + " bytes, " + standard / OBJECT_COUNT + " bytes/object\n"
+        + "compact: " + compact + " bytes, " + compact / OBJECT_COUNT + " bytes/object\n"
+        + "saved: " + (standard - compact) * 100 / standard + "%\n";
+    report(result);
+    assertTrue(result, compact < standard);
+  }
+}
@@ -0,0 +1,94 @@
+package cn.leancloud;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CompactServerDataTest extends TestCase {
+  public CompactServerDataTest(String name) {
+    super(name);
+  }
+
+  public static Test suite() {
+    return new TestSuite(CompactServerDataTest.class);
+  }
+
+  private Map<String, Object> makeData(int i) {
+    Map<String, Object> data = new HashMap<>();
+    data.put("objectId", "5abd026d9f545400387" + (10000 + i));
+    data.put("age", i);
+    data.put("score", 1.5d * i);
+    data.put("views", 10000000000L + i);
+    data.put("enabled", i % 2 == 0);
+    data.put("tags", Arrays.asList("a", "b"));
+    return data;
+  }
+
+  public void testReadValues() {
+    Map<String, Object> data = makeData(7);
+    CompactServerData compact = new CompactServerData("Student", data);
+    assertEquals(data.size(), compact.size());
+    assertEquals(Integer.valueOf(7), compact.get("age"));
+    assertEquals(Double.valueOf(10.5), compact.get("score"));
+    assertEquals(Long.valueOf(10000000007L), compact.get("views"));
+    assertEquals(Boolean.FALSE, compact.get("enabled"));
+    assertEquals(Arrays.asList("a", "b"), compact.get("tags"));
+    assertNull(compact.get("notExisted"));
+    assertFalse(compact.containsKey("notExisted"));
+    assertEquals(data, compact);
+    assertEquals(data, new HashMap<>(compact));
+    assertFalse(compact.isInflated());
+  }
+
+  public void testSharedDictionary() {
+    CompactServerData first = new CompactServerData("Teacher", makeData(1));
+    Map<String, Object> other = new HashMap<>();
+    other.put("name", "Tom");
+    CompactServerData second = new CompactServerData("Teacher", other);
+    assertEquals(1, second.size());
+    assertEquals("Tom", second.get("name"));
+    assertNull(first.get("name"));
+    assertNull(second.get("age"));
+  }
+
+  public void testInflateOnWrite() {
+    CompactServerData compact = new CompactServerData("Student", makeData(3));
+    compact.put("age", 30);
+    assertTrue(compact.isInflated());
+    assertEquals(30, compact.get("age"));
+    compact.remove("tags");
+    assertFalse(compact.containsKey("tags"));
+    assertEquals(5, compact.size());
+  }
+
+  public void testReadOnlyObject() {
+    AVObject object = new AVObject("Student");
+    object.resetServerData(makeData(5));
+    object.compactForReadOnly();
+    assertTrue(object.getServerData() instanceof CompactServerData);
+    assertEquals(5, object.getInt("age"));
+    assertEquals(7.5, object.getDouble("score"));
+    assertEquals("5abd026d9f54540038710005", object.getObjectId());
+
+    object.put("age", 50);
+    assertEquals(50, object.getInt("age"));
+    assertEquals(1, object.readableOperations().size());
+
+    AVObject anotherObject = new AVObject("Student");
+    anotherObject.resetServerData(makeData(6));
+    anotherObject.compactForReadOnly();
+    assertNull(anotherObject.operations);
+    assertTrue(anotherObject.readableOperations().isEmpty());
+
+    JSONObject json = JSON.parseObject(anotherObject.toJSONString());
+    assertEquals(6, json.getJSONObject("serverData").getIntValue("age"));
+    AVObject parsed = AVObject.parseAVObject(anotherObject.toJSONString());
+    assertEquals(6, parsed.getInt("age"));
+  }
+}
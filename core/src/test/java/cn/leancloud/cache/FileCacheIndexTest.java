@@ -0,0 +1,124 @@
+package cn.leancloud.cache;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+
+public class FileCacheIndexTest extends TestCase {
+  private File dir;
+
+  public FileCacheIndexTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(FileCacheIndexTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    dir = new File("./target/file-cache-test");
+    dir.mkdirs();
+    clearDir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    clearDir();
+  }
+
+  private void clearDir() {
+    File[] files = dir.listFiles();
+    if (null != files) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  private File writeFile(String name, int size) {
+    File file = new File(dir, name);
+    PersistenceUtil.sharedInstance().saveContentToFile(new byte[size], file);
+    return file;
+  }
+
+  public void testLRUEviction() {
+    FileCacheIndex index = new FileCacheIndex(dir, 300);
+    writeFile("a", 100);
+    index.add("a", 100);
+    writeFile("b", 100);
+    index.add("b", 100);
+    writeFile("c", 100);
+    index.add("c", 100);
+    assertTrue(index.recordAccess("a"));
+
+    writeFile("d", 100);
+    index.add("d", 100);
+    assertEquals(300, index.byteSize());
+    assertFalse(index.contains("b"));
+    assertFalse(new File(dir, "b").exists());
+    assertTrue(index.contains("a"));
+    assertEquals(1, index.getEvictionCount());
+    assertEquals(100, index.getEvictedBytes());
+
+    assertFalse(index.recordAccess("b"));
+    assertEquals(1, index.getMissCount());
+    assertEquals(1, index.getHitCount());
+    assertEquals(100, index.getBytesServed());
+    assertEquals(0.5, index.getHitRate(), 0.0001);
+  }
+
+  public void testPinnedFileIsNotEvicted() {
+    FileCacheIndex index = new FileCacheIndex(dir, 200);
+    writeFile("a", 100);
+    index.add("a", 100);
+    assertTrue(index.pin("a"));
+    writeFile("b", 100);
+    index.add("b", 100);
+    writeFile("c", 100);
+    index.add("c", 100);
+    assertTrue(index.contains("a"));
+    assertFalse(index.contains("b"));
+
+    index.unpin("a");
+    index.setMaxBytes(100);
+    assertFalse(index.contains("a"));
+    assertTrue(index.contains("c"));
+
+    // file larger than budget is retained until next addition.
+    writeFile("d", 500);
+    index.add("d", 500);
+    assertTrue(new File(dir, "d").exists());
+    assertEquals(1, index.size());
+  }
+
+  public void testReloadIndex() {
+    FileCacheIndex index = new FileCacheIndex(dir, 0);
+    writeFile("a", 10);
+    index.add("a", 10);
+    writeFile("b", 20);
+    index.add("b", 20);
+    index.pin("b");
+    index.recordAccess("a");
+    index.flush();
+
+    // changes out of index.
+    new File(dir, "a").delete();
+    writeFile("c", 30);
+    writeFile("d.part", 40);
+
+    FileCacheIndex reloaded = new FileCacheIndex(dir, 0);
+    assertEquals(2, reloaded.size());
+    assertEquals(50, reloaded.byteSize());
+    assertFalse(reloaded.contains("a"));
+    assertFalse(reloaded.contains("d.part"));
+    assertEquals(1, reloaded.getPinCount("b"));
+
+    reloaded.removeAccessedBefore(System.currentTimeMillis() + 1);
+    assertEquals(1, reloaded.size());
+    assertTrue(reloaded.contains("b"));
+    assertFalse(new File(dir, "c").exists());
+  }
+}
@@ -0,0 +1,115 @@
+package cn.leancloud.cache;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileSystemSettingTest extends TestCase {
+  private static final String SETTING_DIR = "./target/setting-test/";
+
+  public FileSystemSettingTest(String name) {
+    super(name);
+  }
+
+  public static Test suite() {
+    return new TestSuite(FileSystemSettingTest.class);
+  }
+
+  private static void deleteDir(File dir) {
+    File[] files = dir.listFiles();
+    if (null != files) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    deleteDir(new File(SETTING_DIR));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    deleteDir(new File(SETTING_DIR));
+    super.tearDown();
+  }
+
+  public void testPersistence() {
+    FileSystemSetting setting = new FileSystemSetting(SETTING_DIR);
+    setting.saveBoolean("zoneA", "bool", true);
+    setting.saveInteger("zoneA", "int", 42);
+    setting.saveFloat("zoneA", "float", 1.5f);
+    setting.saveLong("zoneA", "long", 10000000000L);
+    setting.saveString("zoneA", "str", "hello\nworld");
+    setting.saveString("zoneB", "str", "other");
+    setting.removeKey("zoneA", "int");
+    setting.close();
+
+    FileSystemSetting restored = new FileSystemSetting(SETTING_DIR);
+    assertTrue(restored.getBoolean("zoneA", "bool", false));
+    assertEquals(-1, restored.getInteger("zoneA", "int", -1));
+    assertEquals(1.5f, restored.getFloat("zoneA", "float", 0f));
+    assertEquals(10000000000L, restored.getLong("zoneA", "long", 0L));
+    assertEquals("hello\nworld", restored.getString("zoneA", "str", null));
+    assertEquals("other", restored.getString("zoneB", "str", null));
+    assertEquals(4, restored.getAll("zoneA").size());
+
+    restored.removeKeyZone("zoneA");
+    assertTrue(restored.getAll("zoneA").isEmpty());
+    restored.close();
+    assertNull(new FileSystemSetting(SETTING_DIR).getString("zoneA", "str", null));
+  }
+
+  public void testCompaction() {
+    FileSystemSetting setting = new FileSystemSetting(SETTING_DIR, 10);
+    for (int i = 0; i < 105; i++) {
+      setting.saveInteger("zone", "counter", i);
+    }
+    assertTrue(setting.getZone("zone").getRecordCount() <= 10);
+    setting.close();
+    assertEquals(104, new FileSystemSetting(SETTING_DIR).getInteger("zone", "counter", -1));
+  }
+
+  public void testConcurrentWrite() throws Exception {
+    final FileSystemSetting setting = new FileSystemSetting(SETTING_DIR, 100);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      final int index = i;
+      Thread t = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 500; j++) {
+            setting.saveString("zone" + (index % 2), "key" + index + "-" + j, String.valueOf(j));
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    setting.close();
+    FileSystemSetting restored = new FileSystemSetting(SETTING_DIR);
+    assertEquals(1000, restored.getAll("zone0").size());
+    assertEquals(1000, restored.getAll("zone1").size());
+    assertEquals("499", restored.getString("zone1", "key3-499", null));
+  }
+
+  public void testInMemorySettingZone() {
+    InMemorySetting setting = new InMemorySetting();
+    setting.saveString("zoneA", "key", "a");
+    setting.saveString("zoneB", "key", "b");
+    assertEquals("a", setting.getString("zoneA", "key", null));
+    setting.removeKeyZone("zoneA");
+    assertNull(setting.getString("zoneA", "key", null));
+    assertEquals("b", setting.getString("zoneB", "key", null));
+  }
+}
@@ -0,0 +1,101 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.query.AVQueryResult;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class QueryResultMemoryCacheTest extends TestCase {
+  public QueryResultMemoryCacheTest(String name) {
+    super(name);
+  }
+
+  public static Test suite() {
+    return new TestSuite(QueryResultMemoryCacheTest.class);
+  }
+
+  private AVQueryResult makeResult(int count) {
+    List<AVObject> objects = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      AVObject obj = new AVObject("Student");
+      obj.put("age", i);
+      objects.add(obj);
+    }
+    AVQueryResult result = new AVQueryResult();
+    result.setClassName("Student");
+    result.setCount(count);
+    result.setResults(objects);
+    return result;
+  }
+
+  public void testHitAndMiss() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(10, 1024);
+    assertNull(cache.get("a", 0));
+    cache.put("a", makeResult(2), 100, System.currentTimeMillis());
+    AVQueryResult result = cache.get("a", 0);
+    assertNotNull(result);
+    assertEquals(2, result.getResults().size());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  public void testMaxAge() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(10, 1024);
+    cache.put("a", makeResult(1), 100, System.currentTimeMillis() - 10000);
+    assertNull(cache.get("a", 5000));
+    assertNotNull(cache.get("a", 20000));
+    assertNotNull(cache.get("a", -1));
+    assertFalse(cache.contains("a", 5000));
+  }
+
+  public void testEvictByCount() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(2, 1024);
+    long now = System.currentTimeMillis();
+    cache.put("a", makeResult(1), 10, now);
+    cache.put("b", makeResult(1), 10, now);
+    cache.get("a", 0);
+    cache.put("c", makeResult(1), 10, now);
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("a", 0));
+    assertNull(cache.get("b", 0));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  public void testEvictByBytes() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(10, 100);
+    long now = System.currentTimeMillis();
+    cache.put("a", makeResult(1), 60, now);
+    cache.put("b", makeResult(1), 60, now);
+    assertEquals(1, cache.size());
+    assertEquals(60, cache.byteSize());
+    cache.put("c", makeResult(1), 200, now);
+    assertFalse(cache.contains("c", 0));
+    assertTrue(cache.contains("b", 0));
+  }
+
+  public void testRemoveAndClear() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(10, 1024);
+    long now = System.currentTimeMillis();
+    cache.put("a", makeResult(1), 10, now - 1000);
+    cache.put("b", makeResult(1), 10, now);
+    cache.removeCachedBefore(now - 500);
+    assertFalse(cache.contains("a", 0));
+    assertTrue(cache.contains("b", 0));
+    cache.remove("b");
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.byteSize());
+    cache.put("c", makeResult(1), 10, now);
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  public void testDisabled() {
+    QueryResultMemoryCache cache = new QueryResultMemoryCache(0, 1024);
+    cache.put("a", makeResult(1), 10, System.currentTimeMillis());
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,73 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVCloud;
+import cn.leancloud.codec.MD5;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import okhttp3.Headers;
+
+public class GeneralRequestSignatureTest extends TestCase {
+  public GeneralRequestSignatureTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(GeneralRequestSignatureTest.class);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    GeneralRequestSignature.setMasterKey(null);
+  }
+
+  public void testMD5() {
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", MD5.computeMD5(""));
+    assertEquals("900150983cd24fb0d6963f7d28e17f72", MD5.computeMD5("abc"));
+    // digest is reused, result must not depend on previous input.
+    assertEquals("900150983cd24fb0d6963f7d28e17f72", MD5.computeMD5("abc"));
+  }
+
+  public void testRequestSign() {
+    String sign = GeneralRequestSignature.requestSign("abc", 1000L, "master");
+    assertEquals(MD5.computeMD5("1000abc") + ",1000,master", sign);
+    sign = GeneralRequestSignature.requestSign("abc", 1000L, null);
+    assertEquals(MD5.computeMD5("1000abc") + ",1000", sign);
+  }
+
+  public void testSignCache() {
+    GeneralRequestSignature signature = new GeneralRequestSignature();
+    GeneralRequestSignature.setMasterKey("masterKeyForTest");
+    String first = signature.generateSign();
+    String second = signature.generateSign();
+    assertTrue(first.endsWith(",master"));
+    String[] parts = second.split(",");
+    long ts = Long.parseLong(parts[1]);
+    assertEquals(GeneralRequestSignature.requestSign("masterKeyForTest", ts, "master"), second);
+    if (ts / 1000 == System.currentTimeMillis() / 1000) {
+      assertSame(first, second);
+    }
+
+    // key mode changes, signature must be regenerated.
+    GeneralRequestSignature.setMasterKey(null);
+    String third = signature.generateSign();
+    assertFalse(third.endsWith(",master"));
+  }
+
+  public void testStaticHeaders() {
+    boolean productionMode = AVCloud.isProductionMode();
+    try {
+      AVCloud.setProductionMode(true);
+      Headers headers = RequestPaddingInterceptor.getStaticHeaders();
+      assertSame(headers, RequestPaddingInterceptor.getStaticHeaders());
+      assertEquals("1", headers.get("X-LC-Prod"));
+      assertEquals(AppConfiguration.getUserAgent(), headers.get("User-Agent"));
+
+      AVCloud.setProductionMode(false);
+      headers = RequestPaddingInterceptor.getStaticHeaders();
+      assertEquals("0", headers.get("X-LC-Prod"));
+    } finally {
+      AVCloud.setProductionMode(productionMode);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package cn.leancloud.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Collections;
+
+public class HttpClientConfigurationTest extends TestCase {
+  public HttpClientConfigurationTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(HttpClientConfigurationTest.class);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    PaasClient.setHttpClientConfiguration(new HttpClientConfiguration.Builder().build());
+  }
+
+  public void testDefaultConfiguration() {
+    HttpClientConfiguration configuration = new HttpClientConfiguration.Builder().build();
+    OkHttpClient client = configuration.newOkHttpClientBuilder().build();
+    assertEquals(HttpClientConfiguration.DEFAULT_MAX_REQUESTS, client.dispatcher().getMaxRequests());
+    assertEquals(HttpClientConfiguration.DEFAULT_MAX_REQUESTS_PER_HOST, client.dispatcher().getMaxRequestsPerHost());
+    assertEquals(15000, client.connectTimeoutMillis());
+    assertEquals(10000, client.readTimeoutMillis());
+    assertTrue(client.protocols().contains(Protocol.HTTP_2));
+    assertEquals(30000, configuration.getTimeouts(AVOSService.ENGINE).getReadMillis());
+    assertEquals(10000, configuration.getTimeouts(AVOSService.PUSH).getReadMillis());
+  }
+
+  public void testCustomConfiguration() {
+    HttpClientConfiguration configuration = new HttpClientConfiguration.Builder()
+        .maxRequests(100)
+        .maxRequestsPerHost(200)
+        .connectionPool(20, 60000)
+        .preferHttp2(false)
+        .timeouts(new HttpClientConfiguration.Timeouts(5000, 6000, 7000))
+        .timeouts(AVOSService.PUSH, new HttpClientConfiguration.Timeouts(1000, 2000, 3000))
+        .build();
+    OkHttpClient client = configuration.newOkHttpClientBuilder().build();
+    assertEquals(100, client.dispatcher().getMaxRequests());
+    // per host limit can't exceed total limit.
+    assertEquals(100, client.dispatcher().getMaxRequestsPerHost());
+    assertEquals(Collections.singletonList(Protocol.HTTP_1_1), client.protocols());
+    assertEquals(5000, client.connectTimeoutMillis());
+    assertEquals(6000, client.readTimeoutMillis());
+    assertEquals(7000, client.writeTimeoutMillis());
+    assertEquals(2000, configuration.getTimeouts(AVOSService.PUSH).getReadMillis());
+    assertEquals(6000, configuration.getTimeouts(AVOSService.STATS).getReadMillis());
+  }
+
+  public void testServiceClient() {
+    PaasClient.setHttpClientConfiguration(new HttpClientConfiguration.Builder()
+        .maxRequestsPerHost(16)
+        .timeouts(AVOSService.PUSH, new HttpClientConfiguration.Timeouts(1000, 2000, 3000))
+        .build());
+    OkHttpClient globalClient = PaasClient.getGlobalOkHttpClient();
+    OkHttpClient pushClient = PaasClient.getOkHttpClient(AVOSService.PUSH);
+    assertSame(globalClient, PaasClient.getOkHttpClient(AVOSService.API));
+    assertSame(pushClient, PaasClient.getOkHttpClient(AVOSService.PUSH));
+    assertSame(globalClient.connectionPool(), pushClient.connectionPool());
+    assertSame(globalClient.dispatcher(), pushClient.dispatcher());
+    assertEquals(16, pushClient.dispatcher().getMaxRequestsPerHost());
+    assertEquals(2000, pushClient.readTimeoutMillis());
+    assertEquals(globalClient.interceptors().size(), pushClient.interceptors().size());
+  }
+}
@@ -0,0 +1,153 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoggingInterceptorTest extends TestCase {
+  private HttpServer server;
+  private byte[] content;
+  private OkHttpClient client;
+  private AVLogger.Level originalLevel;
+
+  public LoggingInterceptorTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(LoggingInterceptorTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    originalLevel = AVOSCloud.getLogLevel();
+    content = new byte[64 * 1024];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) ('a' + i % 26);
+    }
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/echo", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream is = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        while (is.read(buffer) >= 0) {
+          ;
+        }
+        exchange.sendResponseHeaders(200, content.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(content);
+        os.close();
+      }
+    });
+    server.start();
+    client = new OkHttpClient.Builder().addInterceptor(new LoggingInterceptor()).build();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+    AVOSCloud.setLogLevel(originalLevel);
+  }
+
+  private static class CountingRequestBody extends RequestBody {
+    private final AtomicInteger writeCount = new AtomicInteger(0);
+    private final int length;
+
+    CountingRequestBody(int length) {
+      this.length = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return MediaType.parse("application/json");
+    }
+
+    @Override
+    public long contentLength() {
+      return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      writeCount.incrementAndGet();
+      for (int i = 0; i < length; i++) {
+        sink.writeByte('x');
+      }
+    }
+  }
+
+  private Response post(RequestBody body) throws IOException {
+    String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+    return client.newCall(new Request.Builder().url(url).post(body).build()).execute();
+  }
+
+  public void testLoggingDisabled() throws Exception {
+    AVOSCloud.setLogLevel(AVLogger.Level.OFF);
+    CountingRequestBody body = new CountingRequestBody(100);
+    Response response = post(body);
+    assertEquals(content.length, response.body().bytes().length);
+    // body is written only once, by the transport.
+    assertEquals(1, body.writeCount.get());
+  }
+
+  public void testLoggingEnabled() throws Exception {
+    AVOSCloud.setLogLevel(AVLogger.Level.DEBUG);
+    CountingRequestBody smallBody = new CountingRequestBody(100);
+    Response response = post(smallBody);
+    assertEquals(2, smallBody.writeCount.get());
+    // response body is peeked, caller still reads all of it.
+    assertEquals(content.length, response.body().bytes().length);
+
+    CountingRequestBody largeBody = new CountingRequestBody((int) LoggingInterceptor.MAX_LOGGED_BODY_BYTES + 1);
+    response = post(largeBody);
+    assertEquals(1, largeBody.writeCount.get());
+    assertEquals(content.length, response.body().bytes().length);
+  }
+
+  public void testLevelGuards() {
+    AVLogger logger = new AVLogger("test");
+    AVOSCloud.setLogLevel(AVLogger.Level.INFO);
+    assertTrue(logger.isInfoEnabled());
+    assertFalse(logger.isDebugEnabled());
+    assertFalse(logger.isVerboseEnabled());
+    AVOSCloud.setLogLevel(AVLogger.Level.VERBOSE);
+    assertTrue(logger.isDebugEnabled());
+    assertTrue(logger.isVerboseEnabled());
+  }
+
+  public void testLazyMessage() {
+    AVLogger logger = new AVLogger("test");
+    final AtomicInteger supplied = new AtomicInteger(0);
+    AVLogger.MessageSupplier supplier = new AVLogger.MessageSupplier() {
+      @Override
+      public String get() {
+        supplied.incrementAndGet();
+        return "message";
+      }
+    };
+    AVOSCloud.setLogLevel(AVLogger.Level.INFO);
+    assertFalse(logger.isDebugEnabled());
+    logger.d(supplier);
+    logger.v(supplier);
+    assertEquals(0, supplied.get());
+    logger.i(supplier);
+    assertEquals(1, supplied.get());
+  }
+}
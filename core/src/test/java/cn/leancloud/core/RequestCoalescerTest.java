@@ -0,0 +1,80 @@
+package cn.leancloud.core;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestCoalescerTest extends TestCase {
+  public RequestCoalescerTest(String name) {
+    super(name);
+  }
+
+  private Observable<String> slowSource(final AtomicInteger counter) {
+    return Observable.fromCallable(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        counter.incrementAndGet();
+        Thread.sleep(300);
+        return "result";
+      }
+    }).subscribeOn(Schedulers.io());
+  }
+
+  public void testConcurrentSubscribersShareUpstream() throws Exception {
+    final AtomicInteger counter = new AtomicInteger(0);
+    RequestCoalescer coalescer = new RequestCoalescer();
+    Observable<String> first = coalescer.coalesce("key", slowSource(counter));
+    Observable<String> second = coalescer.coalesce("key", slowSource(counter));
+    Observable<String> merged = Observable.merge(first, second);
+    assertEquals(2, merged.toList().blockingGet().size());
+    assertEquals(1, counter.get());
+    assertEquals(1, coalescer.getSharedCount());
+    assertEquals(0, coalescer.inFlightSize());
+  }
+
+  public void testFinishedRequestNotReused() throws Exception {
+    final AtomicInteger counter = new AtomicInteger(0);
+    RequestCoalescer coalescer = new RequestCoalescer();
+    assertEquals("result", coalescer.coalesce("key", slowSource(counter)).blockingFirst());
+    assertEquals("result", coalescer.coalesce("key", slowSource(counter)).blockingFirst());
+    assertEquals(2, counter.get());
+  }
+
+  public void testDifferentKeys() throws Exception {
+    final AtomicInteger counter = new AtomicInteger(0);
+    RequestCoalescer coalescer = new RequestCoalescer();
+    Observable<String> merged = Observable.merge(coalescer.coalesce("a", slowSource(counter)),
+        coalescer.coalesce("b", slowSource(counter)));
+    assertEquals(2, merged.toList().blockingGet().size());
+    assertEquals(2, counter.get());
+  }
+
+  public void testErrorShared() throws Exception {
+    final AtomicInteger counter = new AtomicInteger(0);
+    RequestCoalescer coalescer = new RequestCoalescer();
+    Observable<String> failed = Observable.<String>error(new IllegalStateException("failed"))
+        .delay(200, TimeUnit.MILLISECONDS, true)
+        .doOnSubscribe(new Consumer<Disposable>() {
+          @Override
+          public void accept(Disposable disposable) throws Exception {
+            counter.incrementAndGet();
+          }
+        });
+    Observable<String> merged = Observable.mergeDelayError(coalescer.coalesce("key", failed),
+        coalescer.coalesce("key", failed));
+    try {
+      merged.blockingLast();
+      fail();
+    } catch (Exception ex) {
+      ;
+    }
+    assertEquals(1, counter.get());
+    assertEquals(0, coalescer.inFlightSize());
+  }
+}
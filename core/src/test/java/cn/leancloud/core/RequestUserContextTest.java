@@ -0,0 +1,88 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVUser;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RequestUserContextTest extends TestCase {
+  public RequestUserContextTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(RequestUserContextTest.class);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    RequestUserContext.end();
+  }
+
+  private static AVUser createUser(String sessionToken) {
+    AVUser user = new AVUser();
+    user.internalChangeSessionToken(sessionToken);
+    return user;
+  }
+
+  public void testContextIsBoundToThread() throws Exception {
+    RequestUserContext.begin();
+    assertTrue(RequestUserContext.isActive());
+    assertNull(AVUser.getCurrentUser());
+    assertEquals("", RequestPaddingInterceptor.getSessionToken());
+
+    AVUser.changeCurrentUser(createUser("session-main"), true);
+    assertEquals("session-main", RequestPaddingInterceptor.getSessionToken());
+    assertEquals("session-main", AVUser.getCurrentUser().getSessionToken());
+    // nothing is persisted within request context.
+    assertFalse(new File(AppConfiguration.getDocumentDir() + "/currentUser").exists());
+
+    final AtomicReference<String> otherToken = new AtomicReference<String>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    new Thread() {
+      @Override
+      public void run() {
+        RequestUserContext.begin();
+        RequestUserContext.setUser(createUser("session-other"));
+        otherToken.set(RequestPaddingInterceptor.getSessionToken());
+        RequestUserContext.end();
+        latch.countDown();
+      }
+    }.start();
+    latch.await();
+    assertEquals("session-other", otherToken.get());
+    assertEquals("session-main", RequestPaddingInterceptor.getSessionToken());
+
+    AVUser.changeCurrentUser(null, true);
+    assertNull(RequestUserContext.getUser());
+    assertTrue(RequestUserContext.isActive());
+
+    RequestUserContext.end();
+    assertFalse(RequestUserContext.isActive());
+  }
+
+  public void testCurrentUserIsContextInstance() {
+    RequestUserContext.begin();
+    AVUser user = createUser("session-main");
+    RequestUserContext.setUser(user);
+    AVUser current = AVUser.getCurrentUser();
+    assertSame(user, current);
+    current.put("nickname", "tom");
+    assertEquals("tom", AVUser.getCurrentUser().getString("nickname"));
+  }
+
+  public void testSetUserRequiresBegin() {
+    RequestUserContext.end();
+    try {
+      RequestUserContext.setUser(createUser("session-main"));
+      fail("setUser should fail without active context.");
+    } catch (IllegalStateException ex) {
+      ;
+    }
+    assertFalse(RequestUserContext.isActive());
+  }
+}
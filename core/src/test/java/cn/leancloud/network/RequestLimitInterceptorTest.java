@@ -0,0 +1,119 @@
+package cn.leancloud.network;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+
+public class RequestLimitInterceptorTest extends TestCase {
+  public RequestLimitInterceptorTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(RequestLimitInterceptorTest.class);
+  }
+
+  public void testEndpointGroup() {
+    assertEquals(RequestLimitInterceptor.EndpointGroup.CLASSES,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "classes", "Post", "abc")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.BATCH,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "batch", "save")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.FUNCTIONS,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "functions", "hello")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.FUNCTIONS,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "call", "hello")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.USERS,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "login")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.OTHERS,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("1.1", "date")));
+    assertEquals(RequestLimitInterceptor.EndpointGroup.OTHERS,
+        RequestLimitInterceptor.getEndpointGroup(Arrays.asList("")));
+  }
+
+  public void testTokenBucket() throws Exception {
+    TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.tryAcquire(0));
+    }
+    assertFalse(limiter.tryAcquire(0));
+    long start = System.currentTimeMillis();
+    assertTrue(limiter.tryAcquire(1000));
+    assertTrue(System.currentTimeMillis() - start >= 80);
+  }
+
+  public void testAdaptiveRate() {
+    TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100);
+    limiter.onRejected();
+    assertEquals(80.0, limiter.getRate(), 0.001);
+    for (int i = 0; i < 100; i++) {
+      limiter.onRejected();
+    }
+    assertEquals(10.0, limiter.getRate(), 0.001);
+    for (int i = 0; i < 200; i++) {
+      limiter.onSuccess();
+    }
+    assertEquals(100.0, limiter.getRate(), 0.001);
+  }
+
+  public void testConcurrencyLimit() throws Exception {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10);
+    assertTrue(limiter.tryAcquire(0));
+    assertTrue(limiter.tryAcquire(0));
+    assertFalse(limiter.tryAcquire(50));
+    assertEquals(2, limiter.getInflight());
+
+    limiter.release(1000, AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+    assertEquals(1, limiter.getLimit());
+    assertFalse(limiter.tryAcquire(0));
+    limiter.release(1000, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+    assertEquals(0, limiter.getInflight());
+
+    // additive increase when limit is saturated.
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.tryAcquire(0));
+      limiter.release(1000, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    }
+    assertTrue(limiter.getLimit() > 1);
+
+    // latency growth decreases limit.
+    int limit = limiter.getLimit();
+    for (int i = 0; i < limit; i++) {
+      assertTrue(limiter.tryAcquire(0));
+    }
+    limiter.release(10000, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    assertTrue(limiter.getLimit() < limit || limit == 1);
+  }
+
+  public void testWaitingForSlot() throws Exception {
+    final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+    assertTrue(limiter.tryAcquire(0));
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          ;
+        }
+        limiter.release(1000, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+      }
+    }.start();
+    assertTrue(limiter.tryAcquire(5000));
+  }
+
+  public void testLimitersAreOptInPerGroup() {
+    RequestLimitInterceptor interceptor = new RequestLimitInterceptor();
+    for (RequestLimitInterceptor.EndpointGroup group : RequestLimitInterceptor.EndpointGroup.values()) {
+      assertNull(interceptor.getConcurrencyLimiter(group));
+      assertNull(interceptor.getRateLimiter(group));
+    }
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+    interceptor.setConcurrencyLimiter(RequestLimitInterceptor.EndpointGroup.CLASSES, limiter);
+    assertSame(limiter, interceptor.getConcurrencyLimiter(RequestLimitInterceptor.EndpointGroup.CLASSES));
+    assertNull(interceptor.getConcurrencyLimiter(RequestLimitInterceptor.EndpointGroup.FUNCTIONS));
+    interceptor.setConcurrencyLimiter(RequestLimitInterceptor.EndpointGroup.CLASSES, null);
+    assertNull(interceptor.getConcurrencyLimiter(RequestLimitInterceptor.EndpointGroup.CLASSES));
+  }
+}
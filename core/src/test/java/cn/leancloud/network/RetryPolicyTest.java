@@ -0,0 +1,177 @@
+package cn.leancloud.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryPolicyTest extends TestCase {
+  public RetryPolicyTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(RetryPolicyTest.class);
+  }
+
+  public void testDecorrelatedJitter() {
+    RetryPolicy policy = new RetryPolicy(10, 100, 1000, null);
+    long previous = 0;
+    for (int i = 0; i < 100; i++) {
+      long delay = policy.nextBackoff(previous);
+      assertTrue(delay >= 100);
+      assertTrue(delay <= 1000);
+      assertTrue(delay <= Math.max(100, previous * 3));
+      previous = delay;
+    }
+  }
+
+  public void testRetryRules() {
+    assertTrue(RetryPolicy.isRetryableStatus(503, false));
+    assertTrue(RetryPolicy.isRetryableStatus(429, false));
+    assertFalse(RetryPolicy.isRetryableStatus(500, false));
+    assertTrue(RetryPolicy.isRetryableStatus(500, true));
+    assertFalse(RetryPolicy.isRetryableStatus(400, true));
+    assertFalse(RetryPolicy.isRetryableStatus(404, true));
+    assertTrue(RetryPolicy.isRetryableFailure(new java.net.ConnectException(), false));
+    assertFalse(RetryPolicy.isRetryableFailure(new SocketTimeoutException(), false));
+    assertTrue(RetryPolicy.isRetryableFailure(new SocketTimeoutException(), true));
+    assertTrue(RetryPolicy.isIdempotentMethod("GET"));
+    assertFalse(RetryPolicy.isIdempotentMethod("POST"));
+    assertFalse(RetryPolicy.isIdempotentMethod("PUT"));
+    assertFalse(RetryPolicy.isIdempotentMethod("DELETE"));
+  }
+
+  public void testParseRetryAfter() {
+    assertEquals(3000, RetryPolicy.parseRetryAfter("3", 0));
+    assertEquals(-1, RetryPolicy.parseRetryAfter(null, 0));
+    assertEquals(-1, RetryPolicy.parseRetryAfter("soon", 0));
+    // Thu, 01 Jan 1970 00:00:10 GMT
+    assertEquals(4000, RetryPolicy.parseRetryAfter("Thu, 01 Jan 1970 00:00:10 GMT", 6000));
+  }
+
+  public void testRetrierHonorsRetryAfterAndAttempts() {
+    RetryPolicy policy = new RetryPolicy(3, 10, 50, null);
+    policy.setMaxRetryAfterMillis(5000);
+    RetryPolicy.Retrier retrier = policy.newRetrier(false);
+    assertEquals(2000, retrier.onResponse(503, "2"));
+    assertEquals(-1, retrier.onResponse(500, null));
+    long delay = retrier.onResponse(429, null);
+    assertTrue(delay >= 10 && delay <= 50);
+    assertEquals(-1, retrier.onResponse(503, null));
+    assertEquals(3, retrier.getAttempts());
+
+    assertEquals(-1, policy.newRetrier(true).onResponse(503, "10"));
+  }
+
+  public void testRetryBudget() {
+    RetryPolicy.RetryBudget budget = new RetryPolicy.RetryBudget(2, 0.5);
+    RetryPolicy policy = new RetryPolicy(10, 1, 1, budget);
+    RetryPolicy.Retrier retrier = policy.newRetrier(true);
+    assertTrue(retrier.onFailure(new IOException()) >= 0);
+    assertTrue(retrier.onFailure(new IOException()) >= 0);
+    assertEquals(-1, retrier.onFailure(new IOException()));
+    retrier.onSuccess();
+    assertEquals(-1, policy.newRetrier(true).onFailure(new IOException()));
+    retrier.onSuccess();
+    assertTrue(policy.newRetrier(true).onFailure(new IOException()) >= 0);
+  }
+
+  public void testInterceptor() throws Exception {
+    final AtomicInteger requestCount = new AtomicInteger(0);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream is = exchange.getRequestBody();
+        while (is.read() >= 0) {
+          ;
+        }
+        int count = requestCount.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/busy")) {
+          exchange.getResponseHeaders().add("Retry-After", "1");
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+          return;
+        }
+        boolean failed = path.startsWith("/fail") || count < 3;
+        exchange.getResponseHeaders().add("Retry-After", "0");
+        exchange.sendResponseHeaders(failed ? 502 : 200, -1);
+        exchange.close();
+      }
+    });
+    server.start();
+    try {
+      String host = "http://127.0.0.1:" + server.getAddress().getPort();
+      OkHttpClient client = new OkHttpClient.Builder()
+          .addInterceptor(new RetryInterceptor(new RetryPolicy(3, 1, 5, null)))
+          .build();
+      Response response = client.newCall(new Request.Builder().url(host + "/ok").build()).execute();
+      assertEquals(200, response.code());
+      response.close();
+      assertEquals(3, requestCount.get());
+
+      // 502 of non-idempotent request is not retried.
+      requestCount.set(0);
+      RequestBody body = RequestBody.create(MediaType.parse("text/plain"), "content");
+      response = client.newCall(new Request.Builder().url(host + "/fail").post(body).build()).execute();
+      assertEquals(502, response.code());
+      response.close();
+      assertEquals(1, requestCount.get());
+
+      // neither is PUT, which may carry Increment operations.
+      requestCount.set(0);
+      response = client.newCall(new Request.Builder().url(host + "/fail").put(body).build()).execute();
+      assertEquals(502, response.code());
+      response.close();
+      assertEquals(1, requestCount.get());
+
+      // unless it's tagged as idempotent.
+      requestCount.set(0);
+      response = client.newCall(new Request.Builder().url(host + "/fail").post(body)
+          .tag(RetryPolicy.Idempotent.class, RetryPolicy.Idempotent.INSTANCE).build()).execute();
+      assertEquals(502, response.code());
+      response.close();
+      assertEquals(3, requestCount.get());
+
+      // cancelled call is not retried after backoff.
+      requestCount.set(0);
+      final Call call = client.newCall(new Request.Builder().url(host + "/busy").build());
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException ex) {
+            ;
+          }
+          call.cancel();
+        }
+      }).start();
+      try {
+        call.execute().close();
+        fail("cancelled call should fail.");
+      } catch (IOException ex) {
+        ;
+      }
+      assertEquals(1, requestCount.get());
+    } finally {
+      server.stop(0);
+    }
+  }
+}
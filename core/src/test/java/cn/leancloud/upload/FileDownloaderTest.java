@@ -0,0 +1,184 @@
+package cn.leancloud.upload;
+
+import cn.leancloud.AVException;
+import cn.leancloud.cache.PersistenceUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FileDownloaderTest extends TestCase {
+  private static final String ETAG = "\"abc\"";
+
+  private HttpServer server;
+  private byte[] content;
+  private File dir;
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+  private final AtomicInteger rangeRequestCount = new AtomicInteger(0);
+  private volatile long responseDelayMillis = 0;
+
+  public FileDownloaderTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(FileDownloaderTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    content = new byte[300 * 1024 + 7];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i % 253);
+    }
+    dir = new File("./target/download-test");
+    dir.mkdirs();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/file", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+          Thread.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+          ;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        int start = 0;
+        int end = content.length - 1;
+        boolean partial = null != range && (null == ifRange || ETAG.equals(ifRange));
+        if (partial) {
+          rangeRequestCount.incrementAndGet();
+          String[] bounds = range.substring("bytes=".length()).split("-");
+          start = Integer.parseInt(bounds[0]);
+          if (bounds.length > 1 && bounds[1].length() > 0) {
+            end = Integer.parseInt(bounds[1]);
+          }
+          exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.sendResponseHeaders(partial ? 206 : 200, end - start + 1);
+        OutputStream os = exchange.getResponseBody();
+        os.write(content, start, end - start + 1);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+    FileDownloader.setSegmentSize(4 * 1024 * 1024);
+    FileDownloader.setSegmentConcurrency(3);
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+  }
+
+  private String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+  }
+
+  private File newTarget(String name) {
+    File target = new File(dir, name);
+    target.delete();
+    new File(target.getPath() + FileDownloader.PART_SUFFIX).delete();
+    new File(target.getPath() + FileDownloader.META_SUFFIX).delete();
+    return target;
+  }
+
+  private void assertContent(File target) {
+    assertTrue(target.exists());
+    assertTrue(Arrays.equals(content, PersistenceUtil.sharedInstance().readContentBytesFromFile(target)));
+    assertFalse(new File(target.getPath() + FileDownloader.PART_SUFFIX).exists());
+    assertFalse(new File(target.getPath() + FileDownloader.META_SUFFIX).exists());
+  }
+
+  public void testSingleStream() {
+    File target = newTarget("single");
+    assertNull(new FileDownloader().execute(getUrl(), target));
+    assertContent(target);
+    assertEquals(1, requestCount.get());
+    assertEquals(0, rangeRequestCount.get());
+
+    // existed file is not downloaded again.
+    assertNull(new FileDownloader().execute(getUrl(), target));
+    assertEquals(1, requestCount.get());
+  }
+
+  public void testSegments() {
+    FileDownloader.setSegmentSize(64 * 1024);
+    File target = newTarget("segments");
+    assertNull(new FileDownloader().execute(getUrl(), target));
+    assertContent(target);
+    // probe request and 5 segments.
+    assertEquals(6, requestCount.get());
+    assertEquals(5, rangeRequestCount.get());
+  }
+
+  public void testResumePartialFile() throws Exception {
+    File target = newTarget("resume");
+    int downloaded = 100 * 1024;
+    FileOutputStream os = new FileOutputStream(target.getPath() + FileDownloader.PART_SUFFIX);
+    os.write(content, 0, downloaded);
+    os.close();
+    new FileDownloader.DownloadMeta(ETAG, content.length, 0)
+        .save(new File(target.getPath() + FileDownloader.META_SUFFIX));
+
+    assertNull(new FileDownloader().execute(getUrl(), target));
+    assertContent(target);
+    assertEquals(1, rangeRequestCount.get());
+  }
+
+  public void testResumeChangedFile() throws Exception {
+    File target = newTarget("changed");
+    FileOutputStream os = new FileOutputStream(target.getPath() + FileDownloader.PART_SUFFIX);
+    os.write(new byte[1024]);
+    os.close();
+    new FileDownloader.DownloadMeta("\"old\"", content.length, 0)
+        .save(new File(target.getPath() + FileDownloader.META_SUFFIX));
+
+    assertNull(new FileDownloader().execute(getUrl(), target));
+    assertContent(target);
+    assertEquals(0, rangeRequestCount.get());
+  }
+
+  public void testCoalesceConcurrentDownloads() throws Exception {
+    responseDelayMillis = 300;
+    final File target = newTarget("coalesce");
+    int threadCount = 4;
+    final CountDownLatch latch = new CountDownLatch(threadCount);
+    final AtomicReference<AVException> error = new AtomicReference<AVException>(null);
+    for (int i = 0; i < threadCount; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          AVException ex = new FileDownloader().execute(getUrl(), target);
+          if (null != ex) {
+            error.set(ex);
+          }
+          latch.countDown();
+        }
+      }.start();
+    }
+    latch.await();
+    assertNull(error.get());
+    assertContent(target);
+    assertEquals(1, requestCount.get());
+  }
+}
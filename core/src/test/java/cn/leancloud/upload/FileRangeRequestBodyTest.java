@@ -0,0 +1,80 @@
+package cn.leancloud.upload;
+
+import cn.leancloud.codec.SHA1;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import okio.Buffer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+public class FileRangeRequestBodyTest extends TestCase {
+  private File file;
+  private byte[] content;
+
+  public FileRangeRequestBodyTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(FileRangeRequestBodyTest.class);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    content = new byte[FileRangeRequestBody.SEGMENT_SIZE * 3 + 17];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i % 251);
+    }
+    File dir = new File("./target/upload-test");
+    dir.mkdirs();
+    file = new File(dir, "range.bin");
+    FileOutputStream os = new FileOutputStream(file);
+    os.write(content);
+    os.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  public void testWholeFile() throws Exception {
+    final long[] lastWritten = {0};
+    final int[] callbackCount = {0};
+    FileRangeRequestBody body = new FileRangeRequestBody(null, file, new FileRangeRequestBody.ProgressListener() {
+      @Override
+      public void onProgress(long bytesWritten, long contentLength) {
+        assertTrue(bytesWritten > lastWritten[0]);
+        lastWritten[0] = bytesWritten;
+        callbackCount[0]++;
+      }
+    });
+    assertEquals(content.length, body.contentLength());
+    Buffer sink = new Buffer();
+    body.writeTo(sink);
+    assertTrue(Arrays.equals(content, sink.readByteArray()));
+    assertEquals(content.length, lastWritten[0]);
+    assertTrue(callbackCount[0] > 1);
+
+    // body can be written again for retry.
+    lastWritten[0] = 0;
+    body.writeTo(sink);
+    assertEquals(content.length, sink.size());
+  }
+
+  public void testRange() throws Exception {
+    int offset = 1000;
+    int length = FileRangeRequestBody.SEGMENT_SIZE + 5;
+    FileRangeRequestBody body = new FileRangeRequestBody(null, file, offset, length, null);
+    Buffer sink = new Buffer();
+    body.writeTo(sink);
+    assertTrue(Arrays.equals(Arrays.copyOfRange(content, offset, offset + length), sink.readByteArray()));
+  }
+
+  public void testStreamingSHA1() throws Exception {
+    assertEquals(SHA1.compute(content), SHA1.compute(file));
+  }
+}
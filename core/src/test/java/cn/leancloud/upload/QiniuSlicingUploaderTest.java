@@ -0,0 +1,47 @@
+package cn.leancloud.upload;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class QiniuSlicingUploaderTest extends TestCase {
+  public QiniuSlicingUploaderTest(String testName) {
+    super(testName);
+  }
+
+  public static Test suite() {
+    return new TestSuite(QiniuSlicingUploaderTest.class);
+  }
+
+  public void testBlockSizeOfLargeFile() {
+    long fileSize = 5L * 1024 * 1024 * 1024 + 100;
+    int blockCount = QiniuSlicingUploader.getBlockCount(fileSize);
+    assertEquals(1281, blockCount);
+    assertEquals(QiniuAccessor.BLOCK_SIZE, QiniuSlicingUploader.getBlockSize(fileSize, 0));
+    assertEquals(QiniuAccessor.BLOCK_SIZE, QiniuSlicingUploader.getBlockSize(fileSize, 1000));
+    assertEquals(100, QiniuSlicingUploader.getBlockSize(fileSize, blockCount - 1));
+    assertEquals(0, QiniuSlicingUploader.getBlockCount(0));
+    assertEquals(1, QiniuSlicingUploader.getBlockCount(QiniuAccessor.BLOCK_SIZE));
+  }
+
+  public void testCheckpoint() {
+    QiniuUploadCheckpoint checkpoint = QiniuUploadCheckpoint.open("checksum", 1000L, "http://upload.qiniu.com", 3);
+    assertNotNull(checkpoint);
+    checkpoint.clear();
+    checkpoint.saveBlockCtx(0, "ctx0");
+    checkpoint.saveBlockCtx(2, "ctx2");
+
+    QiniuUploadCheckpoint resumed = QiniuUploadCheckpoint.open("checksum", 1000L, "http://upload.qiniu.com", 3);
+    assertEquals(2, resumed.finishedCount());
+    assertEquals("ctx0", resumed.getBlockCtx(0));
+    assertNull(resumed.getBlockCtx(1));
+    assertEquals("ctx2", resumed.getBlockCtx(2));
+
+    QiniuUploadCheckpoint other = QiniuUploadCheckpoint.open("checksum", 1000L, "http://upload-z1.qiniu.com", 3);
+    assertEquals(0, other.finishedCount());
+
+    resumed.clear();
+    assertEquals(0, QiniuUploadCheckpoint.open("checksum", 1000L, "http://upload.qiniu.com", 3).finishedCount());
+    assertNull(QiniuUploadCheckpoint.open(null, 1000L, "http://upload.qiniu.com", 3));
+  }
+}
@@ -39,7 +39,7 @@ public class EngineHookHandlerInfo extends EngineHandlerInfo {
 
       // deal with updates within hook function.
       if (result instanceof AVObject) {
-        Set<String> keys = ((AVObject)result).operations.keySet();
+        Set<String> keys = ((AVObject)result).readableOperations().keySet();
         for (String key : keys) {
           Object value = ((AVObject)result).get(key);
           if (null == value) {
@@ -6,6 +6,7 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import cn.leancloud.core.RequestUserContext;
 import cn.leancloud.impl.DefaultAVUserCookieSign;
 import cn.leancloud.utils.LogUtil;
 
@@ -43,8 +44,8 @@ public class EngineSessionCookie {
           e.printStackTrace();
         }
       }
-      if (user != null) {
-        AVUser.changeCurrentUser(user, true);
+      if (user != null && RequestUserContext.isActive()) {
+        RequestUserContext.setUser(user);
       }
     }
   }
@@ -1,5 +1,6 @@
 package cn.leancloud;
 
+import cn.leancloud.core.RequestUserContext;
 import cn.leancloud.utils.LogUtil;
 
 import java.io.IOException;
@@ -22,18 +23,23 @@ public class RequestUserAuthFilter implements Filter {
 
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
       throws IOException, ServletException {
+    // user of request is bound to current thread, global current user is never touched.
+    RequestUserContext.begin();
     try {
-      AVUser.changeCurrentUser(null, false);
-      EngineRequestContext.clean();
-      EngineSessionCookie sessionCookie = LeanEngine.getSessionCookie();
-      if (sessionCookie != null && request instanceof HttpServletRequest
-          && response instanceof HttpServletResponse) {
-        sessionCookie.parseCookie((HttpServletRequest) request, (HttpServletResponse) response);
+      try {
+        EngineRequestContext.clean();
+        EngineSessionCookie sessionCookie = LeanEngine.getSessionCookie();
+        if (sessionCookie != null && request instanceof HttpServletRequest
+            && response instanceof HttpServletResponse) {
+          sessionCookie.parseCookie((HttpServletRequest) request, (HttpServletResponse) response);
+        }
+      } catch (Exception e) {
+        LOGGER.w(e);
       }
-    } catch (Exception e) {
-      LOGGER.w(e);
+      chain.doFilter(request, response);
+    } finally {
+      RequestUserContext.end();
     }
-    chain.doFilter(request, response);
   }
 
   public void destroy() {
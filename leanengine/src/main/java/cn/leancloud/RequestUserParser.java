@@ -6,6 +6,7 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.core.RequestUserContext;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import io.reactivex.Observer;
@@ -36,7 +37,11 @@ class RequestUserParser {
                 }
 
                 public void onNext(AVUser avUser) {
-                  AVUser.changeCurrentUser(avUser, true);
+                  if (RequestUserContext.isActive()) {
+                    RequestUserContext.setUser(avUser);
+                  } else {
+                    LOGGER.w("request user context is not active, RequestUserAuthFilter may be missing.");
+                  }
                   req.setAttribute(RequestAuth.USER_KEY, avUser);
                 }
 
@@ -3,6 +3,8 @@ package cn.leancloud.command;
 import cn.leancloud.Messages;
 import cn.leancloud.utils.StringUtil;
 
+import java.util.List;
+
 public class ConversationAckPacket extends PeerBasedCommandPacket {
   public ConversationAckPacket() {
     super.setCmd("ack");
@@ -10,6 +12,7 @@ public class ConversationAckPacket extends PeerBasedCommandPacket {
 
   String conversationId;
   String messageId;
+  List<String> messageIds;
   Long largestTimeStamp;
 
   public String getConversationId() {
@@ -28,6 +31,18 @@ public class ConversationAckPacket extends PeerBasedCommandPacket {
     this.messageId = messageId;
   }
 
+  public List<String> getMessageIds() {
+    return messageIds;
+  }
+
+  /**
+   * 设置需要 ack 的多条消息 id，用于批量 ack
+   * @param messageIds message ids.
+   */
+  public void setMessageIds(List<String> messageIds) {
+    this.messageIds = messageIds;
+  }
+
   /**
    * 设置需要 ack 的 timestamps
    * @param largestTimeStamp
@@ -48,6 +63,9 @@ public class ConversationAckPacket extends PeerBasedCommandPacket {
     if (!StringUtil.isEmpty(messageId)) {
       builder.setMid(messageId);
     }
+    if (null != messageIds && messageIds.size() > 0) {
+      builder.addAllIds(messageIds);
+    }
     if (null != largestTimeStamp) {
       builder.setTots(largestTimeStamp);
     }
@@ -66,6 +84,26 @@ public class ConversationAckPacket extends PeerBasedCommandPacket {
     return cap;
   }
 
+  /**
+   * 批量 ack 同一对话中的多条消息
+   * @param peerId
+   * @param conversationId
+   * @param messageIds
+   * @return
+   */
+  public static ConversationAckPacket getConversationAckPacket(String peerId,
+                                                               String conversationId, List<String> messageIds) {
+    ConversationAckPacket cap = new ConversationAckPacket();
+    cap.setPeerId(peerId);
+    cap.setConversationId(conversationId);
+    if (null != messageIds && messageIds.size() == 1) {
+      cap.setMessageId(messageIds.get(0));
+    } else {
+      cap.setMessageIds(messageIds);
+    }
+    return cap;
+  }
+
   /**
    * 根据 timestamps 获取 ack 的 Packet
    * 用于离线消息仅返回 count 时通知 server 该 timestamps 以前的消息均已收到
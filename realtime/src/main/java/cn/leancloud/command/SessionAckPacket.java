@@ -18,6 +18,10 @@ public class SessionAckPacket extends PeerBasedCommandPacket {
     ids.add(id);
   }
 
+  public void setMessageIds(List<String> ids) {
+    this.ids = ids;
+  }
+
   @Override
   protected Messages.GenericCommand.Builder getGenericCommandBuilder() {
     Messages.GenericCommand.Builder builder = super.getGenericCommandBuilder();
@@ -1,5 +1,7 @@
 package cn.leancloud.im;
 
+import cn.leancloud.session.InboundCommandDispatcher;
+
 public class AVIMOptions {
   private static final AVIMOptions globalOptions = new AVIMOptions();
   private String rtmConnectionServer = "";
@@ -28,6 +30,26 @@ public class AVIMOptions {
    */
   private boolean onlyPushCount = false;
 
+  /**
+   * websocket 连接池大小，大于 1 时按 clientId 将 session 分散到多个连接上
+   */
+  private int connectionPoolSize = 1;
+
+  /**
+   * 处理下行指令的线程数，同一对话的指令按序处理，不同对话并行处理
+   */
+  private int inboundDispatchThreads = InboundCommandDispatcher.DEFAULT_THREAD_COUNT;
+  private int inboundQueueCapacity = InboundCommandDispatcher.DEFAULT_QUEUE_CAPACITY;
+  private InboundCommandDispatcher.OverflowPolicy inboundOverflowPolicy = InboundCommandDispatcher.OverflowPolicy.BLOCK;
+
+  /**
+   * 后台线程池大小，计算任务与阻塞任务（如签名计算）使用不同的线程池
+   */
+  private int computeThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+  private int blockingThreads = 8;
+  private int taskQueueCapacity = 1024;
+  private boolean virtualThreadsEnabled = false;
+
   /**
    * get global options instance.
    * @return Returns current object, so you can chain this call.
@@ -177,6 +199,154 @@ public class AVIMOptions {
   public void setResetConnectionWhileBroken(boolean resetConnectionWhileBroken) {
   }
 
+  /**
+   * get connection pool size.
+   * @return count of websocket connections.
+   */
+  public int getConnectionPoolSize() {
+    return connectionPoolSize;
+  }
+
+  /**
+   * set connection pool size(default is 1).
+   * sessions are sharded across connections by clientId hash, each connection has its own reader thread and
+   * reconnect backoff. push and livequery always use the first connection.
+   * this is designed for server side which holds lots of clients in one process, and must be set before any
+   * client opened.
+   *
+   * @param connectionPoolSize count of websocket connections.
+   */
+  public void setConnectionPoolSize(int connectionPoolSize) {
+    this.connectionPoolSize = Math.max(1, connectionPoolSize);
+  }
+
+  /**
+   * get thread count of inbound command dispatcher.
+   * @return count of threads.
+   */
+  public int getInboundDispatchThreads() {
+    return inboundDispatchThreads;
+  }
+
+  /**
+   * set thread count of inbound command dispatcher(default is 4).
+   * commands are striped across threads by conversation id, so commands of the same conversation are processed
+   * in order and a slow message handler only delays its own conversation.
+   * zero means processing commands on websocket reader thread directly. it must be set before any client opened.
+   *
+   * @param threads count of threads.
+   */
+  public void setInboundDispatchThreads(int threads) {
+    this.inboundDispatchThreads = Math.max(0, threads);
+  }
+
+  /**
+   * get queue capacity of every inbound dispatch thread.
+   * @return queue capacity.
+   */
+  public int getInboundQueueCapacity() {
+    return inboundQueueCapacity;
+  }
+
+  /**
+   * set queue capacity of every inbound dispatch thread(default is 1024), it must be set before any client opened.
+   * @param capacity queue capacity.
+   */
+  public void setInboundQueueCapacity(int capacity) {
+    this.inboundQueueCapacity = Math.max(1, capacity);
+  }
+
+  /**
+   * get policy of inbound command which arrives while queue is full.
+   * @return overflow policy.
+   */
+  public InboundCommandDispatcher.OverflowPolicy getInboundOverflowPolicy() {
+    return inboundOverflowPolicy;
+  }
+
+  /**
+   * set policy of inbound command which arrives while queue is full(default is BLOCK),
+   * it must be set before any client opened.
+   * @param policy overflow policy.
+   */
+  public void setInboundOverflowPolicy(InboundCommandDispatcher.OverflowPolicy policy) {
+    if (null != policy) {
+      this.inboundOverflowPolicy = policy;
+    }
+  }
+
+  /**
+   * get thread count of compute pool.
+   * @return count of threads.
+   */
+  public int getComputeThreads() {
+    return computeThreads;
+  }
+
+  /**
+   * set thread count of compute pool(default is count of processors, at least 2), which runs short cpu work
+   * such as callbacks of operation timeout. it must be set before any client opened.
+   *
+   * @param threads count of threads.
+   */
+  public void setComputeThreads(int threads) {
+    this.computeThreads = Math.max(1, threads);
+  }
+
+  /**
+   * get thread count of blocking pool.
+   * @return count of threads.
+   */
+  public int getBlockingThreads() {
+    return blockingThreads;
+  }
+
+  /**
+   * set thread count of blocking pool(default is 8), which runs work that may block such as signature computation
+   * and delayed io. it must be set before any client opened.
+   *
+   * @param threads count of threads.
+   */
+  public void setBlockingThreads(int threads) {
+    this.blockingThreads = Math.max(1, threads);
+  }
+
+  /**
+   * get queue capacity of background pools.
+   * @return queue capacity.
+   */
+  public int getTaskQueueCapacity() {
+    return taskQueueCapacity;
+  }
+
+  /**
+   * set queue capacity of background pools(default is 1024), task runs on caller thread once queue is full.
+   * it must be set before any client opened.
+   *
+   * @param capacity queue capacity.
+   */
+  public void setTaskQueueCapacity(int capacity) {
+    this.taskQueueCapacity = Math.max(1, capacity);
+  }
+
+  /**
+   * whether blocking work runs on virtual threads or not.
+   * @return flag indicating virtual threads enabled or not.
+   */
+  public boolean isVirtualThreadsEnabled() {
+    return virtualThreadsEnabled;
+  }
+
+  /**
+   * run blocking work on virtual threads(default is false), which is only supported by JDK 21+,
+   * platform threads are used on other runtime. it must be set before any client opened.
+   *
+   * @param enabled flag indicating virtual threads enabled or not.
+   */
+  public void setVirtualThreadsEnabled(boolean enabled) {
+    this.virtualThreadsEnabled = enabled;
+  }
+
   private AVIMOptions() {
   }
 }
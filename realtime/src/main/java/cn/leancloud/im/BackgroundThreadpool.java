@@ -1,27 +1,263 @@
 package cn.leancloud.im;
 
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+
+import java.lang.reflect.Method;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * executors of realtime module, which are sized by AVIMOptions at the first time they are used.
+ *
+ * - compute pool runs short cpu work, such as callbacks of operation timeout.
+ * - blocking pool runs work which may block, such as signature computation(which usually asks app server)
+ *   and delayed tasks. it uses virtual threads on JDK 21+ if it's enabled.
+ * - scheduler only triggers delayed tasks, and hands them over to blocking pool.
+ *
+ * once queue of pool is full, task is handed over to a dedicated overflow thread and it's counted as rejected.
+ * it never runs on caller thread, because callers such as timer wheel and scheduler must not be blocked.
+ */
 public class BackgroundThreadpool {
-  private static final BackgroundThreadpool INSTANCE = new BackgroundThreadpool();
-  private ThreadPoolExecutor executor;
-  private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+  private static final AVLogger LOGGER = LogUtil.getLogger(BackgroundThreadpool.class);
+  private static final long KEEP_ALIVE_SECONDS = 10;
+
+  private static volatile BackgroundThreadpool instance = null;
+
   public static BackgroundThreadpool getInstance() {
-    return INSTANCE;
+    if (null == instance) {
+      synchronized (BackgroundThreadpool.class) {
+        if (null == instance) {
+          instance = new BackgroundThreadpool(AVIMOptions.getGlobalOptions());
+        }
+      }
+    }
+    return instance;
   }
-  private BackgroundThreadpool() {
-    this.executor = new ThreadPoolExecutor(1, 2, 10, TimeUnit.SECONDS,
-            new LinkedBlockingDeque<Runnable>());
-    this.scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+
+  /**
+   * snapshot of pool metrics.
+   */
+  public static class PoolStats {
+    private final String name;
+    private final int activeCount;
+    private final int queuedCount;
+    private final long completedCount;
+    private final long rejectedCount;
+
+    PoolStats(String name, int activeCount, int queuedCount, long completedCount, long rejectedCount) {
+      this.name = name;
+      this.activeCount = activeCount;
+      this.queuedCount = queuedCount;
+      this.completedCount = completedCount;
+      this.rejectedCount = rejectedCount;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return count of running tasks.
+     */
+    public int getActiveCount() {
+      return activeCount;
+    }
+
+    /**
+     * @return count of tasks waiting in queue.
+     */
+    public int getQueuedCount() {
+      return queuedCount;
+    }
+
+    public long getCompletedCount() {
+      return completedCount;
+    }
+
+    /**
+     * @return count of tasks which ran on overflow thread because pool is saturated.
+     */
+    public long getRejectedCount() {
+      return rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+      return name + "{active=" + activeCount + ", queued=" + queuedCount + ", completed=" + completedCount
+          + ", rejected=" + rejectedCount + "}";
+    }
   }
 
+  /**
+   * executor with metrics, tasks are counted by itself so that it works with virtual thread executor too.
+   */
+  static class MeteredExecutor implements Executor {
+    private final String name;
+    private final ExecutorService delegate;
+    private final BlockingQueue<Runnable> queue;
+    private final Executor overflow;
+    private final AtomicInteger activeCount = new AtomicInteger(0);
+    private final AtomicLong completedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    MeteredExecutor(String name, ExecutorService delegate, BlockingQueue<Runnable> queue, Executor overflow) {
+      this.name = name;
+      this.delegate = delegate;
+      this.queue = queue;
+      this.overflow = overflow;
+    }
+
+    @Override
+    public void execute(final Runnable runnable) {
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          activeCount.incrementAndGet();
+          try {
+            runnable.run();
+          } finally {
+            activeCount.decrementAndGet();
+            completedCount.incrementAndGet();
+          }
+        }
+      };
+      try {
+        delegate.execute(task);
+      } catch (RejectedExecutionException ex) {
+        if (delegate.isShutdown()) {
+          LOGGER.w(name + " pool is shutdown, drop task.");
+          return;
+        }
+        rejectedCount.incrementAndGet();
+        LOGGER.w(name + " pool is saturated, run task on overflow thread.");
+        overflow.execute(task);
+      }
+    }
+
+    PoolStats getStats() {
+      return new PoolStats(name, activeCount.get(), null == queue ? 0 : queue.size(), completedCount.get(),
+          rejectedCount.get());
+    }
+
+    void shutdown() {
+      delegate.shutdown();
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(final String prefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger index = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + index.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  private static MeteredExecutor newPlatformPool(String name, int threads, int queueCapacity, Executor overflow) {
+    BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>(queueCapacity);
+    // core size equals to max size, otherwise pool never grows beyond core size with this queue.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        queue, newThreadFactory("leancloud-im-" + name));
+    executor.allowCoreThreadTimeOut(true);
+    return new MeteredExecutor(name, executor, queue, overflow);
+  }
+
+  /**
+   * @return executor which starts a virtual thread for every task, null if it's not supported by current JDK.
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+
+  // single thread with unbounded queue, which only runs tasks rejected by saturated pools.
+  private final ThreadPoolExecutor overflowExecutor;
+  private final MeteredExecutor computeExecutor;
+  private final MeteredExecutor blockingExecutor;
+  private final ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+
+  BackgroundThreadpool(AVIMOptions options) {
+    this.overflowExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), newThreadFactory("leancloud-im-overflow"));
+    this.overflowExecutor.allowCoreThreadTimeOut(true);
+    this.computeExecutor = newPlatformPool("compute", options.getComputeThreads(), options.getTaskQueueCapacity(),
+        overflowExecutor);
+    ExecutorService virtualExecutor = options.isVirtualThreadsEnabled() ? newVirtualThreadExecutor() : null;
+    if (null != virtualExecutor) {
+      this.blockingExecutor = new MeteredExecutor("blocking", virtualExecutor, null, overflowExecutor);
+    } else {
+      if (options.isVirtualThreadsEnabled()) {
+        LOGGER.w("virtual thread is not supported by current JDK, use platform threads instead.");
+      }
+      this.blockingExecutor = newPlatformPool("blocking", options.getBlockingThreads(), options.getTaskQueueCapacity(),
+          overflowExecutor);
+    }
+    this.scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, newThreadFactory("leancloud-im-scheduler"));
+    this.scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * run short cpu work.
+   */
   public void execute(Runnable runnable) {
-    this.executor.execute(runnable);
+    this.computeExecutor.execute(runnable);
+  }
+
+  /**
+   * run work which may block, such as network or disk io.
+   */
+  public void executeBlocking(Runnable runnable) {
+    this.blockingExecutor.execute(runnable);
   }
+
   public void executeDelayed(Runnable runnable, long deleyInSecond) {
-    this.scheduledThreadPoolExecutor.schedule(runnable, deleyInSecond, TimeUnit.SECONDS);
+    executeDelayed(runnable, deleyInSecond, TimeUnit.SECONDS);
+  }
+
+  public void executeDelayed(final Runnable runnable, long delay, TimeUnit unit) {
+    this.scheduledThreadPoolExecutor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        blockingExecutor.execute(runnable);
+      }
+    }, delay, unit);
   }
+
+  /**
+   * @deprecated scheduled task is wrapped by executor, so it can't be removed by the runnable.
+   */
+  @Deprecated
   public void removeScheduledTask(Runnable runnable) {
     this.scheduledThreadPoolExecutor.remove(runnable);
   }
+
+  public PoolStats getComputeStats() {
+    return computeExecutor.getStats();
+  }
+
+  public PoolStats getBlockingStats() {
+    return blockingExecutor.getStats();
+  }
+
+  public PoolStats getSchedulerStats() {
+    return new PoolStats("scheduler", scheduledThreadPoolExecutor.getActiveCount(),
+        scheduledThreadPoolExecutor.getQueue().size(), scheduledThreadPoolExecutor.getCompletedTaskCount(), 0);
+  }
+
+  void shutdown() {
+    computeExecutor.shutdown();
+    blockingExecutor.shutdown();
+    scheduledThreadPoolExecutor.shutdown();
+    overflowExecutor.shutdown();
+  }
 }
@@ -36,7 +36,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean openClient(String clientId, String tag, String userSessionToken,
                   boolean reConnect, final AVIMClientCallback callback) {
     LOGGER.d("openClient...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -61,7 +61,7 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean renewSessionToken(String clientId, final AVIMClientCallback callback) {
     LOGGER.d("renewSessionToken...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -70,7 +70,7 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean closeClient(String self, final AVIMClientCallback callback) {
     LOGGER.d("closeClient...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(self);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(self, null, requestId, callback);
     }
@@ -79,7 +79,7 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean queryOnlineClients(String self, List<String> clients, final AVIMOnlineClientsCallback callback) {
     LOGGER.d("queryOnlineClients...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(self);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(self, null, requestId, callback);
     }
@@ -90,7 +90,7 @@ public class DirectlyOperationTube implements OperationTube {
                           final Map<String, Object> attribute, final boolean isTransient, final boolean isUnique,
                           final boolean isTemp, int tempTTL, final AVIMCommonJsonCallback callback) {
     LOGGER.d("createConversation...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(self);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(self, null, requestId, callback);
     }
@@ -100,7 +100,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean updateConversation(final String clientId, String conversationId, int convType,
                                     final Map<String, Object> param, final AVIMCommonJsonCallback callback) {
     LOGGER.d("updateConversation...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -110,7 +110,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean participateConversation(final String clientId, String conversationId, int convType, final Map<String, Object> param,
                                          Conversation.AVIMOperation operation, final AVIMConversationCallback callback) {
     LOGGER.d("participateConversation...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -123,7 +123,7 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean queryConversationsInternally(final String clientId, final String queryString, final AVIMCommonJsonCallback callback) {
     LOGGER.d("queryConversationsInternally...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -133,7 +133,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean sendMessage(String clientId, String conversationId, int convType, final AVIMMessage message,
                              final AVIMMessageOption messageOption, final AVIMCommonJsonCallback callback) {
     LOGGER.d("sendMessage...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -143,7 +143,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean updateMessage(String clientId, int convType, AVIMMessage oldMessage, AVIMMessage newMessage,
                                final AVIMCommonJsonCallback callback) {
     LOGGER.d("updateMessage...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -152,7 +152,7 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean recallMessage(String clientId, int convType, AVIMMessage message, final AVIMCommonJsonCallback callback) {
     LOGGER.d("recallMessage...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -162,7 +162,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean fetchReceiptTimestamps(String clientId, String conversationId, int convType,
                                         Conversation.AVIMOperation operation, final AVIMCommonJsonCallback callback) {
     LOGGER.d("fetchReceiptTimestamps...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -172,7 +172,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean processMembers(String clientId, String conversationId, int convType, String params, Conversation.AVIMOperation op,
                                 final AVCallback callback) {
     LOGGER.d("processMembers...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -182,7 +182,7 @@ public class DirectlyOperationTube implements OperationTube {
   public boolean queryMessages(String clientId, String conversationId, int convType, String params,
                         Conversation.AVIMOperation operation, final AVIMMessagesQueryCallback callback) {
     LOGGER.d("queryMessages...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(clientId, null, requestId, callback);
     }
@@ -191,13 +191,13 @@ public class DirectlyOperationTube implements OperationTube {
 
   public boolean markConversationRead(String clientId, String conversationId, int convType, Map<String, Object> lastMessageParam) {
     LOGGER.d("markConversationRead...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(clientId);
     return this.markConversationReadDirectly(clientId, conversationId, convType, lastMessageParam, requestId);
   }
 
   public boolean loginLiveQuery(String subscriptionId, final AVLiveQuerySubscribeCallback callback) {
     LOGGER.d("loginLiveQuery...");
-    int requestId = WindTalker.getNextIMRequestId();
+    int requestId = WindTalker.getNextIMRequestId(LiveQueryOperationDelegate.LIVEQUERY_DEFAULT_ID);
     if (this.needCacheRequestKey) {
       RequestCache.getInstance().addRequestCallback(LiveQueryOperationDelegate.LIVEQUERY_DEFAULT_ID, null, requestId, callback);
     } else {
@@ -2,17 +2,18 @@ package cn.leancloud.im;
 
 import cn.leancloud.AVLogger;
 import cn.leancloud.callback.AVCallback;
+import cn.leancloud.livequery.LiveQueryOperationDelegate;
+import cn.leancloud.session.AVConnectionManager;
 import cn.leancloud.utils.LogUtil;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+/**
+ * callbacks of pending requests, which are kept by the connection which request is sent through.
+ * request id is unique within connection, so conversationId is not a part of key any more.
+ */
 public class RequestCache {
   private static final AVLogger LOGGER = LogUtil.getLogger(RequestCache.class);
 
   public static final RequestCache instance = new RequestCache();
-  private static final String KEY_FORMAT = "%s/%s/%d";
-  private Map<String, AVCallback> requests = new ConcurrentHashMap<>();
   private RequestCache() {
   }
 
@@ -20,23 +21,37 @@ public class RequestCache {
     return instance;
   }
 
+  static AVConnectionManager getConnectionManager(String clientId) {
+    if (LiveQueryOperationDelegate.LIVEQUERY_DEFAULT_ID.equals(clientId)) {
+      return AVConnectionManager.getInstance();
+    }
+    return AVConnectionManager.getInstance(clientId);
+  }
+
+  /**
+   * allocate request id from the connection of client.
+   * @param clientId client id.
+   * @return request id.
+   */
+  public int nextRequestId(String clientId) {
+    return getConnectionManager(clientId).getNextRequestId();
+  }
+
   public void addRequestCallback(String clientId, String conversationId, int requestId, AVCallback callback) {
-    String cacheKey = getCacheKey(clientId, conversationId, requestId);
-    this.requests.put(cacheKey, callback);
-    LOGGER.d("add request cache. client=" + clientId + ", conv=" + conversationId + ", request=" + requestId);
+    if (null == callback) {
+      return;
+    }
+    getConnectionManager(clientId).getRequestCallbacks().put(requestId, callback);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.d("add request cache. client=" + clientId + ", conv=" + conversationId + ", request=" + requestId);
+    }
   }
 
   public AVCallback getRequestCallback(String clientId, String conversationId, int requestId) {
-    String cacheKey = getCacheKey(clientId, conversationId, requestId);
-    return this.requests.get(cacheKey);
+    return getConnectionManager(clientId).getRequestCallbacks().get(requestId);
   }
 
   public void cleanRequestCallback(String clientId, String conversationId, int requestId) {
-    String cacheKey = getCacheKey(clientId, conversationId, requestId);
-    this.requests.remove(cacheKey);
-  }
-
-  private String getCacheKey(String clientId, String conversationId, int requestId) {
-    return String.format(KEY_FORMAT, clientId, conversationId, requestId);
+    getConnectionManager(clientId).getRequestCallbacks().remove(requestId);
   }
 }
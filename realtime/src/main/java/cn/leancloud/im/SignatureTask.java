@@ -34,6 +34,6 @@ public class SignatureTask implements Runnable {
     }
   }
   public void start() {
-    BackgroundThreadpool.getInstance().execute(this);
+    BackgroundThreadpool.getInstance().executeBlocking(this);
   }
 }
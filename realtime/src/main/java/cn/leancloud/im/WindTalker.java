@@ -13,12 +13,10 @@ import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class WindTalker {
   private static final AVLogger LOGGER = LogUtil.getLogger(WindTalker.class);
   private static WindTalker instance = null;
-  static AtomicInteger acu = new AtomicInteger(-65536);
   public static WindTalker getInstance() {
     if (null == instance) {
       instance = new WindTalker();
@@ -29,16 +27,13 @@ public class WindTalker {
     ;
   }
 
-  public static int getNextIMRequestId() {
-    int val = acu.incrementAndGet();
-    if (val > 65535) {
-      while (val > 65535 && !acu.compareAndSet(val, -65536)) {
-        val = acu.get();
-      }
-      return val;
-    } else {
-      return val;
-    }
+  /**
+   * allocate request id from the connection which client is bound to.
+   * @param clientId client id, or LiveQueryOperationDelegate.LIVEQUERY_DEFAULT_ID for livequery.
+   * @return request id.
+   */
+  public static int getNextIMRequestId(String clientId) {
+    return RequestCache.getInstance().nextRequestId(clientId);
   }
 
   public CommandPacket assembleSessionOpenPacket(String clientId, String tag, String sessionToken, long lastNotifyTime,
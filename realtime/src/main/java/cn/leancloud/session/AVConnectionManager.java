@@ -12,12 +12,15 @@ import cn.leancloud.core.AVOSCloud;
 import cn.leancloud.core.AVOSService;
 import cn.leancloud.core.AppRouter;
 import cn.leancloud.im.AVIMOptions;
+import cn.leancloud.im.BackgroundThreadpool;
 import cn.leancloud.im.WindTalker;
 import cn.leancloud.im.v2.AVIMClient;
 import cn.leancloud.livequery.LiveQueryOperationDelegate;
 import cn.leancloud.AVInstallation;
 import cn.leancloud.push.AVPushMessageListener;
 import cn.leancloud.service.RTMConnectionServerResponse;
+import cn.leancloud.util.HashedWheelTimer;
+import cn.leancloud.util.IntConcurrentHashMap;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import cn.leancloud.websocket.AVStandardWebSocketClient;
@@ -31,15 +34,22 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketClientMonitor {
   private static final AVLogger LOGGER = LogUtil.getLogger(AVConnectionManager.class);
 
   private static AVConnectionManager instance = null;
+  private static AVConnectionManager[] shardInstances = new AVConnectionManager[0];
+  private final int shardIndex;
   private AVStandardWebSocketClient webSocketClient = null;
   private Object webSocketClientWatcher = new Object();
   private String currentRTMConnectionServer = null;
@@ -53,23 +63,83 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
 
   private volatile boolean connectionEstablished = false;
   private volatile boolean connecting = false;
-  private volatile AVCallback pendingCallback = null;
+  // callbacks waiting for connection, which are guarded by itself.
+  private final List<AVCallback<?>> pendingCallbacks = new ArrayList<AVCallback<?>>();
+  private HashedWheelTimer.Timeout pendingCallbacksTimeout = null;
   private volatile ConnectionPolicy connectionPolicy = ConnectionPolicy.Keep;
 
   private Map<String, AVConnectionListener> connectionListeners = new ConcurrentHashMap<>(1);
   private Map<String, AVConnectionListener> defaultConnectionListeners = new HashMap<>(2);
 
+  // request id is unique within connection, so that it's never mixed up with requests of other shards.
+  private final AtomicInteger requestIdSequence = new AtomicInteger(0);
+  private final IntConcurrentHashMap<AVCallback<?>> requestCallbacks = new IntConcurrentHashMap<AVCallback<?>>();
+
+  /**
+   * get primary connection manager, which serves push, livequery and all IM clients if connection pool is disabled.
+   * @return primary instance.
+   */
   public synchronized static AVConnectionManager getInstance() {
     if (instance == null) {
-      instance = new AVConnectionManager(false);
+      instance = new AVConnectionManager(0, false);
     }
     return instance;
   }
 
-  private AVConnectionManager(boolean autoConnection) {
-    subscribeDefaultConnectionListener(AVPushMessageListener.DEFAULT_ID, AVPushMessageListener.getInstance());
+  /**
+   * get connection manager for specified IM client.
+   * @param clientId client id.
+   * @return the shard instance which clientId is routed to.
+   */
+  public static AVConnectionManager getInstance(String clientId) {
+    int poolSize = AVIMOptions.getGlobalOptions().getConnectionPoolSize();
+    if (poolSize <= 1 || StringUtil.isEmpty(clientId)) {
+      return getInstance();
+    }
+    int index = getShardIndex(clientId, poolSize);
+    if (0 == index) {
+      return getInstance();
+    }
+    return getShardInstance(index);
+  }
+
+  static int getShardIndex(String clientId, int poolSize) {
+    int hash = clientId.hashCode();
+    hash ^= (hash >>> 16);
+    return (hash & 0x7fffffff) % poolSize;
+  }
+
+  private synchronized static AVConnectionManager getShardInstance(int index) {
+    if (shardInstances.length <= index) {
+      shardInstances = Arrays.copyOf(shardInstances, index + 1);
+    }
+    if (null == shardInstances[index]) {
+      shardInstances[index] = new AVConnectionManager(index, false);
+    }
+    return shardInstances[index];
+  }
+
+  /**
+   * @return all created connection managers, primary instance is the first one.
+   */
+  public synchronized static List<AVConnectionManager> getAllInstances() {
+    List<AVConnectionManager> result = new ArrayList<>(shardInstances.length + 1);
+    result.add(getInstance());
+    for (AVConnectionManager manager : shardInstances) {
+      if (null != manager) {
+        result.add(manager);
+      }
+    }
+    return result;
+  }
+
+  private AVConnectionManager(int shardIndex, boolean autoConnection) {
+    this.shardIndex = shardIndex;
+    if (isPrimary()) {
+      subscribeDefaultConnectionListener(AVPushMessageListener.DEFAULT_ID, AVPushMessageListener.getInstance());
+    }
     if (autoConnection) {
-      startConnection(new AVCallback() {
+      startConnection(new AVCallback<Object>() {
         @Override
         protected void internalDone0(Object o, AVException avException) {
         }
@@ -77,16 +147,90 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     }
   }
 
-  private void resetConnectingStatus(boolean succeed) {
-    this.connecting = false;
-    if (null != pendingCallback) {
-      if (succeed) {
-        pendingCallback.internalDone(null);
-      } else {
-        pendingCallback.internalDone(new AVException(AVException.TIMEOUT, "network timeout."));
+  boolean isPrimary() {
+    return 0 == shardIndex;
+  }
+
+  /**
+   * allocate request id for command sent by this connection.
+   * @return positive id, which wraps around to 1 after Integer.MAX_VALUE.
+   */
+  public int getNextRequestId() {
+    while (true) {
+      int current = requestIdSequence.get();
+      int next = current == Integer.MAX_VALUE ? 1 : current + 1;
+      if (requestIdSequence.compareAndSet(current, next)) {
+        return next;
       }
     }
-    pendingCallback = null;
+  }
+
+  /**
+   * @return callbacks of pending requests sent by this connection, which are keyed by request id.
+   */
+  public IntConcurrentHashMap<AVCallback<?>> getRequestCallbacks() {
+    return requestCallbacks;
+  }
+
+  public int getShardIndex() {
+    return shardIndex;
+  }
+
+  private void resetConnectingStatus(boolean succeed) {
+    List<AVCallback<?>> callbacks;
+    synchronized (pendingCallbacks) {
+      this.connecting = false;
+      callbacks = drainPendingCallbacks();
+    }
+    AVException exception = succeed ? null : new AVException(AVException.TIMEOUT, "network timeout.");
+    for (AVCallback<?> callback : callbacks) {
+      callback.internalDone(exception);
+    }
+  }
+
+  /**
+   * caller must hold the lock of pendingCallbacks.
+   */
+  private List<AVCallback<?>> drainPendingCallbacks() {
+    List<AVCallback<?>> callbacks = new ArrayList<AVCallback<?>>(pendingCallbacks);
+    pendingCallbacks.clear();
+    if (null != pendingCallbacksTimeout) {
+      pendingCallbacksTimeout.cancel();
+      pendingCallbacksTimeout = null;
+    }
+    return callbacks;
+  }
+
+  /**
+   * caller must hold the lock of pendingCallbacks.
+   */
+  private void addPendingCallback(AVCallback<?> callback) {
+    pendingCallbacks.add(callback);
+    if (null != pendingCallbacksTimeout) {
+      return;
+    }
+    // callbacks fail once connection is not established in time, while reconnection goes on.
+    pendingCallbacksTimeout = HashedWheelTimer.getSharedInstance().newTimeout(new Runnable() {
+      @Override
+      public void run() {
+        final List<AVCallback<?>> callbacks;
+        synchronized (pendingCallbacks) {
+          pendingCallbacksTimeout = null;
+          callbacks = drainPendingCallbacks();
+        }
+        if (callbacks.isEmpty()) {
+          return;
+        }
+        BackgroundThreadpool.getInstance().execute(new Runnable() {
+          @Override
+          public void run() {
+            for (AVCallback<?> callback : callbacks) {
+              callback.internalDone(new AVException(AVException.TIMEOUT, "network timeout."));
+            }
+          }
+        });
+      }
+    }, AVIMOptions.getGlobalOptions().getTimeoutInSecs(), TimeUnit.SECONDS);
   }
 
   private void reConnectionRTMServer() {
@@ -98,7 +242,7 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
           try {
             long sleepMS = (long)Math.pow(2, retryConnectionCount) * 1000;
             Thread.sleep(sleepMS);
-            LOGGER.d("reConnect rtm server. count=" + retryConnectionCount);
+            LOGGER.d("reConnect rtm server. shard=" + shardIndex + ", count=" + retryConnectionCount);
             startConnectionInternal();
           } catch (InterruptedException ex) {
             LOGGER.w("failed to start connection.", ex);
@@ -123,7 +267,7 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
   }
 
   private void initWebSocketClient(String targetServer) {
-    LOGGER.d("try to connect server: " + targetServer);
+    LOGGER.d("try to connect server: " + targetServer + ", shard=" + shardIndex);
 
     SSLSocketFactory sf = null;
     try {
@@ -165,38 +309,53 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     }
   }
 
-  public void startConnection(AVCallback callback) {
-    if (this.connectionEstablished) {
+  public void startConnection(AVCallback<?> callback) {
+    boolean established = false;
+    boolean start = false;
+    synchronized (pendingCallbacks) {
+      if (this.connectionEstablished) {
+        established = true;
+      } else {
+        if (null != callback) {
+          addPendingCallback(callback);
+        }
+        if (!this.connecting) {
+          this.connecting = true;
+          start = true;
+        }
+      }
+    }
+    if (established) {
       LOGGER.d("connection is established, directly response callback...");
       if (null != callback) {
         callback.internalDone(null);
       }
-    } else if (this.connecting) {
-      LOGGER.d("on starting connection, save callback...");
-      if (null != callback) {
-        this.pendingCallback = callback;
-      }
-    } else {
+    } else if (start) {
       LOGGER.d("start connection with callback...");
-      this.connecting = true;
-      this.pendingCallback = callback;
       startConnectionInternal();
+    } else {
+      LOGGER.d("on starting connection, save callback...");
     }
   }
 
   public void autoConnection() {
     if (this.connectionEstablished) {
       LOGGER.d("connection is established...");
-    } else if (this.connecting) {
-      LOGGER.d("on starting connection, ignore.");
       return;
-    } else if (ConnectionPolicy.LetItGone == connectionPolicy) {
+    }
+    if (ConnectionPolicy.LetItGone == connectionPolicy) {
       LOGGER.d("ignore auto establish connection for policy:ConnectionPolicy.LetItGone...");
-    } else {
-      LOGGER.d("start connection...");
+      return;
+    }
+    synchronized (pendingCallbacks) {
+      if (this.connecting) {
+        LOGGER.d("on starting connection, ignore.");
+        return;
+      }
       this.connecting = true;
-      startConnectionInternal();
     }
+    LOGGER.d("start connection...");
+    startConnectionInternal();
   }
 
   private void startConnectionInternal() {
@@ -253,7 +412,9 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     resetConnection();
 
     this.connectionListeners.clear();
-    this.pendingCallback = null;
+    synchronized (pendingCallbacks) {
+      drainPendingCallbacks();
+    }
   }
 
   public void resetConnection() {
@@ -272,7 +433,9 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     }
 
     retryConnectionCount = 0;
-    connecting = false;
+    synchronized (pendingCallbacks) {
+      connecting = false;
+    }
   }
 
   public void subscribeConnectionListener(String clientId, AVConnectionListener listener) {
@@ -317,8 +480,8 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     connectionEstablished = true;
     retryConnectionCount = 0;
 
-    // auto send login packet.
-    if (!AVIMOptions.getGlobalOptions().isDisableAutoLogin4Push()) {
+    // auto send login packet, push is only served by primary connection.
+    if (isPrimary() && !AVIMOptions.getGlobalOptions().isDisableAutoLogin4Push()) {
       AVIMOptions globalOptions = AVIMOptions.getGlobalOptions();
       LoginPacket lp = new LoginPacket();
       lp.setAppId(AVOSCloud.getApplicationId());
@@ -344,6 +507,9 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
   private void initSessionsIfExists() {
     Map<String, String> cachedSessions = AVSessionCacheHelper.getTagCacheInstance().getAllSession();
     for (Map.Entry<String, String> entry : cachedSessions.entrySet()) {
+      if (getInstance(entry.getKey()) != this) {
+        continue;
+      }
       AVSession s = AVSessionManager.getInstance().getOrCreateSession(entry.getKey());
       s.setTag(entry.getValue());
       s.setSessionStatus(AVSession.Status.Closed);
@@ -363,15 +529,20 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
     }
   }
 
-  public void onMessage(WebSocketClient client, ByteBuffer bytes) {
+  public void onMessage(final WebSocketClient client, ByteBuffer bytes) {
     WindTalker windTalker = WindTalker.getInstance();
-    Messages.GenericCommand command = windTalker.disassemblePacket(bytes);
+    final Messages.GenericCommand command = windTalker.disassemblePacket(bytes);
     if (null == command) {
       LOGGER.w("client(" + client + ") downlink: invalid command.");
       return;
     }
 
-    LOGGER.d("client(" + client + ") downlink: " + command.toString());
+    LOGGER.d(new AVLogger.MessageSupplier() {
+      @Override
+      public String get() {
+        return "client(" + client + ") downlink: " + command.toString();
+      }
+    });
 
     String peerId = command.getPeerId();
     Integer requestKey = command.hasI() ? command.getI() : null;
@@ -402,7 +573,16 @@ public class AVConnectionManager implements AVStandardWebSocketClient.WebSocketC
       listener = this.defaultConnectionListeners.get(peerId);
     }
     if (null != listener) {
-      listener.onMessageArriving(peerId, requestKey, command);
+      final AVConnectionListener targetListener = listener;
+      final String targetPeerId = peerId;
+      final Integer targetRequestKey = requestKey;
+      final Messages.GenericCommand targetCommand = command;
+      InboundCommandDispatcher.getInstance().dispatch(peerId, command, new Runnable() {
+        @Override
+        public void run() {
+          targetListener.onMessageArriving(targetPeerId, targetRequestKey, targetCommand);
+        }
+      });
     } else {
       LOGGER.w("no peer subscribed message, ignore it. peerId=" + peerId + ", requestKey=" + requestKey);
     }
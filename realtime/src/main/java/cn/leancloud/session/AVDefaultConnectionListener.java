@@ -18,7 +18,6 @@ import com.google.protobuf.ByteString;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class AVDefaultConnectionListener implements AVConnectionListener {
   private static final AVLogger LOGGER = LogUtil.getLogger(AVDefaultConnectionListener.class);
@@ -26,11 +25,11 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
   private static final int CODE_SESSION_SIGNATURE_FAILURE = 4102;
   private static final int CODE_SESSION_TOKEN_FAILURE = 4112;
   AVSession session;
-  private final StaleMessageDepot depot;
+  private final MessageDeduplicator deduplicator;
 
   public AVDefaultConnectionListener(AVSession session) {
     this.session = session;
-    depot = new StaleMessageDepot(SESSION_MESSASGE_DEPOT + session.getSelfPeerId());
+    deduplicator = new MessageDeduplicator(SESSION_MESSASGE_DEPOT + session.getSelfPeerId());
   }
 
   @Override
@@ -48,8 +47,9 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
         session.sessionListener.onSessionPaused(session);
         // 这里给所有的消息发送失败消息
         if (session.pendingMessages != null && !session.pendingMessages.isEmpty()) {
-          while (!session.pendingMessages.isEmpty()) {
-            Message m = session.pendingMessages.poll();
+          Message m;
+          // acks may be polling the same cache on dispatcher threads, so never poll after an isEmpty check.
+          while (null != (m = session.pendingMessages.poll())) {
             if (!StringUtil.isEmpty(m.cid)) {
               AVConversationHolder conversation = session.getConversationHolder(m.cid, Conversation.CONV_TYPE_NORMAL);
               InternalConfiguration.getOperationTube().onOperationCompleted(session.getSelfPeerId(), conversation.conversationId,
@@ -60,9 +60,11 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
         }
         if (session.conversationOperationCache != null
                 && !session.conversationOperationCache.isEmpty()) {
-          for (Map.Entry<Integer, Operation> entry : session.conversationOperationCache.cache.entrySet()) {
-            int requestId = entry.getKey();
+          for (int requestId : session.conversationOperationCache.pendingRequestIds()) {
             Operation op = session.conversationOperationCache.poll(requestId);
+            if (null == op) {
+              continue;
+            }
             InternalConfiguration.getOperationTube().onOperationCompleted(op.sessionId, op.conversationId, requestId,
                     Conversation.AVIMOperation.getAVIMOperation(op.operation), new IllegalStateException("Connection Lost"));
           }
@@ -180,15 +182,10 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
 
     try {
       if (!isTransient) {
-        if (!StringUtil.isEmpty(conversationId)) {
-          AVConnectionManager.getInstance().sendPacket(ConversationAckPacket.getConversationAckPacket(
-                  session.getSelfPeerId(), conversationId, messageId));
-        } else {
-          AVConnectionManager.getInstance().sendPacket(genSessionAckPacket(messageId));
-        }
+        session.ackAggregator.add(conversationId, messageId);
       }
 
-      if (depot.putStableMessage(messageId) && !StringUtil.isEmpty(conversationId)) {
+      if (deduplicator.add(messageId) && !StringUtil.isEmpty(conversationId)) {
         AVConversationHolder conversation = session.getConversationHolder(conversationId, convType);
         AVIMMessage message = null;
         if (StringUtil.isEmpty(msg) && null != binaryMsg) {
@@ -235,6 +232,8 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
         if (command.hasLastPatchTime()) {
           session.updateLastPatchTime(command.getLastPatchTime(), true);
         }
+        // acks which are collected before reconnection.
+        session.ackAggregator.flush();
       } catch (Exception e) {
         session.sessionListener.onError(session, e);
       }
@@ -518,8 +517,8 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
   }
 
   private void processGoawayCommand(String peerId) {
-    AVConnectionManager.getInstance().resetConnection();
-    AVConnectionManager.getInstance().startConnection(new AVCallback() {
+    session.getConnectionManager().resetConnection();
+    session.getConnectionManager().startConnection(new AVCallback<Object>() {
       @Override
       protected void internalDone0(Object o, AVException avException) {
         session.reopen();
@@ -573,16 +572,6 @@ public class AVDefaultConnectionListener implements AVConnectionListener {
     conversation.onMessageReceipt(msg, from);
   }
 
-  private SessionAckPacket genSessionAckPacket(String messageId) {
-    SessionAckPacket sap = new SessionAckPacket();
-    sap.setPeerId(session.getSelfPeerId());
-    if (!StringUtil.isEmpty(messageId)) {
-      sap.setMessageId(messageId);
-    }
-
-    return sap;
-  }
-
   private void updateLocalPatchTime(boolean isModify, Messages.PatchCommand patchCommand) {
     if (isModify) {
       long lastPatchTime = 0;
@@ -6,10 +6,10 @@ import cn.leancloud.im.AVIMOptions;
 import cn.leancloud.im.BackgroundThreadpool;
 import cn.leancloud.im.InternalConfiguration;
 import cn.leancloud.im.v2.Conversation;
+import cn.leancloud.util.HashedWheelTimer;
+import cn.leancloud.util.IntConcurrentHashMap;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class AVIMOperationQueue {
   public static class Operation {
@@ -39,9 +39,10 @@ public class AVIMOperationQueue {
     }
   }
 
-  static ConcurrentMap<Integer, Runnable> timeoutCache =
-          new ConcurrentHashMap<Integer, Runnable>();
-  Map<Integer, Operation> cache = new ConcurrentHashMap<>();
+  // timeout of pending operation is driven by shared wheel timer, which is cancelled once response arrives.
+  final IntConcurrentHashMap<Operation> cache = new IntConcurrentHashMap<Operation>();
+  private final IntConcurrentHashMap<HashedWheelTimer.Timeout> timeouts =
+          new IntConcurrentHashMap<HashedWheelTimer.Timeout>();
   PersistentQueue<Operation> operationQueue;
 
   public AVIMOperationQueue(String key) {
@@ -61,7 +62,7 @@ public class AVIMOperationQueue {
   public void offer(final Operation op) {
     if (op.requestId != CommandPacket.UNSUPPORTED_OPERATION) {
       cache.put(op.requestId, op);
-      Runnable timeoutTask = new Runnable() {
+      final Runnable timeoutTask = new Runnable() {
 
         @Override
         public void run() {
@@ -73,27 +74,43 @@ public class AVIMOperationQueue {
           }
         }
       };
-      timeoutCache.put(op.requestId, timeoutTask);
-      BackgroundThreadpool.getInstance().executeDelayed(timeoutTask, AVIMOptions.getGlobalOptions().getTimeoutInSecs());
+      // wheel worker only hands over expired task, so that user callback never blocks the timer.
+      HashedWheelTimer.Timeout timeout = HashedWheelTimer.getSharedInstance().newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          BackgroundThreadpool.getInstance().execute(timeoutTask);
+        }
+      }, AVIMOptions.getGlobalOptions().getTimeoutInSecs(), TimeUnit.SECONDS);
+      HashedWheelTimer.Timeout previous = timeouts.put(op.requestId, timeout);
+      if (null != previous) {
+        previous.cancel();
+      }
     }
     operationQueue.offer(op);
   }
 
   public Operation poll(int requestId) {
-    if (requestId != CommandPacket.UNSUPPORTED_OPERATION && cache.get(requestId) != null) {
-      Operation returnValue = cache.get(requestId);
-      cache.remove(requestId);
-      operationQueue.remove(returnValue);
-      Runnable timeoutTask = timeoutCache.get(requestId);
-      timeoutCache.remove(requestId);
-      if (timeoutTask != null) {
-        BackgroundThreadpool.getInstance().removeScheduledTask(timeoutTask);
+    if (requestId != CommandPacket.UNSUPPORTED_OPERATION) {
+      Operation returnValue = cache.remove(requestId);
+      if (null != returnValue) {
+        operationQueue.remove(returnValue);
+        HashedWheelTimer.Timeout timeout = timeouts.remove(requestId);
+        if (timeout != null) {
+          timeout.cancel();
+        }
+        return returnValue;
       }
-      return returnValue;
     }
     return this.poll();
   }
 
+  /**
+   * @return snapshot of request ids which are waiting for response.
+   */
+  public int[] pendingRequestIds() {
+    return cache.keys();
+  }
+
   public boolean containRequest(int requestId) {
     return cache.get(requestId) != null;
   }
@@ -105,6 +122,12 @@ public class AVIMOperationQueue {
   public void clear() {
     operationQueue.clear();
     cache.clear();
+    for (int requestId : timeouts.keys()) {
+      HashedWheelTimer.Timeout timeout = timeouts.remove(requestId);
+      if (null != timeout) {
+        timeout.cancel();
+      }
+    }
   }
 
   public boolean isEmpty() {
@@ -2,6 +2,7 @@ package cn.leancloud.session;
 
 import cn.leancloud.AVException;
 import cn.leancloud.AVLogger;
+import cn.leancloud.callback.AVCallback;
 import cn.leancloud.command.*;
 import cn.leancloud.core.AVOSCloud;
 import cn.leancloud.core.AppConfiguration;
@@ -52,6 +53,7 @@ public class AVSession {
    * client id
    */
   private final String selfId;
+  private volatile AVConnectionManager connectionManager = null;
   /**
    * client tag(optional)
    */
@@ -63,7 +65,7 @@ public class AVSession {
   /**
    * RTM sessionToken(only available after AVIMClient.open)
    */
-  private String realtimeSessionToken = null;
+  private volatile String realtimeSessionToken = null;
   /**
    * RTM sessionToken expired timestamp.
    */
@@ -77,6 +79,9 @@ public class AVSession {
    * last patch time.
    */
   private long lastPatchTime = 0;
+  // guards lastNotifyTime/lastPatchTime, which are updated by inbound commands of different conversations in parallel,
+  // so that compare and save are atomic and persisted timestamp never goes back.
+  private final Object timestampLock = new Object();
 
   public enum Status{
     Opened, Closed, Resuming
@@ -91,6 +96,7 @@ public class AVSession {
 
   PendingMessageCache<PendingMessageCache.Message> pendingMessages;
   AVIMOperationQueue conversationOperationCache;
+  final MessageAckAggregator ackAggregator;
   private final ConcurrentMap<String, AVConversationHolder> conversationHolderCache =
           new ConcurrentHashMap<String, AVConversationHolder>();
 
@@ -101,11 +107,34 @@ public class AVSession {
     return websocketListener;
   }
 
+  /**
+   * @return connection manager which current client is routed to.
+   */
+  public AVConnectionManager getConnectionManager() {
+    AVConnectionManager manager = connectionManager;
+    if (null == manager) {
+      manager = AVConnectionManager.getInstance(selfId);
+      connectionManager = manager;
+    }
+    return manager;
+  }
+
   public AVSession(String selfId, AVSessionListener sessionListener) {
     this.selfId = selfId;
     this.sessionListener = sessionListener;
     pendingMessages = new PendingMessageCache<PendingMessageCache.Message>(selfId, PendingMessageCache.Message.class);
     conversationOperationCache = new AVIMOperationQueue(selfId);
+    this.ackAggregator = new MessageAckAggregator(selfId, new MessageAckAggregator.AckSender() {
+      @Override
+      public boolean isReady() {
+        return getConnectionManager().isConnectionEstablished();
+      }
+
+      @Override
+      public void send(CommandPacket packet) {
+        getConnectionManager().sendPacket(packet);
+      }
+    });
     this.websocketListener = new AVDefaultConnectionListener(this);
   }
 
@@ -129,11 +158,26 @@ public class AVSession {
     this.tag = tag;
   }
 
-  public void open(final String clientTag, final String sessionToken, boolean isReconnection, final int requestId) {
+  public void open(final String clientTag, final String sessionToken, final boolean isReconnection, final int requestId) {
     this.tag = clientTag;
     updateUserSessionToken(sessionToken);
     try {
-      boolean connectionEstablished = AVConnectionManager.getInstance().isConnectionEstablished();
+      AVConnectionManager manager = getConnectionManager();
+      boolean connectionEstablished = manager.isConnectionEstablished();
+      if (!connectionEstablished && !manager.isPrimary()) {
+        // shard connections are established on demand.
+        manager.startConnection(new AVCallback<Object>() {
+          @Override
+          protected void internalDone0(Object o, AVException avException) {
+            if (null != avException) {
+              sessionListener.onError(AVSession.this, avException, OPERATION_OPEN_SESSION, requestId);
+            } else {
+              open(clientTag, sessionToken, isReconnection, requestId);
+            }
+          }
+        });
+        return;
+      }
       if (!connectionEstablished) {
         sessionListener.onError(AVSession.this, new IllegalStateException(
                 "Connection Lost"), OPERATION_OPEN_SESSION, requestId);
@@ -154,7 +198,7 @@ public class AVSession {
     if (!StringUtil.isEmpty(rtmSessionToken)) {
       openWithSessionToken(rtmSessionToken);
     } else {
-      int requestId = WindTalker.getNextIMRequestId();
+      int requestId = WindTalker.getNextIMRequestId(getSelfPeerId());
       openWithSignature(requestId, true, false);
     }
   }
@@ -172,7 +216,7 @@ public class AVSession {
                   getLastNotifyTime(), getLastPatchTime(), requestId);
           scp.setTag(tag);
           scp.setSessionToken(realtimeSessionToken);
-          AVConnectionManager.getInstance().sendPacket(scp);
+          getConnectionManager().sendPacket(scp);
         }
       }
 
@@ -191,7 +235,7 @@ public class AVSession {
     new SignatureTask(callback, getSelfPeerId()).start();
   }
 
-  void updateRealtimeSessionToken(String sessionToken, int expireInSec) {
+  synchronized void updateRealtimeSessionToken(String sessionToken, int expireInSec) {
     this.realtimeSessionToken = sessionToken;
     this.realtimeSessionTokenExpired = System.currentTimeMillis() + expireInSec * 1000;
 
@@ -219,7 +263,7 @@ public class AVSession {
 //    scp.setAppId(AVOSCloud.getApplicationId());
     CommandPacket scp = WindTalker.getInstance().assembleSessionOpenPacket(this.getSelfPeerId(), this.tag, rtmSessionToken,
             this.getLastNotifyTime(), this.getLastPatchTime(), true, null);
-    AVConnectionManager.getInstance().sendPacket(scp);
+    getConnectionManager().sendPacket(scp);
   }
 
   private void openWithSignature(final int requestId, final boolean reconnectionFlag,
@@ -238,7 +282,7 @@ public class AVSession {
                   Conversation.AVIMOperation.CLIENT_OPEN.getCode(), getSelfPeerId(), null, requestId));
           CommandPacket scp = WindTalker.getInstance().assembleSessionOpenPacket(getSelfPeerId(), tag, sig, getLastNotifyTime(),
                   getLastPatchTime(), reconnectionFlag, requestId);
-          AVConnectionManager.getInstance().sendPacket(scp);
+          getConnectionManager().sendPacket(scp);
         }
       }
 
@@ -283,17 +327,20 @@ public class AVSession {
       this.cleanUp();
 
       if (Status.Closed == currentStatus) {
+        ackAggregator.clear();
         this.sessionListener.onSessionClose(this, requestId);
         return;
       }
-      if (AVConnectionManager.getInstance().isConnectionEstablished()) {
+      if (getConnectionManager().isConnectionEstablished()) {
+        ackAggregator.flush();
         conversationOperationCache.offer(Operation.getOperation(
                 AVIMOperation.CLIENT_DISCONNECT.getCode(), selfId, null, requestId));
         CommandPacket scp = WindTalker.getInstance().assembleSessionPacket(this.selfId, null,
                 SessionControlPacket.SessionControlOp.CLOSE, null, requestId);
-        AVConnectionManager.getInstance().sendPacket(scp);
+        getConnectionManager().sendPacket(scp);
       } else {
         // 如果网络已经断开的时候，我们就不要管它了，直接强制关闭吧
+        ackAggregator.clear();
         this.sessionListener.onSessionClose(this, requestId);
       }
     } catch (Exception e) {
@@ -313,14 +360,19 @@ public class AVSession {
   }
 
   protected void setServerAckReceived(long lastAckReceivedTimestamp) {
-    lastServerAckReceived.set(lastAckReceivedTimestamp);
+    // acks of different conversations arrive in parallel, keep the latest one.
+    long current = lastServerAckReceived.get();
+    while (lastAckReceivedTimestamp > current
+            && !lastServerAckReceived.compareAndSet(current, lastAckReceivedTimestamp)) {
+      current = lastServerAckReceived.get();
+    }
   }
 
   public void queryOnlinePeers(List<String> peerIds, int requestId) {
     SessionControlPacket scp =
             SessionControlPacket.genSessionCommand(this.selfId, peerIds,
                     SessionControlPacket.SessionControlOp.QUERY, null, requestId);
-    AVConnectionManager.getInstance().sendPacket(scp);
+    getConnectionManager().sendPacket(scp);
   }
 
   public void queryConversations(Map<String, Object> params, int requestId, String identifier) {
@@ -341,7 +393,7 @@ public class AVSession {
       LOGGER.d("[RequestSuppression] offer operation with requestId=" + requestId + ", selfId=" + selfId);
       ConversationQueryPacket packet = ConversationQueryPacket.getConversationQueryPacket(getSelfPeerId(),
               params, requestId);
-      AVConnectionManager.getInstance().sendPacket(packet);
+      getConnectionManager().sendPacket(packet);
     } else {
       LOGGER.d("[RequestSuppression] other request is running, pending current request(requestId=" + requestId + ", selfId=" + selfId + ")" );
     }
@@ -353,7 +405,7 @@ public class AVSession {
               "Please call AVIMClient.open() first");
     } else if (Status.Resuming == currentStatus) {
       return new AVException(new RuntimeException("Connecting to server"));
-    } else if (!AVConnectionManager.getInstance().isConnectionEstablished()) {
+    } else if (!getConnectionManager().isConnectionEstablished()) {
       return new AVException(new RuntimeException("Connection Lost"));
     } else {
       return null;
@@ -384,7 +436,7 @@ public class AVSession {
                                     final Map<String, Object> attributes,
                                     final boolean isTransient, final boolean isUnique, final boolean isTemp, final int tempTTL,
                                     final boolean isSystem, final int requestId) {
-    if (!AVConnectionManager.getInstance().isConnectionEstablished()) {
+    if (!getConnectionManager().isConnectionEstablished()) {
       RuntimeException se = new RuntimeException("Connection Lost");
       sessionListener.onError(this, se, Conversation.AVIMOperation.CONVERSATION_CREATION.getCode(),
               requestId);
@@ -405,7 +457,7 @@ public class AVSession {
         if (e == null) {
           conversationOperationCache.offer(Operation.getOperation(
                   AVIMOperation.CONVERSATION_CREATION.getCode(), getSelfPeerId(), null, requestId));
-          AVConnectionManager.getInstance().sendPacket(ConversationControlPacket.genConversationCommand(selfId, null,
+          getConnectionManager().sendPacket(ConversationControlPacket.genConversationCommand(selfId, null,
                   members, ConversationControlPacket.ConversationControlOp.START, attributes, sig,
                   isTransient, isUnique, isTemp, tempTTL, isSystem, requestId));
         } else {
@@ -418,21 +470,25 @@ public class AVSession {
   }
 
   long getLastNotifyTime() {
-    if (lastNotifyTime <= 0) {
-      lastNotifyTime = AppConfiguration.getDefaultSetting().getLong(selfId,
-              LAST_NOTIFY_TIME, 0L);
+    synchronized (timestampLock) {
+      if (lastNotifyTime <= 0) {
+        lastNotifyTime = AppConfiguration.getDefaultSetting().getLong(selfId,
+                LAST_NOTIFY_TIME, 0L);
+      }
+      return lastNotifyTime;
     }
-    return lastNotifyTime;
   }
 
   void updateLastNotifyTime(long notifyTime) {
-    long currentTime = getLastNotifyTime();
-    if (notifyTime > currentTime) {
-      lastNotifyTime = notifyTime;
-      if (AVIMOptions.getGlobalOptions().isAlwaysRetrieveAllNotification()) {
-        // DO NOT persist last notify timestamp.
-      } else {
-        AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_NOTIFY_TIME, notifyTime);
+    synchronized (timestampLock) {
+      long currentTime = getLastNotifyTime();
+      if (notifyTime > currentTime) {
+        lastNotifyTime = notifyTime;
+        if (AVIMOptions.getGlobalOptions().isAlwaysRetrieveAllNotification()) {
+          // DO NOT persist last notify timestamp.
+        } else {
+          AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_NOTIFY_TIME, notifyTime);
+        }
       }
     }
   }
@@ -443,16 +499,18 @@ public class AVSession {
    * @return
    */
   long getLastPatchTime() {
-    if (lastPatchTime <= 0) {
-      lastPatchTime = AppConfiguration.getDefaultSetting().getLong(selfId,
-              LAST_PATCH_TIME, 0L);
-    }
+    synchronized (timestampLock) {
+      if (lastPatchTime <= 0) {
+        lastPatchTime = AppConfiguration.getDefaultSetting().getLong(selfId,
+                LAST_PATCH_TIME, 0L);
+      }
 
-    if (lastPatchTime <= 0) {
-      lastPatchTime = System.currentTimeMillis();
-      AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_PATCH_TIME, lastPatchTime);
+      if (lastPatchTime <= 0) {
+        lastPatchTime = System.currentTimeMillis();
+        AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_PATCH_TIME, lastPatchTime);
+      }
+      return lastPatchTime;
     }
-    return lastPatchTime;
   }
 
   void updateLastPatchTime(long patchTime) {
@@ -460,14 +518,16 @@ public class AVSession {
   }
 
   void updateLastPatchTime(long patchTime, boolean force) {
-    if (force) {
-      lastPatchTime = patchTime;
-      AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_PATCH_TIME, patchTime);
-    } else {
-      long currentTime = getLastPatchTime();
-      if (patchTime > currentTime) {
+    synchronized (timestampLock) {
+      if (force) {
         lastPatchTime = patchTime;
         AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_PATCH_TIME, patchTime);
+      } else {
+        long currentTime = getLastPatchTime();
+        if (patchTime > currentTime) {
+          lastPatchTime = patchTime;
+          AppConfiguration.getDefaultSetting().saveLong(selfId, LAST_PATCH_TIME, patchTime);
+        }
       }
     }
   }
@@ -502,7 +562,7 @@ public class AVSession {
           largestTimeStamp = message.getTimestamp();
         }
       }
-      AVConnectionManager.getInstance().sendPacket(ConversationAckPacket.getConversationAckPacket(getSelfPeerId(),
+      getConnectionManager().sendPacket(ConversationAckPacket.getConversationAckPacket(getSelfPeerId(),
               conversationId, largestTimeStamp));
     }
   }
@@ -45,7 +45,7 @@ public class AVSessionManager {
       AVSession session = null;
       if (newAdded) {
         session = new AVSession(peerId, new AVDefaultSessionListener());
-        AVConnectionManager.getInstance().subscribeConnectionListener(peerId, session.getWebSocketListener());
+        session.getConnectionManager().subscribeConnectionListener(peerId, session.getWebSocketListener());
         peerIdEnabledSessions.put(peerId, session);
       } else {
         session = peerIdEnabledSessions.get(peerId);
@@ -60,7 +60,7 @@ public class AVSessionManager {
   public void removeSession(String peerId) {
     AVSession session = peerIdEnabledSessions.remove(peerId);
     if (session != null && session.getWebSocketListener() != null) {
-      AVConnectionManager.getInstance().unsubscribeConnectionListener(session.getSelfPeerId());
+      session.getConnectionManager().unsubscribeConnectionListener(session.getSelfPeerId());
     }
   }
 
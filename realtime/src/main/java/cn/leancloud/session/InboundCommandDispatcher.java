@@ -0,0 +1,395 @@
+package cn.leancloud.session;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.Messages;
+import cn.leancloud.im.AVIMOptions;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * dispatch inbound commands from websocket reader thread to striped workers.
+ *
+ * commands are striped by conversation id(peer id if command doesn't belong to any conversation), so that
+ * commands of the same conversation are processed in order, while different conversations are processed in parallel
+ * and a slow message handler never blocks reading of the connection.
+ * command which touches several conversations(patch, unread) or the whole session is queued as a barrier into all
+ * affected stripes, and it's processed once all of them reach it, so it keeps order with every conversation.
+ * every stripe has a bounded queue, and once it's full the command is handled by {@link OverflowPolicy}.
+ * worker thread of stripe is started lazily.
+ */
+public class InboundCommandDispatcher {
+  private static final AVLogger LOGGER = LogUtil.getLogger(InboundCommandDispatcher.class);
+
+  public static final int DEFAULT_THREAD_COUNT = 4;
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  /**
+   * policy of command which arrives while queue of its stripe is full.
+   */
+  public enum OverflowPolicy {
+    // reader thread waits for space, which slows down the connection(backpressure),
+    // command is dropped if it still can't be queued within IM timeout.
+    BLOCK,
+    // drop command at once, unacked message is redelivered by server after reconnection.
+    DROP
+  }
+
+  private static volatile InboundCommandDispatcher instance = null;
+  private static final AtomicInteger threadIndex = new AtomicInteger(0);
+
+  /**
+   * get shared dispatcher, which is created with AVIMOptions at the first time.
+   * @return dispatcher instance.
+   */
+  public static InboundCommandDispatcher getInstance() {
+    if (null == instance) {
+      synchronized (InboundCommandDispatcher.class) {
+        if (null == instance) {
+          AVIMOptions options = AVIMOptions.getGlobalOptions();
+          instance = new InboundCommandDispatcher(options.getInboundDispatchThreads(),
+              options.getInboundQueueCapacity(), options.getInboundOverflowPolicy(),
+              TimeUnit.SECONDS.toMillis(options.getTimeoutInSecs()));
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final class Stripe implements Runnable {
+    private final int index;
+    private final BlockingQueue<Runnable> queue;
+    private volatile Thread worker = null;
+
+    Stripe(int index, int capacity) {
+      this.index = index;
+      this.queue = new ArrayBlockingQueue<Runnable>(capacity);
+    }
+
+    void ensureStarted() {
+      if (null == worker) {
+        synchronized (this) {
+          if (null == worker) {
+            Thread thread = new Thread(this, "leancloud-im-dispatcher-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            worker = thread;
+            thread.start();
+          }
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Runnable task;
+        try {
+          task = queue.take();
+        } catch (InterruptedException ex) {
+          LOGGER.w("dispatcher worker is interrupted, stripe=" + index);
+          synchronized (this) {
+            worker = null;
+          }
+          return;
+        }
+        try {
+          task.run();
+        } catch (Throwable ex) {
+          LOGGER.w("failed to process inbound command.", ex);
+        }
+      }
+    }
+  }
+
+  private final Stripe[] stripes;
+  private final OverflowPolicy overflowPolicy;
+  private final long maxBlockMillis;
+  private final AtomicLong dispatchedCount = new AtomicLong(0);
+  private final AtomicLong droppedCount = new AtomicLong(0);
+  private final AtomicLong blockedCount = new AtomicLong(0);
+  private final AtomicInteger peakQueueDepth = new AtomicInteger(0);
+
+  /**
+   * @param threadCount count of stripes, zero means processing commands on reader thread directly.
+   * @param queueCapacity capacity of queue of every stripe.
+   * @param overflowPolicy policy for full queue.
+   * @param maxBlockMillis max time to wait for space with BLOCK policy.
+   */
+  InboundCommandDispatcher(int threadCount, int queueCapacity, OverflowPolicy overflowPolicy, long maxBlockMillis) {
+    this.stripes = new Stripe[Math.max(0, threadCount)];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe(i, Math.max(1, queueCapacity));
+    }
+    this.overflowPolicy = null == overflowPolicy ? OverflowPolicy.BLOCK : overflowPolicy;
+    this.maxBlockMillis = Math.max(0, maxBlockMillis);
+  }
+
+  /**
+   * @return conversation ids of command, empty if command doesn't belong to any conversation.
+   */
+  static List<String> getConversationIds(Messages.GenericCommand command) {
+    List<String> result = new ArrayList<String>(1);
+    if (command.hasDirectMessage()) {
+      addConversationId(result, command.getDirectMessage().getCid());
+    } else if (command.hasAckMessage()) {
+      addConversationId(result, command.getAckMessage().getCid());
+    } else if (command.hasConvMessage()) {
+      addConversationId(result, command.getConvMessage().getCid());
+    } else if (command.hasRcpMessage()) {
+      addConversationId(result, command.getRcpMessage().getCid());
+    } else if (command.hasLogsMessage()) {
+      addConversationId(result, command.getLogsMessage().getCid());
+    } else if (command.hasPatchMessage()) {
+      for (Messages.PatchItem item : command.getPatchMessage().getPatchesList()) {
+        addConversationId(result, item.getCid());
+      }
+    } else if (command.hasUnreadMessage()) {
+      for (Messages.UnreadTuple tuple : command.getUnreadMessage().getConvsList()) {
+        addConversationId(result, tuple.getCid());
+      }
+    }
+    return result;
+  }
+
+  private static void addConversationId(List<String> result, String cid) {
+    if (!StringUtil.isEmpty(cid) && !result.contains(cid)) {
+      result.add(cid);
+    }
+  }
+
+  /**
+   * @return true if command changes state of the whole session, which must be ordered with all conversations.
+   */
+  static boolean isSessionWide(Messages.GenericCommand command) {
+    int cmd = command.getCmd().getNumber();
+    return cmd == Messages.CommandType.session_VALUE || cmd == Messages.CommandType.goaway_VALUE;
+  }
+
+  int getStripeIndex(String key) {
+    int hash = null == key ? 0 : key.hashCode();
+    hash ^= (hash >>> 16);
+    return (hash & 0x7fffffff) % stripes.length;
+  }
+
+  /**
+   * dispatch inbound command.
+   * @param peerId peer id which command is delivered to.
+   * @param command inbound command.
+   * @param task processor of command.
+   * @return false if command is dropped.
+   */
+  public boolean dispatch(String peerId, Messages.GenericCommand command, Runnable task) {
+    if (stripes.length == 0) {
+      task.run();
+      return true;
+    }
+    TreeSet<Integer> indexes = new TreeSet<Integer>();
+    if (isSessionWide(command)) {
+      for (int i = 0; i < stripes.length; i++) {
+        indexes.add(i);
+      }
+    } else {
+      List<String> cids = getConversationIds(command);
+      if (cids.isEmpty()) {
+        return dispatch(peerId, task);
+      }
+      for (String cid : cids) {
+        indexes.add(getStripeIndex(peerId + "/" + cid));
+      }
+    }
+    if (indexes.size() == 1) {
+      return enqueue(stripes[indexes.first()], task, peerId);
+    }
+    return dispatchBarrier(indexes, task, peerId);
+  }
+
+  /**
+   * dispatch task, tasks with the same key are executed in order.
+   * @param key ordering key.
+   * @param task task.
+   * @return false if task is dropped.
+   */
+  public boolean dispatch(String key, Runnable task) {
+    if (stripes.length == 0) {
+      task.run();
+      return true;
+    }
+    return enqueue(stripes[getStripeIndex(key)], task, key);
+  }
+
+  /**
+   * task which runs after all parties reach it, parties which arrive earlier wait for it.
+   */
+  private final class Barrier {
+    private final Runnable task;
+    private final int parties;
+    private int arrived = 0;
+    private boolean finished = false;
+    private boolean cancelled = false;
+
+    Barrier(Runnable task, int parties) {
+      this.task = task;
+      this.parties = parties;
+    }
+
+    Runnable newParty() {
+      return new Runnable() {
+        @Override
+        public void run() {
+          arrive();
+        }
+      };
+    }
+
+    private void arrive() {
+      synchronized (this) {
+        arrived++;
+        if (arrived < parties) {
+          while (!finished && !cancelled) {
+            try {
+              wait();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+              return;
+            }
+          }
+          return;
+        }
+        if (cancelled) {
+          return;
+        }
+      }
+      try {
+        task.run();
+      } finally {
+        synchronized (this) {
+          finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      notifyAll();
+    }
+  }
+
+  // barriers are queued one by one in order of stripe index, so that they never wait for each other in a cycle.
+  private final Object barrierLock = new Object();
+
+  private boolean dispatchBarrier(TreeSet<Integer> indexes, Runnable task, String key) {
+    Barrier barrier = new Barrier(task, indexes.size());
+    synchronized (barrierLock) {
+      for (int index : indexes) {
+        if (!offer(stripes[index], barrier.newParty(), key)) {
+          // parties which have been queued just pass through.
+          barrier.cancel();
+          droppedCount.incrementAndGet();
+          return false;
+        }
+      }
+    }
+    dispatchedCount.incrementAndGet();
+    return true;
+  }
+
+  private boolean enqueue(Stripe stripe, Runnable task, String key) {
+    if (!offer(stripe, task, key)) {
+      droppedCount.incrementAndGet();
+      return false;
+    }
+    dispatchedCount.incrementAndGet();
+    return true;
+  }
+
+  private boolean offer(Stripe stripe, Runnable task, String key) {
+    stripe.ensureStarted();
+    boolean queued = stripe.queue.offer(task);
+    if (!queued && OverflowPolicy.BLOCK == overflowPolicy) {
+      blockedCount.incrementAndGet();
+      LOGGER.w("inbound queue is full, wait for space. stripe=" + stripe.index);
+      try {
+        queued = stripe.queue.offer(task, maxBlockMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (!queued) {
+      LOGGER.w("inbound queue is full, drop command. stripe=" + stripe.index + ", key=" + key);
+      return false;
+    }
+    updatePeak(stripe.queue.size());
+    return true;
+  }
+
+  private void updatePeak(int depth) {
+    int peak = peakQueueDepth.get();
+    while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth)) {
+      peak = peakQueueDepth.get();
+    }
+  }
+
+  public int getThreadCount() {
+    return stripes.length;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * @return current queue depth of every stripe.
+   */
+  public int[] getQueueDepths() {
+    int[] depths = new int[stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      depths[i] = stripes[i].queue.size();
+    }
+    return depths;
+  }
+
+  /**
+   * @return count of commands waiting in all stripes.
+   */
+  public int getQueueDepth() {
+    int depth = 0;
+    for (Stripe stripe : stripes) {
+      depth += stripe.queue.size();
+    }
+    return depth;
+  }
+
+  /**
+   * @return max queue depth of single stripe since dispatcher is created.
+   */
+  public int getPeakQueueDepth() {
+    return peakQueueDepth.get();
+  }
+
+  public long getDispatchedCount() {
+    return dispatchedCount.get();
+  }
+
+  /**
+   * @return count of commands which are dropped because of overflow.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return count of times that reader thread waited for queue space.
+   */
+  public long getBlockedCount() {
+    return blockedCount.get();
+  }
+}
@@ -0,0 +1,166 @@
+package cn.leancloud.session;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.command.CommandPacket;
+import cn.leancloud.command.ConversationAckPacket;
+import cn.leancloud.command.SessionAckPacket;
+import cn.leancloud.im.BackgroundThreadpool;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * collect acks of received messages and send them in batch.
+ *
+ * message ids are grouped by conversation, and every group is sent as one ack command once
+ * flush delay elapses or pending acks reach max batch size. unacked message is redelivered by server,
+ * so acks which are lost with connection are harmless. pending acks are kept while connection is broken,
+ * and flushed once session is reopened.
+ */
+public class MessageAckAggregator {
+  private static final AVLogger LOGGER = LogUtil.getLogger(MessageAckAggregator.class);
+
+  public static final long DEFAULT_FLUSH_DELAY_MILLIS = 200;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+  // key of acks which don't belong to any conversation.
+  private static final String SESSION_ACK_KEY = "";
+
+  private static volatile long flushDelayMillis = DEFAULT_FLUSH_DELAY_MILLIS;
+  private static volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+  /**
+   * set max delay of ack, zero means acking every message immediately.
+   * @param delayMillis delay in milliseconds.
+   */
+  public static void setFlushDelayMillis(long delayMillis) {
+    flushDelayMillis = Math.max(0, delayMillis);
+  }
+
+  public static long getFlushDelayMillis() {
+    return flushDelayMillis;
+  }
+
+  /**
+   * set max count of pending acks, they are sent immediately once reaching it.
+   * @param batchSize max batch size.
+   */
+  public static void setMaxBatchSize(int batchSize) {
+    maxBatchSize = Math.max(1, batchSize);
+  }
+
+  public static int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  interface AckSender {
+    // acks are kept until connection is ready.
+    boolean isReady();
+
+    void send(CommandPacket packet);
+  }
+
+  private final String peerId;
+  private final AckSender sender;
+  private Map<String, List<String>> pendingAcks = new LinkedHashMap<String, List<String>>();
+  private int pendingCount = 0;
+  private boolean flushScheduled = false;
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (MessageAckAggregator.this) {
+        flushScheduled = false;
+      }
+      flush();
+    }
+  };
+
+  MessageAckAggregator(String peerId, AckSender sender) {
+    this.peerId = peerId;
+    this.sender = sender;
+  }
+
+  /**
+   * add ack of received message.
+   * @param conversationId conversation id, empty for message which doesn't belong to conversation.
+   * @param messageId message id.
+   */
+  public void add(String conversationId, String messageId) {
+    if (StringUtil.isEmpty(messageId)) {
+      return;
+    }
+    String key = StringUtil.isEmpty(conversationId) ? SESSION_ACK_KEY : conversationId;
+    boolean flushNow = false;
+    boolean scheduleFlush = false;
+    long delay = flushDelayMillis;
+    synchronized (this) {
+      List<String> ids = pendingAcks.get(key);
+      if (null == ids) {
+        ids = new ArrayList<String>();
+        pendingAcks.put(key, ids);
+      }
+      ids.add(messageId);
+      pendingCount++;
+      if (delay <= 0 || pendingCount >= maxBatchSize) {
+        flushNow = true;
+      } else if (!flushScheduled) {
+        flushScheduled = true;
+        scheduleFlush = true;
+      }
+    }
+    if (flushNow) {
+      flush();
+    } else if (scheduleFlush) {
+      BackgroundThreadpool.getInstance().executeDelayed(flushTask, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * send all pending acks now.
+   */
+  public void flush() {
+    Map<String, List<String>> acks;
+    synchronized (this) {
+      if (pendingCount <= 0 || !sender.isReady()) {
+        return;
+      }
+      acks = pendingAcks;
+      pendingAcks = new LinkedHashMap<String, List<String>>();
+      pendingCount = 0;
+    }
+    for (Map.Entry<String, List<String>> entry : acks.entrySet()) {
+      try {
+        sender.send(buildPacket(entry.getKey(), entry.getValue()));
+      } catch (Exception ex) {
+        LOGGER.w("failed to send ack. cause: " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * discard pending acks.
+   */
+  public synchronized void clear() {
+    pendingAcks.clear();
+    pendingCount = 0;
+  }
+
+  public synchronized int getPendingCount() {
+    return pendingCount;
+  }
+
+  private CommandPacket buildPacket(String key, List<String> messageIds) {
+    if (SESSION_ACK_KEY.equals(key)) {
+      SessionAckPacket packet = new SessionAckPacket();
+      packet.setPeerId(peerId);
+      packet.setMessageIds(messageIds);
+      return packet;
+    }
+    return ConversationAckPacket.getConversationAckPacket(peerId, key, messageIds);
+  }
+}
@@ -0,0 +1,231 @@
+package cn.leancloud.session;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.cache.PersistenceUtil;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.im.BackgroundThreadpool;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * remember ids of received messages within a window, so that redelivered messages can be dropped.
+ *
+ * ids are kept in a ring buffer(insertion order) which is indexed by a hash map:
+ * - lookup is lock-free and O(1);
+ * - insertion is O(1), it evicts the oldest id once window is full or the oldest id is expired.
+ * window is persisted as a snapshot lazily, at most once within SNAPSHOT_DELAY_MILLIS.
+ */
+public class MessageDeduplicator {
+  private static final AVLogger LOGGER = LogUtil.getLogger(MessageDeduplicator.class);
+
+  public static final int DEFAULT_MAX_COUNT = 1000;
+  public static final long DEFAULT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+  static final long SNAPSHOT_DELAY_MILLIS = 3000;
+
+  private static final String SNAPSHOT_DIR = "dedup/";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+  private static volatile int defaultMaxCount = DEFAULT_MAX_COUNT;
+  private static volatile long defaultMaxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+  /**
+   * set window of deduplicators which are created afterwards.
+   * @param maxCount max count of remembered ids.
+   * @param maxAgeMillis max age of remembered ids, zero or negative means ids never expire.
+   */
+  public static void setDefaultWindow(int maxCount, long maxAgeMillis) {
+    defaultMaxCount = Math.max(1, maxCount);
+    defaultMaxAgeMillis = maxAgeMillis;
+  }
+
+  public static int getDefaultMaxCount() {
+    return defaultMaxCount;
+  }
+
+  public static long getDefaultMaxAgeMillis() {
+    return defaultMaxAgeMillis;
+  }
+
+  private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<String, Long>();
+  private final String[] ids;
+  private final long[] timestamps;
+  private final long maxAgeMillis;
+  // position of the oldest id and count of ids in ring.
+  private int head = 0;
+  private int count = 0;
+
+  private final File snapshotFile;
+  private boolean snapshotScheduled = false;
+  // delayed tasks may run in parallel, so snapshots are written one by one to keep the newest one.
+  private final Object snapshotLock = new Object();
+  private final Runnable snapshotTask = new Runnable() {
+    @Override
+    public void run() {
+      saveSnapshot();
+    }
+  };
+
+  public MessageDeduplicator(String name) {
+    this(defaultMaxCount, defaultMaxAgeMillis, getSnapshotFile(name));
+  }
+
+  /**
+   * @param maxCount max count of remembered ids.
+   * @param maxAgeMillis max age of remembered ids, zero or negative means ids never expire.
+   * @param snapshotFile file of persisted snapshot, null means memory only.
+   */
+  MessageDeduplicator(int maxCount, long maxAgeMillis, File snapshotFile) {
+    this.ids = new String[Math.max(1, maxCount)];
+    this.timestamps = new long[this.ids.length];
+    this.maxAgeMillis = maxAgeMillis;
+    this.snapshotFile = snapshotFile;
+    loadSnapshot();
+  }
+
+  private static File getSnapshotFile(String name) {
+    String dir = AppConfiguration.getImportantFileDir();
+    if (StringUtil.isEmpty(dir) || StringUtil.isEmpty(name)) {
+      return null;
+    }
+    return new File(dir + SNAPSHOT_DIR, MD5.computeMD5(name) + SNAPSHOT_SUFFIX);
+  }
+
+  private boolean isExpired(long timestamp, long now) {
+    return maxAgeMillis > 0 && now - timestamp > maxAgeMillis;
+  }
+
+  /**
+   * @param messageId message id.
+   * @return true if message id is seen within window, without changing window.
+   */
+  public boolean contains(String messageId) {
+    if (StringUtil.isEmpty(messageId)) {
+      return false;
+    }
+    Long timestamp = index.get(messageId);
+    return null != timestamp && !isExpired(timestamp, System.currentTimeMillis());
+  }
+
+  /**
+   * add message id into window.
+   * @param messageId message id.
+   * @return false if message id is seen before(duplicated), otherwise true.
+   */
+  public boolean add(String messageId) {
+    if (StringUtil.isEmpty(messageId)) {
+      return true;
+    }
+    if (contains(messageId)) {
+      return false;
+    }
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      evictExpired(now);
+      if (index.containsKey(messageId)) {
+        return false;
+      }
+      if (count == ids.length) {
+        evictOldest();
+      }
+      int tail = (head + count) % ids.length;
+      ids[tail] = messageId;
+      timestamps[tail] = now;
+      count++;
+      index.put(messageId, now);
+      scheduleSnapshot();
+    }
+    return true;
+  }
+
+  public synchronized int size() {
+    return count;
+  }
+
+  private void evictExpired(long now) {
+    while (count > 0 && isExpired(timestamps[head], now)) {
+      evictOldest();
+    }
+  }
+
+  private void evictOldest() {
+    index.remove(ids[head]);
+    ids[head] = null;
+    head = (head + 1) % ids.length;
+    count--;
+  }
+
+  private void scheduleSnapshot() {
+    if (null == snapshotFile || snapshotScheduled) {
+      return;
+    }
+    snapshotScheduled = true;
+    BackgroundThreadpool.getInstance().executeDelayed(snapshotTask, SNAPSHOT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * snapshot is lines of "timestamp id" from the oldest to the newest.
+   */
+  void saveSnapshot() {
+    if (null == snapshotFile) {
+      return;
+    }
+    synchronized (snapshotLock) {
+      StringBuilder builder;
+      synchronized (this) {
+        snapshotScheduled = false;
+        builder = new StringBuilder(count * 40);
+        for (int i = 0; i < count; i++) {
+          int pos = (head + i) % ids.length;
+          builder.append(timestamps[pos]).append(' ').append(ids[pos]).append('\n');
+        }
+      }
+      File dir = snapshotFile.getParentFile();
+      if (null != dir && !dir.exists()) {
+        dir.mkdirs();
+      }
+      if (!PersistenceUtil.sharedInstance().saveContentToFile(builder.toString(), snapshotFile)) {
+        LOGGER.w("failed to save message snapshot: " + snapshotFile.getAbsolutePath());
+      }
+    }
+  }
+
+  private synchronized void loadSnapshot() {
+    if (null == snapshotFile || !snapshotFile.exists()) {
+      return;
+    }
+    String content = PersistenceUtil.sharedInstance().readContentFromFile(snapshotFile);
+    if (StringUtil.isEmpty(content)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (String line : content.split("\n")) {
+      int separator = line.indexOf(' ');
+      if (separator <= 0 || separator == line.length() - 1) {
+        continue;
+      }
+      long timestamp;
+      try {
+        timestamp = Long.parseLong(line.substring(0, separator));
+      } catch (NumberFormatException ex) {
+        continue;
+      }
+      String messageId = line.substring(separator + 1);
+      if (isExpired(timestamp, now) || index.containsKey(messageId)) {
+        continue;
+      }
+      if (count == ids.length) {
+        evictOldest();
+      }
+      int tail = (head + count) % ids.length;
+      ids[tail] = messageId;
+      timestamps[tail] = timestamp;
+      count++;
+      index.put(messageId, timestamp);
+    }
+  }
+}
@@ -24,7 +24,7 @@ public class MessageReceiptCache {
     String valueString =
             AppConfiguration.getDefaultSetting().getString(MESSAGE_ZONE + sessionId,
                     QUEUE_KEY + key, null);
-    AppConfiguration.getDefaultSetting().removeKey(MESSAGE_ZONE, QUEUE_KEY + key);
+    AppConfiguration.getDefaultSetting().removeKey(MESSAGE_ZONE + sessionId, QUEUE_KEY + key);
     if (StringUtil.isEmpty(valueString)) {
       return null;
     }
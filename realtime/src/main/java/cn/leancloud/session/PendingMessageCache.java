@@ -60,8 +60,9 @@ public class PendingMessageCache<E extends PersistentQueue.HasId> {
   }
 
   E poll(String msgId) {
-    if (!StringUtil.isEmpty(msgId) && msgMapping.containsKey(msgId)) {
-      E returnValue = msgMapping.remove(msgId);
+    // acks of different conversations are processed in parallel, so check and remove in one step.
+    E returnValue = StringUtil.isEmpty(msgId) ? null : msgMapping.remove(msgId);
+    if (null != returnValue) {
       messages.remove(returnValue);
       return returnValue;
     }
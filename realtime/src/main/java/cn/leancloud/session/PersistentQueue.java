@@ -1,166 +1,356 @@
 package cn.leancloud.session;
 
+import cn.leancloud.AVLogger;
 import cn.leancloud.cache.SystemSetting;
+import cn.leancloud.codec.MD5;
 import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.File;
+import java.util.*;
 
+/**
+ * queue persisted with an append-only journal.
+ *
+ * every mutation only writes the records of changed elements(see {@link QueueJournal}) instead of serializing
+ * the whole queue, so that offer/poll/remove cost is irrelevant to the queue length.
+ * if important file dir is not set, queue falls back to be saved as a whole in SystemSetting as before.
+ */
 public class PersistentQueue<E> implements Queue<E> {
-  Queue<E> messages;
-  private final String queueKey;
+  private static final AVLogger LOGGER = LogUtil.getLogger(PersistentQueue.class);
+
   private static final String MESSAGE_ZONE = "com.avoscloud.chat.message";
   private static final String QUEUE_KEY = "com.avoscloud.chat.message.queue";
+  private static final String JOURNAL_DIR = "queue/";
+  private static final String JOURNAL_SUFFIX = ".journal";
+
+  static class Node<E> {
+    final long seq;
+    final E value;
+    Node(long seq, E value) {
+      this.seq = seq;
+      this.value = value;
+    }
+  }
+
+  private final LinkedList<Node<E>> nodes = new LinkedList<Node<E>>();
+  private final String queueKey;
   private final Class<E> type;
+  private final QueueJournal journal;
+  private long nextSeq = 0;
 
   public PersistentQueue(String peerId, Class<E> clazz) {
-    messages = new ConcurrentLinkedQueue<>();
+    this(peerId, clazz, createJournal(QUEUE_KEY + "." + peerId));
+  }
+
+  PersistentQueue(String peerId, Class<E> clazz, QueueJournal journal) {
     this.type = clazz;
-    queueKey = QUEUE_KEY + "." + peerId;
-    LinkedList<E> storedMessages = restoreMessageQueue();
-    if (null != storedMessages && !storedMessages.isEmpty()) {
-      messages.addAll(storedMessages);
+    this.queueKey = QUEUE_KEY + "." + peerId;
+    this.journal = journal;
+    if (null != journal) {
+      journal.setCompactor(new QueueJournal.Compactor() {
+        @Override
+        public void compact() {
+          compactJournal();
+        }
+      });
+      restoreFromJournal();
     }
+    migrateLegacyQueue();
   }
 
-  @Override
-  public boolean addAll(Collection<? extends E> collection) {
-    boolean result = messages.addAll(collection);
-    this.storeMessageQueue();
+  private static QueueJournal createJournal(String queueKey) {
+    String dir = AppConfiguration.getImportantFileDir();
+    if (StringUtil.isEmpty(dir)) {
+      LOGGER.w("important file dir is not set, save queue in SystemSetting instead of journal.");
+      return null;
+    }
+    return new QueueJournal(new File(dir + JOURNAL_DIR, MD5.computeMD5(queueKey) + JOURNAL_SUFFIX));
+  }
+
+  private String serialize(Object e) {
+    return JSON.toJSONString(e, SerializerFeature.SkipTransientField,
+            SerializerFeature.WriteClassName, SerializerFeature.QuoteFieldNames,
+            SerializerFeature.WriteNullNumberAsZero, SerializerFeature.WriteNullBooleanAsFalse);
+  }
+
+  private synchronized void restoreFromJournal() {
+    for (Map.Entry<Long, String> record : journal.replay().entrySet()) {
+      long seq = record.getKey();
+      nextSeq = Math.max(nextSeq, seq + 1);
+      try {
+        nodes.add(new Node<E>(seq, JSON.parseObject(record.getValue(), type)));
+      } catch (Exception ex) {
+        LOGGER.w("failed to parse queue element, drop it. cause: " + ex.getMessage());
+        journal.remove(seq);
+      }
+    }
+  }
+
+  /**
+   * queue was saved as a whole json string in SystemSetting before, move it into journal.
+   */
+  private synchronized void migrateLegacyQueue() {
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    if (null == setting) {
+      return;
+    }
+    String queueString = setting.getString(MESSAGE_ZONE, queueKey, null);
+    if (StringUtil.isEmpty(queueString)) {
+      return;
+    }
+    try {
+      for (E e : JSON.parseArray(queueString, type)) {
+        appendNode(e);
+      }
+    } catch (Exception ex) {
+      LOGGER.w("failed to parse legacy queue, ignore it. cause: " + ex.getMessage());
+    }
+    if (null != journal) {
+      journal.flush();
+      setting.removeKey(MESSAGE_ZONE, queueKey);
+    }
+  }
+
+  private void appendNode(E e) {
+    if (null == e) {
+      throw new NullPointerException();
+    }
+    Node<E> node = new Node<E>(nextSeq++, e);
+    nodes.add(node);
+    if (null != journal) {
+      journal.add(node.seq, serialize(e));
+    }
+  }
+
+  private void removeNode(Node<E> node) {
+    if (null != journal) {
+      journal.remove(node.seq);
+    }
+  }
+
+  /**
+   * save whole queue into SystemSetting, only used when there is no journal.
+   */
+  private void saveLegacyQueue() {
+    if (null != journal) {
+      return;
+    }
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    if (null != setting) {
+      setting.saveString(MESSAGE_ZONE, queueKey, serialize(values()));
+    }
+  }
+
+  private synchronized void compactJournal() {
+    LinkedHashMap<Long, String> records = new LinkedHashMap<Long, String>();
+    for (Node<E> node : nodes) {
+      records.put(node.seq, serialize(node.value));
+    }
+    journal.rewrite(records);
+  }
+
+  /**
+   * write buffered journal records to file immediately.
+   */
+  public void flush() {
+    if (null != journal) {
+      journal.flush();
+    }
+  }
+
+  private synchronized List<E> values() {
+    List<E> result = new ArrayList<E>(nodes.size());
+    for (Node<E> node : nodes) {
+      result.add(node.value);
+    }
     return result;
   }
 
+  private synchronized boolean removeMatched(Collection<?> collection, boolean matched) {
+    boolean result = false;
+    Iterator<Node<E>> it = nodes.iterator();
+    while (it.hasNext()) {
+      Node<E> node = it.next();
+      if (collection.contains(node.value) == matched) {
+        it.remove();
+        removeNode(node);
+        result = true;
+      }
+    }
+    if (result) {
+      saveLegacyQueue();
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized boolean addAll(Collection<? extends E> collection) {
+    for (E e : collection) {
+      appendNode(e);
+    }
+    saveLegacyQueue();
+    return !collection.isEmpty();
+  }
+
   @Override
-  public void clear() {
-    messages.clear();
-    this.storeMessageQueue();
+  public synchronized void clear() {
+    nodes.clear();
+    if (null != journal) {
+      journal.clear();
+    }
+    saveLegacyQueue();
   }
 
   @Override
-  public boolean contains(Object object) {
-    return messages.contains(object);
+  public synchronized boolean contains(Object object) {
+    for (Node<E> node : nodes) {
+      if (node.value.equals(object)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
-  public boolean containsAll(Collection<?> collection) {
-    return messages.containsAll(collection);
+  public synchronized boolean containsAll(Collection<?> collection) {
+    return values().containsAll(collection);
   }
 
   @Override
-  public boolean isEmpty() {
-    return messages.isEmpty();
+  public synchronized boolean isEmpty() {
+    return nodes.isEmpty();
   }
 
+  /**
+   * @return iterator over snapshot of the queue, removal through it is persisted too.
+   */
   @Override
   public Iterator<E> iterator() {
-    return messages.iterator();
+    final Iterator<Node<E>> snapshot;
+    synchronized (this) {
+      snapshot = new ArrayList<Node<E>>(nodes).iterator();
+    }
+    return new Iterator<E>() {
+      private Node<E> current = null;
+
+      @Override
+      public boolean hasNext() {
+        return snapshot.hasNext();
+      }
+
+      @Override
+      public E next() {
+        current = snapshot.next();
+        return current.value;
+      }
+
+      @Override
+      public void remove() {
+        if (null == current) {
+          throw new IllegalStateException();
+        }
+        synchronized (PersistentQueue.this) {
+          if (nodes.remove(current)) {
+            removeNode(current);
+            saveLegacyQueue();
+          }
+        }
+        current = null;
+      }
+    };
   }
 
   @Override
-  public boolean remove(Object object) {
-    boolean result = messages.remove(object);
-    this.storeMessageQueue();
-    return result;
+  public synchronized boolean remove(Object object) {
+    Iterator<Node<E>> it = nodes.iterator();
+    while (it.hasNext()) {
+      Node<E> node = it.next();
+      if (node.value.equals(object)) {
+        it.remove();
+        removeNode(node);
+        saveLegacyQueue();
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
   public boolean removeAll(Collection<?> collection) {
-    boolean result = messages.removeAll(collection);
-    this.storeMessageQueue();
-    return result;
+    return removeMatched(collection, true);
   }
 
   @Override
   public boolean retainAll(Collection<?> collection) {
-    boolean result = messages.retainAll(collection);
-    this.storeMessageQueue();
-    return result;
+    return removeMatched(collection, false);
   }
 
   @Override
-  public int size() {
-    return messages.size();
+  public synchronized int size() {
+    return nodes.size();
   }
 
   @Override
   public Object[] toArray() {
-    return messages.toArray();
+    return values().toArray();
   }
 
   @Override
   public <T> T[] toArray(T[] array) {
-    return messages.toArray(array);
+    return values().toArray(array);
   }
 
   @Override
-  public boolean add(E e) {
-    boolean result = messages.add(e);
-    this.storeMessageQueue();
-    return result;
+  public synchronized boolean add(E e) {
+    appendNode(e);
+    saveLegacyQueue();
+    return true;
   }
 
   @Override
   public boolean offer(E e) {
-    boolean result = messages.offer(e);
-    this.storeMessageQueue();
-    return result;
+    return add(e);
   }
 
   @Override
-  public E remove() {
-    E result = messages.remove();
-    this.storeMessageQueue();
+  public synchronized E remove() {
+    E result = poll();
+    if (null == result) {
+      throw new NoSuchElementException();
+    }
     return result;
   }
 
   @Override
-  public E poll() {
-    E result = messages.poll();
-    this.storeMessageQueue();
-    return result;
+  public synchronized E poll() {
+    Node<E> node = nodes.poll();
+    if (null == node) {
+      return null;
+    }
+    removeNode(node);
+    saveLegacyQueue();
+    return node.value;
   }
 
   @Override
-  public E element() {
-    E result = messages.element();
-    this.storeMessageQueue();
+  public synchronized E element() {
+    E result = peek();
+    if (null == result) {
+      throw new NoSuchElementException();
+    }
     return result;
   }
 
   @Override
-  public E peek() {
-    return messages.peek();
+  public synchronized E peek() {
+    Node<E> node = nodes.peek();
+    return null == node ? null : node.value;
   }
 
-  private void storeMessageQueue() {
-    // 异步序列化，保证效率
-    String queueString =
-            JSON.toJSONString(messages, SerializerFeature.SkipTransientField,
-                    SerializerFeature.WriteClassName, SerializerFeature.QuoteFieldNames,
-                    SerializerFeature.WriteNullNumberAsZero, SerializerFeature.WriteNullBooleanAsFalse);
-    AppConfiguration.getDefaultSetting().saveString(MESSAGE_ZONE, queueKey, queueString);
-  }
-
-  private synchronized LinkedList<E> restoreMessageQueue() {
-    LinkedList<E> storedMessages = new LinkedList<E>();
-    SystemSetting setting = AppConfiguration.getDefaultSetting();
-    String queueString = setting.getString(MESSAGE_ZONE, queueKey, null);
-    if (!StringUtil.isEmpty(queueString)) {
-      try {
-        storedMessages.addAll(JSON.parseArray(queueString, type));
-      } catch (Exception e) {
-        // clean it since there's parse exception
-        setting.removeKey(MESSAGE_ZONE, queueKey);
-      }
-    }
-    return storedMessages;
-  }
   public interface HasId {
     String getId();
     void setId(String id);
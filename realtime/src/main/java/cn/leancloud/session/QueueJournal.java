@@ -0,0 +1,239 @@
+package cn.leancloud.session;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.im.BackgroundThreadpool;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * append-only journal for PersistentQueue.
+ *
+ * every element is written as an add record with its sequence number, and removal as a remove record,
+ * records within the commit window are buffered and written to file together.
+ * once dead records exceed both the threshold and live records, journal is rewritten from the queue snapshot.
+ */
+class QueueJournal {
+  private static final AVLogger LOGGER = LogUtil.getLogger(QueueJournal.class);
+
+  static final long DEFAULT_COMMIT_WINDOW_MS = 50;
+  static final int DEFAULT_COMPACT_THRESHOLD = 256;
+
+  private static final char RECORD_ADD = '+';
+  private static final char RECORD_REMOVE = '-';
+  private static final char RECORD_CLEAR = '!';
+  private static final String COMPACT_FILE_SUFFIX = ".compact";
+
+  interface Compactor {
+    /**
+     * rewrite journal with live records, implementation should call {@link #rewrite(Map)}.
+     */
+    void compact();
+  }
+
+  private final File file;
+  private final long commitWindow;
+  private final int compactThreshold;
+  private Compactor compactor = null;
+
+  private StringBuilder pending = new StringBuilder();
+  private boolean flushScheduled = false;
+  private int recordCount = 0;
+  private int liveCount = 0;
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  QueueJournal(File file) {
+    this(file, DEFAULT_COMMIT_WINDOW_MS, DEFAULT_COMPACT_THRESHOLD);
+  }
+
+  QueueJournal(File file, long commitWindow, int compactThreshold) {
+    this.file = file;
+    this.commitWindow = commitWindow;
+    this.compactThreshold = Math.max(1, compactThreshold);
+    File parent = file.getParentFile();
+    if (null != parent && !parent.exists()) {
+      parent.mkdirs();
+    }
+  }
+
+  void setCompactor(Compactor compactor) {
+    this.compactor = compactor;
+  }
+
+  /**
+   * load live records from journal file.
+   * @return live records in insertion order, key is sequence number and value is payload.
+   */
+  synchronized LinkedHashMap<Long, String> replay() {
+    LinkedHashMap<Long, String> records = new LinkedHashMap<Long, String>();
+    recordCount = 0;
+    if (!file.exists()) {
+      liveCount = 0;
+      return records;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "utf-8"));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (StringUtil.isEmpty(line)) {
+          continue;
+        }
+        try {
+          char type = line.charAt(0);
+          if (RECORD_CLEAR == type) {
+            records.clear();
+          } else {
+            int separator = line.indexOf('\t');
+            long seq = Long.parseLong(separator > 0 ? line.substring(1, separator) : line.substring(1));
+            if (RECORD_ADD == type && separator > 0) {
+              records.put(seq, line.substring(separator + 1));
+            } else if (RECORD_REMOVE == type) {
+              records.remove(seq);
+            } else {
+              continue;
+            }
+          }
+          recordCount++;
+        } catch (NumberFormatException ex) {
+          // half-written record caused by crash, just skip it.
+          LOGGER.w("skip invalid journal record in " + file.getName());
+        }
+      }
+    } catch (IOException ex) {
+      LOGGER.w("failed to read journal " + file.getAbsolutePath() + ", cause: " + ex.getMessage());
+    } finally {
+      closeQuietly(reader);
+    }
+    liveCount = records.size();
+    return records;
+  }
+
+  synchronized void add(long seq, String payload) {
+    pending.append(RECORD_ADD).append(seq).append('\t').append(payload).append('\n');
+    liveCount++;
+    recordCount++;
+    scheduleFlush();
+  }
+
+  synchronized void remove(long seq) {
+    pending.append(RECORD_REMOVE).append(seq).append('\n');
+    liveCount--;
+    recordCount++;
+    scheduleFlush();
+  }
+
+  synchronized void clear() {
+    pending.setLength(0);
+    if (file.exists() && !file.delete()) {
+      LOGGER.w("failed to delete journal " + file.getAbsolutePath());
+      pending.append(RECORD_CLEAR).append('\n');
+      scheduleFlush();
+    }
+    liveCount = 0;
+    recordCount = pending.length() > 0 ? 1 : 0;
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled) {
+      return;
+    }
+    flushScheduled = true;
+    if (commitWindow <= 0) {
+      flushTask.run();
+    } else {
+      BackgroundThreadpool.getInstance().executeDelayed(flushTask, commitWindow, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * write buffered records to file and compact journal if necessary.
+   */
+  void flush() {
+    boolean needCompact;
+    synchronized (this) {
+      flushScheduled = false;
+      if (pending.length() > 0) {
+        String content = pending.toString();
+        pending.setLength(0);
+        OutputStream output = null;
+        try {
+          output = new FileOutputStream(file, true);
+          output.write(content.getBytes("utf-8"));
+        } catch (IOException ex) {
+          LOGGER.w("failed to write journal " + file.getAbsolutePath() + ", cause: " + ex.getMessage());
+        } finally {
+          closeQuietly(output);
+        }
+      }
+      int deadCount = recordCount - liveCount;
+      needCompact = null != compactor && deadCount >= compactThreshold && deadCount > liveCount;
+    }
+    if (needCompact) {
+      // compactor takes the lock of queue, so it must be called outside of journal lock.
+      compactor.compact();
+    }
+  }
+
+  /**
+   * replace journal with live records.
+   * caller must guarantee no record is appended concurrently.
+   */
+  synchronized void rewrite(Map<Long, String> liveRecords) {
+    StringBuilder content = new StringBuilder();
+    for (Map.Entry<Long, String> entry : liveRecords.entrySet()) {
+      content.append(RECORD_ADD).append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+    }
+    File compactFile = new File(file.getPath() + COMPACT_FILE_SUFFIX);
+    OutputStream output = null;
+    try {
+      output = new FileOutputStream(compactFile);
+      output.write(content.toString().getBytes("utf-8"));
+      output.close();
+      output = null;
+      if (!compactFile.renameTo(file)) {
+        // renameTo can't replace existed file on some platforms.
+        file.delete();
+        if (!compactFile.renameTo(file)) {
+          throw new IOException("failed to rename " + compactFile.getName());
+        }
+      }
+      pending.setLength(0);
+      liveCount = liveRecords.size();
+      recordCount = liveCount;
+      LOGGER.d("compacted journal " + file.getName() + ", live records: " + liveCount);
+    } catch (IOException ex) {
+      LOGGER.w("failed to compact journal " + file.getAbsolutePath() + ", cause: " + ex.getMessage());
+      closeQuietly(output);
+      compactFile.delete();
+    }
+  }
+
+  synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    try {
+      if (null != closeable) {
+        closeable.close();
+      }
+    } catch (IOException ex) {
+      //
+    }
+  }
+}
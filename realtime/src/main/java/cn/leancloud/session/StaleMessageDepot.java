@@ -1,13 +1,14 @@
 package cn.leancloud.session;
 
-import cn.leancloud.utils.StringUtil;
-
+/**
+ * @deprecated use {@link MessageDeduplicator} instead, which keeps a larger window with O(1) lookup.
+ */
+@Deprecated
 public class StaleMessageDepot {
-  PersistentQueue<String> messageDepot;
-  private static final int MAXLENGTH = 50;
+  private final MessageDeduplicator deduplicator;
 
   public StaleMessageDepot(String depotName) {
-    this.messageDepot = new PersistentQueue<String>(depotName, String.class);
+    this.deduplicator = new MessageDeduplicator(depotName);
   }
 
   /**
@@ -15,17 +16,7 @@ public class StaleMessageDepot {
    * @param messageId
    * @return false if message arrived before. true
    */
-  public synchronized boolean putStableMessage(String messageId) {
-    if (StringUtil.isEmpty(messageId)) {
-      return true;
-    }
-    boolean isContains = messageDepot.contains(messageId);
-    if (!isContains) {
-      messageDepot.offer(messageId);
-      while (messageDepot.size() > MAXLENGTH) {
-        messageDepot.poll();
-      }
-    }
-    return !isContains;
+  public boolean putStableMessage(String messageId) {
+    return deduplicator.add(messageId);
   }
 }
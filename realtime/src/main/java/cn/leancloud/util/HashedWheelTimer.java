@@ -0,0 +1,302 @@
+package cn.leancloud.util;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * hashed timer wheel for large amount of short, approximate timeouts.
+ *
+ * schedule and cancel are O(1), all timeouts are driven by one daemon worker thread which is started lazily,
+ * and task is executed within the worker thread, so it should be quick and never block.
+ */
+public class HashedWheelTimer {
+  private static final AVLogger LOGGER = LogUtil.getLogger(HashedWheelTimer.class);
+
+  public static final long DEFAULT_TICK_MILLIS = 100;
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private static final int STATE_INIT = 0;
+  private static final int STATE_STARTED = 1;
+  private static final int STATE_STOPPED = 2;
+
+  private static volatile HashedWheelTimer sharedInstance = null;
+  private static final AtomicInteger threadIndex = new AtomicInteger(0);
+
+  public static HashedWheelTimer getSharedInstance() {
+    if (null == sharedInstance) {
+      synchronized (HashedWheelTimer.class) {
+        if (null == sharedInstance) {
+          sharedInstance = new HashedWheelTimer();
+        }
+      }
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * handle of scheduled task.
+   */
+  public static final class Timeout {
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private final HashedWheelTimer timer;
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(ST_INIT);
+    private long remainingRounds;
+    private Timeout next;
+    private Timeout prev;
+    private Bucket bucket;
+
+    Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+      this.timer = timer;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * cancel the task.
+     * @return false if task has been executed or cancelled already.
+     */
+    public boolean cancel() {
+      if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+        return false;
+      }
+      timer.pendingCount.decrementAndGet();
+      timer.cancelledTimeouts.add(this);
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return state.get() == ST_CANCELLED;
+    }
+
+    public boolean isExpired() {
+      return state.get() == ST_EXPIRED;
+    }
+
+    void expire() {
+      if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+        return;
+      }
+      timer.pendingCount.decrementAndGet();
+      try {
+        task.run();
+      } catch (Throwable t) {
+        LOGGER.w("exception occurred in timer task. cause: " + t.getMessage());
+      }
+    }
+  }
+
+  private static final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (null == head) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    Timeout remove(Timeout timeout) {
+      Timeout next = timeout.next;
+      if (null != timeout.prev) {
+        timeout.prev.next = next;
+      }
+      if (null != timeout.next) {
+        timeout.next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+      return next;
+    }
+
+    void expireTimeouts(long deadline) {
+      Timeout timeout = head;
+      while (null != timeout) {
+        if (timeout.remainingRounds <= 0) {
+          Timeout next = remove(timeout);
+          if (timeout.deadline <= deadline) {
+            timeout.expire();
+          } else if (!timeout.isCancelled()) {
+            timeout.timer.newTimeouts.add(timeout);
+          }
+          timeout = next;
+        } else if (timeout.isCancelled()) {
+          timeout = remove(timeout);
+        } else {
+          timeout.remainingRounds--;
+          timeout = timeout.next;
+        }
+      }
+    }
+  }
+
+  private final long tickDuration;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+  private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+  private final AtomicInteger workerState = new AtomicInteger(STATE_INIT);
+  private final AtomicLong pendingCount = new AtomicLong(0);
+  private final Thread workerThread;
+  private volatile long startTime = 0;
+
+  public HashedWheelTimer() {
+    this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+  }
+
+  public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+    if (tickDuration <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("tickDuration and wheelSize must be positive.");
+    }
+    int normalizedSize = 1;
+    while (normalizedSize < wheelSize) {
+      normalizedSize <<= 1;
+    }
+    this.wheel = new Bucket[normalizedSize];
+    for (int i = 0; i < normalizedSize; i++) {
+      this.wheel[i] = new Bucket();
+    }
+    this.mask = normalizedSize - 1;
+    this.tickDuration = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+    this.workerThread = new Thread(new Worker(), "leancloud-timer-" + threadIndex.incrementAndGet());
+    this.workerThread.setDaemon(true);
+  }
+
+  /**
+   * schedule task to be executed after delay.
+   * @throws IllegalStateException if timer has been stopped.
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (null == task) {
+      throw new NullPointerException("task is null");
+    }
+    start();
+    long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+    Timeout timeout = new Timeout(this, task, deadline);
+    pendingCount.incrementAndGet();
+    newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * @return count of scheduled tasks which are neither executed nor cancelled.
+   */
+  public long pendingTimeouts() {
+    return pendingCount.get();
+  }
+
+  private void start() {
+    switch (workerState.get()) {
+      case STATE_INIT:
+        if (workerState.compareAndSet(STATE_INIT, STATE_STARTED)) {
+          startTime = System.nanoTime();
+          workerThread.start();
+        }
+        break;
+      case STATE_STARTED:
+        break;
+      default:
+        throw new IllegalStateException("timer has been stopped.");
+    }
+    while (0 == startTime) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * stop worker thread, all pending tasks are dropped.
+   */
+  public void stop() {
+    if (this == sharedInstance) {
+      throw new IllegalStateException("shared timer can't be stopped.");
+    }
+    if (workerState.getAndSet(STATE_STOPPED) == STATE_STARTED) {
+      workerThread.interrupt();
+    }
+  }
+
+  private final class Worker implements Runnable {
+    private long tick = 0;
+
+    @Override
+    public void run() {
+      while (workerState.get() == STATE_STARTED) {
+        long deadline = waitForNextTick();
+        if (deadline < 0) {
+          continue;
+        }
+        processCancelledTimeouts();
+        transferTimeouts();
+        wheel[(int) (tick & mask)].expireTimeouts(deadline);
+        tick++;
+      }
+    }
+
+    private long waitForNextTick() {
+      long deadline = tickDuration * (tick + 1);
+      while (true) {
+        long current = System.nanoTime() - startTime;
+        long sleepMillis = (deadline - current + 999999) / 1000000;
+        if (sleepMillis <= 0) {
+          return current;
+        }
+        try {
+          Thread.sleep(sleepMillis);
+        } catch (InterruptedException ex) {
+          if (workerState.get() == STATE_STOPPED) {
+            return -1;
+          }
+        }
+      }
+    }
+
+    private void processCancelledTimeouts() {
+      Timeout timeout;
+      while ((timeout = cancelledTimeouts.poll()) != null) {
+        if (null != timeout.bucket) {
+          timeout.bucket.remove(timeout);
+        }
+      }
+    }
+
+    private void transferTimeouts() {
+      // limit transferred count to avoid starving the current tick.
+      for (int i = 0; i < 100000; i++) {
+        Timeout timeout = newTimeouts.poll();
+        if (null == timeout) {
+          break;
+        }
+        if (timeout.isCancelled()) {
+          continue;
+        }
+        long calculated = timeout.deadline / tickDuration;
+        timeout.remainingRounds = (calculated - tick) / wheel.length;
+        long ticks = Math.max(calculated, tick);
+        wheel[(int) (ticks & mask)].add(timeout);
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package cn.leancloud.util;
+
+/**
+ * concurrent hash map with primitive int keys, so that lookup never boxes key or allocates.
+ *
+ * keys are spread over lock-striped segments, every segment is a small chained hash table which is
+ * resized independently. null value is not allowed.
+ */
+public class IntConcurrentHashMap<V> {
+  private static final int SEGMENT_COUNT = 16;
+  private static final int SEGMENT_MASK = SEGMENT_COUNT - 1;
+  private static final int INITIAL_SEGMENT_CAPACITY = 8;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private static final class Node<V> {
+    final int key;
+    V value;
+    Node<V> next;
+
+    Node(int key, V value, Node<V> next) {
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  private static final class Segment<V> {
+    private Node<V>[] table = newTable(INITIAL_SEGMENT_CAPACITY);
+    private int count = 0;
+
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newTable(int capacity) {
+      return (Node<V>[]) new Node<?>[capacity];
+    }
+
+    synchronized V get(int key, int hash) {
+      Node<V> node = table[hash & (table.length - 1)];
+      while (null != node) {
+        if (node.key == key) {
+          return node.value;
+        }
+        node = node.next;
+      }
+      return null;
+    }
+
+    synchronized V put(int key, int hash, V value, boolean onlyIfAbsent) {
+      int index = hash & (table.length - 1);
+      for (Node<V> node = table[index]; null != node; node = node.next) {
+        if (node.key == key) {
+          V old = node.value;
+          if (!onlyIfAbsent) {
+            node.value = value;
+          }
+          return old;
+        }
+      }
+      table[index] = new Node<V>(key, value, table[index]);
+      if (++count > table.length * LOAD_FACTOR) {
+        resize();
+      }
+      return null;
+    }
+
+    synchronized V remove(int key, int hash, V expected) {
+      int index = hash & (table.length - 1);
+      Node<V> prev = null;
+      for (Node<V> node = table[index]; null != node; prev = node, node = node.next) {
+        if (node.key != key) {
+          continue;
+        }
+        if (null != expected && expected != node.value && !expected.equals(node.value)) {
+          return null;
+        }
+        if (null == prev) {
+          table[index] = node.next;
+        } else {
+          prev.next = node.next;
+        }
+        count--;
+        return node.value;
+      }
+      return null;
+    }
+
+    synchronized void clear() {
+      table = newTable(INITIAL_SEGMENT_CAPACITY);
+      count = 0;
+    }
+
+    synchronized int size() {
+      return count;
+    }
+
+    synchronized int copyKeys(int[] keys, int offset) {
+      for (Node<V> head : table) {
+        for (Node<V> node = head; null != node && offset < keys.length; node = node.next) {
+          keys[offset++] = node.key;
+        }
+      }
+      return offset;
+    }
+
+    private void resize() {
+      Node<V>[] newTable = newTable(table.length << 1);
+      int mask = newTable.length - 1;
+      for (Node<V> head : table) {
+        Node<V> node = head;
+        while (null != node) {
+          Node<V> next = node.next;
+          int index = spread(node.key) & mask;
+          node.next = newTable[index];
+          newTable[index] = node;
+          node = next;
+        }
+      }
+      table = newTable;
+    }
+  }
+
+  private final Segment<V>[] segments;
+
+  @SuppressWarnings("unchecked")
+  public IntConcurrentHashMap() {
+    segments = (Segment<V>[]) new Segment<?>[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      segments[i] = new Segment<V>();
+    }
+  }
+
+  private static int spread(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private Segment<V> segmentFor(int hash) {
+    return segments[(hash >>> 28) & SEGMENT_MASK];
+  }
+
+  public V get(int key) {
+    int hash = spread(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  public boolean containsKey(int key) {
+    return null != get(key);
+  }
+
+  /**
+   * @return previous value, null if key is absent.
+   */
+  public V put(int key, V value) {
+    if (null == value) {
+      throw new NullPointerException("value is null.");
+    }
+    int hash = spread(key);
+    return segmentFor(hash).put(key, hash, value, false);
+  }
+
+  /**
+   * @return existing value, null if value is put.
+   */
+  public V putIfAbsent(int key, V value) {
+    if (null == value) {
+      throw new NullPointerException("value is null.");
+    }
+    int hash = spread(key);
+    return segmentFor(hash).put(key, hash, value, true);
+  }
+
+  /**
+   * @return removed value, null if key is absent.
+   */
+  public V remove(int key) {
+    int hash = spread(key);
+    return segmentFor(hash).remove(key, hash, null);
+  }
+
+  /**
+   * remove entry only if it's mapped to the value.
+   */
+  public boolean remove(int key, V value) {
+    if (null == value) {
+      return false;
+    }
+    int hash = spread(key);
+    return null != segmentFor(hash).remove(key, hash, value);
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * @return snapshot of keys, which is weakly consistent with concurrent modification.
+   */
+  public int[] keys() {
+    int[] keys = new int[size()];
+    int offset = 0;
+    for (Segment<V> segment : segments) {
+      offset = segment.copyKeys(keys, offset);
+    }
+    if (offset < keys.length) {
+      int[] result = new int[offset];
+      System.arraycopy(keys, 0, result, 0, offset);
+      return result;
+    }
+    return keys;
+  }
+}
@@ -1,44 +1,54 @@
 package cn.leancloud.util;
 
+import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-public class WeakConcurrentHashMap<K, V> extends ConcurrentHashMap<K, List<V>> {
+/**
+ * concurrent map whose entries are removed automatically after expiry time since they were added.
+ *
+ * expiration is driven by the shared {@link HashedWheelTimer}, so a map costs nothing but its entries,
+ * call {@link #quitMap()} (or {@link #close()}) when it's no longer required to cancel all pending expirations.
+ */
+public class WeakConcurrentHashMap<K, V> extends ConcurrentHashMap<K, List<V>> implements Closeable {
 
   private static final long serialVersionUID = 1L;
 
-  private Map<K, Long> timeMap = new ConcurrentHashMap<K, Long>();
+  private final transient ConcurrentHashMap<K, ExpireTask> timeouts = new ConcurrentHashMap<K, ExpireTask>();
+  private transient HashedWheelTimer timer = HashedWheelTimer.getSharedInstance();
   private WeakConcurrentHashMapListener<K, V> listener = null;
   private long expiryInMillis;
-  private boolean mapAlive = true;
+  private volatile boolean mapAlive = true;
 
   public WeakConcurrentHashMap() {
     this.expiryInMillis = 10000;
-    initialize();
   }
 
   public WeakConcurrentHashMap(WeakConcurrentHashMapListener<K, V> listener) {
     this.listener = listener;
     this.expiryInMillis = 10000;
-    initialize();
   }
 
   public WeakConcurrentHashMap(long expiryInMillis) {
     this.expiryInMillis = expiryInMillis;
-    initialize();
   }
 
   public WeakConcurrentHashMap(long expiryInMillis, WeakConcurrentHashMapListener<K, V> listener) {
     this.expiryInMillis = expiryInMillis;
     this.listener = listener;
-    initialize();
   }
 
-  void initialize() {
-    new CleanerThread().start();
+  /**
+   * use specified timer instead of the shared one.
+   */
+  public WeakConcurrentHashMap(long expiryInMillis, WeakConcurrentHashMapListener<K, V> listener,
+                               HashedWheelTimer timer) {
+    this.expiryInMillis = expiryInMillis;
+    this.listener = listener;
+    this.timer = timer;
   }
 
   public void registerRemovalListener(WeakConcurrentHashMapListener<K, V> listener) {
@@ -52,16 +62,16 @@ public class WeakConcurrentHashMap<K, V> extends ConcurrentHashMap<K, List<V>> {
     if (!mapAlive) {
       throw new IllegalStateException("WeakConcurrent Hashmap is no more alive.. Try creating a new one.");	// No I18N
     }
-    if (super.containsKey(key)) {
-      get(key).add(value);
-    } else {
-      Date date = new Date();
-      timeMap.put(key, date.getTime());
-
-      List<V> valist = new ArrayList<>();
-      valist.add(value);
-      put(key, valist);
+    List<V> valist = get(key);
+    if (null == valist) {
+      List<V> newList = Collections.synchronizedList(new ArrayList<V>());
+      valist = putIfAbsent(key, newList);
+      if (null == valist) {
+        valist = newList;
+        scheduleExpiration(key, newList);
+      }
     }
+    valist.add(value);
     if (listener != null) {
       listener.notifyOnAdd(key, value);
     }
@@ -84,51 +94,97 @@ public class WeakConcurrentHashMap<K, V> extends ConcurrentHashMap<K, List<V>> {
     }
   }
 
-  /**
-   * Should call this method when it's no longer required
-   */
-  public void quitMap() {
-    mapAlive = false;
+  private void scheduleExpiration(K key, List<V> values) {
+    ExpireTask task = new ExpireTask(key, values);
+    ExpireTask previous = timeouts.put(key, task);
+    if (null != previous) {
+      previous.cancel();
+    }
+    task.timeout = timer.newTimeout(task, expiryInMillis, TimeUnit.MILLISECONDS);
   }
 
-  public boolean isAlive() {
-    return mapAlive;
-  }
+  private class ExpireTask implements Runnable {
+    private final K key;
+    private final List<V> values;
+    private volatile HashedWheelTimer.Timeout timeout = null;
 
-  /**
-   *
-   * This thread performs the cleaning operation on the concurrent hashmap once in a specified interval. This wait interval is half of the
-   * time from the expiry time.
-   *
-   *
-   */
-  class CleanerThread extends Thread {
+    ExpireTask(K key, List<V> values) {
+      this.key = key;
+      this.values = values;
+    }
 
-    @Override
-    public void run() {
-      while (mapAlive) {
-        cleanMap();
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
+    void cancel() {
+      HashedWheelTimer.Timeout current = timeout;
+      if (null != current) {
+        current.cancel();
       }
     }
 
-    private void cleanMap() {
-      long currentTime = new Date().getTime();
-      for (K key : timeMap.keySet()) {
-        if (currentTime > (timeMap.get(key) + expiryInMillis)) {
-          List<V> values = remove(key);
-          timeMap.remove(key);
-          if (listener != null && null != values) {
-            for (V v:values) {
-              listener.notifyOnRemoval(key, v);
-            }
+    @Override
+    public void run() {
+      timeouts.remove(key, this);
+      if (!WeakConcurrentHashMap.super.remove(key, values)) {
+        return;
+      }
+      if (listener != null) {
+        synchronized (values) {
+          for (V v : values) {
+            listener.notifyOnRemoval(key, v);
           }
         }
       }
     }
   }
+
+  private void cancelExpiration(Object key, Object values) {
+    ExpireTask task = timeouts.get(key);
+    if (null != task && task.values == values && timeouts.remove(key, task)) {
+      task.cancel();
+    }
+  }
+
+  @Override
+  public List<V> remove(Object key) {
+    List<V> result = super.remove(key);
+    if (null != result) {
+      cancelExpiration(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    boolean result = super.remove(key, value);
+    if (result) {
+      cancelExpiration(key, value);
+    }
+    return result;
+  }
+
+  @Override
+  public void clear() {
+    for (K key : keySet()) {
+      remove(key);
+    }
+  }
+
+  /**
+   * Should call this method when it's no longer required
+   */
+  public void quitMap() {
+    mapAlive = false;
+    for (ExpireTask task : timeouts.values()) {
+      task.cancel();
+    }
+    timeouts.clear();
+  }
+
+  @Override
+  public void close() {
+    quitMap();
+  }
+
+  public boolean isAlive() {
+    return mapAlive;
+  }
 }
@@ -1,6 +1,7 @@
 package cn.leancloud.websocket;
 
 import cn.leancloud.AVLogger;
+import cn.leancloud.Messages;
 import cn.leancloud.command.CommandPacket;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
@@ -114,9 +115,12 @@ public class AVStandardWebSocketClient extends WebSocketClient {
   }
 
   public void send(CommandPacket packet) {
-    gLogger.d("client(" + this + ") uplink : " + packet.getGenericCommand().toString());
+    Messages.GenericCommand command = packet.getGenericCommand();
+    if (gLogger.isDebugEnabled()) {
+      gLogger.d("client(" + this + ") uplink : " + command.toString());
+    }
     try {
-      send(packet.getGenericCommand().toByteArray());
+      send(command.toByteArray());
     } catch (Exception e) {
       gLogger.e(e.getMessage());
     }
@@ -0,0 +1,123 @@
+package cn.leancloud.im;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BackgroundThreadpoolTest extends TestCase {
+  private AVIMOptions options = AVIMOptions.getGlobalOptions();
+  private int computeThreads;
+  private int blockingThreads;
+  private int queueCapacity;
+  private boolean virtualThreadsEnabled;
+
+  public BackgroundThreadpoolTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    computeThreads = options.getComputeThreads();
+    blockingThreads = options.getBlockingThreads();
+    queueCapacity = options.getTaskQueueCapacity();
+    virtualThreadsEnabled = options.isVirtualThreadsEnabled();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    options.setComputeThreads(computeThreads);
+    options.setBlockingThreads(blockingThreads);
+    options.setTaskQueueCapacity(queueCapacity);
+    options.setVirtualThreadsEnabled(virtualThreadsEnabled);
+  }
+
+  public void testBlockingTasksRunInParallel() throws Exception {
+    options.setBlockingThreads(4);
+    BackgroundThreadpool pool = new BackgroundThreadpool(options);
+    final CountDownLatch allStarted = new CountDownLatch(4);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 4; i++) {
+      pool.executeBlocking(new Runnable() {
+        @Override
+        public void run() {
+          allStarted.countDown();
+          try {
+            release.await(3, TimeUnit.SECONDS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    assertTrue(allStarted.await(1, TimeUnit.SECONDS));
+    assertEquals(4, pool.getBlockingStats().getActiveCount());
+    release.countDown();
+    Thread.sleep(100);
+    assertEquals(0, pool.getBlockingStats().getActiveCount());
+    assertEquals(4, pool.getBlockingStats().getCompletedCount());
+    pool.shutdown();
+  }
+
+  public void testSaturatedTaskRunsOnOverflowThread() throws Exception {
+    options.setComputeThreads(1);
+    options.setTaskQueueCapacity(1);
+    BackgroundThreadpool pool = new BackgroundThreadpool(options);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable blocker = new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    pool.execute(blocker);
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    pool.execute(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    assertEquals(1, pool.getComputeStats().getQueuedCount());
+
+    final Thread caller = Thread.currentThread();
+    final Thread[] runner = new Thread[1];
+    final CountDownLatch overflowDone = new CountDownLatch(1);
+    pool.execute(new Runnable() {
+      @Override
+      public void run() {
+        runner[0] = Thread.currentThread();
+        overflowDone.countDown();
+      }
+    });
+    // saturated pool never runs task on caller thread, which may be timer wheel.
+    assertTrue(overflowDone.await(1, TimeUnit.SECONDS));
+    assertNotSame(caller, runner[0]);
+    assertTrue(runner[0].getName().startsWith("leancloud-im-overflow"));
+    assertEquals(1, pool.getComputeStats().getRejectedCount());
+    release.countDown();
+    pool.shutdown();
+  }
+
+  public void testDelayedTaskAndVirtualThreadFallback() throws Exception {
+    options.setVirtualThreadsEnabled(true);
+    BackgroundThreadpool pool = new BackgroundThreadpool(options);
+    final CountDownLatch latch = new CountDownLatch(1);
+    pool.executeDelayed(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    }, 50, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertEquals(1, pool.getBlockingStats().getCompletedCount());
+    assertEquals(1, pool.getSchedulerStats().getCompletedCount());
+    pool.shutdown();
+  }
+}
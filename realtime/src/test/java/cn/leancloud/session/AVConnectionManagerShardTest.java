@@ -0,0 +1,105 @@
+package cn.leancloud.session;
+
+import cn.leancloud.AVException;
+import cn.leancloud.callback.AVCallback;
+import cn.leancloud.im.AVIMOptions;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AVConnectionManagerShardTest extends TestCase {
+  public AVConnectionManagerShardTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AVIMOptions.getGlobalOptions().setConnectionPoolSize(1);
+    AVIMOptions.getGlobalOptions().setRtmServer("");
+    AVIMOptions.getGlobalOptions().setTimeoutInSecs(10);
+  }
+
+  private static AVConnectionManager getColdShard(String prefix) {
+    AVIMOptions.getGlobalOptions().setConnectionPoolSize(4);
+    for (int i = 0; ; i++) {
+      AVConnectionManager manager = AVConnectionManager.getInstance(prefix + i);
+      if (!manager.isPrimary()) {
+        manager.resetConnection();
+        return manager;
+      }
+    }
+  }
+
+  private static AVCallback<Object> newCallback(final CountDownLatch latch, final AtomicInteger failures) {
+    return new AVCallback<Object>() {
+      @Override
+      protected void internalDone0(Object o, AVException avException) {
+        if (null != avException) {
+          failures.incrementAndGet();
+        }
+        latch.countDown();
+      }
+    };
+  }
+
+  public void testOpenTwoClientsOnColdShard() throws Exception {
+    // invalid server makes connection attempt stay in connecting status.
+    AVIMOptions.getGlobalOptions().setRtmServer("ws://[invalid");
+    AVConnectionManager manager = getColdShard("cold-");
+    CountDownLatch latch = new CountDownLatch(2);
+    AtomicInteger failures = new AtomicInteger(0);
+    manager.startConnection(newCallback(latch, failures));
+    manager.startConnection(newCallback(latch, failures));
+    assertEquals(2, latch.getCount());
+
+    manager.onOpen(null);
+    assertTrue(latch.await(1, TimeUnit.SECONDS));
+    assertEquals(0, failures.get());
+    assertTrue(manager.isConnectionEstablished());
+    manager.resetConnection();
+  }
+
+  public void testPendingCallbacksTimeout() throws Exception {
+    AVIMOptions.getGlobalOptions().setRtmServer("ws://[invalid");
+    AVIMOptions.getGlobalOptions().setTimeoutInSecs(1);
+    AVConnectionManager manager = getColdShard("timeout-");
+    CountDownLatch latch = new CountDownLatch(2);
+    AtomicInteger failures = new AtomicInteger(0);
+    manager.startConnection(newCallback(latch, failures));
+    manager.startConnection(newCallback(latch, failures));
+    assertTrue(latch.await(3, TimeUnit.SECONDS));
+    assertEquals(2, failures.get());
+    manager.resetConnection();
+  }
+
+  public void testShardIndex() {
+    int[] counts = new int[4];
+    for (int i = 0; i < 4000; i++) {
+      int index = AVConnectionManager.getShardIndex("client-" + i, 4);
+      assertTrue(index >= 0 && index < 4);
+      counts[index]++;
+    }
+    for (int count : counts) {
+      assertTrue(count > 500);
+    }
+    assertEquals(AVConnectionManager.getShardIndex("Tom", 4), AVConnectionManager.getShardIndex("Tom", 4));
+  }
+
+  public void testRouting() {
+    AVConnectionManager primary = AVConnectionManager.getInstance();
+    assertTrue(primary.isPrimary());
+    assertSame(primary, AVConnectionManager.getInstance("client-1"));
+
+    AVIMOptions.getGlobalOptions().setConnectionPoolSize(4);
+    for (int i = 0; i < 20; i++) {
+      String clientId = "client-" + i;
+      AVConnectionManager manager = AVConnectionManager.getInstance(clientId);
+      assertEquals(AVConnectionManager.getShardIndex(clientId, 4), manager.getShardIndex());
+      assertSame(manager, AVConnectionManager.getInstance(clientId));
+    }
+    assertSame(primary, AVConnectionManager.getInstance((String) null));
+    assertEquals(4, AVConnectionManager.getAllInstances().size());
+  }
+}
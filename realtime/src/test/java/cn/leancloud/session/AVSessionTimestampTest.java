@@ -0,0 +1,64 @@
+package cn.leancloud.session;
+
+import cn.leancloud.core.AppConfiguration;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AVSessionTimestampTest extends TestCase {
+  private static final int THREADS = 4;
+  private static final int UPDATES = 2000;
+
+  public AVSessionTimestampTest(String name) {
+    super(name);
+  }
+
+  private static void runInParallel(final Runnable[] tasks) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(tasks.length);
+    for (final Runnable task : tasks) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            task.run();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+    start.countDown();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+  }
+
+  public void testTimestampsNeverGoBack() throws Exception {
+    final AVSession session = new AVSession("timestamp-peer", new AVDefaultSessionListener());
+    session.updateLastPatchTime(1, true);
+    Runnable[] tasks = new Runnable[THREADS];
+    for (int i = 0; i < THREADS; i++) {
+      final int offset = i;
+      tasks[i] = new Runnable() {
+        @Override
+        public void run() {
+          // every thread updates with interleaved increasing timestamps, like stripes of different conversations.
+          for (int j = 0; j < UPDATES; j++) {
+            long timestamp = j * THREADS + offset + 2;
+            session.updateLastNotifyTime(timestamp);
+            session.updateLastPatchTime(timestamp);
+          }
+        }
+      };
+    }
+    runInParallel(tasks);
+    long max = (UPDATES - 1) * THREADS + (THREADS - 1) + 2;
+    assertEquals(max, session.getLastNotifyTime());
+    assertEquals(max, session.getLastPatchTime());
+    assertEquals(max, AppConfiguration.getDefaultSetting().getLong("timestamp-peer", "lastNotifyTime", 0L));
+    assertEquals(max, AppConfiguration.getDefaultSetting().getLong("timestamp-peer", "lastPatchTime", 0L));
+  }
+}
@@ -0,0 +1,249 @@
+package cn.leancloud.session;
+
+import cn.leancloud.Messages;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class InboundCommandDispatcherTest extends TestCase {
+  public InboundCommandDispatcherTest(String name) {
+    super(name);
+  }
+
+  public void testOrderedWithinKey() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(4, 1024,
+        InboundCommandDispatcher.OverflowPolicy.BLOCK, 1000);
+    final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch latch = new CountDownLatch(500);
+    for (int i = 0; i < 500; i++) {
+      final int seq = i;
+      assertTrue(dispatcher.dispatch("peer/conv", new Runnable() {
+        @Override
+        public void run() {
+          processed.add(seq);
+          latch.countDown();
+        }
+      }));
+    }
+    assertTrue(latch.await(3, TimeUnit.SECONDS));
+    for (int i = 0; i < 500; i++) {
+      assertEquals(Integer.valueOf(i), processed.get(i));
+    }
+    assertEquals(500, dispatcher.getDispatchedCount());
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+
+  public void testSlowConversationDoesNotBlockOthers() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(4, 16,
+        InboundCommandDispatcher.OverflowPolicy.BLOCK, 1000);
+    String slowKey = "peer/slow";
+    String fastKey = null;
+    for (int i = 0; null == fastKey; i++) {
+      if (dispatcher.getStripeIndex("peer/" + i) != dispatcher.getStripeIndex(slowKey)) {
+        fastKey = "peer/" + i;
+      }
+    }
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch fastDone = new CountDownLatch(1);
+    dispatcher.dispatch(slowKey, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    dispatcher.dispatch(fastKey, new Runnable() {
+      @Override
+      public void run() {
+        fastDone.countDown();
+      }
+    });
+    assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  public void testDropOnOverflow() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(1, 2,
+        InboundCommandDispatcher.OverflowPolicy.DROP, 0);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    dispatcher.dispatch("peer", new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    Runnable noop = new Runnable() {
+      @Override
+      public void run() {
+      }
+    };
+    assertTrue(dispatcher.dispatch("peer", noop));
+    assertTrue(dispatcher.dispatch("peer", noop));
+    assertFalse(dispatcher.dispatch("peer", noop));
+    assertEquals(1, dispatcher.getDroppedCount());
+    assertEquals(2, dispatcher.getQueueDepth());
+    assertEquals(2, dispatcher.getQueueDepths()[0]);
+    assertEquals(2, dispatcher.getPeakQueueDepth());
+    release.countDown();
+  }
+
+  public void testInlineAndConversationKey() {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(0, 16,
+        InboundCommandDispatcher.OverflowPolicy.BLOCK, 0);
+    final List<String> processed = new ArrayList<String>();
+    Messages.GenericCommand command = Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.direct)
+        .setDirectMessage(Messages.DirectCommand.newBuilder().setCid("conv").setId("msg"))
+        .build();
+    assertEquals(Collections.singletonList("conv"), InboundCommandDispatcher.getConversationIds(command));
+    assertTrue(InboundCommandDispatcher.getConversationIds(Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.session).build()).isEmpty());
+    Messages.GenericCommand unread = Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.unread)
+        .setUnreadMessage(Messages.UnreadCommand.newBuilder()
+            .addConvs(Messages.UnreadTuple.newBuilder().setCid("a").setUnread(1))
+            .addConvs(Messages.UnreadTuple.newBuilder().setCid("b").setUnread(2))
+            .addConvs(Messages.UnreadTuple.newBuilder().setCid("a").setUnread(3)))
+        .build();
+    assertEquals(Arrays.asList("a", "b"), InboundCommandDispatcher.getConversationIds(unread));
+    dispatcher.dispatch("peer", command, new Runnable() {
+      @Override
+      public void run() {
+        processed.add(Thread.currentThread().getName());
+      }
+    });
+    assertEquals(Collections.singletonList(Thread.currentThread().getName()), processed);
+  }
+
+  private static Messages.GenericCommand directCommand(String cid) {
+    return Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.direct)
+        .setDirectMessage(Messages.DirectCommand.newBuilder().setCid(cid))
+        .build();
+  }
+
+  private static Runnable record(final List<String> processed, final String name, final CountDownLatch release) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (null != release) {
+            release.await(3, TimeUnit.SECONDS);
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        processed.add(name);
+      }
+    };
+  }
+
+  public void testPatchIsOrderedWithEveryConversation() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(4, 16,
+        InboundCommandDispatcher.OverflowPolicy.BLOCK, 1000);
+    String convA = "a";
+    String convB = null;
+    for (int i = 0; null == convB; i++) {
+      if (dispatcher.getStripeIndex("peer/" + i) != dispatcher.getStripeIndex("peer/" + convA)) {
+        convB = String.valueOf(i);
+      }
+    }
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    CountDownLatch release = new CountDownLatch(1);
+    dispatcher.dispatch("peer", directCommand(convA), record(processed, "a", release));
+    dispatcher.dispatch("peer", directCommand(convB), record(processed, "b", null));
+    Messages.GenericCommand patch = Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.patch)
+        .setPatchMessage(Messages.PatchCommand.newBuilder()
+            .addPatches(Messages.PatchItem.newBuilder().setCid(convA).setMid("m1"))
+            .addPatches(Messages.PatchItem.newBuilder().setCid(convB).setMid("m2")))
+        .build();
+    assertTrue(dispatcher.dispatch("peer", patch, record(processed, "patch", null)));
+    final CountDownLatch done = new CountDownLatch(1);
+    dispatcher.dispatch("peer", directCommand(convB), new Runnable() {
+      @Override
+      public void run() {
+        processed.add("b2");
+        done.countDown();
+      }
+    });
+    Thread.sleep(200);
+    // patch waits for blocked message of conversation a, and later message of b waits for patch.
+    assertEquals(Collections.singletonList("b"), new ArrayList<String>(processed));
+    release.countDown();
+    assertTrue(done.await(3, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("b", "a", "patch", "b2"), new ArrayList<String>(processed));
+    assertEquals(4, dispatcher.getDispatchedCount());
+  }
+
+  public void testSessionCommandWaitsForAllStripes() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(4, 16,
+        InboundCommandDispatcher.OverflowPolicy.BLOCK, 1000);
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    CountDownLatch release = new CountDownLatch(1);
+    dispatcher.dispatch("peer", directCommand("slow"), record(processed, "slow", release));
+    final CountDownLatch done = new CountDownLatch(1);
+    Messages.GenericCommand session = Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.session).build();
+    assertTrue(dispatcher.dispatch("peer", session, new Runnable() {
+      @Override
+      public void run() {
+        processed.add("session");
+        done.countDown();
+      }
+    }));
+    assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    release.countDown();
+    assertTrue(done.await(3, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("slow", "session"), new ArrayList<String>(processed));
+  }
+
+  public void testBarrierIsCancelledOnOverflow() throws Exception {
+    InboundCommandDispatcher dispatcher = new InboundCommandDispatcher(2, 1,
+        InboundCommandDispatcher.OverflowPolicy.DROP, 0);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    String busyKey = "peer";
+    dispatcher.dispatch(busyKey, new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await(3, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    dispatcher.dispatch(busyKey, new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+    Messages.GenericCommand session = Messages.GenericCommand.newBuilder()
+        .setCmd(Messages.CommandType.session).build();
+    assertFalse(dispatcher.dispatch("peer", session, record(processed, "session", null)));
+    assertEquals(1, dispatcher.getDroppedCount());
+    release.countDown();
+    Thread.sleep(200);
+    assertTrue(processed.isEmpty());
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+}
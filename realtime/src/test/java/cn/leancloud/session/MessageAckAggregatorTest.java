@@ -0,0 +1,115 @@
+package cn.leancloud.session;
+
+import cn.leancloud.Messages;
+import cn.leancloud.command.CommandPacket;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MessageAckAggregatorTest extends TestCase {
+  private final List<Messages.GenericCommand> sentCommands = new ArrayList<Messages.GenericCommand>();
+  private volatile boolean ready = true;
+  private MessageAckAggregator aggregator;
+
+  public MessageAckAggregatorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    sentCommands.clear();
+    ready = true;
+    MessageAckAggregator.setFlushDelayMillis(MessageAckAggregator.DEFAULT_FLUSH_DELAY_MILLIS);
+    MessageAckAggregator.setMaxBatchSize(MessageAckAggregator.DEFAULT_MAX_BATCH_SIZE);
+    aggregator = new MessageAckAggregator("peer", new MessageAckAggregator.AckSender() {
+      @Override
+      public boolean isReady() {
+        return ready;
+      }
+
+      @Override
+      public void send(CommandPacket packet) {
+        synchronized (sentCommands) {
+          sentCommands.add(packet.getGenericCommand());
+        }
+      }
+    });
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MessageAckAggregator.setFlushDelayMillis(MessageAckAggregator.DEFAULT_FLUSH_DELAY_MILLIS);
+    MessageAckAggregator.setMaxBatchSize(MessageAckAggregator.DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public void testGroupByConversation() {
+    aggregator.add("conv1", "m1");
+    aggregator.add("conv2", "m2");
+    aggregator.add("conv1", "m3");
+    aggregator.add(null, "m4");
+    aggregator.add("conv2", "");
+    assertEquals(4, aggregator.getPendingCount());
+    aggregator.flush();
+    assertEquals(0, aggregator.getPendingCount());
+    assertEquals(3, sentCommands.size());
+
+    Messages.AckCommand first = sentCommands.get(0).getAckMessage();
+    assertEquals("conv1", first.getCid());
+    assertEquals(Arrays.asList("m1", "m3"), first.getIdsList());
+    assertEquals("peer", sentCommands.get(0).getPeerId());
+
+    // single ack keeps the original format.
+    Messages.AckCommand second = sentCommands.get(1).getAckMessage();
+    assertEquals("conv2", second.getCid());
+    assertEquals("m2", second.getMid());
+    assertEquals(0, second.getIdsCount());
+
+    Messages.AckCommand sessionAck = sentCommands.get(2).getAckMessage();
+    assertFalse(sessionAck.hasCid());
+    assertEquals(Arrays.asList("m4"), sessionAck.getIdsList());
+  }
+
+  public void testFlushByBatchSize() {
+    MessageAckAggregator.setMaxBatchSize(3);
+    aggregator.add("conv", "m1");
+    aggregator.add("conv", "m2");
+    assertEquals(0, sentCommands.size());
+    aggregator.add("conv", "m3");
+    assertEquals(1, sentCommands.size());
+    assertEquals(3, sentCommands.get(0).getAckMessage().getIdsCount());
+  }
+
+  public void testFlushByDelay() throws Exception {
+    MessageAckAggregator.setFlushDelayMillis(50);
+    aggregator.add("conv", "m1");
+    aggregator.add("conv", "m2");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      synchronized (sentCommands) {
+        if (sentCommands.size() > 0) {
+          break;
+        }
+      }
+      Thread.sleep(10);
+    }
+    assertEquals(1, sentCommands.size());
+    assertEquals(2, sentCommands.get(0).getAckMessage().getIdsCount());
+  }
+
+  public void testKeepPendingUntilReady() {
+    MessageAckAggregator.setFlushDelayMillis(0);
+    ready = false;
+    aggregator.add("conv", "m1");
+    aggregator.add("conv", "m2");
+    assertEquals(0, sentCommands.size());
+    assertEquals(2, aggregator.getPendingCount());
+    ready = true;
+    aggregator.flush();
+    assertEquals(1, sentCommands.size());
+    aggregator.add("conv", "m3");
+    aggregator.clear();
+    assertEquals(0, aggregator.getPendingCount());
+  }
+}
@@ -0,0 +1,76 @@
+package cn.leancloud.session;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class MessageDeduplicatorTest extends TestCase {
+  private File snapshotFile;
+
+  public MessageDeduplicatorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    snapshotFile = new File("./target/dedup-test/test.snapshot");
+    snapshotFile.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    snapshotFile.delete();
+  }
+
+  public void testDuplicate() {
+    MessageDeduplicator deduplicator = new MessageDeduplicator(10, 0, null);
+    assertTrue(deduplicator.add("m1"));
+    assertTrue(deduplicator.add("m2"));
+    assertFalse(deduplicator.add("m1"));
+    assertTrue(deduplicator.contains("m2"));
+    assertFalse(deduplicator.contains("m3"));
+    // empty id is never treated as duplicated.
+    assertTrue(deduplicator.add(""));
+    assertTrue(deduplicator.add(null));
+    assertEquals(2, deduplicator.size());
+  }
+
+  public void testCountWindow() {
+    MessageDeduplicator deduplicator = new MessageDeduplicator(3, 0, null);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(deduplicator.add("m" + i));
+    }
+    assertEquals(3, deduplicator.size());
+    assertFalse(deduplicator.contains("m0"));
+    assertFalse(deduplicator.contains("m1"));
+    assertFalse(deduplicator.add("m4"));
+    // evicted id is treated as a new one.
+    assertTrue(deduplicator.add("m0"));
+    assertFalse(deduplicator.contains("m2"));
+  }
+
+  public void testTimeWindow() throws Exception {
+    MessageDeduplicator deduplicator = new MessageDeduplicator(100, 50, null);
+    assertTrue(deduplicator.add("m1"));
+    assertFalse(deduplicator.add("m1"));
+    Thread.sleep(100);
+    assertFalse(deduplicator.contains("m1"));
+    assertTrue(deduplicator.add("m1"));
+    assertEquals(1, deduplicator.size());
+  }
+
+  public void testSnapshot() {
+    MessageDeduplicator deduplicator = new MessageDeduplicator(3, 0, snapshotFile);
+    for (int i = 0; i < 4; i++) {
+      deduplicator.add("m" + i);
+    }
+    deduplicator.saveSnapshot();
+    assertTrue(snapshotFile.exists());
+
+    MessageDeduplicator restored = new MessageDeduplicator(2, 0, snapshotFile);
+    assertEquals(2, restored.size());
+    assertFalse(restored.contains("m1"));
+    assertFalse(restored.add("m2"));
+    assertFalse(restored.add("m3"));
+  }
+}
@@ -0,0 +1,107 @@
+package cn.leancloud.session;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+
+public class PersistentQueueTest extends TestCase {
+  private static final File JOURNAL_FILE = new File("./target/queue-test/test.journal");
+
+  public PersistentQueueTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    JOURNAL_FILE.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    JOURNAL_FILE.delete();
+  }
+
+  private PersistentQueue<PendingMessageCache.Message> openQueue(long commitWindow, int compactThreshold) {
+    return new PersistentQueue<PendingMessageCache.Message>("test", PendingMessageCache.Message.class,
+        new QueueJournal(JOURNAL_FILE, commitWindow, compactThreshold));
+  }
+
+  private static PendingMessageCache.Message makeMessage(int index) {
+    return PendingMessageCache.Message.getMessage("msg" + index, "id" + index, false, "cid");
+  }
+
+  public void testRestore() {
+    PersistentQueue<PendingMessageCache.Message> queue = openQueue(0, 100);
+    for (int i = 0; i < 5; i++) {
+      queue.offer(makeMessage(i));
+    }
+    assertEquals("msg0", queue.poll().msg);
+    Iterator<PendingMessageCache.Message> it = queue.iterator();
+    it.next();
+    it.next();
+    it.remove();
+    assertEquals(3, queue.size());
+
+    PersistentQueue<PendingMessageCache.Message> restored = openQueue(0, 100);
+    assertEquals(3, restored.size());
+    assertEquals("msg1", restored.poll().msg);
+    assertEquals("id3", restored.poll().getId());
+    assertEquals("msg4", restored.peek().msg);
+  }
+
+  public void testGroupCommit() throws Exception {
+    PersistentQueue<PendingMessageCache.Message> queue = openQueue(10000, 100);
+    for (int i = 0; i < 10; i++) {
+      queue.offer(makeMessage(i));
+    }
+    assertFalse(JOURNAL_FILE.exists());
+    queue.flush();
+    assertEquals(10, openQueue(0, 100).size());
+  }
+
+  public void testCompaction() {
+    QueueJournal journal = new QueueJournal(JOURNAL_FILE, 0, 10);
+    PersistentQueue<String> queue = new PersistentQueue<String>("test", String.class, journal);
+    for (int i = 0; i < 100; i++) {
+      queue.offer("message" + i);
+      if (i % 2 == 1) {
+        queue.poll();
+      }
+    }
+    assertEquals(50, queue.size());
+    assertTrue(journal.getRecordCount() < 100);
+
+    PersistentQueue<String> restored = new PersistentQueue<String>("test", String.class,
+        new QueueJournal(JOURNAL_FILE, 0, 10));
+    assertEquals(50, restored.size());
+    assertEquals("message50", restored.peek());
+    restored.offer("last");
+    restored.removeAll(Arrays.asList("message50", "message51"));
+    assertEquals(49, restored.size());
+
+    restored.clear();
+    assertTrue(new PersistentQueue<String>("test", String.class,
+        new QueueJournal(JOURNAL_FILE, 0, 10)).isEmpty());
+  }
+
+  public void testFallbackToSystemSetting() {
+    // without journal(important file dir is not set), queue is still persisted.
+    PersistentQueue<PendingMessageCache.Message> queue = new PersistentQueue<PendingMessageCache.Message>(
+        "legacy-test", PendingMessageCache.Message.class, null);
+    queue.clear();
+    for (int i = 0; i < 3; i++) {
+      queue.offer(makeMessage(i));
+    }
+    assertEquals("msg0", queue.poll().msg);
+
+    PersistentQueue<PendingMessageCache.Message> restored = new PersistentQueue<PendingMessageCache.Message>(
+        "legacy-test", PendingMessageCache.Message.class, null);
+    assertEquals(2, restored.size());
+    assertEquals("msg1", restored.peek().msg);
+    restored.clear();
+    assertTrue(new PersistentQueue<PendingMessageCache.Message>(
+        "legacy-test", PendingMessageCache.Message.class, null).isEmpty());
+  }
+}
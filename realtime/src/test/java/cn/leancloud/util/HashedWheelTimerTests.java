@@ -0,0 +1,53 @@
+package cn.leancloud.util;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashedWheelTimerTests extends TestCase {
+  public HashedWheelTimerTests(String name) {
+    super(name);
+  }
+
+  public void testExpireAndCancel() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+    final CountDownLatch latch = new CountDownLatch(100);
+    final AtomicInteger cancelledRuns = new AtomicInteger(0);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      // delays exceed one round of the wheel.
+      timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, 50 + i * 2, TimeUnit.MILLISECONDS);
+      HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          cancelledRuns.incrementAndGet();
+        }
+      }, 100, TimeUnit.MILLISECONDS);
+      assertTrue(timeout.cancel());
+      assertFalse(timeout.cancel());
+    }
+    assertTrue(latch.await(3, TimeUnit.SECONDS));
+    assertTrue(System.currentTimeMillis() - start >= 240);
+    Thread.sleep(100);
+    assertEquals(0, cancelledRuns.get());
+    assertEquals(0, timer.pendingTimeouts());
+    timer.stop();
+    try {
+      timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }, 1, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (IllegalStateException ex) {
+      ;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package cn.leancloud.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IntConcurrentHashMapTests extends TestCase {
+  public IntConcurrentHashMapTests(String name) {
+    super(name);
+  }
+
+  public void testPutGetRemove() {
+    IntConcurrentHashMap<String> map = new IntConcurrentHashMap<String>();
+    assertTrue(map.isEmpty());
+    assertNull(map.put(1, "a"));
+    assertNull(map.put(-1, "b"));
+    assertNull(map.put(Integer.MAX_VALUE, "c"));
+    assertEquals("a", map.put(1, "d"));
+    assertEquals("d", map.putIfAbsent(1, "e"));
+    assertEquals(3, map.size());
+    assertEquals("d", map.get(1));
+    assertEquals("b", map.get(-1));
+    assertTrue(map.containsKey(Integer.MAX_VALUE));
+    assertFalse(map.containsKey(2));
+
+    assertFalse(map.remove(-1, "x"));
+    assertTrue(map.remove(-1, "b"));
+    assertEquals("c", map.remove(Integer.MAX_VALUE));
+    assertNull(map.remove(Integer.MAX_VALUE));
+    assertEquals(1, map.size());
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(1));
+  }
+
+  public void testResizeAndKeys() {
+    IntConcurrentHashMap<Integer> map = new IntConcurrentHashMap<Integer>();
+    for (int i = 0; i < 10000; i++) {
+      map.put(i * 7, i);
+    }
+    assertEquals(10000, map.size());
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(Integer.valueOf(i), map.get(i * 7));
+    }
+    int[] keys = map.keys();
+    assertEquals(10000, keys.length);
+    Arrays.sort(keys);
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i * 7, keys[i]);
+    }
+  }
+
+  public void testConcurrentAccess() throws Exception {
+    final IntConcurrentHashMap<Integer> map = new IntConcurrentHashMap<Integer>();
+    final int threads = 8;
+    final int perThread = 5000;
+    final CountDownLatch latch = new CountDownLatch(threads);
+    final AtomicInteger failures = new AtomicInteger(0);
+    for (int t = 0; t < threads; t++) {
+      final int base = t * perThread;
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = base; i < base + perThread; i++) {
+            map.put(i, i);
+            if (!Integer.valueOf(i).equals(map.get(i))) {
+              failures.incrementAndGet();
+            }
+            if (i % 2 == 0 && null == map.remove(i)) {
+              failures.incrementAndGet();
+            }
+          }
+          latch.countDown();
+        }
+      }).start();
+    }
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    assertEquals(0, failures.get());
+    assertEquals(threads * perThread / 2, map.size());
+  }
+}
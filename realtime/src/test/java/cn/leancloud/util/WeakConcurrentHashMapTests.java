@@ -31,4 +31,24 @@ public class WeakConcurrentHashMapTests extends TestCase {
     Thread.sleep(5000);
     assertEquals(0, hashMap.size());
   }
+
+  public void testRemoveAndQuit() throws Exception {
+    HashedWheelTimer timer = HashedWheelTimer.getSharedInstance();
+    long pending = timer.pendingTimeouts();
+    WeakConcurrentHashMap<String, String> hashMap = new WeakConcurrentHashMap<>(60000);
+    hashMap.addElement("key1", "value");
+    hashMap.addElement("key2", "value");
+    assertEquals(pending + 2, timer.pendingTimeouts());
+    assertEquals(1, hashMap.remove("key1").size());
+    assertEquals(pending + 1, timer.pendingTimeouts());
+    hashMap.quitMap();
+    assertEquals(pending, timer.pendingTimeouts());
+    assertFalse(hashMap.isAlive());
+    try {
+      hashMap.addElement("key3", "value");
+      fail();
+    } catch (IllegalStateException ex) {
+      ;
+    }
+  }
 }